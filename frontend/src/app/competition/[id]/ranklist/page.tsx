@@ -1,6 +1,6 @@
 import { Fragment, useState, useEffect, useMemo, memo, useCallback } from 'react';
 import { createPortal } from 'react-dom';
-import { Spin, Empty, Modal, Space, BalloonIcon } from '@/components';
+import { Spin, Empty, Modal, Space, BalloonIcon, PagePagination } from '@/components';
 import { ArrowLeft, Lock } from 'lucide-react';
 import Input from '@/components/ui/input';
 import {
@@ -476,6 +476,12 @@ const CompetitionRanklist: React.FC = () => {
     competition,
     users,
     loading,
+    page,
+    total,
+    pageSize,
+    handlePageChange,
+    myRank,
+    jumpToMyRank,
     passwordModalVisible,
     password,
     setPassword,
@@ -536,6 +542,13 @@ const CompetitionRanklist: React.FC = () => {
               </div>
               <div className="flex shrink-0 flex-col items-end gap-3">
                 <CountdownDisplay endTime={competition.endTime} />
+                <button
+                  type="button"
+                  onClick={jumpToMyRank}
+                  className="rounded-full border border-gray-200 bg-white px-3 py-1 text-sm text-gray-600 shadow-sm transition-colors hover:bg-gray-50 hover:text-gray-900"
+                >
+                  {myRank ? `我的名次：${myRank.rank} / ${myRank.total}` : '查看我的名次'}
+                </button>
               </div>
             </div>
 
@@ -580,7 +593,7 @@ const CompetitionRanklist: React.FC = () => {
                         <RanklistRow
                           key={userKey}
                           user={user}
-                          rank={index + 1}
+                          rank={user.rank ?? (page - 1) * pageSize + index + 1}
                           expanded={expanded}
                           problemHeaders={problemHeaders}
                           submissions={ranklistSubmissions[userKey] || EMPTY_SUBMISSIONS}
@@ -593,6 +606,18 @@ const CompetitionRanklist: React.FC = () => {
                 </table>
               </div>
             )}
+            {total > pageSize && (
+              <div className="mt-4 shrink-0">
+                <PagePagination
+                  current={page}
+                  total={total}
+                  pageSize={pageSize}
+                  onChange={(nextPage) => handlePageChange(nextPage)}
+                  unit="名参赛者"
+                  align="end"
+                />
+              </div>
+            )}
           </div>
         ) : (
           <div className="gemini-card text-center py-12">
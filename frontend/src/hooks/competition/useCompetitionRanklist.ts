@@ -47,6 +47,8 @@ export interface SubmissionRank {
 }
 
 export interface RankUser {
+  /** 名次，并列同名次 */
+  rank?: number;
   id: number;
   name: string;
   type?: string;
@@ -57,6 +59,25 @@ export interface RankUser {
   submissions?: SubmissionRank[];
 }
 
+export interface RanklistPage {
+  problems: Problem[];
+  users: RankUser[];
+  total: number;
+  page: number;
+  pageSize: number;
+}
+
+export interface RankOf {
+  rank: number;
+  position: number;
+  total: number;
+  page: number;
+  user: RankUser;
+}
+
+/** 每页行数；大比赛只拉当前页，不再下载整张榜 */
+export const RANKLIST_PAGE_SIZE = 50;
+
 export type ProblemHeader = Problem & { color: string; label: string; stat: string };
 
 export const balloonColors = [
@@ -93,6 +114,7 @@ const isTeamMemberSame = (a?: TeamMember, b?: TeamMember) => {
 const isUserSame = (a: RankUser, b: RankUser) => {
   if (
     a.id !== b.id ||
+    a.rank !== b.rank ||
     a.name !== b.name ||
     a.type !== b.type ||
     (a.passCount || 0) !== (b.passCount || 0) ||
@@ -136,6 +158,9 @@ export const useCompetitionRanklist = () => {
   const [expandedUserKeys, setExpandedUserKeys] = useState<Set<string>>(() => new Set());
   const [ranklistSubmissions, setRanklistSubmissions] = useState<Record<string, SubmissionRank[]>>({});
   const [loadingSubmissionKeys, setLoadingSubmissionKeys] = useState<Set<string>>(() => new Set());
+  const [page, setPage] = useState(1);
+  const [total, setTotal] = useState(0);
+  const [myRank, setMyRank] = useState<RankOf | null>(null);
   useCompetitionFirstBloodWebSocket(id, passwordVerified);
 
   const returnTo =
@@ -203,11 +228,15 @@ export const useCompetitionRanklist = () => {
   const loadingSubmissionKeysRef = useRef(loadingSubmissionKeys);
   loadingSubmissionKeysRef.current = loadingSubmissionKeys;
 
+  const pageRef = useRef(page);
+  pageRef.current = page;
+
   const loadRanklist = async (showLoading = true) => {
     if (showLoading) setLoading(true);
     try {
-      const data = await competitionApi.ranklistDetail<{ problems: Problem[]; users: RankUser[] }>(id);
+      const data = await competitionApi.ranklistPage<RanklistPage>(id, pageRef.current, RANKLIST_PAGE_SIZE);
       if (data.code === 200) {
+        setTotal(data.data?.total || 0);
         const nextProblems: Problem[] = data.data?.problems || [];
         const nextUsers: RankUser[] = data.data?.users || [];
         setProblems((prev) => {
@@ -248,7 +277,25 @@ export const useCompetitionRanklist = () => {
   useEffect(() => {
     if (passwordVerified && competition) loadRanklist();
     // eslint-disable-next-line react-hooks/exhaustive-deps
-  }, [passwordVerified, competition]);
+  }, [passwordVerified, competition, page]);
+
+  const handlePageChange = useCallback((nextPage: number) => {
+    setPage(nextPage);
+  }, []);
+
+  const jumpToMyRank = useCallback(async () => {
+    try {
+      const data = await competitionApi.ranklistRank<RankOf | null>(id, RANKLIST_PAGE_SIZE);
+      if (data.code === 200 && data.data) {
+        setMyRank(data.data);
+        setPage(data.data.page);
+      } else if (data.code === 200) {
+        toast('你还不在本场榜单上');
+      }
+    } catch (error: any) {
+      toast.error(error.response?.data?.msg || '查询名次失败');
+    }
+  }, [id]);
 
   useEffect(() => {
     if (!passwordVerified || !competition) return;
@@ -331,6 +378,12 @@ export const useCompetitionRanklist = () => {
     users,
     problems,
     loading,
+    page,
+    total,
+    pageSize: RANKLIST_PAGE_SIZE,
+    handlePageChange,
+    myRank,
+    jumpToMyRank,
     passwordModalVisible,
     password,
     setPassword,
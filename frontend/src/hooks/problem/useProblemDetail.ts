@@ -207,6 +207,9 @@ export const useProblemDetail = () => {
   const [commentSubmitting, setCommentSubmitting] = useState(false);
   const currentSnowflakeIdRef = useRef<string | null>(null);
   const pendingJudgeMessagesRef = useRef<Record<string, JudgeMessage[]>>({});
+  // 异步样例运行：ticket -> 等待结果的回调；回调注册前就到达的推送先暂存
+  const sampleWaitersRef = useRef<Record<string, (msg: JudgeMessage) => void>>({});
+  const earlySampleMessagesRef = useRef<Record<string, JudgeMessage>>({});
   const [isEditorFullscreen, setIsEditorFullscreen] = useState(false);
   const [ideSettings, setIdeSettings] = useState<OnlineIdeSettings>({ fontSize: 14, wordWrap: true, theme: 'dark' });
   const [highlightedCommentId, setHighlightedCommentId] = useState<number | null>(null);
@@ -274,7 +277,11 @@ export const useProblemDetail = () => {
   const applyJudgeMessage = useCallback((msg: JudgeMessage) => {
     const status = msg.status || '未知状态';
     if (status === '评测中') {
-      setRunResult({ variant: 'info', source: 'submit', headline: status, bodyText: '正在进行评测...' });
+      const bodyText =
+        msg.caseTotal != null && msg.caseIndex != null
+          ? `正在评测第 ${msg.caseIndex}/${msg.caseTotal} 个测试点...`
+          : '正在进行评测...';
+      setRunResult({ variant: 'info', source: 'submit', headline: status, bodyText });
     } else {
       const hasTests = msg.testCount != null && msg.testCount > 0;
       const hasFailureDiff =
@@ -320,6 +327,17 @@ export const useProblemDetail = () => {
 
   const handleWebSocketMessage = useCallback(
     (msg: JudgeMessage) => {
+      if (msg?.type === 'sample') {
+        if (!msg.ticket) return;
+        const waiter = sampleWaitersRef.current[msg.ticket];
+        if (waiter) {
+          delete sampleWaitersRef.current[msg.ticket];
+          waiter(msg);
+        } else {
+          earlySampleMessagesRef.current[msg.ticket] = msg;
+        }
+        return;
+      }
       if (!msg?.snowflakeId) return;
       const messageSnowflakeId = String(msg.snowflakeId);
       const currentId = currentSnowflakeIdRef.current;
@@ -597,6 +615,24 @@ export const useProblemDetail = () => {
     [currentExample, activeExampleTab, normalizeTestText],
   );
 
+  const waitForSampleResult = (ticket: string, timeoutMs = 60000) =>
+    new Promise<JudgeMessage>((resolve, reject) => {
+      const early = earlySampleMessagesRef.current[ticket];
+      if (early) {
+        delete earlySampleMessagesRef.current[ticket];
+        resolve(early);
+        return;
+      }
+      const timer = window.setTimeout(() => {
+        delete sampleWaitersRef.current[ticket];
+        reject(new Error('样例运行超时，请稍后重试'));
+      }, timeoutMs);
+      sampleWaitersRef.current[ticket] = (msg) => {
+        window.clearTimeout(timer);
+        resolve(msg);
+      };
+    });
+
   const handleTestCode = async () => {
     setActiveBottomTab('result');
     if (!code.trim()) {
@@ -625,71 +661,55 @@ export const useProblemDetail = () => {
         memory: String(problem!.memoryLimit || 256),
         customTest: isCustomTest,
       };
-      const data = (await judgeApi.test<{
-        status?: string;
-        description?: string;
-        errorInfo?: string;
-        input?: string;
-        expectedOutput?: string;
-        actualOutput?: string;
-        passCount?: number | null;
-        testCount?: number | null;
-      }>(payload)) as ApiResponse<{
-        status?: string;
-        description?: string;
-        errorInfo?: string;
-        input?: string;
-        expectedOutput?: string;
-        actualOutput?: string;
-        passCount?: number | null;
-        testCount?: number | null;
-      }>;
-      if (data.code === 200) {
-        if (isCustomTest) {
-          setRunResult({
-            variant: 'info',
-            source: 'test',
-            headline: '自定义测试完成',
-            description: '已使用自定义输入运行你的程序，下方为程序实际输出。',
-            diff: { input: currentTestInput, actual: data.data.actualOutput || '' },
-          });
-        } else {
-          const hasTests = data.data.testCount != null && data.data.testCount > 0;
-          const status = data.data.status || '测试完成';
-          const isCompileError = status === '编译错误' || status === 'Compile Error';
-          const isSpecialJudge = problem?.judgeMode === 'special';
-          // 构造题（SPJ）自测时不直接判定对错，让用户自行比对
-          const displayStatus = isSpecialJudge && !isCompileError ? '自测完成' : status;
-          const displayVariant = isSpecialJudge && !isCompileError ? 'info' as const : mapJudgeStatusToVariant(status);
-          const displayDesc = isSpecialJudge && !isCompileError
-            ? '本题为构造题（Special Judge），样例输出仅供参考，请自行比对实际输出是否正确。'
-            : (data.data.description || status);
-          setRunResult({
-            variant: displayVariant,
-            source: 'test',
-            headline: displayStatus,
-            description: displayDesc,
-            metrics: hasTests
-              ? { passCount: data.data.passCount ?? 0, testCount: data.data.testCount! }
-              : undefined,
-            errorInfo: data.data.errorInfo || undefined,
-            diff: isCompileError
-              ? undefined
-              : {
-                  input: data.data.input ?? currentTestInput,
-                  expected: data.data.expectedOutput ?? (matchedExample?.output ?? currentExample.output ?? ''),
-                  actual: data.data.actualOutput ?? '',
-                },
-          });
-        }
-      } else {
+      const data = (await judgeApi.testAsync<{ ticket?: string }>(payload)) as ApiResponse<{ ticket?: string }>;
+      if (data.code !== 200 || !data.data?.ticket) {
         setRunResult({ variant: 'error', source: 'test', headline: (data as any).msg || '测试失败' });
+        return;
+      }
+      // 结果通过 WebSocket 推送（type=sample），按 ticket 对应
+      const result = await waitForSampleResult(data.data.ticket);
+      if (isCustomTest) {
+        setRunResult({
+          variant: 'info',
+          source: 'test',
+          headline: '自定义测试完成',
+          description: '已使用自定义输入运行你的程序，下方为程序实际输出。',
+          diff: { input: currentTestInput, actual: result.actualOutput || '' },
+        });
+      } else {
+        const hasTests = result.testCount != null && result.testCount > 0;
+        const status = result.status || '测试完成';
+        const isCompileError = status === '编译错误' || status === 'Compile Error';
+        const isSpecialJudge = problem?.judgeMode === 'special';
+        // 构造题（SPJ）自测时不直接判定对错，让用户自行比对
+        const displayStatus = isSpecialJudge && !isCompileError ? '自测完成' : status;
+        const displayVariant = isSpecialJudge && !isCompileError ? 'info' as const : mapJudgeStatusToVariant(status);
+        const displayDesc = isSpecialJudge && !isCompileError
+          ? '本题为构造题（Special Judge），样例输出仅供参考，请自行比对实际输出是否正确。'
+          : (result.description || status);
+        setRunResult({
+          variant: displayVariant,
+          source: 'test',
+          headline: displayStatus,
+          description: displayDesc,
+          metrics: hasTests
+            ? { passCount: result.passCount ?? 0, testCount: result.testCount! }
+            : undefined,
+          errorInfo: result.errorInfo || undefined,
+          diff: isCompileError
+            ? undefined
+            : {
+                input: result.input ?? currentTestInput,
+                expected: result.expectedOutput ?? (matchedExample?.output ?? currentExample.output ?? ''),
+                actual: result.actualOutput ?? '',
+              },
+        });
       }
     } catch (error: any) {
       setRunResult({
         variant: 'error',
         source: 'test',
-        headline: error?.response?.data?.msg || '测试失败，请稍后重试',
+        headline: error?.response?.data?.msg || error?.message || '测试失败，请稍后重试',
       });
     } finally {
       setCodeLoading((prev) => ({ ...prev, test: false }));
@@ -5,7 +5,8 @@ export const competitionApi = {
   get: <T = unknown>(id: string | number | undefined) => api.get<T>(`/competition/${id}`),
   participation: <T = unknown>(id: string | number) => api.get<T>(`/competition/${id}/participation`),
   confirm: (id: string | number | undefined, password: string) => api.post('/competition/confirm', { id, password }),
-  ranklistDetail: <T = unknown>(id: string | number | undefined) => api.get<T>('/competition/ranklist-detail', { params: { id } }),
+  ranklistPage: <T = unknown>(id: string | number | undefined, page: number, pageSize: number) => api.get<T>('/competition/ranklist-page', { params: { id, page, pageSize } }),
+  ranklistRank: <T = unknown>(id: string | number | undefined, pageSize: number) => api.get<T>('/competition/ranklist-rank', { params: { id, pageSize } }),
   ranklistSubmissions: <T = unknown>(id: string | number | undefined, userId: string | number) => api.get<T>('/competition/ranklist-submissions', { params: { id, userId } }),
   listProblem: <T = unknown>(id: string | number | undefined) => api.get<T>('/competition/list-problem', { params: { id } }),
   judgeIsOpen: (now: string, id: string | number | undefined) => api.post('/competition/judgeIsOpen', { now, id }),
@@ -2,5 +2,7 @@ import api from './http';
 
 export const judgeApi = {
   test: <T = unknown>(payload: Record<string, unknown>) => api.post<T>('/judge/test', payload),
+  /** 异步样例运行：返回 ticket，结果通过 WebSocket 推送（type=sample） */
+  testAsync: <T = unknown>(payload: Record<string, unknown>) => api.post<T>('/judge/test-async', payload),
   submit: <T = unknown>(payload: Record<string, unknown>) => api.post<T>('/judge/submit', payload),
 };
@@ -174,7 +174,7 @@ export interface PageResponse<T> {
 
 // WebSocket 消息类型（后端推送字段以实际 JSON 为准）
 export interface JudgeMessage {
-  type?: 'status' | 'result' | 'error' | 'complete';
+  type?: 'status' | 'result' | 'error' | 'complete' | 'sample';
   submissionId?: number;
   snowflakeId?: string;
   status?: SubmissionStatus | string;
@@ -193,6 +193,17 @@ export interface JudgeMessage {
   caseExpected?: string | null;
   /** 仅普通题目页（非比赛）非 AC 时由后端推送：用户程序实际输出（已截断） */
   actualOutput?: string | null;
+  /** 仅普通题目页评测中推送：已完成的测试点序号（从 1 开始） */
+  caseIndex?: number;
+  /** 仅普通题目页评测中推送：测试点总数 */
+  caseTotal?: number;
+  /** 仅普通题目页评测中推送：刚完成的测试点结果 */
+  caseStatus?: string;
+  /** 异步样例运行（type=sample）：发起运行时拿到的凭据 */
+  ticket?: string;
+  /** 异步样例运行（type=sample）：失败用例输入 / 期望输出 */
+  input?: string | null;
+  expectedOutput?: string | null;
 }
 
 // 表单类型
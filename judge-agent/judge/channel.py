@@ -0,0 +1,132 @@
+"""后端评测长连接（WebSocket /ws/judge）：一条连接上多路复用评测请求。
+
+请求帧：``{"id", "op", "traceId", "body"}``，op 为 ``submit`` / ``submit-stream`` / ``run-sample``，
+body 与对应 HTTP 接口的 JSON 请求体相同。每个请求单独起任务在线程池里评测，完成即回，结果按完成顺序乱序返回：
+- ``{"id", "type": "case", ...}``：submit-stream 的逐测试点进度
+- ``{"id", "type": "result", "result": {...}}``：最终结果
+- ``{"id", "type": "error", "status", "detail"}``：请求无效（4xx）或 Agent 内部错误（5xx，后端换 Agent 重发）
+
+连接断开时后端把在途请求换 Agent 或改走 HTTP 重发，同一 requestId 由 dedup 去重，不会重复评测。
+"""
+import asyncio
+import json
+import logging
+import time
+from collections.abc import Awaitable, Callable
+from typing import Any
+
+from fastapi import HTTPException, WebSocket, WebSocketDisconnect
+from pydantic import ValidationError
+
+from . import dedup, registry
+from .engine import run_judge, run_sample
+from .models import AgentJudgeResponse, JudgeRequest, SampleRunRequest
+
+logger = logging.getLogger(__name__)
+
+OP_SUBMIT = "submit"
+OP_SUBMIT_STREAM = "submit-stream"
+OP_SAMPLE = "run-sample"
+
+
+class Connection:
+    """一条评测长连接：发送串行化，评测线程也可以推送。"""
+
+    def __init__(self, ws: WebSocket) -> None:
+        self.ws = ws
+        self.loop = asyncio.get_running_loop()
+        self.send_lock = asyncio.Lock()
+        self.closed = False
+
+    async def send(self, frame: dict[str, Any]) -> None:
+        if self.closed:
+            return
+        text = json.dumps(frame, ensure_ascii=False)
+        async with self.send_lock:
+            try:
+                await self.ws.send_text(text)
+            except Exception:
+                # 连接已断，后端会重发在途请求
+                self.closed = True
+
+    def send_from_thread(self, frame: dict[str, Any]) -> None:
+        """评测线程里推送进度：投递到事件循环，不等待发送完成。"""
+        if not self.closed:
+            asyncio.run_coroutine_threadsafe(self.send(frame), self.loop)
+
+
+Dispatch = Callable[[Connection, str | None, str | None, dict], Awaitable[AgentJudgeResponse]]
+
+
+async def serve(ws: WebSocket, dispatch: Dispatch | None = None) -> None:
+    """处理一条评测长连接；dispatch 默认走真实评测，stub_agent.py 传入假评测。"""
+    dispatch = dispatch or _dispatch
+    await ws.accept()
+    conn = Connection(ws)
+    tasks: set[asyncio.Task] = set()
+    try:
+        while True:
+            text = await ws.receive_text()
+            task = asyncio.create_task(_handle(conn, dispatch, text))
+            tasks.add(task)
+            task.add_done_callback(tasks.discard)
+    except WebSocketDisconnect:
+        pass
+    finally:
+        conn.closed = True
+        if tasks:
+            logger.info("评测通道断开，在途请求 %d 个将由后端重发", len(tasks))
+
+
+async def _handle(conn: Connection, dispatch: Dispatch, text: str) -> None:
+    request_id = None
+    trace_id = None
+    op = None
+    start = time.perf_counter()
+    try:
+        frame = json.loads(text)
+        request_id = frame.get("id")
+        trace_id = frame.get("traceId")
+        op = frame.get("op")
+        result = await dispatch(conn, request_id, op, frame.get("body") or {})
+        await conn.send({"id": request_id, "type": "result", "result": result.model_dump()})
+        status = 200
+    except (ValidationError, ValueError) as exc:
+        status = 422
+        await conn.send({"id": request_id, "type": "error", "status": status, "detail": str(exc)})
+    except HTTPException as exc:
+        status = exc.status_code
+        await conn.send({"id": request_id, "type": "error", "status": status, "detail": str(exc.detail)})
+    except Exception as exc:
+        status = 500
+        logger.exception("评测通道请求失败: op=%s", op)
+        await conn.send({"id": request_id, "type": "error", "status": status, "detail": str(exc)})
+    if trace_id:
+        logger.info(
+            "trace=%s ws %s status=%d elapsed=%.1fms",
+            trace_id, op, status, (time.perf_counter() - start) * 1000,
+        )
+
+
+async def _dispatch(conn: Connection, request_id: str | None, op: str | None, body: dict) -> AgentJudgeResponse:
+    if op == OP_SUBMIT:
+        req = JudgeRequest.model_validate(body)
+        return await asyncio.to_thread(_tracked, lambda: dedup.run_once(req.requestId, lambda: run_judge(req)))
+    if op == OP_SUBMIT_STREAM:
+        req = JudgeRequest.model_validate(body)
+
+        def on_case(event: dict) -> None:
+            conn.send_from_thread({"id": request_id, **event})
+
+        # 重复请求复用同一份结果，此时不会再有逐测试点进度，只返回最终结果
+        return await asyncio.to_thread(
+            _tracked, lambda: dedup.run_once(req.requestId, lambda: run_judge(req, on_case=on_case)))
+    if op == OP_SAMPLE:
+        req = SampleRunRequest.model_validate(body)
+        return await asyncio.to_thread(_tracked, lambda: run_sample(req))
+    raise HTTPException(status_code=400, detail=f"unknown op: {op}")
+
+
+def _tracked(fn) -> AgentJudgeResponse:
+    with registry.track_in_flight():
+        return fn()
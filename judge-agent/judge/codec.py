@@ -0,0 +1,47 @@
+"""请求体解码：后端按心跳里声明的 ``SUPPORTED_CODECS`` 选择编码。
+
+- ``Content-Type: application/cbor`` 按 CBOR 解码，其余按 JSON；
+- ``Content-Encoding: gzip`` 先解压（后端只对超过阈值的大请求体压缩，源码是其中的大头）。
+响应仍然是 JSON / NDJSON。旧版后端只发 JSON，不受影响。
+"""
+from __future__ import annotations
+
+import gzip
+import json
+from typing import Any, Callable, TypeVar
+
+import cbor2
+from fastapi import Request
+from fastapi.exceptions import RequestValidationError
+from pydantic import BaseModel, ValidationError
+
+SUPPORTED_CODECS = ["cbor", "gzip"]
+CBOR_CONTENT_TYPE = "application/cbor"
+
+ModelT = TypeVar("ModelT", bound=BaseModel)
+
+
+def decode(raw: bytes, content_type: str | None, content_encoding: str | None) -> Any:
+    if (content_encoding or "").strip().lower() == "gzip":
+        raw = gzip.decompress(raw)
+    media_type = (content_type or "").split(";", 1)[0].strip().lower()
+    if media_type == CBOR_CONTENT_TYPE:
+        return cbor2.loads(raw)
+    return json.loads(raw)
+
+
+def body_of(model: type[ModelT]) -> Callable[[Request], Any]:
+    """FastAPI 依赖：按请求头解码请求体并校验为 ``model``，校验失败与普通 JSON 请求一样返回 422。"""
+
+    async def dependency(request: Request) -> ModelT:
+        raw = await request.body()
+        try:
+            data = decode(raw, request.headers.get("content-type"), request.headers.get("content-encoding"))
+        except (ValueError, OSError, cbor2.CBORDecodeError) as e:
+            raise RequestValidationError([{"loc": ("body",), "msg": f"请求体解码失败: {e}", "type": "value_error"}])
+        try:
+            return model.model_validate(data)
+        except ValidationError as e:
+            raise RequestValidationError(e.errors())
+
+    return dependency
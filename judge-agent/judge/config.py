@@ -14,5 +14,16 @@ MINIO_BUCKET = os.getenv("MINIO_BUCKET", "problem")
 MINIO_PREFIX = os.getenv("MINIO_PREFIX", "")
 
 PRELOAD_ALL_ON_STARTUP = os.getenv("PRELOAD_ALL_ON_STARTUP", "true").lower() == "true"
+# 数据版本更新后旧版本目录的保留时间：先摘掉 .ready 不再复用，宽限期后再删，避免删掉在途评测正在读的文件
+STALE_DATA_GRACE_SECONDS = float(os.getenv("STALE_DATA_GRACE_SECONDS", "300"))
+
+# 动态注册：配置 BACKEND_URL + AGENT_PUBLIC_URL 后定时向后端心跳，后端据此增删端点
+BACKEND_URL = os.getenv("BACKEND_URL", "").rstrip("/")
+AGENT_PUBLIC_URL = os.getenv("AGENT_PUBLIC_URL", "").rstrip("/")
+AGENT_CAPACITY = int(os.getenv("AGENT_CAPACITY", "2"))
+# 样例运行的独立名额，后端据此为本 Agent 单开一个样例许可池
+AGENT_SAMPLE_CAPACITY = int(os.getenv("AGENT_SAMPLE_CAPACITY", "1"))
+AGENT_REGISTRY_SECRET = os.getenv("AGENT_REGISTRY_SECRET", "")
+HEARTBEAT_INTERVAL_SECONDS = float(os.getenv("HEARTBEAT_INTERVAL_SECONDS", "5"))
 
 DEFAULT_FLOAT_TOLERANCE = 1e-4
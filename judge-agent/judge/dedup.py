@@ -0,0 +1,65 @@
+"""按 requestId 对重复到达的评测请求去重。
+
+后端在连接失败 / 超时后会重发同一提交（可能落到同一台 Agent），这里保证同一 requestId：
+- 正在评测时，后到的请求等待并复用同一份结果，不会在沙箱里再跑一遍；
+- 刚评测完（RESULT_TTL_SECONDS 内）再到达，直接返回缓存的结果。
+requestId 为空（旧版后端）时不去重。
+"""
+from __future__ import annotations
+
+import threading
+import time
+from collections import OrderedDict
+from concurrent.futures import Future
+from typing import Callable
+
+from .models import AgentJudgeResponse
+
+RESULT_TTL_SECONDS = 300.0
+MAX_RESULTS = 1024
+
+_lock = threading.Lock()
+_in_flight: dict[str, Future] = {}
+_results: OrderedDict[str, tuple[float, AgentJudgeResponse]] = OrderedDict()
+
+
+def _cached(request_id: str) -> AgentJudgeResponse | None:
+    entry = _results.get(request_id)
+    if entry is None:
+        return None
+    expires_at, result = entry
+    if expires_at < time.monotonic():
+        del _results[request_id]
+        return None
+    return result
+
+
+def run_once(request_id: str | None, fn: Callable[[], AgentJudgeResponse]) -> AgentJudgeResponse:
+    """同一 requestId 只执行一次 fn；并发的重复请求等待同一结果，刚完成的直接复用。"""
+    if not request_id:
+        return fn()
+    with _lock:
+        cached = _cached(request_id)
+        if cached is not None:
+            return cached
+        future = _in_flight.get(request_id)
+        owner = future is None
+        if owner:
+            future = Future()
+            _in_flight[request_id] = future
+    if not owner:
+        return future.result()
+    try:
+        result = fn()
+    except BaseException as exc:
+        future.set_exception(exc)
+        with _lock:
+            _in_flight.pop(request_id, None)
+        raise
+    with _lock:
+        _in_flight.pop(request_id, None)
+        _results[request_id] = (time.monotonic() + RESULT_TTL_SECONDS, result)
+        while len(_results) > MAX_RESULTS:
+            _results.popitem(last=False)
+    future.set_result(result)
+    return result
@@ -1,7 +1,13 @@
 """评测编排：根据语言和判题模式调度对应策略。"""
+import json
+import queue
+import threading
+from collections.abc import Callable, Iterator
+
 import httpx
 from fastapi import HTTPException
 
+from . import dedup
 from .compare import equals_ignoring_whitespace, equals_with_float_tolerance, normalize_line_endings
 from .config import DEFAULT_FLOAT_TOLERANCE, HTTP_TIMEOUT_SECONDS
 from .go_judge import delete_file
@@ -18,7 +24,7 @@ from .status import (
 )
 
 
-def run_judge(req: JudgeRequest) -> AgentJudgeResponse:
+def run_judge(req: JudgeRequest, on_case: Callable[[dict], None] | None = None) -> AgentJudgeResponse:
     """提交评测：从本机 MinIO 拉测试数据，选 language + mode，逐测试点本机调 Go-Judge。"""
     mode = get_mode(req.judgeMode)
 
@@ -58,6 +64,8 @@ def run_judge(req: JudgeRequest) -> AgentJudgeResponse:
             time_limit_ms=req.timeLimit,
             float_tolerance=req.floatTolerance if req.floatTolerance is not None else DEFAULT_FLOAT_TOLERANCE,
             checker_file=req.checkerFile,
+            stop_on_first_failure=req.stopOnFirstFailure,
+            on_case=on_case,
         )
         return mode.evaluate(ctx, final)
     except HTTPException:
@@ -70,6 +78,28 @@ def run_judge(req: JudgeRequest) -> AgentJudgeResponse:
         client.close()
 
 
+def stream_judge(req: JudgeRequest) -> Iterator[str]:
+    """流式评测：每个测试点完成后输出一行 {"type":"case",...}，最后一行 {"type":"result","result":{...}}（NDJSON）。"""
+    events: queue.Queue[dict] = queue.Queue()
+
+    def worker() -> None:
+        try:
+            # 重复请求复用同一份结果，此时不会再有逐测试点进度，只输出最终结果行
+            result = dedup.run_once(req.requestId, lambda: run_judge(req, on_case=events.put))
+        except HTTPException as exc:
+            result = AgentJudgeResponse(status=STATUS_JUDGE_ERROR, files=RunFiles(stderr=str(exc.detail)))
+        except Exception as exc:
+            result = AgentJudgeResponse(status=STATUS_JUDGE_ERROR, files=RunFiles(stderr=str(exc)))
+        events.put({"type": "result", "result": result.model_dump()})
+
+    threading.Thread(target=worker, name=f"judge-stream-{req.submissionId}", daemon=True).start()
+    while True:
+        event = events.get()
+        yield json.dumps(event, ensure_ascii=False) + "\n"
+        if event.get("type") == "result":
+            return
+
+
 def run_sample(req: SampleRunRequest) -> AgentJudgeResponse:
     """样例运行 / 自定义输入运行：单测试点，可选与 outputExample 比较。"""
     client = httpx.Client(timeout=HTTP_TIMEOUT_SECONDS)
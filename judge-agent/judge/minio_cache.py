@@ -3,8 +3,10 @@ from __future__ import annotations
 
 import hashlib
 import json
+import logging
 import shutil
 import tempfile
+import threading
 import zipfile
 from pathlib import Path
 from typing import Any
@@ -14,6 +16,7 @@ from fastapi import HTTPException
 
 from .config import (
     DATA_ROOT,
+    STALE_DATA_GRACE_SECONDS,
     MINIO_ACCESS_KEY,
     MINIO_BUCKET,
     MINIO_ENDPOINT,
@@ -22,6 +25,12 @@ from .config import (
 )
 from .models import CacheStatusResponse
 
+logger = logging.getLogger(__name__)
+
+# 同一 (problemId, dataVersion) 同时只有一个线程在下载解压：后台预热与评测请求可能同时未命中
+_download_locks: dict[Path, threading.Lock] = {}
+_download_locks_guard = threading.Lock()
+
 
 def minio_client() -> Any:
     return boto3.client(
@@ -47,7 +56,19 @@ def ensure_data_cached(problem_id: int, data_version: str) -> Path:
     marker = data_dir / ".ready"
     if marker.exists():
         return data_dir
+    with _download_lock(data_dir):
+        if marker.exists():
+            return data_dir
+        _download(problem_id, data_version, data_dir, marker)
+    return data_dir
+
+
+def _download_lock(data_dir: Path) -> threading.Lock:
+    with _download_locks_guard:
+        return _download_locks.setdefault(data_dir, threading.Lock())
+
 
+def _download(problem_id: int, data_version: str, data_dir: Path, marker: Path) -> None:
     object_name = minio_object_name_for_problem(problem_id)
     data_dir.parent.mkdir(parents=True, exist_ok=True)
     with tempfile.TemporaryDirectory(prefix="judge-data-") as temp_name:
@@ -63,10 +84,53 @@ def ensure_data_cached(problem_id: int, data_version: str) -> Path:
             shutil.rmtree(data_dir)
         shutil.move(str(extract_dir), str(data_dir))
         marker.write_text(
-            json.dumps({"source": "minio", "bucket": MINIO_BUCKET, "objectName": object_name}, ensure_ascii=False),
+            json.dumps(
+                {
+                    "source": "minio",
+                    "bucket": MINIO_BUCKET,
+                    "objectName": object_name,
+                    "problemId": problem_id,
+                    "dataVersion": data_version,
+                },
+                ensure_ascii=False,
+            ),
             encoding="utf-8",
         )
-    return data_dir
+
+
+def preload_in_background(problem_id: int, data_version: str) -> None:
+    """后台线程拉取，失败只记日志：下一次评测仍会按需拉取。"""
+    def run() -> None:
+        try:
+            ensure_data_cached(problem_id, data_version)
+        except Exception:  # noqa: BLE001
+            logger.exception("预热题目数据失败: problemId=%s dataVersion=%s", problem_id, data_version)
+
+    threading.Thread(target=run, name=f"preload-{problem_id}", daemon=True).start()
+
+
+def evict_stale_versions(problem_id: int, keep_version: str) -> int:
+    """淘汰该题除 keep_version 外的缓存版本，返回淘汰数。
+
+    先删 .ready：心跳不再上报、评测不再复用；目录在 STALE_DATA_GRACE_SECONDS 后才删除，
+    正在用旧版本评测的请求不受影响。
+    """
+    problem_root = DATA_ROOT / str(problem_id)
+    if not problem_root.exists():
+        return 0
+    keep_dir = data_dir_for(problem_id, keep_version)
+    evicted = 0
+    for version_dir in problem_root.iterdir():
+        if not version_dir.is_dir() or version_dir == keep_dir:
+            continue
+        marker = version_dir / ".ready"
+        if marker.exists():
+            marker.unlink(missing_ok=True)
+            evicted += 1
+        timer = threading.Timer(STALE_DATA_GRACE_SECONDS, shutil.rmtree, args=(version_dir,), kwargs={"ignore_errors": True})
+        timer.daemon = True
+        timer.start()
+    return evicted
 
 
 def preload_all_from_minio() -> None:
@@ -111,6 +175,26 @@ def cache_status(problem_id: int, data_version: str) -> CacheStatusResponse:
     )
 
 
+def cached_versions() -> dict[int, str]:
+    """扫描本地缓存目录，返回 problemId -> dataVersion（同题多版本时取最后写入的一份）。"""
+    result: dict[int, tuple[float, str]] = {}
+    if not DATA_ROOT.exists():
+        return {}
+    for marker in DATA_ROOT.glob("*/*/.ready"):
+        try:
+            meta = json.loads(marker.read_text(encoding="utf-8"))
+            problem_id = int(meta["problemId"])
+            data_version = str(meta["dataVersion"])
+        except (OSError, ValueError, KeyError, TypeError):
+            # 旧版本写入的 marker 没有版本信息，跳过
+            continue
+        mtime = marker.stat().st_mtime
+        prev = result.get(problem_id)
+        if prev is None or prev[0] < mtime:
+            result[problem_id] = (mtime, data_version)
+    return {pid: version for pid, (_, version) in result.items()}
+
+
 def load_checker_source(checker_file: str | None) -> str:
     if not checker_file:
         raise HTTPException(status_code=400, detail="special judge requires checkerFile")
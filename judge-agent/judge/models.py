@@ -11,6 +11,8 @@ class PreloadRequest(BaseModel):
 
 class JudgeRequest(BaseModel):
     submissionId: int | None = None
+    # 幂等键：后端重试时原样带上，同一 requestId 只评测一次（见 judge/dedup.py）
+    requestId: str | None = None
     problemId: int
     dataVersion: str = "default"
     language: str
@@ -20,6 +22,8 @@ class JudgeRequest(BaseModel):
     judgeMode: Literal["standard", "float", "special"] | None = "standard"
     floatTolerance: float | None = None
     checkerFile: str | None = None
+    # 第一个失败的测试点后是否立即停止；False 时跑完全部测试点
+    stopOnFirstFailure: bool = True
 
 
 class SampleRunRequest(BaseModel):
@@ -56,3 +60,18 @@ class CacheStatusResponse(BaseModel):
     dataVersion: str
     caseCount: int = 0
     path: str
+
+
+class DataRefreshRequest(BaseModel):
+    """后端在题目数据更新 / 比赛开始前下发：每项淘汰该题其他版本的缓存，preload 时后台拉取该版本。"""
+    items: list[PreloadRequest] = Field(default_factory=list)
+    preload: bool = True
+
+
+class DataRefreshResponse(BaseModel):
+    accepted: int = 0
+    evicted: int = 0
+
+
+class CacheStatusBatchRequest(BaseModel):
+    items: list[PreloadRequest] = Field(default_factory=list)
@@ -2,6 +2,7 @@
 from __future__ import annotations
 
 from abc import ABC, abstractmethod
+from collections.abc import Callable
 from dataclasses import dataclass
 from pathlib import Path
 
@@ -24,6 +25,10 @@ class JudgeContext:
     time_limit_ms: int
     float_tolerance: float
     checker_file: str | None = None
+    # False 时跑完所有测试点：最终状态取第一个失败点，passCount 为通过的测试点数
+    stop_on_first_failure: bool = True
+    # 每个测试点完成后的回调（流式评测用），参数见 report_case
+    on_case: Callable[[dict], None] | None = None
 
 
 class JudgeMode(ABC):
@@ -47,6 +52,20 @@ def extract_files(result: dict) -> tuple[str, str]:
     return files.get("stdout", ""), files.get("stderr", "")
 
 
+def report_case(ctx: JudgeContext, index: int, status: str, result: dict) -> None:
+    """把单个测试点结果推给 on_case 回调；time 为毫秒，memory 为 MB。"""
+    if ctx.on_case is None:
+        return
+    ctx.on_case({
+        "type": "case",
+        "index": index,
+        "total": len(ctx.cases),
+        "status": status,
+        "time": int(result.get("time") or 0) // 1_000_000,
+        "memory": int(result.get("memory") or 0) // 1_048_576,
+    })
+
+
 def accumulate(final: AgentJudgeResponse, result: dict) -> None:
     """累加耗时和内存（取所有测试点最大值），并把 ns → ms、bytes → MB。"""
     time_ns = int(result.get("time") or 0)
@@ -6,8 +6,14 @@ import httpx
 from ..go_judge import delete_file, post_go_judge
 from ..minio_cache import load_checker_source
 from ..models import AgentJudgeResponse
-from ..status import STATUS_COMPILE_ERROR, STATUS_WRONG_ANSWER, apply_status_post_processing
-from .base import JudgeContext, JudgeMode, accumulate, extract_files, truncate
+from ..status import (
+    STATUS_ACCEPTED,
+    STATUS_COMPILE_ERROR,
+    STATUS_WRONG_ANSWER,
+    apply_status_post_processing,
+    translate_status,
+)
+from .base import JudgeContext, JudgeMode, accumulate, extract_files, report_case, truncate
 
 _CHECKER_WA_MESSAGE = "输出的答案未通过检验。"
 
@@ -28,6 +34,8 @@ class SpecialMode(JudgeMode):
 
         checker_id: str | None = compile_result["artifactId"]
         try:
+            failed = False
+            passed = 0
             for index, (input_path, _) in enumerate(ctx.cases, start=1):
                 input_text = input_path.read_text(encoding="utf-8", errors="replace")
                 run_result = ctx.runner.run(
@@ -37,23 +45,35 @@ class SpecialMode(JudgeMode):
 
                 raw_status = run_result.get("status", "")
                 if raw_status != "Accepted":
-                    apply_status_post_processing(final, raw_status, ctx.time_limit_ms, ctx.memory_limit_bytes)
-                    stdout, stderr = extract_files(run_result)
-                    final.files.stdout = stdout
-                    final.files.stderr = stderr
-                    final.caseInput = truncate(input_text, 200)
-                    return final
+                    if not failed:
+                        apply_status_post_processing(final, raw_status, ctx.time_limit_ms, ctx.memory_limit_bytes)
+                        stdout, stderr = extract_files(run_result)
+                        final.files.stdout = stdout
+                        final.files.stderr = stderr
+                        final.caseInput = truncate(input_text, 200)
+                        failed = True
+                    report_case(ctx, index, translate_status(raw_status), run_result)
+                    if ctx.stop_on_first_failure:
+                        return final
+                    continue
 
                 participant_output = (run_result.get("files") or {}).get("stdout", "")
                 checker_result = self._run_checker(ctx.client, checker_id, input_text, participant_output)
                 if checker_result.get("status") != "Accepted" or int(checker_result.get("exitStatus") or 0) != 0:
-                    final.status = STATUS_WRONG_ANSWER
-                    final.files.stdout = participant_output
-                    final.files.stderr = _CHECKER_WA_MESSAGE
-                    final.caseInput = truncate(input_text, 200)
-                    return final
-
-                final.passCount = index
+                    if not failed:
+                        final.status = STATUS_WRONG_ANSWER
+                        final.files.stdout = participant_output
+                        final.files.stderr = _CHECKER_WA_MESSAGE
+                        final.caseInput = truncate(input_text, 200)
+                        failed = True
+                    report_case(ctx, index, STATUS_WRONG_ANSWER, run_result)
+                    if ctx.stop_on_first_failure:
+                        return final
+                    continue
+
+                passed += 1
+                final.passCount = passed
+                report_case(ctx, index, STATUS_ACCEPTED, run_result)
             return final
         finally:
             if checker_id:
@@ -6,8 +6,8 @@ from collections.abc import Callable
 
 from ..compare import equals_ignoring_whitespace, equals_with_float_tolerance, normalize_line_endings
 from ..models import AgentJudgeResponse
-from ..status import STATUS_WRONG_ANSWER, apply_status_post_processing
-from .base import JudgeContext, JudgeMode, accumulate, extract_files, truncate
+from ..status import STATUS_ACCEPTED, STATUS_WRONG_ANSWER, apply_status_post_processing, translate_status
+from .base import JudgeContext, JudgeMode, accumulate, extract_files, report_case, truncate
 
 # comparator: (expected, actual, tolerance) -> bool
 Comparator = Callable[[str, str, float], bool]
@@ -20,6 +20,8 @@ class _OutputCompareMode(JudgeMode):
     comparator: Comparator = staticmethod(lambda e, a, t: False)
 
     def evaluate(self, ctx: JudgeContext, final: AgentJudgeResponse) -> AgentJudgeResponse:
+        failed = False
+        passed = 0
         for index, (input_path, output_path) in enumerate(ctx.cases, start=1):
             input_text = input_path.read_text(encoding="utf-8", errors="replace")
             run_result = ctx.runner.run(
@@ -29,26 +31,39 @@ class _OutputCompareMode(JudgeMode):
 
             raw_status = run_result.get("status", "")
             if raw_status != "Accepted":
-                apply_status_post_processing(final, raw_status, ctx.time_limit_ms, ctx.memory_limit_bytes)
-                stdout, stderr = extract_files(run_result)
-                final.files.stdout = stdout
-                final.files.stderr = stderr
-                final.caseInput = truncate(input_text, 200)
-                final.caseExpected = truncate(
-                    normalize_line_endings(output_path.read_text(encoding="utf-8", errors="replace")), 400
-                )
-                return final
+                # 只有第一个失败点决定最终状态与展示的失败用例
+                if not failed:
+                    apply_status_post_processing(final, raw_status, ctx.time_limit_ms, ctx.memory_limit_bytes)
+                    stdout, stderr = extract_files(run_result)
+                    final.files.stdout = stdout
+                    final.files.stderr = stderr
+                    final.caseInput = truncate(input_text, 200)
+                    final.caseExpected = truncate(
+                        normalize_line_endings(output_path.read_text(encoding="utf-8", errors="replace")), 400
+                    )
+                    failed = True
+                report_case(ctx, index, translate_status(raw_status), run_result)
+                if ctx.stop_on_first_failure:
+                    return final
+                continue
 
             expected = normalize_line_endings(output_path.read_text(encoding="utf-8", errors="replace"))
             actual = normalize_line_endings((run_result.get("files") or {}).get("stdout", ""))
             if not self.comparator(expected, actual, ctx.float_tolerance):
-                final.status = STATUS_WRONG_ANSWER
-                final.files.stdout = actual
-                final.caseInput = truncate(input_text, 200)
-                final.caseExpected = truncate(expected, 400)
-                return final
-
-            final.passCount = index
+                if not failed:
+                    final.status = STATUS_WRONG_ANSWER
+                    final.files.stdout = actual
+                    final.caseInput = truncate(input_text, 200)
+                    final.caseExpected = truncate(expected, 400)
+                    failed = True
+                report_case(ctx, index, STATUS_WRONG_ANSWER, run_result)
+                if ctx.stop_on_first_failure:
+                    return final
+                continue
+
+            passed += 1
+            final.passCount = passed
+            report_case(ctx, index, STATUS_ACCEPTED, run_result)
         return final
 
 
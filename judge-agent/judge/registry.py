@@ -0,0 +1,108 @@
+"""向 Java 后端注册并定时心跳，上报 capacity / 在途评测数 / 空闲内存 / 已缓存数据版本 / 支持的请求体编码。"""
+from __future__ import annotations
+
+import logging
+import threading
+from contextlib import contextmanager
+from typing import Iterator
+
+import httpx
+
+from .config import (
+    AGENT_CAPACITY,
+    AGENT_PUBLIC_URL,
+    AGENT_REGISTRY_SECRET,
+    AGENT_SAMPLE_CAPACITY,
+    BACKEND_URL,
+    HEARTBEAT_INTERVAL_SECONDS,
+)
+from .codec import SUPPORTED_CODECS
+from .minio_cache import cached_versions
+
+logger = logging.getLogger(__name__)
+
+SECRET_HEADER = "X-Judge-Agent-Secret"
+
+_in_flight = 0
+_in_flight_lock = threading.Lock()
+_stop = threading.Event()
+
+
+@contextmanager
+def track_in_flight() -> Iterator[None]:
+    global _in_flight
+    with _in_flight_lock:
+        _in_flight += 1
+    try:
+        yield
+    finally:
+        with _in_flight_lock:
+            _in_flight -= 1
+
+
+def enabled() -> bool:
+    return bool(BACKEND_URL and AGENT_PUBLIC_URL)
+
+
+def _free_memory_mb() -> int:
+    try:
+        with open("/proc/meminfo", encoding="utf-8") as f:
+            for line in f:
+                if line.startswith("MemAvailable:"):
+                    return int(line.split()[1]) // 1024
+    except OSError:
+        pass
+    return -1
+
+
+def _heartbeat_once(client: httpx.Client) -> None:
+    payload = {
+        "url": AGENT_PUBLIC_URL,
+        "capacity": AGENT_CAPACITY,
+        "sampleCapacity": AGENT_SAMPLE_CAPACITY,
+        "inFlight": _in_flight,
+        "freeMemoryMb": _free_memory_mb(),
+        "dataVersions": {str(pid): version for pid, version in cached_versions().items()},
+        "codecs": SUPPORTED_CODECS,
+    }
+    resp = client.post(
+        f"{BACKEND_URL}/api/v1/judge-agent/heartbeat",
+        json=payload,
+        headers={SECRET_HEADER: AGENT_REGISTRY_SECRET},
+    )
+    resp.raise_for_status()
+    body = resp.json()
+    if body.get("code") != 200:
+        logger.warning("heartbeat rejected: %s", body.get("msg"))
+
+
+def _loop() -> None:
+    with httpx.Client(timeout=5.0) as client:
+        while not _stop.is_set():
+            try:
+                _heartbeat_once(client)
+            except Exception as exc:  # 后端暂时不可达时继续重试
+                logger.warning("heartbeat failed: %s", exc)
+            _stop.wait(HEARTBEAT_INTERVAL_SECONDS)
+
+
+def start() -> None:
+    if not enabled():
+        return
+    threading.Thread(target=_loop, name="agent-heartbeat", daemon=True).start()
+
+
+def stop() -> None:
+    """停止心跳并通知后端摘流，在途评测由后端等待完成。"""
+    if not enabled():
+        return
+    _stop.set()
+    try:
+        httpx.post(
+            f"{BACKEND_URL}/api/v1/judge-agent/deregister",
+            params={"url": AGENT_PUBLIC_URL},
+            headers={SECRET_HEADER: AGENT_REGISTRY_SECRET},
+            timeout=5.0,
+        )
+    except Exception as exc:
+        logger.warning("deregister failed: %s", exc)
@@ -4,10 +4,18 @@
 - ``judge/languages/*``：每种语言一个 LanguageRunner
 - ``judge/modes/*``：每种判题模式一个 JudgeMode
 - ``judge/engine.py``：编排器，按语言 + 模式调度
+- ``judge/registry.py``：向后端注册 / 心跳
+- ``judge/dedup.py``：按 requestId 对重试到达的重复评测请求去重
+- ``judge/codec.py``：按 Content-Type / Content-Encoding 解码 JSON / CBOR / gzip 请求体
+- ``judge/channel.py``：后端评测长连接（WebSocket），一条连接上多路复用、乱序返回
 """
+import logging
+import time
+from collections.abc import Iterator
 from typing import Any
 
-from fastapi import FastAPI
+from fastapi import Depends, FastAPI, Request, WebSocket
+from fastapi.responses import StreamingResponse
 
 from judge.config import (
     GO_JUDGE_URL,
@@ -16,23 +24,63 @@ from judge.config import (
     MINIO_ENDPOINT,
     PRELOAD_ALL_ON_STARTUP,
 )
-from judge.engine import run_judge, run_sample
-from judge.minio_cache import cache_status, ensure_data_cached, preload_all_from_minio
+from judge import channel, dedup, registry
+from judge.codec import body_of
+from judge.engine import run_judge, run_sample, stream_judge
+from judge.minio_cache import (
+    cache_status,
+    ensure_data_cached,
+    evict_stale_versions,
+    preload_all_from_minio,
+    preload_in_background,
+)
 from judge.models import (
     AgentJudgeResponse,
+    CacheStatusBatchRequest,
     CacheStatusResponse,
+    DataRefreshRequest,
+    DataRefreshResponse,
     JudgeRequest,
     PreloadRequest,
     SampleRunRequest,
 )
 
 app = FastAPI(title="Vnollx Judge Agent", version="0.2.0")
+logger = logging.getLogger(__name__)
+
+TRACE_HEADER = "X-Trace-Id"
+
+
+@app.middleware("http")
+async def trace_log(request: Request, call_next):
+    """后端评测请求带 X-Trace-Id：记一行带 traceId 的耗时日志并原样回显，便于和后端评测时间线对照。
+
+    流式接口的耗时只到响应头发出为止，完整执行时间以后端记录的 agent_done 为准。
+    """
+    trace_id = request.headers.get(TRACE_HEADER)
+    if not trace_id:
+        return await call_next(request)
+    start = time.perf_counter()
+    response = await call_next(request)
+    response.headers[TRACE_HEADER] = trace_id
+    logger.info(
+        "trace=%s %s %s status=%d elapsed=%.1fms",
+        trace_id, request.method, request.url.path, response.status_code,
+        (time.perf_counter() - start) * 1000,
+    )
+    return response
 
 
 @app.on_event("startup")
 def on_startup() -> None:
     if PRELOAD_ALL_ON_STARTUP:
         preload_all_from_minio()
+    registry.start()
+
+
+@app.on_event("shutdown")
+def on_shutdown() -> None:
+    registry.stop()
 
 
 @app.get("/health")
@@ -58,11 +106,43 @@ def get_cache_status(problemId: int, dataVersion: str = "default") -> CacheStatu
     return cache_status(problemId, dataVersion)
 
 
+@app.post("/data/cache-status", response_model=list[CacheStatusResponse])
+def batch_cache_status(req: CacheStatusBatchRequest) -> list[CacheStatusResponse]:
+    return [cache_status(item.problemId, item.dataVersion) for item in req.items]
+
+
+@app.post("/data/refresh", response_model=DataRefreshResponse)
+def refresh(req: DataRefreshRequest) -> DataRefreshResponse:
+    """数据版本更新 / 比赛预热：淘汰旧版本，立即返回，新版本在后台拉取。"""
+    evicted = 0
+    for item in req.items:
+        evicted += evict_stale_versions(item.problemId, item.dataVersion)
+        if req.preload:
+            preload_in_background(item.problemId, item.dataVersion)
+    return DataRefreshResponse(accepted=len(req.items), evicted=evicted)
+
+
 @app.post("/judge/submit", response_model=AgentJudgeResponse)
-def judge(req: JudgeRequest) -> AgentJudgeResponse:
-    return run_judge(req)
+def judge(req: JudgeRequest = Depends(body_of(JudgeRequest))) -> AgentJudgeResponse:
+    with registry.track_in_flight():
+        return dedup.run_once(req.requestId, lambda: run_judge(req))
+
+
+@app.post("/judge/submit-stream")
+def judge_stream(req: JudgeRequest = Depends(body_of(JudgeRequest))) -> StreamingResponse:
+    def tracked() -> Iterator[str]:
+        with registry.track_in_flight():
+            yield from stream_judge(req)
+
+    return StreamingResponse(tracked(), media_type="application/x-ndjson")
 
 
 @app.post("/judge/run-sample", response_model=AgentJudgeResponse)
-def judge_sample(req: SampleRunRequest) -> AgentJudgeResponse:
-    return run_sample(req)
+def judge_sample(req: SampleRunRequest = Depends(body_of(SampleRunRequest))) -> AgentJudgeResponse:
+    with registry.track_in_flight():
+        return run_sample(req)
+
+
+@app.websocket("/ws/judge")
+async def judge_channel(ws: WebSocket) -> None:
+    await channel.serve(ws)
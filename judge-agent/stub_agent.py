@@ -0,0 +1,90 @@
+"""本地联调用的假 Judge Agent：不连 go-judge / MinIO，按随机延迟返回固定结果。
+
+和真实 Agent 暴露相同的评测接口（HTTP + WebSocket /ws/judge），用来在本机验证后端的派发、
+长连接多路复用 / 乱序返回 / 断线重连，不用于生产：
+
+    STUB_STATUS=答案正确 STUB_DELAY_MS=50-800 uvicorn stub_agent:app --port 8091
+
+后端 ``judge-agent.endpoints`` 里的 url 指向它即可（如 ``JUDGE_AGENT_LOCAL_ENDPOINT=http://127.0.0.1:8091``）。``STUB_CASES`` 控制流式评测的测试点个数。
+"""
+import asyncio
+import json
+import os
+import random
+from collections.abc import AsyncIterator
+
+from fastapi import FastAPI, HTTPException, WebSocket
+from fastapi.responses import StreamingResponse
+
+from judge import channel
+from judge.models import AgentJudgeResponse, JudgeRequest, SampleRunRequest
+
+STUB_STATUS = os.getenv("STUB_STATUS", "答案正确")
+STUB_CASES = int(os.getenv("STUB_CASES", "3"))
+_lo, _, _hi = os.getenv("STUB_DELAY_MS", "50-500").partition("-")
+DELAY_RANGE_MS = (int(_lo), int(_hi or _lo))
+
+app = FastAPI(title="Vnollx Judge Agent (stub)")
+
+
+def _delay() -> float:
+    return random.randint(*DELAY_RANGE_MS) / 1000
+
+
+def _result(count: int) -> AgentJudgeResponse:
+    passed = count if STUB_STATUS == "答案正确" else 0
+    return AgentJudgeResponse(status=STUB_STATUS, time=1, runTime=1, memory=1, passCount=passed, testCount=count)
+
+
+def _case(index: int) -> dict:
+    return {"type": "case", "index": index, "total": STUB_CASES, "status": STUB_STATUS, "time": 1, "memory": 1}
+
+
+@app.get("/health")
+def health() -> dict:
+    return {"status": "ok", "stub": True}
+
+
+@app.post("/judge/submit", response_model=AgentJudgeResponse)
+async def judge(req: JudgeRequest) -> AgentJudgeResponse:
+    await asyncio.sleep(_delay())
+    return _result(STUB_CASES)
+
+
+@app.post("/judge/run-sample", response_model=AgentJudgeResponse)
+async def judge_sample(req: SampleRunRequest) -> AgentJudgeResponse:
+    await asyncio.sleep(_delay())
+    return _result(1)
+
+
+@app.post("/judge/submit-stream")
+async def judge_stream(req: JudgeRequest) -> StreamingResponse:
+    async def events() -> AsyncIterator[str]:
+        for index in range(1, STUB_CASES + 1):
+            await asyncio.sleep(_delay() / STUB_CASES)
+            yield json.dumps(_case(index), ensure_ascii=False) + "\n"
+        yield json.dumps({"type": "result", "result": _result(STUB_CASES).model_dump()}, ensure_ascii=False) + "\n"
+
+    return StreamingResponse(events(), media_type="application/x-ndjson")
+
+
+async def _dispatch(conn: channel.Connection, request_id: str | None, op: str | None, body: dict) -> AgentJudgeResponse:
+    if op == channel.OP_SAMPLE:
+        SampleRunRequest.model_validate(body)
+        await asyncio.sleep(_delay())
+        return _result(1)
+    if op not in (channel.OP_SUBMIT, channel.OP_SUBMIT_STREAM):
+        raise HTTPException(status_code=400, detail=f"unknown op: {op}")
+    JudgeRequest.model_validate(body)
+    if op == channel.OP_SUBMIT_STREAM:
+        for index in range(1, STUB_CASES + 1):
+            await asyncio.sleep(_delay() / STUB_CASES)
+            await conn.send({"id": request_id, **_case(index)})
+    else:
+        await asyncio.sleep(_delay())
+    return _result(STUB_CASES)
+
+
+@app.websocket("/ws/judge")
+async def judge_channel(ws: WebSocket) -> None:
+    await channel.serve(ws, _dispatch)
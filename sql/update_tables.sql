@@ -3,3 +3,19 @@ SELECT 'GLM-5.1 (NVIDIA)', 'openai_compatible', 'z-ai/glm-5.1', 'https://integra
 WHERE NOT EXISTS (
     SELECT 1 FROM ai_model WHERE provider = 'openai_compatible' AND model_code = 'z-ai/glm-5.1'
 );
+
+-- 评测消息发件箱：与 submission 同事务写入，投递确认后 status=1，评测完成后删除
+create table if not exists judge_outbox
+(
+    id           bigint auto_increment
+        primary key,
+    snowflake_id bigint                             not null,
+    payload      mediumtext                         not null comment 'JudgeInfo JSON',
+    status       tinyint  default 0                 not null comment '0 待投递，1 已投递，2 已进死信队列',
+    attempts     int      default 0                 not null comment '投递次数',
+    create_time  datetime default CURRENT_TIMESTAMP not null,
+    sent_time    datetime                           null,
+    constraint uk_judge_outbox_snowflake_id
+        unique (snowflake_id),
+    index idx_judge_outbox_status_create (status, create_time)
+) comment '评测消息发件箱' collate = utf8mb4_unicode_ci;
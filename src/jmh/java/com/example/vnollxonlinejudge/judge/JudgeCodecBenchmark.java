@@ -0,0 +1,70 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.config.JudgeCodecConfig;
+import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 评测消息编解码耗时：典型提交（2KB 源码）与 64KB 源码，JSON / CBOR，是否 gzip。
+ * 每组参数的线上字节数在 Setup 时打印；往返正确性与字节数断言见 JudgeCodecTest。
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="JudgeCodecBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JudgeCodecBenchmark {
+    @Param({"2048", "65536"})
+    public int codeBytes;
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    /** 0 表示不压缩 */
+    @Param({"0", "8192"})
+    public int compressThresholdBytes;
+
+    private JudgeCodec codec;
+    private JudgeInfo judgeInfo;
+    private JudgeCodec.Encoded encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        JudgeCodecConfig config = new JudgeCodecConfig();
+        config.setMessageFormat(format);
+        config.setCompressThresholdBytes(compressThresholdBytes);
+        codec = new JudgeCodec(new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES), config);
+        judgeInfo = JudgeCodecTest.judgeInfo(codeBytes);
+        encoded = codec.encodeMessage(judgeInfo);
+        System.out.printf("%n[bytes] code=%d format=%s gzip=%s -> %d bytes%n",
+                codeBytes, format, encoded.getContentEncoding() != null, encoded.getBody().length);
+    }
+
+    @Benchmark
+    public JudgeCodec.Encoded encode() {
+        return codec.encodeMessage(judgeInfo);
+    }
+
+    @Benchmark
+    public JudgeInfo decode() throws IOException {
+        return codec.decode(encoded.getBody(), encoded.getContentType(), encoded.getContentEncoding(), JudgeInfo.class);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.vnollxonlinejudge.scoreboard;
+
+import com.example.vnollxonlinejudge.model.vo.competition.CompetitionRanklistVo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读榜耗时（不含查库）：原来每次刷新按提交重放生成 UserRankVo（legacyReplay），
+ * 内存榜单的全量构建（rebuild，只在缺失 / 过期时发生），以及常态下一条评测结果增量应用并发布快照（applyOne）。
+ * 规则正确性见 ContestScoreboardTest。
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="ContestScoreboardBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContestScoreboardBenchmark {
+    private static final String BEGIN = "2024-01-01 09:00:00";
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int PROBLEMS = 10;
+    private static final String[] WRONG = {"答案错误", "运行超时", "编译错误", "运行错误"};
+
+    @Param({"1000", "10000", "100000"})
+    public int submissions;
+
+    private List<Long> problemIds;
+    private String[] userNames;
+    private int[] user;
+    private long[] pid;
+    private long[] snowflake;
+    private String[] createTime;
+    private String[] status;
+
+    private ContestScoreboard board;
+    private long seq;
+    private long nextSnowflake;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        problemIds = new ArrayList<>();
+        for (int p = 0; p < PROBLEMS; p++) {
+            problemIds.add(1000L + p);
+        }
+        int users = Math.max(10, submissions / 20);
+        userNames = new String[users];
+        for (int u = 0; u < users; u++) {
+            userNames[u] = "user" + u;
+        }
+        user = new int[submissions];
+        pid = new long[submissions];
+        snowflake = new long[submissions];
+        createTime = new String[submissions];
+        status = new String[submissions];
+        LocalDateTime begin = LocalDateTime.parse(BEGIN, TIME_FORMAT);
+        long contestSeconds = Duration.ofHours(5).getSeconds();
+        for (int i = 0; i < submissions; i++) {
+            user[i] = random.nextInt(users);
+            pid[i] = problemIds.get(random.nextInt(PROBLEMS));
+            snowflake[i] = i + 1;
+            // 按提交先后，与构建时 ORDER BY create_time, snowflake_id 一致
+            createTime[i] = begin.plusSeconds(contestSeconds * i / submissions).format(TIME_FORMAT);
+            status[i] = random.nextInt(10) < 3 ? ContestScoreboard.STATUS_ACCEPTED : WRONG[random.nextInt(WRONG.length)];
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void buildBoard() {
+        board = rebuild();
+        seq = submissions;
+        nextSnowflake = submissions + 1L;
+        board.addParticipant("bench", -1L, "bench", null);
+    }
+
+    @Benchmark
+    public List<CompetitionRanklistVo.UserRankVo> legacyReplay() {
+        Map<Long, Integer> problemOrder = new HashMap<>();
+        for (int p = 0; p < PROBLEMS; p++) {
+            problemOrder.put(problemIds.get(p), p);
+        }
+        Map<String, CompetitionRanklistVo.UserRankVo> userMap = new LinkedHashMap<>();
+        Map<Long, String> firstAccepted = new HashMap<>();
+        for (int i = 0; i < submissions; i++) {
+            Integer p = problemOrder.get(pid[i]);
+            if (p == null) {
+                continue;
+            }
+            String key = userNames[user[i]];
+            CompetitionRanklistVo.UserRankVo userRankVo = userMap.get(key);
+            if (userRankVo == null) {
+                userRankVo = emptyRankUser((long) user[i], key);
+                userMap.put(key, userRankVo);
+            }
+            CompetitionRanklistVo.ProblemResultVo resultVo = userRankVo.getProblems().get(p);
+            if (Boolean.TRUE.equals(resultVo.getSolved())) {
+                continue;
+            }
+            if (ContestScoreboard.STATUS_ACCEPTED.equals(status[i])) {
+                resultVo.setSolved(true);
+                resultVo.setSolveMinutes(solveMinutes(createTime[i]));
+                resultVo.setSolveTime(createTime[i]);
+                firstAccepted.putIfAbsent(pid[i], key);
+            } else {
+                resultVo.setWrongCount(resultVo.getWrongCount() + 1);
+            }
+        }
+        for (Map.Entry<Long, String> entry : firstAccepted.entrySet()) {
+            userMap.get(entry.getValue()).getProblems().get(problemOrder.get(entry.getKey())).setFirstSolve(true);
+        }
+        for (CompetitionRanklistVo.UserRankVo userRankVo : userMap.values()) {
+            int passCount = 0;
+            int penaltyTime = 0;
+            for (CompetitionRanklistVo.ProblemResultVo resultVo : userRankVo.getProblems()) {
+                if (Boolean.TRUE.equals(resultVo.getSolved())) {
+                    passCount++;
+                    penaltyTime += resultVo.getSolveMinutes() + resultVo.getWrongCount() * 20;
+                }
+            }
+            userRankVo.setPassCount(passCount);
+            userRankVo.setPenaltyTime(penaltyTime);
+        }
+        List<CompetitionRanklistVo.UserRankVo> rankUsers = new ArrayList<>(userMap.values());
+        rankUsers.sort((a, b) -> a.getPassCount().equals(b.getPassCount())
+                ? Integer.compare(a.getPenaltyTime(), b.getPenaltyTime())
+                : Integer.compare(b.getPassCount(), a.getPassCount()));
+        return rankUsers;
+    }
+
+    @Benchmark
+    public ContestScoreboard rebuild() {
+        ContestScoreboard scoreboard = new ContestScoreboard(BEGIN, problemIds);
+        for (int i = 0; i < submissions; i++) {
+            String key = userNames[user[i]];
+            scoreboard.replay(key, (long) user[i], key, true, pid[i], snowflake[i], createTime[i], status[i]);
+        }
+        scoreboard.finishBuild(submissions);
+        return scoreboard;
+    }
+
+    /** 一条新的错误结果（落在始终未通过的 bench 行上，每次都会发布快照）后读一次快照。 */
+    @Benchmark
+    public ContestScoreboard.Snapshot applyOne() {
+        board.apply(++seq, "bench", -1L, "bench", false, problemIds.get(0), nextSnowflake++,
+                createTime[submissions - 1], WRONG[0]);
+        return board.snapshot();
+    }
+
+    private CompetitionRanklistVo.UserRankVo emptyRankUser(Long id, String name) {
+        CompetitionRanklistVo.UserRankVo userRankVo = new CompetitionRanklistVo.UserRankVo();
+        userRankVo.setId(id);
+        userRankVo.setName(name);
+        userRankVo.setPassCount(0);
+        userRankVo.setPenaltyTime(0);
+        for (Long problemId : problemIds) {
+            CompetitionRanklistVo.ProblemResultVo resultVo = new CompetitionRanklistVo.ProblemResultVo();
+            resultVo.setProblemId(problemId);
+            userRankVo.getProblems().add(resultVo);
+        }
+        return userRankVo;
+    }
+
+    private static int solveMinutes(String createTime) {
+        LocalDateTime begin = LocalDateTime.parse(BEGIN, TIME_FORMAT);
+        long seconds = Duration.between(begin, LocalDateTime.parse(createTime, TIME_FORMAT)).getSeconds();
+        return (int) Math.max(0, seconds / 60);
+    }
+}
@@ -7,6 +7,8 @@ import org.springframework.context.annotation.Configuration;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * judge-agent 端点配置。
@@ -16,10 +18,50 @@ import java.util.List;
  *   endpoints:
  *     - url: http://big-server:8090
  *       capacity: 8
+ *       sample-capacity: 2
  *     - url: http://small-server:8090
  *       capacity: 2
  *   default-capacity: 2
+ *   default-sample-capacity: 1
+ *   sample-queue-timeout-ms: 10000
+ *   sample-max-pending: 200
+ *   sample-max-pending-per-user: 2
+ *   sample-shed-load: 0.9
+ *   sample-max-pending-under-load: 20
+ *   adaptive-limit: true
+ *   adaptive-latency-tolerance: 2.0
+ *   adaptive-backoff-ratio: 0.9
+ *   min-free-memory-mb: 200
+ *   failover-max-attempts: 3
+ *   retry-budget-ratio: 0.2
+ *   retry-budget-max: 20
+ *   hedge-sample-runs: true
+ *   hedge-min-samples: 20
+ *   prewarm-lead-minutes: 30
+ *   response-max-bytes: 67108864
+ *   response-output-max-bytes: 32768
+ *   response-field-max-bytes: 16384
+ *   channel-enabled: true
+ *   channel-call-timeout-ms: 120000
+ *   channel-max-backoff-ms: 30000
+ *   dispatch-mode: async
+ *   registry-secret: change-me
+ *   heartbeat-timeout-seconds: 15
+ *   stream-progress: true
+ *   early-stop: true
+ *   progress-frames-per-second: 4
  * </pre>
+ * endpoints 为启动时的静态端点，可为空；Agent 也可以带 registry-secret 调心跳接口动态注册。
+ * 样例运行走每个端点独立的 sample-capacity 许可池，排队超过 sample-queue-timeout-ms 即放弃；
+ * 正式评测占用率达到 sample-shed-load 时，样例排队上限从 sample-max-pending 收紧到 sample-max-pending-under-load。
+ * adaptive-limit 开启时 capacity 是每个端点并发上限的上界，实际上限按延迟 / 失败 / 空闲内存做 AIMD 调整。
+ * 可重试的调用失败换端点重发，最多 failover-max-attempts 次；重试与对冲共用一个预算：
+ * 每个请求攒 retry-budget-ratio 个令牌、最多攒 retry-budget-max 个，每次重试 / 对冲花 1 个。
+ * 比赛开始前 prewarm-lead-minutes 分钟向所有 Agent 下发比赛题目的数据预热，0 表示不预热。
+ * Agent 响应边读边截断：stdout / stderr 超过 response-output-max-bytes、其余字符串超过 response-field-max-bytes
+ * 的部分在解析时丢弃，整个响应超过 response-max-bytes 视为失败且不重试。
+ * channel-enabled 时每个端点维持一条 WebSocket 长连接，评测请求在上面多路复用，未连上时回退 HTTP；
+ * 断线后按指数退避重连，退避上限 channel-max-backoff-ms。
  */
 @Configuration
 @ConfigurationProperties(prefix = "judge-agent")
@@ -27,20 +69,135 @@ public class JudgeAgentConfig {
 
     private List<EndpointConfig> endpoints = new ArrayList<>();
     private int defaultCapacity = 2;
+    /** 评测派发模式：async 监听线程只做派发、评测跑在虚拟线程上；sync 监听线程阻塞等待 Agent 返回。 */
+    private String dispatchMode = "async";
+    /** Agent 注册 / 心跳接口的共享密钥，为空时拒绝动态注册。 */
+    private String registrySecret;
+    /** 动态注册端点的心跳超时，超时后摘流。 */
+    private int heartbeatTimeoutSeconds = 15;
+    /** 是否通过 Agent 的 NDJSON 流式接口逐测试点推送评测进度（比赛提交始终不推送）。 */
+    private boolean streamProgress = true;
+    /** 非比赛提交遇到第一个失败测试点即停止；关闭后跑完全部测试点以得到准确的通过数。 */
+    private boolean earlyStop = true;
+    /** 每个提交每秒最多推送的进度帧数，多余的帧合并为最新一帧。 */
+    private int progressFramesPerSecond = 4;
+    /** 每个端点的样例运行许可数（端点未单独配置、Agent 心跳未上报时使用）。 */
+    private int defaultSampleCapacity = 1;
+    /** 样例运行等待端点许可的最长时间，超时返回"判题错误"。 */
+    private long sampleQueueTimeoutMs = 10000;
+    /** 全局排队 + 运行中的样例数上限，超过直接拒绝。 */
+    private int sampleMaxPending = 200;
+    /** 单个用户同时排队 + 运行中的样例数上限。 */
+    private int sampleMaxPendingPerUser = 2;
+    /** 正式评测占用率（在途 / capacity）达到该值视为满载，开始优先丢弃样例运行。 */
+    private double sampleShedLoad = 0.9;
+    /** 满载时的样例排队上限。 */
+    private int sampleMaxPendingUnderLoad = 20;
+    /** 是否按评测耗时、失败与空闲内存自适应调整每个端点的并发上限（capacity 为上界）。 */
+    private boolean adaptiveLimit = true;
+    /** 短期评测耗时超过长期基线的多少倍视为过载。 */
+    private double adaptiveLatencyTolerance = 2.0;
+    /** 过载 / 内存不足时并发上限的乘性退让系数。 */
+    private double adaptiveBackoffRatio = 0.9;
+    /** Agent 上报空闲内存低于该值（MB）时退让，0 表示不看内存。 */
+    private long minFreeMemoryMb = 200;
+    /** 单次评测 / 样例运行最多尝试的端点数（含首次）。 */
+    private int failoverMaxAttempts = 3;
+    /** 每个请求存入的重试令牌数，即稳态下重试量占请求量的上限比例。 */
+    private double retryBudgetRatio = 0.2;
+    /** 重试令牌桶容量，允许短时突发的重试次数。 */
+    private int retryBudgetMax = 20;
+    /** 样例运行超过近期 p95 耗时时是否向另一端点发对冲请求。 */
+    private boolean hedgeSampleRuns = true;
+    /** 至少积累多少次样例耗时后才启用对冲。 */
+    private int hedgeMinSamples = 20;
+    /** 比赛开始前多少分钟预热比赛题目的测试数据，0 表示不预热。 */
+    private int prewarmLeadMinutes = 30;
+    /** 单个 Agent 响应体的字节上限，超过视为评测失败。 */
+    private long responseMaxBytes = 64L * 1024 * 1024;
+    /** 响应中 stdout / stderr 保留的字节上限（error_info 列为 TEXT，不能超过 64KB）。 */
+    private int responseOutputMaxBytes = 32 * 1024;
+    /** 响应中其余字符串字段（失败用例输入 / 期望输出等）保留的字节上限。 */
+    private int responseFieldMaxBytes = 16 * 1024;
+    /** 是否通过每个 Agent 一条的 WebSocket 长连接发评测请求。 */
+    private boolean channelEnabled = true;
+    /** 长连接上单次调用等待结果的上限。 */
+    private long channelCallTimeoutMs = 120000;
+    /** 长连接断线重连的最大退避时间。 */
+    private long channelMaxBackoffMs = 30000;
 
     public static class EndpointConfig {
         private String url;
         private Integer capacity;
+        private Integer sampleCapacity;
         public String getUrl() { return url; }
         public void setUrl(String url) { this.url = url; }
         public Integer getCapacity() { return capacity; }
         public void setCapacity(Integer capacity) { this.capacity = capacity; }
+        public Integer getSampleCapacity() { return sampleCapacity; }
+        public void setSampleCapacity(Integer sampleCapacity) { this.sampleCapacity = sampleCapacity; }
     }
 
     public List<EndpointConfig> getEndpoints() { return endpoints; }
     public void setEndpoints(List<EndpointConfig> endpoints) { this.endpoints = endpoints; }
     public int getDefaultCapacity() { return defaultCapacity; }
     public void setDefaultCapacity(int defaultCapacity) { this.defaultCapacity = defaultCapacity; }
+    public String getDispatchMode() { return dispatchMode; }
+    public void setDispatchMode(String dispatchMode) { this.dispatchMode = dispatchMode; }
+    public String getRegistrySecret() { return registrySecret; }
+    public void setRegistrySecret(String registrySecret) { this.registrySecret = registrySecret; }
+    public int getHeartbeatTimeoutSeconds() { return heartbeatTimeoutSeconds; }
+    public void setHeartbeatTimeoutSeconds(int heartbeatTimeoutSeconds) { this.heartbeatTimeoutSeconds = heartbeatTimeoutSeconds; }
+    public boolean isStreamProgress() { return streamProgress; }
+    public void setStreamProgress(boolean streamProgress) { this.streamProgress = streamProgress; }
+    public boolean isEarlyStop() { return earlyStop; }
+    public void setEarlyStop(boolean earlyStop) { this.earlyStop = earlyStop; }
+    public int getProgressFramesPerSecond() { return progressFramesPerSecond; }
+    public void setProgressFramesPerSecond(int progressFramesPerSecond) { this.progressFramesPerSecond = progressFramesPerSecond; }
+    public int getDefaultSampleCapacity() { return defaultSampleCapacity; }
+    public void setDefaultSampleCapacity(int defaultSampleCapacity) { this.defaultSampleCapacity = defaultSampleCapacity; }
+    public long getSampleQueueTimeoutMs() { return sampleQueueTimeoutMs; }
+    public void setSampleQueueTimeoutMs(long sampleQueueTimeoutMs) { this.sampleQueueTimeoutMs = sampleQueueTimeoutMs; }
+    public int getSampleMaxPending() { return sampleMaxPending; }
+    public void setSampleMaxPending(int sampleMaxPending) { this.sampleMaxPending = sampleMaxPending; }
+    public int getSampleMaxPendingPerUser() { return sampleMaxPendingPerUser; }
+    public void setSampleMaxPendingPerUser(int sampleMaxPendingPerUser) { this.sampleMaxPendingPerUser = sampleMaxPendingPerUser; }
+    public double getSampleShedLoad() { return sampleShedLoad; }
+    public void setSampleShedLoad(double sampleShedLoad) { this.sampleShedLoad = sampleShedLoad; }
+    public int getSampleMaxPendingUnderLoad() { return sampleMaxPendingUnderLoad; }
+    public void setSampleMaxPendingUnderLoad(int sampleMaxPendingUnderLoad) { this.sampleMaxPendingUnderLoad = sampleMaxPendingUnderLoad; }
+    public boolean isAdaptiveLimit() { return adaptiveLimit; }
+    public void setAdaptiveLimit(boolean adaptiveLimit) { this.adaptiveLimit = adaptiveLimit; }
+    public double getAdaptiveLatencyTolerance() { return adaptiveLatencyTolerance; }
+    public void setAdaptiveLatencyTolerance(double adaptiveLatencyTolerance) { this.adaptiveLatencyTolerance = adaptiveLatencyTolerance; }
+    public double getAdaptiveBackoffRatio() { return adaptiveBackoffRatio; }
+    public void setAdaptiveBackoffRatio(double adaptiveBackoffRatio) { this.adaptiveBackoffRatio = adaptiveBackoffRatio; }
+    public long getMinFreeMemoryMb() { return minFreeMemoryMb; }
+    public void setMinFreeMemoryMb(long minFreeMemoryMb) { this.minFreeMemoryMb = minFreeMemoryMb; }
+    public int getFailoverMaxAttempts() { return failoverMaxAttempts; }
+    public void setFailoverMaxAttempts(int failoverMaxAttempts) { this.failoverMaxAttempts = failoverMaxAttempts; }
+    public double getRetryBudgetRatio() { return retryBudgetRatio; }
+    public void setRetryBudgetRatio(double retryBudgetRatio) { this.retryBudgetRatio = retryBudgetRatio; }
+    public int getRetryBudgetMax() { return retryBudgetMax; }
+    public void setRetryBudgetMax(int retryBudgetMax) { this.retryBudgetMax = retryBudgetMax; }
+    public boolean isHedgeSampleRuns() { return hedgeSampleRuns; }
+    public void setHedgeSampleRuns(boolean hedgeSampleRuns) { this.hedgeSampleRuns = hedgeSampleRuns; }
+    public int getHedgeMinSamples() { return hedgeMinSamples; }
+    public void setHedgeMinSamples(int hedgeMinSamples) { this.hedgeMinSamples = hedgeMinSamples; }
+    public int getPrewarmLeadMinutes() { return prewarmLeadMinutes; }
+    public void setPrewarmLeadMinutes(int prewarmLeadMinutes) { this.prewarmLeadMinutes = prewarmLeadMinutes; }
+    public long getResponseMaxBytes() { return responseMaxBytes; }
+    public void setResponseMaxBytes(long responseMaxBytes) { this.responseMaxBytes = responseMaxBytes; }
+    public int getResponseOutputMaxBytes() { return responseOutputMaxBytes; }
+    public void setResponseOutputMaxBytes(int responseOutputMaxBytes) { this.responseOutputMaxBytes = responseOutputMaxBytes; }
+    public int getResponseFieldMaxBytes() { return responseFieldMaxBytes; }
+    public void setResponseFieldMaxBytes(int responseFieldMaxBytes) { this.responseFieldMaxBytes = responseFieldMaxBytes; }
+    public boolean isChannelEnabled() { return channelEnabled; }
+    public void setChannelEnabled(boolean channelEnabled) { this.channelEnabled = channelEnabled; }
+    public long getChannelCallTimeoutMs() { return channelCallTimeoutMs; }
+    public void setChannelCallTimeoutMs(long channelCallTimeoutMs) { this.channelCallTimeoutMs = channelCallTimeoutMs; }
+    public long getChannelMaxBackoffMs() { return channelMaxBackoffMs; }
+    public void setChannelMaxBackoffMs(long channelMaxBackoffMs) { this.channelMaxBackoffMs = channelMaxBackoffMs; }
 
     @Bean
     public JudgeAgentRouter judgeAgentRouter() {
@@ -48,16 +205,25 @@ public class JudgeAgentConfig {
         for (EndpointConfig ec : endpoints) {
             if (ec.getUrl() == null || ec.getUrl().isBlank()) continue;
             int cap = ec.getCapacity() != null ? ec.getCapacity() : defaultCapacity;
-            list.add(new JudgeAgentRouter.Endpoint(stripTrailingSlash(ec.getUrl()), cap));
+            int sampleCap = ec.getSampleCapacity() != null ? ec.getSampleCapacity() : defaultSampleCapacity;
+            list.add(new JudgeAgentRouter.Endpoint(stripTrailingSlash(ec.getUrl()), cap, sampleCap));
         }
-        if (list.isEmpty()) {
+        if (list.isEmpty() && (registrySecret == null || registrySecret.isBlank())) {
             throw new IllegalStateException(
-                    "未配置 judge-agent 端点：请在 application.yml 中配置 judge-agent.endpoints[]");
+                    "未配置 judge-agent 端点：请在 application.yml 中配置 judge-agent.endpoints[] 或 registry-secret");
         }
-        return new JudgeAgentRouter(list);
+        JudgeAgentRouter router = new JudgeAgentRouter(list);
+        router.configureAdaptiveLimit(adaptiveLimit, adaptiveLatencyTolerance, adaptiveBackoffRatio, minFreeMemoryMb);
+        return router;
     }
 
-    private static String stripTrailingSlash(String url) {
+    /** 评测流水线执行器：每个评测一个虚拟线程，阻塞在端点许可 / HTTP 上不占平台线程。 */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService judgeDispatchExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    public static String stripTrailingSlash(String url) {
         return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
     }
 }
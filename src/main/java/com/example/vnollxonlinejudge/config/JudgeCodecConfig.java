@@ -0,0 +1,33 @@
+package com.example.vnollxonlinejudge.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 评测消息与 Agent 请求体编码配置。
+ *
+ * <pre>
+ * judge-codec:
+ *   message-format: json
+ *   agent-format: cbor
+ *   compress-threshold-bytes: 8192
+ * </pre>
+ * format 可选 json / cbor；编码后超过 compress-threshold-bytes 的再做 gzip，0 表示不压缩。
+ * 解码一律按 content-type / content-encoding 判断，所以切换格式时新旧消息可以同时在途：
+ * message-format 要等全部后端实例升级后再切；agent-format 只对心跳声明支持该格式的 Agent 生效，
+ * 旧 Agent 仍收 JSON。
+ */
+@Configuration
+@ConfigurationProperties(prefix = "judge-codec")
+public class JudgeCodecConfig {
+    private String messageFormat = "json";
+    private String agentFormat = "cbor";
+    private int compressThresholdBytes = 8192;
+
+    public String getMessageFormat() { return messageFormat; }
+    public void setMessageFormat(String messageFormat) { this.messageFormat = messageFormat; }
+    public String getAgentFormat() { return agentFormat; }
+    public void setAgentFormat(String agentFormat) { this.agentFormat = agentFormat; }
+    public int getCompressThresholdBytes() { return compressThresholdBytes; }
+    public void setCompressThresholdBytes(int compressThresholdBytes) { this.compressThresholdBytes = compressThresholdBytes; }
+}
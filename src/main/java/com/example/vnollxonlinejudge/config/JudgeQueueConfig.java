@@ -0,0 +1,46 @@
+package com.example.vnollxonlinejudge.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 评测公平队列配置。
+ *
+ * <pre>
+ * judge-queue:
+ *   contest-weight: 4
+ *   practice-weight: 1
+ *   window: 8
+ *   window-expire-ms: 60000
+ *   rejudge-weight: 1
+ *   rejudge-max-in-flight: 4
+ * </pre>
+ * 权重是单个用户在该通道内的相对速率：权重 4 的比赛用户每轮可以排进 4 条，练习用户 1 条。
+ * window 为已投递到 MQ 但尚未开始评测的最大消息数，其余提交留在内存公平队列中排队；
+ * 名额超过 window-expire-ms 仍未被本实例消费者归还（被其他实例消费等）时自动释放。
+ * 重判通道一个任务只算一条流，权重 rejudge-weight；每个任务同时在队列和评测中的提交不超过
+ * rejudge-max-in-flight，批量重判不会挤占正常提交。
+ */
+@Configuration
+@ConfigurationProperties(prefix = "judge-queue")
+public class JudgeQueueConfig {
+    private int contestWeight = 4;
+    private int practiceWeight = 1;
+    private int window = 8;
+    private long windowExpireMs = 60_000L;
+    private int rejudgeWeight = 1;
+    private int rejudgeMaxInFlight = 4;
+
+    public int getContestWeight() { return contestWeight; }
+    public void setContestWeight(int contestWeight) { this.contestWeight = contestWeight; }
+    public int getPracticeWeight() { return practiceWeight; }
+    public void setPracticeWeight(int practiceWeight) { this.practiceWeight = practiceWeight; }
+    public int getWindow() { return window; }
+    public void setWindow(int window) { this.window = window; }
+    public long getWindowExpireMs() { return windowExpireMs; }
+    public void setWindowExpireMs(long windowExpireMs) { this.windowExpireMs = windowExpireMs; }
+    public int getRejudgeWeight() { return rejudgeWeight; }
+    public void setRejudgeWeight(int rejudgeWeight) { this.rejudgeWeight = rejudgeWeight; }
+    public int getRejudgeMaxInFlight() { return rejudgeMaxInFlight; }
+    public void setRejudgeMaxInFlight(int rejudgeMaxInFlight) { this.rejudgeMaxInFlight = rejudgeMaxInFlight; }
+}
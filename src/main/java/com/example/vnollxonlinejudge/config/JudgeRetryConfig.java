@@ -0,0 +1,41 @@
+package com.example.vnollxonlinejudge.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 评测消息失败重试配置。
+ *
+ * <pre>
+ * judge-retry:
+ *   max-attempts: 4
+ *   initial-delay-ms: 5000
+ *   multiplier: 3
+ * </pre>
+ * max-attempts 为一条评测消息最多被消费的次数（含首次）；第 n 次失败后延迟
+ * initial-delay-ms × multiplier^(n-1) 再投回评测队列，即默认 5s、15s、45s，用尽后进入死信队列。
+ * 每档延迟对应一个带 x-message-ttl 的等待队列，队列名里带上延迟毫秒数，改配置会声明新队列而不是与旧队列参数冲突。
+ */
+@Configuration
+@ConfigurationProperties(prefix = "judge-retry")
+public class JudgeRetryConfig {
+    private int maxAttempts = 4;
+    private long initialDelayMs = 5000L;
+    private int multiplier = 3;
+
+    public int getMaxAttempts() { return maxAttempts; }
+    public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+    public long getInitialDelayMs() { return initialDelayMs; }
+    public void setInitialDelayMs(long initialDelayMs) { this.initialDelayMs = initialDelayMs; }
+    public int getMultiplier() { return multiplier; }
+    public void setMultiplier(int multiplier) { this.multiplier = multiplier; }
+
+    /** 第 failures 次失败后的重试延迟。 */
+    public long retryDelayMs(int failures) {
+        long delay = initialDelayMs;
+        for (int i = 1; i < failures; i++) {
+            delay *= Math.max(1, multiplier);
+        }
+        return delay;
+    }
+}
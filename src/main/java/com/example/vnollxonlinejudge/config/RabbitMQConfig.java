@@ -2,6 +2,8 @@ package com.example.vnollxonlinejudge.config;
 
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
@@ -13,11 +15,27 @@ import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * RabbitMQ 拓扑。
+ * <p>
+ * 评测消息：judge --judge.submit--> submissionQueue。消费失败的消息由消费端带上已失败次数
+ * 显式投到 judge.retry，按延迟路由进对应的等待队列，TTL 到期后死信回 judge / judge.submit；
+ * 次数用尽或消息本身无法解析时投到 judge.dlx，落在 submissionQueue.dlq 等待人工查看与重投。
+ * submissionQueue 本身不加 x-dead-letter-exchange：已存在队列的参数无法修改，声明不一致会直接报错。
+ */
 @Configuration
 public class RabbitMQConfig {
+    public static final String JUDGE_EXCHANGE = "judge";
+    public static final String JUDGE_ROUTING_KEY = "judge.submit";
+    public static final String JUDGE_RETRY_EXCHANGE = "judge.retry";
+    public static final String JUDGE_DEAD_LETTER_EXCHANGE = "judge.dlx";
+    public static final String JUDGE_DEAD_LETTER_QUEUE = "submissionQueue.dlq";
+    public static final String JUDGE_DEAD_LETTER_ROUTING_KEY = "judge.dead";
 
     @Value("${spring.rabbitmq.template.reply-timeout:10000}")
     private int replyTimeout;
@@ -36,6 +54,12 @@ public class RabbitMQConfig {
         return new Queue("submissionQueue", true, false, false, queueArgs);
     }
 
+    /** 评测死信队列：不设消费者，只供管理端查看与重投。 */
+    @Bean
+    public Queue judgeDeadLetterQueue() {
+        return new Queue(JUDGE_DEAD_LETTER_QUEUE, true);
+    }
+
     @Bean
     public Queue notificationQueue() {
         return new Queue("notificationQueue", true);
@@ -52,6 +76,11 @@ public class RabbitMQConfig {
         return new DirectExchange("judge");
     }
 
+    @Bean
+    public DirectExchange judgeDeadLetterExchange() {
+        return new DirectExchange(JUDGE_DEAD_LETTER_EXCHANGE);
+    }
+
     @Bean
     public DirectExchange notificationExchange() {
         return new DirectExchange("notification");
@@ -65,6 +94,40 @@ public class RabbitMQConfig {
                 .with("judge.submit");
     }
 
+    @Bean
+    public Binding judgeDeadLetterBinding() {
+        return BindingBuilder.bind(judgeDeadLetterQueue())
+                .to(judgeDeadLetterExchange())
+                .with(JUDGE_DEAD_LETTER_ROUTING_KEY);
+    }
+
+    /**
+     * 评测延迟重试：每档延迟一个等待队列（无消费者），消息 TTL 到期后死信回评测交换器。
+     * 按队列设 TTL 而不是按消息设 expiration，避免长延迟的消息挡住队头的短延迟消息。
+     */
+    @Bean
+    public Declarables judgeRetryTopology(JudgeRetryConfig judgeRetryConfig) {
+        DirectExchange retryExchange = new DirectExchange(JUDGE_RETRY_EXCHANGE);
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(retryExchange);
+        for (int failures = 1; failures < judgeRetryConfig.getMaxAttempts(); failures++) {
+            String name = retryQueueName(judgeRetryConfig.retryDelayMs(failures));
+            Map<String, Object> queueArgs = new HashMap<>();
+            queueArgs.put("x-message-ttl", judgeRetryConfig.retryDelayMs(failures));
+            queueArgs.put("x-dead-letter-exchange", JUDGE_EXCHANGE);
+            queueArgs.put("x-dead-letter-routing-key", JUDGE_ROUTING_KEY);
+            Queue queue = new Queue(name, true, false, false, queueArgs);
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(retryExchange).with(name));
+        }
+        return new Declarables(declarables);
+    }
+
+    /** 等待队列名，同时也是 judge.retry 上的路由键。 */
+    public static String retryQueueName(long delayMs) {
+        return "submissionQueue.retry." + delayMs + "ms";
+    }
+
     @Bean
     public Binding notificationBinding() {
         return BindingBuilder.bind(notificationQueue())
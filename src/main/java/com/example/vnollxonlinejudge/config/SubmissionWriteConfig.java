@@ -0,0 +1,31 @@
+package com.example.vnollxonlinejudge.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 提交评测状态合并写配置。
+ *
+ * <pre>
+ * submission-write:
+ *   flush-interval-ms: 50
+ *   batch-size: 200
+ *   final-timeout-ms: 5000
+ * </pre>
+ * 状态更新先在内存中按 snowflakeId 合并，每 flush-interval-ms 或攒满 batch-size 行时批量落库。
+ * 最终结果的写入方最多等待 final-timeout-ms，超时后改为直接单条更新。
+ */
+@Configuration
+@ConfigurationProperties(prefix = "submission-write")
+public class SubmissionWriteConfig {
+    private long flushIntervalMs = 50;
+    private int batchSize = 200;
+    private long finalTimeoutMs = 5000;
+
+    public long getFlushIntervalMs() { return flushIntervalMs; }
+    public void setFlushIntervalMs(long flushIntervalMs) { this.flushIntervalMs = flushIntervalMs; }
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+    public long getFinalTimeoutMs() { return finalTimeoutMs; }
+    public void setFinalTimeoutMs(long finalTimeoutMs) { this.finalTimeoutMs = finalTimeoutMs; }
+}
@@ -1,157 +1,278 @@
 package com.example.vnollxonlinejudge.consumer;
 
+import com.example.vnollxonlinejudge.config.JudgeAgentConfig;
+import com.example.vnollxonlinejudge.config.JudgeRetryConfig;
 import com.example.vnollxonlinejudge.judge.AgentSubmitRequest;
+import com.example.vnollxonlinejudge.judge.FairJudgeQueue;
+import com.example.vnollxonlinejudge.judge.JudgeClaimRegistry;
+import com.example.vnollxonlinejudge.judge.JudgeCodec;
+import com.example.vnollxonlinejudge.judge.JudgeMetrics;
 import com.example.vnollxonlinejudge.judge.JudgeAgentClient;
-import com.example.vnollxonlinejudge.judge.JudgeStatusDescriber;
+import com.example.vnollxonlinejudge.judge.JudgeAgentRouter;
+import com.example.vnollxonlinejudge.judge.JudgeResultHandler;
+import com.example.vnollxonlinejudge.judge.JudgeTimeline;
 import com.example.vnollxonlinejudge.model.entity.*;
 import com.example.vnollxonlinejudge.model.result.RunResult;
-import com.example.vnollxonlinejudge.service.ProblemService;
-import com.example.vnollxonlinejudge.service.SubmissionService;
-import com.example.vnollxonlinejudge.websocket.JudgeWebSocketHandler;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.vnollxonlinejudge.producer.JudgeProducer;
+import com.example.vnollxonlinejudge.service.RejudgeService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 
 
+/**
+ * 评测消息消费者。
+ * <p>
+ * async 模式下监听线程只负责反序列化并占用一个派发许可，随即把评测交给虚拟线程流水线：
+ * 置评测中 → 调 Agent → 完成回调落库 / 统计 / 推送，监听线程立即返回去拉下一条消息。
+ * 派发许可总数等于所有 Agent 的 capacity 之和：Agent 全忙时监听线程阻塞在许可上，
+ * 消息继续留在 MQ 中（保留优先级与持久化），吞吐由 Agent 容量决定而不是消费者数量。
+ * sync 模式保留旧行为：监听线程全程阻塞在 Agent HTTP 调用上。
+ * Agent 动态上下线时由 {@link #resizeDispatchPermits} 跟随健康 capacity 调整许可总数。
+ * <p>
+ * 失败处理不再靠抛异常让容器重投（会在队头热循环）：反序列化失败的毒消息直接进死信队列；
+ * 评测流水线异常（落库、Agent 调用等）释放认领后按 judge-retry 延迟重投，次数用尽再进死信队列。
+ * 进死信队列的提交写最终状态"判题错误"，发件箱行标记为死信，进程重启时不再自动恢复，只能在管理端重投。
+ */
 @Component
 public class JudgeConsumer {
     private static final Logger logger = LoggerFactory.getLogger(JudgeConsumer.class);
-    private final ObjectMapper objectMapper;
-    private final SubmissionService submissionService;
+    /** 评测监听容器 id，供按 Agent 容量调整并发度时查找容器。 */
+    public static final String LISTENER_ID = "judgeSubmissionListener";
+    private final JudgeCodec judgeCodec;
     private final JudgeAgentClient judgeAgentClient;
-    private final JudgeWebSocketHandler judgeWebSocketHandler;
-    private final ProblemService problemService;
+    private final JudgeResultHandler judgeResultHandler;
+    private final FairJudgeQueue fairJudgeQueue;
+    private final JudgeClaimRegistry judgeClaimRegistry;
+    private final JudgeProducer judgeProducer;
+    private final JudgeMetrics judgeMetrics;
+    private final JudgeTimeline judgeTimeline;
+    private final RejudgeService rejudgeService;
+    private final JudgeRetryConfig judgeRetryConfig;
+    private final ExecutorService dispatchExecutor;
+    private final ResizableSemaphore dispatchPermits;
+    private final boolean asyncDispatch;
 
     @Autowired
     public JudgeConsumer(
-            ObjectMapper objectMapper,
-            SubmissionService submissionService,
+            JudgeCodec judgeCodec,
             JudgeAgentClient judgeAgentClient,
-            JudgeWebSocketHandler judgeWebSocketHandler,
-            ProblemService problemService
+            JudgeResultHandler judgeResultHandler,
+            FairJudgeQueue fairJudgeQueue,
+            JudgeClaimRegistry judgeClaimRegistry,
+            JudgeAgentRouter judgeAgentRouter,
+            JudgeAgentConfig judgeAgentConfig,
+            JudgeProducer judgeProducer,
+            JudgeMetrics judgeMetrics,
+            JudgeTimeline judgeTimeline,
+            RejudgeService rejudgeService,
+            JudgeRetryConfig judgeRetryConfig,
+            @Qualifier("judgeDispatchExecutor") ExecutorService dispatchExecutor
     ){
-        this.objectMapper=objectMapper;
-        this.submissionService=submissionService;
+        this.judgeCodec=judgeCodec;
         this.judgeAgentClient=judgeAgentClient;
-        this.judgeWebSocketHandler = judgeWebSocketHandler;
-        this.problemService = problemService;
+        this.judgeResultHandler=judgeResultHandler;
+        this.fairJudgeQueue=fairJudgeQueue;
+        this.judgeClaimRegistry=judgeClaimRegistry;
+        this.judgeProducer=judgeProducer;
+        this.judgeMetrics=judgeMetrics;
+        this.judgeTimeline=judgeTimeline;
+        this.rejudgeService=rejudgeService;
+        this.judgeRetryConfig=judgeRetryConfig;
+        this.dispatchExecutor=dispatchExecutor;
+        this.dispatchPermits=new ResizableSemaphore(judgeAgentRouter.getTotalCapacity());
+        this.asyncDispatch=!"sync".equalsIgnoreCase(judgeAgentConfig.getDispatchMode());
+        logger.info("评测派发模式: {}, 派发许可数={}", asyncDispatch ? "async" : "sync", judgeAgentRouter.getTotalCapacity());
     }
-    @RabbitListener(queues = "submissionQueue")
+    @RabbitListener(id = LISTENER_ID, queues = "submissionQueue")
     public void handleSubmission(Message message)  {
-
+        JudgeInfo judgeInfo;
         try {
             logger.info("Received message from judgeQueue");
-            JudgeInfo judgeInfo = objectMapper.readValue(
+            judgeInfo = judgeCodec.decode(
                     message.getBody(),
+                    message.getMessageProperties().getContentType(),
+                    message.getMessageProperties().getContentEncoding(),
                     JudgeInfo.class
             );
-            logger.info("Processing submission: snowflakeId={}, uid={}", judgeInfo.getSnowflakeId(), judgeInfo.getUid());
-
-            Problem problem = problemService.getById(judgeInfo.getPid());
-            submissionService.updateSubmissionJudgeStatusBySnowflake(judgeInfo.getSnowflakeId(), "评测中", null, null, null, null, null);
-            sendUpdate(judgeInfo, "评测中", null, null, null, null, null);
-
-            AgentSubmitRequest req = new AgentSubmitRequest();
-            req.setSubmissionId(judgeInfo.getSnowflakeId());
-            req.setProblemId(judgeInfo.getPid());
-            req.setLanguage(judgeInfo.getLanguage());
-            req.setCode(judgeInfo.getCode());
-            req.setTimeLimit(judgeInfo.getTime());
-            req.setMemoryLimit(judgeInfo.getMemory());
-            if (problem != null) {
-                req.setJudgeMode(problem.getJudgeMode());
-                req.setCheckerFile(problem.getCheckerFile());
-                req.setFloatTolerance(problem.getFloatTolerance());
-                Integer version = problem.getVersion();
-                req.setDataVersion(version != null ? String.valueOf(version) : "1");
-            } else {
-                req.setDataVersion("1");
+        } catch (IOException e) {
+            // 重试也不会成功，直接进死信队列；投递死信失败才抛出让容器重投
+            logger.error("消息反序列化失败，转入死信队列: correlationId={}",
+                    message.getMessageProperties().getCorrelationId(), e);
+            judgeProducer.sendDeadLetter(message, JudgeProducer.attemptsOf(message) + 1, "消息反序列化失败: " + e.getMessage());
+            Long snowflakeId = snowflakeIdOf(message);
+            if (snowflakeId != null) {
+                fairJudgeQueue.markConsumed(snowflakeId);
+                finishDeadLetter(() -> judgeResultHandler.deadLettered(snowflakeId), snowflakeId);
             }
-            RunResult result = judgeAgentClient.submit(req);
-            // 获取错误信息（如果有）
-            String errorInfo = null;
-            String actualOutput = null;
-            if (result.getFiles() != null) {
-                if (result.getFiles().getStderr() != null) {
-                    errorInfo = result.getFiles().getStderr();
-                }
-                if (result.getFiles().getStdout() != null) {
-                    actualOutput = result.getFiles().getStdout();
-                }
+            return;
+        }
+        logger.info("Processing submission: snowflakeId={}, uid={}, traceId={}",
+                judgeInfo.getSnowflakeId(), judgeInfo.getUid(), judgeInfo.getTraceId());
+        judgeMetrics.requested();
+        String consumedDetail = "attempt=" + (JudgeProducer.attemptsOf(message) + 1);
+        if (message.getMessageProperties().getTimestamp() != null) {
+            long publishedAtMs = message.getMessageProperties().getTimestamp().getTime();
+            judgeMetrics.mqWait(judgeInfo, publishedAtMs);
+            consumedDetail += ", mqWaitMs=" + Math.max(0L, System.currentTimeMillis() - publishedAtMs);
+        }
+        judgeTimeline.record(judgeInfo, "consumed", consumedDetail);
+        if (asyncDispatch) {
+            dispatchAsync(judgeInfo, message);
+        } else {
+            if (!claim(judgeInfo)) {
+                return;
             }
-            boolean competition = judgeInfo.getCid() != null && judgeInfo.getCid() != 0;
-            String storedError = competition ? null : errorInfo;
-            Integer storedPass = competition ? null : result.getPassCount();
-            Integer storedTest = competition ? null : result.getTestCount();
-            // 失败用例的输入 / 期望输出 / 用户实际输出：仅非比赛、非 AC 时随 WebSocket 推送给前端，不入库
-            String pushCaseInput = null;
-            String pushCaseExpected = null;
-            String pushActualOutput = null;
-            if (!competition && !"答案正确".equals(result.getStatus())) {
-                pushCaseInput = result.getCaseInput();
-                pushCaseExpected = result.getCaseExpected();
-                pushActualOutput = truncate(actualOutput, 400);
+            try {
+                AgentSubmitRequest req = judgeResultHandler.startJudging(judgeInfo);
+                RunResult result = judgeAgentClient.submit(req, judgeResultHandler.progressListener(judgeInfo));
+                judgeResultHandler.finishJudging(judgeInfo, req, result);
+            } catch (RuntimeException e) {
+                logger.error("评测异常: snowflakeId={}", judgeInfo.getSnowflakeId(), e);
+                retryOrDeadLetter(judgeInfo, message, e);
             }
-            submissionService.updateSubmissionJudgeStatusBySnowflake(
-                    judgeInfo.getSnowflakeId(),
-                    result.getStatus(),
-                    result.getRunTime(),
-                    result.getMemory(),
-                    storedError,
-                    storedPass,
-                    storedTest
-            );
-            submissionService.processSubmission(judgeInfo,result.getStatus());
-            sendUpdate(judgeInfo, result.getStatus(), result.getRunTime(), result.getMemory(), storedError, storedPass, storedTest,
-                    pushCaseInput, pushCaseExpected, pushActualOutput);
-            logger.info("评测完成: snowflakeId={}", judgeInfo.getSnowflakeId());
+        }
+    }
 
-        } catch (IOException e) {
-            logger.error("消息反序列化失败：",e);
-            throw new RuntimeException("消息反序列化失败", e);
+    private void dispatchAsync(JudgeInfo judgeInfo, Message message) {
+        try {
+            dispatchPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // 通常发生在停机时：抛出让容器把消息退回队列，由下次启动重新消费
+            throw new RuntimeException("评测派发被中断: snowflakeId=" + judgeInfo.getSnowflakeId(), e);
+        }
+        if (!claim(judgeInfo)) {
+            dispatchPermits.release();
+            return;
+        }
+        try {
+            CompletableFuture
+                    .supplyAsync(() -> judgeResultHandler.startJudging(judgeInfo), dispatchExecutor)
+                    .thenCompose(req -> judgeAgentClient.submitAsync(req, judgeResultHandler.progressListener(judgeInfo))
+                            .thenAccept(result -> judgeResultHandler.finishJudging(judgeInfo, req, result)))
+                    .whenComplete((ignored, ex) -> {
+                        dispatchPermits.release();
+                        if (ex != null) {
+                            logger.error("异步评测流水线异常: snowflakeId={}", judgeInfo.getSnowflakeId(), ex);
+                            retryOrDeadLetter(judgeInfo, message, ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            // 线程池已关闭等提交失败的情况，归还许可与认领并让消息回到队列
+            dispatchPermits.release();
+            judgeClaimRegistry.release(judgeInfo.getSnowflakeId());
+            throw e;
         }
     }
 
-    private void sendUpdate(JudgeInfo judgeInfo, String status, Long time, Long memory, String errorInfo, Integer passCount, Integer testCount) {
-        sendUpdate(judgeInfo, status, time, memory, errorInfo, passCount, testCount, null, null, null);
+    /**
+     * 评测失败：释放认领后按已失败次数投到对应的延迟等待队列，次数用尽转入死信队列。
+     * 异步模式下原消息早已确认，这里投递再失败只能记日志，提交留待发件箱在重启时恢复。
+     */
+    private void retryOrDeadLetter(JudgeInfo judgeInfo, Message message, Throwable cause) {
+        judgeClaimRegistry.release(judgeInfo.getSnowflakeId());
+        int attempts = JudgeProducer.attemptsOf(message) + 1;
+        String error = cause.toString();
+        try {
+            if (attempts < judgeRetryConfig.getMaxAttempts()) {
+                long delayMs = judgeRetryConfig.retryDelayMs(attempts);
+                judgeProducer.sendRetry(message, attempts, delayMs, error);
+                logger.warn("评测失败，{}ms 后重试: snowflakeId={}, 已失败 {} 次, reason={}",
+                        delayMs, judgeInfo.getSnowflakeId(), attempts, error);
+                judgeTimeline.record(judgeInfo, "retry_scheduled", "delayMs=" + delayMs + ", error=" + error);
+                return;
+            }
+            judgeProducer.sendDeadLetter(message, attempts, error);
+            finishDeadLetter(() -> judgeResultHandler.deadLettered(judgeInfo), judgeInfo.getSnowflakeId());
+            judgeMetrics.finished(null);
+            judgeTimeline.record(judgeInfo, "dead_lettered", "attempts=" + attempts + ", error=" + error);
+            logger.error("评测失败 {} 次，转入死信队列: snowflakeId={}, reason={}", attempts, judgeInfo.getSnowflakeId(), error);
+        } catch (RuntimeException e) {
+            logger.error("评测失败且重投失败，等待发件箱恢复: snowflakeId={}", judgeInfo.getSnowflakeId(), e);
+        }
+        // 重判不能一直占着任务的在途名额：按评测机异常计，保留原结果
+        if (judgeInfo.getRejudgeJobId() != null) {
+            rejudgeService.onResult(judgeInfo, "判题错误");
+        }
     }
 
-    private void sendUpdate(JudgeInfo judgeInfo, String status, Long time, Long memory, String errorInfo,
-                            Integer passCount, Integer testCount,
-                            String caseInput, String caseExpected, String actualOutput) {
+    /** 公平队列批量投递时 correlationId 即 snowflakeId，消息体解不开也能据此归还窗口名额、终结提交。 */
+    private static Long snowflakeIdOf(Message message) {
+        String correlationId = message.getMessageProperties().getCorrelationId();
         try {
-            Map<String, Object> data = new HashMap<>();
-            data.put("snowflakeId", String.valueOf(judgeInfo.getSnowflakeId())); // Ensure it's a string for JS
-            data.put("status", status);
-            data.put("description", JudgeStatusDescriber.describe(status, "submit"));
-            data.put("time", time);
-            data.put("memory", memory);
-            data.put("errorInfo", errorInfo);
-            data.put("passCount", passCount);
-            data.put("testCount", testCount);
-            // 仅在非比赛 + 非 AC 时由调用方填入；为空则不下发，避免泄露给比赛页面
-            if (caseInput != null) data.put("caseInput", caseInput);
-            if (caseExpected != null) data.put("caseExpected", caseExpected);
-            if (actualOutput != null) data.put("actualOutput", actualOutput);
+            return correlationId != null ? Long.parseLong(correlationId) : null;
+        } catch (NumberFormatException e) {
+            // 非公平队列投递的消息（traceId 作 correlationId）
+            return null;
+        }
+    }
 
-            String json = objectMapper.writeValueAsString(data);
-            judgeWebSocketHandler.sendMessageToUser(judgeInfo.getUid(), json);
-        } catch (Exception e) {
-            logger.error("Failed to send WebSocket update", e);
+    /** 死信已投递成功后的收尾；失败只记日志，发件箱行仍在，重启时会按未完成提交恢复。 */
+    private void finishDeadLetter(Runnable action, Long snowflakeId) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            logger.error("死信提交收尾失败: snowflakeId={}", snowflakeId, e);
         }
     }
 
-    private static String truncate(String text, int max) {
-        if (text == null) return null;
-        if (text.length() <= max) return text;
-        return text.substring(0, max) + "\n...(已截断)";
+    /** 开始评测前让出公平队列的 MQ 窗口名额并认领提交，重复消息直接丢弃。 */
+    private boolean claim(JudgeInfo judgeInfo) {
+        fairJudgeQueue.markConsumed(judgeInfo.getSnowflakeId());
+        if (!judgeClaimRegistry.claim(judgeInfo.getSnowflakeId())) {
+            logger.info("提交已在评测或已评测，丢弃重复消息: snowflakeId={}", judgeInfo.getSnowflakeId());
+            judgeTimeline.record(judgeInfo, "duplicate_dropped", null);
+            // 重判消息被丢弃时不会再有结果回来，归还任务的在途名额，否则任务会卡在 permits.acquire()
+            if (judgeInfo.getRejudgeJobId() != null) {
+                rejudgeService.onDropped(judgeInfo);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    public boolean isAsyncDispatch() {
+        return asyncDispatch;
+    }
+
+    /** 调整派发许可总数；在途评测不受影响，缩容时多出的许可在归还后自然消失。 */
+    public void resizeDispatchPermits(int limit) {
+        int old = dispatchPermits.resize(limit);
+        if (old != limit) {
+            logger.info("评测派发许可数调整: {} -> {}", old, limit);
+        }
+    }
+
+    /** 可调整总数的公平信号量：扩容直接 release，缩容用 reducePermits 允许暂时为负。 */
+    private static final class ResizableSemaphore extends Semaphore {
+        private int limit;
+
+        ResizableSemaphore(int limit) {
+            super(limit, true);
+            this.limit = limit;
+        }
+
+        synchronized int resize(int newLimit) {
+            int old = limit;
+            int delta = newLimit - old;
+            if (delta > 0) {
+                release(delta);
+            } else if (delta < 0) {
+                reducePermits(-delta);
+            }
+            limit = newLimit;
+            return old;
+        }
     }
 }
@@ -0,0 +1,72 @@
+package com.example.vnollxonlinejudge.controller;
+
+import com.example.vnollxonlinejudge.annotation.RequirePermission;
+import com.example.vnollxonlinejudge.model.base.PermissionCode;
+import com.example.vnollxonlinejudge.model.result.Result;
+import com.example.vnollxonlinejudge.model.vo.judge.JudgeAgentCacheStatusVO;
+import com.example.vnollxonlinejudge.model.vo.judge.JudgeAgentVO;
+import com.example.vnollxonlinejudge.service.JudgeAgentService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 管理端 - 评测机：查看各 judge-agent 负载 / 健康状态，手动摘流，核对与预热测试数据缓存
+ */
+@RestController
+@RequestMapping("/api/v1/admin/judge-agent")
+public class AdminJudgeAgentController {
+    private final JudgeAgentService judgeAgentService;
+
+    @Autowired
+    public AdminJudgeAgentController(JudgeAgentService judgeAgentService) {
+        this.judgeAgentService = judgeAgentService;
+    }
+
+    @GetMapping("/list")
+    @RequirePermission(PermissionCode.SYSTEM_MONITOR)
+    public Result<List<JudgeAgentVO>> list() {
+        return Result.Success(judgeAgentService.listAgents(), "获取成功");
+    }
+
+    /**
+     * 摘流：不再分配新评测，在途评测完成后移除；之后的心跳不会让它重新上线，
+     * 直到调用 undrain 或 Agent 自己注销后重新注册（用于停机维护）
+     */
+    @PostMapping("/drain")
+    @RequirePermission(PermissionCode.SYSTEM_SETTINGS)
+    public Result<Void> drain(@RequestParam String url) {
+        judgeAgentService.drain(url);
+        return Result.Success("已摘流");
+    }
+
+    /**
+     * 取消摘流：端点还在时立即恢复接单，已移除的在下次心跳时重新注册
+     */
+    @PostMapping("/undrain")
+    @RequirePermission(PermissionCode.SYSTEM_SETTINGS)
+    public Result<Void> undrain(@RequestParam String url) {
+        judgeAgentService.undrain(url);
+        return Result.Success("已取消摘流");
+    }
+
+    /**
+     * 测试数据缓存核对：逐个 Agent 查询题目当前版本是否已缓存，指定 problemIds 时忽略 cid
+     */
+    @GetMapping("/cache-status")
+    @RequirePermission(PermissionCode.SYSTEM_MONITOR)
+    public Result<List<JudgeAgentCacheStatusVO>> cacheStatus(@RequestParam(required = false) Long cid,
+                                                             @RequestParam(required = false) List<Long> problemIds) {
+        return Result.Success(judgeAgentService.cacheStatus(cid, problemIds), "获取成功");
+    }
+
+    /**
+     * 手动预热：立即向所有 Agent 下发比赛全部题目的测试数据，Agent 在后台下载
+     */
+    @PostMapping("/prewarm")
+    @RequirePermission(PermissionCode.SYSTEM_SETTINGS)
+    public Result<Integer> prewarm(@RequestParam Long cid) {
+        return Result.Success(judgeAgentService.prewarmCompetition(cid), "已下发预热");
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.vnollxonlinejudge.controller;
+
+import com.example.vnollxonlinejudge.annotation.RequirePermission;
+import com.example.vnollxonlinejudge.model.base.PermissionCode;
+import com.example.vnollxonlinejudge.model.dto.judge.JudgeDeadLetterReplayDTO;
+import com.example.vnollxonlinejudge.model.result.Result;
+import com.example.vnollxonlinejudge.model.vo.judge.JudgeDeadLetterVO;
+import com.example.vnollxonlinejudge.service.JudgeDeadLetterService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 管理端 - 评测死信：查看重试用尽或无法解析的评测消息，并重新投回评测队列
+ */
+@RestController
+@RequestMapping("/api/v1/admin/judge-dlq")
+public class AdminJudgeDeadLetterController {
+    private final JudgeDeadLetterService judgeDeadLetterService;
+
+    @Autowired
+    public AdminJudgeDeadLetterController(JudgeDeadLetterService judgeDeadLetterService) {
+        this.judgeDeadLetterService = judgeDeadLetterService;
+    }
+
+    @GetMapping("/list")
+    @RequirePermission(PermissionCode.SUBMISSION_REJUDGE)
+    public Result<List<JudgeDeadLetterVO>> list(@RequestParam(defaultValue = "50") int limit) {
+        return Result.Success(judgeDeadLetterService.list(limit), "获取成功");
+    }
+
+    /**
+     * 重投：不指定提交时重投全部可解析的死信；无法解析的消息与仍在进行中的重判任务的消息留在死信队列
+     */
+    @PostMapping("/replay")
+    @RequirePermission(PermissionCode.SUBMISSION_REJUDGE)
+    public Result<Integer> replay(@RequestBody(required = false) JudgeDeadLetterReplayDTO dto) {
+        return Result.Success(judgeDeadLetterService.replay(dto), "已重投");
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.vnollxonlinejudge.controller;
+
+import com.example.vnollxonlinejudge.annotation.RequirePermission;
+import com.example.vnollxonlinejudge.model.base.PermissionCode;
+import com.example.vnollxonlinejudge.model.result.Result;
+import com.example.vnollxonlinejudge.model.vo.judge.JudgeTimelineVO;
+import com.example.vnollxonlinejudge.service.JudgeTraceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 管理端 - 评测时间线：查看单个提交从提交、入队、投递、消费、Agent 执行到落库推送的各阶段耗时
+ */
+@RestController
+@RequestMapping("/api/v1/admin/judge-trace")
+public class AdminJudgeTraceController {
+    private final JudgeTraceService judgeTraceService;
+
+    @Autowired
+    public AdminJudgeTraceController(JudgeTraceService judgeTraceService) {
+        this.judgeTraceService = judgeTraceService;
+    }
+
+    @GetMapping("/{snowflakeId}")
+    @RequirePermission(PermissionCode.SYSTEM_MONITOR)
+    public Result<JudgeTimelineVO> timeline(@PathVariable Long snowflakeId) {
+        return Result.Success(judgeTraceService.getTimeline(snowflakeId), "获取成功");
+    }
+}
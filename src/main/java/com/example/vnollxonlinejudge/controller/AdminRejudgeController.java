@@ -0,0 +1,55 @@
+package com.example.vnollxonlinejudge.controller;
+
+import com.example.vnollxonlinejudge.annotation.RequirePermission;
+import com.example.vnollxonlinejudge.model.base.PermissionCode;
+import com.example.vnollxonlinejudge.model.dto.judge.RejudgeJobDTO;
+import com.example.vnollxonlinejudge.model.result.Result;
+import com.example.vnollxonlinejudge.model.vo.judge.RejudgeJobVO;
+import com.example.vnollxonlinejudge.service.RejudgeService;
+import com.example.vnollxonlinejudge.utils.UserContextHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 管理端 - 批量重判：按题目 / 比赛 / 状态筛选提交，后台限流重判并查看进度
+ */
+@RestController
+@RequestMapping("/api/v1/admin/rejudge")
+public class AdminRejudgeController {
+    private final RejudgeService rejudgeService;
+
+    @Autowired
+    public AdminRejudgeController(RejudgeService rejudgeService) {
+        this.rejudgeService = rejudgeService;
+    }
+
+    @PostMapping("/create")
+    @RequirePermission(PermissionCode.SUBMISSION_REJUDGE)
+    public Result<RejudgeJobVO> create(@RequestBody RejudgeJobDTO dto) {
+        return Result.Success(rejudgeService.createJob(dto, UserContextHolder.getCurrentUserId()), "重判任务已创建");
+    }
+
+    @GetMapping("/{id}")
+    @RequirePermission(PermissionCode.SUBMISSION_REJUDGE)
+    public Result<RejudgeJobVO> get(@PathVariable Long id) {
+        return Result.Success(rejudgeService.getJob(id), "获取成功");
+    }
+
+    @GetMapping("/list")
+    @RequirePermission(PermissionCode.SUBMISSION_REJUDGE)
+    public Result<List<RejudgeJobVO>> list() {
+        return Result.Success(rejudgeService.listJobs(), "获取成功");
+    }
+
+    /**
+     * 取消：停止继续入队，已在队列或评测中的提交照常完成
+     */
+    @PostMapping("/{id}/cancel")
+    @RequirePermission(PermissionCode.SUBMISSION_REJUDGE)
+    public Result<Void> cancel(@PathVariable Long id) {
+        rejudgeService.cancelJob(id);
+        return Result.Success("已取消");
+    }
+}
@@ -5,6 +5,7 @@ import com.example.vnollxonlinejudge.model.dto.competition.AntiCheatReportDTO;
 import com.example.vnollxonlinejudge.model.dto.competition.ConfirmPasswordDTO;
 import com.example.vnollxonlinejudge.model.dto.competition.GetCompetitionStatusDTO;
 import com.example.vnollxonlinejudge.model.entity.User;
+import com.example.vnollxonlinejudge.model.vo.competition.CompetitionRankOfVo;
 import com.example.vnollxonlinejudge.model.vo.competition.CompetitionRanklistVo;
 import com.example.vnollxonlinejudge.model.vo.competition.CompetitionVo;
 import com.example.vnollxonlinejudge.model.vo.competition.CompetitionProblemBriefVo;
@@ -145,6 +146,20 @@ public class CompetitionController {
         return Result.Success(competitionService.getRanklist(Long.parseLong(id))
                 ,"获取比赛排行榜成功");
     }
+    @GetMapping("/ranklist-page")
+    public Result<CompetitionRanklistVo> getRanklistPage(@RequestParam String id,
+                                                         @RequestParam(defaultValue = "1") int page,
+                                                         @RequestParam(defaultValue = "50") int pageSize){
+        return Result.Success(competitionService.getRanklistPage(Long.parseLong(id), page, pageSize)
+                ,"获取比赛排行榜成功");
+    }
+    @GetMapping("/ranklist-rank")
+    public Result<CompetitionRankOfVo> getRankOf(@RequestParam String id,
+                                                 @RequestParam(defaultValue = "50") int pageSize){
+        Long userId = UserContextHolder.getCurrentUserId();
+        return Result.Success(competitionService.getRankOf(Long.parseLong(id), userId, pageSize)
+                ,"获取比赛名次成功");
+    }
     @GetMapping("/ranklist-submissions")
     public Result<List<CompetitionRanklistVo.SubmissionRankVo>> getRanklistSubmissions(@RequestParam String id, @RequestParam String userId){
         return Result.Success(competitionService.getRanklistSubmissions(Long.parseLong(id), Long.parseLong(userId))
@@ -0,0 +1,40 @@
+package com.example.vnollxonlinejudge.controller;
+
+import com.example.vnollxonlinejudge.model.dto.judge.AgentHeartbeatDTO;
+import com.example.vnollxonlinejudge.model.result.Result;
+import com.example.vnollxonlinejudge.service.JudgeAgentService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * judge-agent 注册 / 心跳接口，由 Agent 携带共享密钥调用（不走用户 Token）。
+ */
+@RestController
+@RequestMapping("/api/v1/judge-agent")
+public class JudgeAgentController {
+    public static final String SECRET_HEADER = "X-Judge-Agent-Secret";
+    private final JudgeAgentService judgeAgentService;
+
+    @Autowired
+    public JudgeAgentController(JudgeAgentService judgeAgentService) {
+        this.judgeAgentService = judgeAgentService;
+    }
+
+    @PostMapping("/heartbeat")
+    public Result<Void> heartbeat(
+            @RequestHeader(value = SECRET_HEADER, required = false) String secret,
+            @RequestBody AgentHeartbeatDTO req
+    ) {
+        judgeAgentService.heartbeat(req, secret);
+        return Result.Success("心跳成功");
+    }
+
+    @PostMapping("/deregister")
+    public Result<Void> deregister(
+            @RequestHeader(value = SECRET_HEADER, required = false) String secret,
+            @RequestParam String url
+    ) {
+        judgeAgentService.deregister(url, secret);
+        return Result.Success("已摘流");
+    }
+}
@@ -40,4 +40,15 @@ public class JudgeController {
         String message = Boolean.TRUE.equals(req.getCustomTest()) ? "测试完成" : result.getStatus();
         return Result.Success(result, message);
     }
+    /**
+     * 异步样例运行：返回 ticket，运行结果随后通过 WebSocket 推送（type=sample）
+     */
+    @PostMapping("/test-async")
+    @RequirePermission(PermissionCode.SUBMISSION_SUBMIT)
+    public Result<JudgeResultVO> testAsync(
+            @RequestBody TestCodeDTO req
+    ){
+        Long userId=UserContextHolder.getCurrentUserId();
+        return Result.Success(judgeService.testSubmissionAsync(req,userId), "已提交运行");
+    }
 }
@@ -44,7 +44,9 @@ public class TokenFilter implements Filter {
             "/api/v1/competition/ranklist-submissions",
             "/api/v1/competition/confirm",
             "/api/v1/competition/submission/\\d+",
-            "/api/v1/solve/publish/\\d+"
+            "/api/v1/solve/publish/\\d+",
+            // judge-agent 注册 / 心跳，由接口内部校验共享密钥
+            "/api/v1/judge-agent/"
     };
     private final RedisService redisService;
     @Autowired
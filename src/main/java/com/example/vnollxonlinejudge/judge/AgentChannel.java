@@ -0,0 +1,349 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.config.JudgeAgentConfig;
+import com.example.vnollxonlinejudge.model.result.RunResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 到单个 judge-agent 的 WebSocket 长连接评测通道（Agent 的 /ws/judge）。
+ * <p>
+ * 一条连接上多路复用：每次调用分配一个 id，请求帧 {"id","op","traceId","body"} 发出后即可发下一个，
+ * Agent 并行评测、按完成顺序乱序返回 {"id","type":"result"}；流式评测的逐测试点进度 {"id","type":"case"}
+ * 也走同一连接，评测期间不再各占一条 HTTP 连接。
+ * <p>
+ * 收到的每条消息经 {@link BoundedJsonInputStream} 推模式限长后再解析，与 HTTP 通路同一套上限。
+ * 连接断开时在途调用全部以可重试异常结束（由调用方换端点重发，Agent 端按 requestId 去重），
+ * 随后按指数退避（带抖动，上限 channel-max-backoff-ms）重连；未连上期间调用方回退到 HTTP。
+ */
+final class AgentChannel implements WebSocket.Listener {
+    private static final Logger logger = LoggerFactory.getLogger(AgentChannel.class);
+    private static final String PATH = "/ws/judge";
+    private static final long BASE_BACKOFF_MS = 1000L;
+    private static final Pattern ID_PATTERN = Pattern.compile("^\\{\\s*\"id\"\\s*:\\s*\"([^\"]+)\"");
+
+    /** 通道调用失败；retryable 表示可以换端点重发。 */
+    static final class CallException extends RuntimeException {
+        private final boolean retryable;
+
+        CallException(String message, boolean retryable, Throwable cause) {
+            super(message, cause);
+            this.retryable = retryable;
+        }
+
+        boolean isRetryable() {
+            return retryable;
+        }
+    }
+
+    private static final class PendingCall {
+        final CompletableFuture<RunResult> future = new CompletableFuture<>();
+        final Consumer<JudgeCaseEvent> onCase;
+
+        PendingCall(Consumer<JudgeCaseEvent> onCase) {
+            this.onCase = onCase;
+        }
+    }
+
+    private final String baseUrl;
+    private final URI uri;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final JudgeAgentConfig config;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, PendingCall> pending = new ConcurrentHashMap<>();
+    private final AtomicLong seq = new AtomicLong();
+
+    private volatile WebSocket socket;
+    private volatile boolean closed;
+    private boolean connecting;
+    private int failures;
+    /** 发送串行化：WebSocket 同一时刻只允许一个未完成的发送 */
+    private CompletableFuture<?> sendChain = CompletableFuture.completedFuture(null);
+
+    // 接收状态，只在监听回调中访问（回调按序调用）
+    private BoundedJsonInputStream filter;
+    private ByteArrayOutputStream message;
+    private String carry = "";
+    private boolean overflow;
+
+    AgentChannel(String baseUrl, HttpClient httpClient, ObjectMapper objectMapper,
+                 JudgeAgentConfig config, ScheduledExecutorService scheduler) {
+        this.baseUrl = baseUrl;
+        this.uri = URI.create(baseUrl.replaceFirst("^http", "ws") + PATH);
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.config = config;
+        this.scheduler = scheduler;
+    }
+
+    String getBaseUrl() {
+        return baseUrl;
+    }
+
+    boolean isOpen() {
+        WebSocket ws = socket;
+        return ws != null && !ws.isOutputClosed() && !ws.isInputClosed();
+    }
+
+    int getPendingCalls() {
+        return pending.size();
+    }
+
+    /** 发起连接（已连接或正在连接时忽略）。 */
+    void connect() {
+        synchronized (this) {
+            if (closed || connecting || isOpen()) {
+                return;
+            }
+            connecting = true;
+        }
+        httpClient.newWebSocketBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .buildAsync(uri, this)
+                .whenComplete((ws, ex) -> {
+                    synchronized (this) {
+                        connecting = false;
+                        if (ex == null) {
+                            failures = 0;
+                        }
+                    }
+                    if (ex != null) {
+                        logger.debug("judge-agent 评测通道连接失败: url={}, {}", baseUrl, ex.toString());
+                        scheduleReconnect();
+                    } else {
+                        logger.info("judge-agent 评测通道已连接: url={}", baseUrl);
+                    }
+                });
+    }
+
+    /** 发一次调用并等待结果；onCase 非空时接收逐测试点进度。 */
+    RunResult call(String op, Object body, String traceId, Consumer<JudgeCaseEvent> onCase, long timeoutMs) {
+        WebSocket ws = socket;
+        if (ws == null) {
+            throw new CallException("评测通道未连接", true, null);
+        }
+        String id = Long.toString(seq.incrementAndGet(), 36);
+        ObjectNode frame = objectMapper.createObjectNode();
+        frame.put("id", id);
+        frame.put("op", op);
+        if (traceId != null) {
+            frame.put("traceId", traceId);
+        }
+        frame.set("body", objectMapper.valueToTree(body));
+        PendingCall call = new PendingCall(onCase);
+        pending.put(id, call);
+        try {
+            send(ws, frame.toString()).whenComplete((v, ex) -> {
+                if (ex != null) {
+                    call.future.completeExceptionally(new CallException("评测通道发送失败: " + ex.getMessage(), true, ex));
+                }
+            });
+            return call.future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new CallException("评测通道调用超时: " + timeoutMs + "ms", true, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CallException("评测通道调用被中断", false, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CallException ce) {
+                throw ce;
+            }
+            throw new CallException("评测通道调用失败: " + e.getCause(), true, e.getCause());
+        } finally {
+            pending.remove(id);
+        }
+    }
+
+    /** 保活：经发送链发 ping，避免与文本帧并发发送。 */
+    void ping() {
+        WebSocket ws = socket;
+        if (ws != null) {
+            synchronized (this) {
+                sendChain = sendChain.handle((v, ex) -> null)
+                        .thenCompose(v -> ws.sendPing(ByteBuffer.allocate(0)));
+            }
+        }
+    }
+
+    void close() {
+        closed = true;
+        WebSocket ws = socket;
+        socket = null;
+        if (ws != null) {
+            ws.sendClose(WebSocket.NORMAL_CLOSURE, "shutdown");
+        }
+        failAll("评测通道已关闭");
+    }
+
+    private CompletableFuture<?> send(WebSocket ws, String text) {
+        synchronized (this) {
+            CompletableFuture<?> next = sendChain.handle((v, ex) -> null)
+                    .thenCompose(v -> ws.sendText(text, true));
+            sendChain = next;
+            return next;
+        }
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        socket = webSocket;
+        webSocket.request(1);
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        try {
+            receive(data, last);
+        } catch (Exception e) {
+            logger.warn("judge-agent 评测通道消息处理失败: url={}, {}", baseUrl, e.toString());
+            resetMessage();
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        disconnected("连接关闭: " + statusCode + " " + reason);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        disconnected("连接异常: " + error);
+    }
+
+    private void receive(CharSequence data, boolean last) throws Exception {
+        if (filter == null) {
+            filter = new BoundedJsonInputStream(null, config.getResponseMaxBytes(),
+                    config.getResponseOutputMaxBytes(), config.getResponseFieldMaxBytes());
+            message = new ByteArrayOutputStream();
+            overflow = false;
+        }
+        // 代理对可能被拆在两帧之间，高位代理留到下一帧再编码
+        String text = carry + data;
+        carry = "";
+        if (!last && !text.isEmpty() && Character.isHighSurrogate(text.charAt(text.length() - 1))) {
+            carry = text.substring(text.length() - 1);
+            text = text.substring(0, text.length() - 1);
+        }
+        if (!overflow) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            try {
+                filter.feed(bytes, 0, bytes.length, message);
+            } catch (BoundedJsonInputStream.LimitExceededException e) {
+                // 余下部分直接丢弃；按消息开头的 id 让对应调用失败且不重试
+                overflow = true;
+                PendingCall call = pending.get(idPrefix());
+                if (call != null) {
+                    call.future.completeExceptionally(new CallException(e.getMessage(), false, e));
+                }
+            }
+        }
+        if (last) {
+            if (!overflow) {
+                dispatch(objectMapper.readTree(message.toByteArray()), filter.getTruncatedFields() > 0);
+            }
+            resetMessage();
+        }
+    }
+
+    private void dispatch(JsonNode node, boolean truncated) throws Exception {
+        PendingCall call = pending.get(node.path("id").asText());
+        if (call == null) {
+            // 已超时或已失败的调用迟到的结果
+            return;
+        }
+        switch (node.path("type").asText()) {
+            case "case" -> {
+                if (call.onCase != null) {
+                    try {
+                        call.onCase.accept(objectMapper.treeToValue(node, JudgeCaseEvent.class));
+                    } catch (Exception e) {
+                        logger.warn("处理评测进度失败: {}", e.getMessage());
+                    }
+                }
+            }
+            case "result" -> {
+                RunResult result = objectMapper.treeToValue(node.get("result"), RunResult.class);
+                if (result != null && truncated) {
+                    result.setTruncated(true);
+                }
+                call.future.complete(result);
+            }
+            case "error" -> {
+                int status = node.path("status").asInt(500);
+                call.future.completeExceptionally(new CallException(
+                        "judge-agent 返回错误: " + status + " " + node.path("detail").asText(), status >= 500, null));
+            }
+            default -> { }
+        }
+    }
+
+    private String idPrefix() {
+        byte[] bytes = message.toByteArray();
+        Matcher m = ID_PATTERN.matcher(new String(bytes, 0, Math.min(bytes.length, 128), StandardCharsets.UTF_8));
+        return m.find() ? m.group(1) : "";
+    }
+
+    private void resetMessage() {
+        filter = null;
+        message = null;
+        carry = "";
+        overflow = false;
+    }
+
+    private void disconnected(String reason) {
+        socket = null;
+        resetMessage();
+        if (!closed) {
+            logger.warn("judge-agent 评测通道断开: url={}, {}, 在途调用={}", baseUrl, reason, pending.size());
+        }
+        failAll("评测通道断开: " + reason);
+        scheduleReconnect();
+    }
+
+    private void failAll(String reason) {
+        for (PendingCall call : pending.values()) {
+            call.future.completeExceptionally(new CallException(reason, true, null));
+        }
+    }
+
+    private void scheduleReconnect() {
+        long delayMs;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            failures++;
+            long backoff = Math.min(config.getChannelMaxBackoffMs(), BASE_BACKOFF_MS << Math.min(failures - 1, 16));
+            delayMs = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        }
+        scheduler.schedule(this::connect, delayMs, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.config.JudgeAgentConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 每个 judge-agent 端点一条 {@link AgentChannel} 长连接。
+ * 每 20 秒巡检：为新端点建立连接、给已连接的通道发 ping 保活、关闭已被移除端点的通道。
+ * channel-enabled 关闭或通道未连上时 {@link #channelFor} 返回 null，调用方走 HTTP。
+ */
+@Component
+public class AgentChannelRegistry {
+    private final JudgeAgentRouter router;
+    private final JudgeAgentConfig config;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("agent-channel-reconnect").factory());
+    private final Map<String, AgentChannel> channels = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AgentChannelRegistry(JudgeAgentRouter router, JudgeAgentConfig config, ObjectMapper objectMapper) {
+        this.router = router;
+        this.config = config;
+        this.objectMapper = objectMapper;
+    }
+
+    /** 端点已连上的通道；没有通道时顺带发起连接，本次调用走 HTTP。 */
+    AgentChannel channelFor(JudgeAgentRouter.Endpoint ep) {
+        if (!config.isChannelEnabled()) {
+            return null;
+        }
+        AgentChannel channel = channels.computeIfAbsent(ep.getBaseUrl(), this::open);
+        return channel.isOpen() ? channel : null;
+    }
+
+    /** 已连接的端点地址 */
+    public Set<String> connectedUrls() {
+        Set<String> urls = new HashSet<>();
+        channels.forEach((url, channel) -> {
+            if (channel.isOpen()) {
+                urls.add(url);
+            }
+        });
+        return urls;
+    }
+
+    @Scheduled(fixedDelay = 20 * 1000, initialDelay = 5 * 1000)
+    public void maintain() {
+        if (!config.isChannelEnabled()) {
+            return;
+        }
+        Set<String> live = new HashSet<>();
+        for (JudgeAgentRouter.Endpoint ep : router.getEndpoints()) {
+            live.add(ep.getBaseUrl());
+            channels.computeIfAbsent(ep.getBaseUrl(), this::open);
+        }
+        channels.entrySet().removeIf(entry -> {
+            if (live.contains(entry.getKey())) {
+                entry.getValue().ping();
+                return false;
+            }
+            entry.getValue().close();
+            return true;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        channels.values().forEach(AgentChannel::close);
+        channels.clear();
+        scheduler.shutdownNow();
+    }
+
+    private AgentChannel open(String baseUrl) {
+        AgentChannel channel = new AgentChannel(baseUrl, httpClient, objectMapper, config, scheduler);
+        channel.connect();
+        return channel;
+    }
+}
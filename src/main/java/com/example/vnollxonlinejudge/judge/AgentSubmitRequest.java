@@ -1,5 +1,6 @@
 package com.example.vnollxonlinejudge.judge;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
@@ -11,6 +12,11 @@ import lombok.Data;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class AgentSubmitRequest {
     private Long submissionId;
+    /**
+     * 幂等键：Agent 按它对重复到达的同一请求去重（复用进行中或刚完成的结果）。
+     * 普通评测为 snowflakeId，重判为 snowflakeId:rejudge:jobId，避免命中原评测的结果。
+     */
+    private String requestId;
     private Long problemId;
     /** 题目数据版本号；每次管理员更新测试数据 zip 时递增，Agent 据此判断缓存是否过期。 */
     private String dataVersion;
@@ -21,4 +27,9 @@ public class AgentSubmitRequest {
     private String judgeMode;
     private Double floatTolerance;
     private String checkerFile;
+    /** 遇到第一个失败测试点是否停止；比赛提交恒为 true。 */
+    private Boolean stopOnFirstFailure;
+    /** 评测时间线的 traceId，走 X-Trace-Id 请求头而不是请求体 */
+    @JsonIgnore
+    private String traceId;
 }
@@ -0,0 +1,231 @@
+package com.example.vnollxonlinejudge.judge;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 给 judge-agent 响应体加上硬上限的 JSON 字节流过滤器，解析器从它读取。
+ * <p>
+ * 边读边跟踪 JSON 词法状态（对象 / 数组嵌套、是否在字符串内、转义），字符串值超过上限后的字节直接丢弃，
+ * 在闭合引号前补一段截断标记，交给 Jackson 的始终是合法 JSON。stdout / stderr 用 outputMaxBytes，
+ * 其余字符串用 fieldMaxBytes（按 JSON 编码后的字节计），只在字符边界截断，不会切坏转义序列和多字节 UTF-8 字符。
+ * 用户程序输出 50MB 时后端只保留上限以内的部分，内存占用与输出大小无关；
+ * 从上游读取的总字节数超过 maxBytes 直接抛 {@link LimitExceededException}，防止无休止的响应。
+ * 支持 NDJSON：多个顶层值依次经过时状态自然复位。按帧到达的消息（WebSocket）用 {@link #feed} 推入，
+ * 此时 upstream 为空。非线程安全。
+ */
+final class BoundedJsonInputStream extends InputStream {
+    private static final byte[] MARKER = "\\n...(已截断)\"".getBytes(StandardCharsets.UTF_8);
+    private static final int KEY_BUFFER = 32;
+    private static final int DROP = -1;
+
+    /** 响应总字节数超过上限 */
+    static final class LimitExceededException extends IOException {
+        LimitExceededException(long maxBytes) {
+            super("judge-agent 响应超过 " + maxBytes + " 字节上限");
+        }
+    }
+
+    private final InputStream upstream;
+    private final long maxBytes;
+    private final int outputMaxBytes;
+    private final int fieldMaxBytes;
+    private final byte[] buf = new byte[8192];
+    private int bufPos;
+    private int bufLen;
+    private long consumed;
+    private int pendingPos = -1;
+
+    /** true = 对象，false = 数组 */
+    private final Deque<Boolean> containers = new ArrayDeque<>();
+    private boolean expectKey;
+    private boolean inString;
+    private boolean escape;
+    private int unicodeLeft;
+    private boolean stringIsKey;
+    private int stringCap;
+    private int stringBytes;
+    private boolean dropping;
+    private final byte[] keyBuf = new byte[KEY_BUFFER];
+    private int keyLen;
+    private String lastKey;
+    private int truncatedFields;
+
+    BoundedJsonInputStream(InputStream upstream, long maxBytes, int outputMaxBytes, int fieldMaxBytes) {
+        this.upstream = upstream;
+        this.maxBytes = maxBytes;
+        this.outputMaxBytes = outputMaxBytes;
+        this.fieldMaxBytes = fieldMaxBytes;
+    }
+
+    /** 被截断的字符串个数 */
+    int getTruncatedFields() {
+        return truncatedFields;
+    }
+
+    /** 推模式：处理一段上游字节，保留的字节追加到 out。 */
+    void feed(byte[] chunk, int off, int len, ByteArrayOutputStream out) throws LimitExceededException {
+        consumed += len;
+        if (consumed > maxBytes) {
+            throw new LimitExceededException(maxBytes);
+        }
+        for (int i = off; i < off + len; i++) {
+            int b = process(chunk[i] & 0xFF);
+            if (b != DROP) {
+                out.write(b);
+            }
+            if (pendingPos >= 0) {
+                out.write(MARKER, 0, MARKER.length);
+                pendingPos = -1;
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = 0;
+        while (n < len) {
+            if (pendingPos >= 0) {
+                b[off + n++] = MARKER[pendingPos++];
+                if (pendingPos == MARKER.length) {
+                    pendingPos = -1;
+                }
+                continue;
+            }
+            if (bufPos == bufLen) {
+                // 已有输出就先交出去，避免为凑满 len 阻塞在上游
+                if (n > 0 || !fill()) {
+                    break;
+                }
+            }
+            int out = process(buf[bufPos++] & 0xFF);
+            if (out != DROP) {
+                b[off + n++] = (byte) out;
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (upstream != null) {
+            upstream.close();
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int r;
+        do {
+            r = upstream.read(buf, 0, buf.length);
+        } while (r == 0);
+        if (r < 0) {
+            return false;
+        }
+        consumed += r;
+        if (consumed > maxBytes) {
+            throw new LimitExceededException(maxBytes);
+        }
+        bufPos = 0;
+        bufLen = r;
+        return true;
+    }
+
+    /** 返回要输出的字节，或 DROP。 */
+    private int process(int c) {
+        if (inString) {
+            return processInString(c);
+        }
+        switch (c) {
+            case '"' -> startString();
+            case '{' -> {
+                containers.push(Boolean.TRUE);
+                expectKey = true;
+            }
+            case '[' -> {
+                containers.push(Boolean.FALSE);
+                expectKey = false;
+            }
+            case '}', ']' -> {
+                containers.poll();
+                expectKey = false;
+            }
+            case ':' -> expectKey = false;
+            case ',' -> expectKey = Boolean.TRUE.equals(containers.peek());
+            default -> { }
+        }
+        return c;
+    }
+
+    private void startString() {
+        inString = true;
+        escape = false;
+        unicodeLeft = 0;
+        dropping = false;
+        stringBytes = 0;
+        stringIsKey = expectKey && Boolean.TRUE.equals(containers.peek());
+        keyLen = 0;
+        stringCap = !stringIsKey && ("stdout".equals(lastKey) || "stderr".equals(lastKey))
+                ? outputMaxBytes : fieldMaxBytes;
+    }
+
+    private int processInString(int c) {
+        if (escape) {
+            escape = false;
+            if (c == 'u') {
+                unicodeLeft = 4;
+            }
+            return emitInString(c);
+        }
+        if (unicodeLeft > 0) {
+            unicodeLeft--;
+            return emitInString(c);
+        }
+        if (c == '"') {
+            inString = false;
+            if (stringIsKey) {
+                lastKey = new String(keyBuf, 0, keyLen, StandardCharsets.UTF_8);
+            }
+            if (dropping) {
+                // 截断标记以闭合引号结尾，由 read 依次输出
+                pendingPos = 0;
+                return DROP;
+            }
+            return c;
+        }
+        // UTF-8 续字节（10xxxxxx）不是字符起点，不在这里截断
+        boolean charStart = (c & 0xC0) != 0x80;
+        if (charStart && !dropping && stringBytes >= stringCap) {
+            dropping = true;
+            truncatedFields++;
+        }
+        if (c == '\\') {
+            escape = true;
+        }
+        return emitInString(c);
+    }
+
+    private int emitInString(int c) {
+        if (dropping) {
+            return DROP;
+        }
+        stringBytes++;
+        if (stringIsKey && keyLen < KEY_BUFFER) {
+            keyBuf[keyLen++] = (byte) c;
+        }
+        return c;
+    }
+}
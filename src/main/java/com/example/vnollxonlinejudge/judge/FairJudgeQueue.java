@@ -0,0 +1,291 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.config.JudgeQueueConfig;
+import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 提交进入 submissionQueue 之前的加权公平队列（WFQ）。
+ * <p>
+ * 每个 (通道, 用户) 是一条流，提交入队时打虚拟完成标签
+ * finish = max(V, 该流上一条的 finish) + 1 / weight，按标签从小到大出队，V 取最近出队的标签。
+ * 效果是各用户之间轮转，同一用户连续刷 200 条只会排在自己的流里，不会把别人挤到后面；
+ * 比赛通道权重更高，同等条件下比赛提交先出队；重判通道按任务而不是按用户分流，
+ * 一个重判任务只占一条低权重流。
+ * <p>
+ * 泵线程只在 MQ 中"已投递未开始"的消息数低于 window 时才投递，其余提交留在这里排序，
+ * 因此 MQ 里始终只有少量消息，公平性不会被 MQ 的 FIFO 抵消。窗口有空位时一次取出能填满窗口的
+ * 全部提交，交给 {@link JudgeOutboxRelay} 整批投递并等待确认。
+ * 排队部分放在带子树大小的 {@link OrderStatisticTree} 里，"前方还有几位"为 O(log n)，
+ * 列表页可用 {@link #positionsOf} 在一次加锁内批量查询。
+ * 单实例内存队列：持久状态在发件箱 judge_outbox 中，重启时由 {@link JudgeOutboxSweeper} 恢复。
+ * <p>
+ * 窗口名额由本实例消费者 {@link #markConsumed} 归还；消息被其他实例消费、或未经 claim 直接进了死信队列时
+ * 本实例收不到归还，因此每个名额记下投递时刻，超过 window-expire-ms 仍未归还就视为已被消费，
+ * 避免名额漏光后泵线程永久停住。
+ */
+@Component
+public class FairJudgeQueue {
+    private static final Logger logger = LoggerFactory.getLogger(FairJudgeQueue.class);
+    private static final long PUBLISH_RETRY_MS = 1000L;
+
+    public enum Lane { CONTEST, PRACTICE, REJUDGE }
+
+    private static final class Entry {
+        final JudgeInfo judgeInfo;
+        final String flow;
+        final double finishTag;
+        final long seq;
+
+        Entry(JudgeInfo judgeInfo, String flow, double finishTag, long seq) {
+            this.judgeInfo = judgeInfo;
+            this.flow = flow;
+            this.finishTag = finishTag;
+            this.seq = seq;
+        }
+    }
+
+    private final JudgeOutboxRelay judgeOutboxRelay;
+    private final JudgeQueueConfig config;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private final OrderStatisticTree<Entry> queue = new OrderStatisticTree<>(
+            Comparator.<Entry>comparingDouble(e -> e.finishTag).thenComparingLong(e -> e.seq));
+    private final Map<Long, Entry> bySnowflake = new HashMap<>();
+    /** 每条流最后一个标签与排队数，流排空后删除，空闲用户回来时从当前虚拟时间重新开始。 */
+    private final Map<String, Double> lastFinish = new HashMap<>();
+    private final Map<String, Integer> pendingPerFlow = new HashMap<>();
+    /** 已投递到 MQ、尚未开始评测的提交 → 投递时刻（毫秒），按投递顺序。 */
+    private final LinkedHashMap<Long, Long> inWindow = new LinkedHashMap<>();
+    private double virtualTime;
+    private long seq;
+    private Thread pump;
+
+    @Autowired
+    public FairJudgeQueue(JudgeOutboxRelay judgeOutboxRelay, JudgeQueueConfig config) {
+        this.judgeOutboxRelay = judgeOutboxRelay;
+        this.config = config;
+    }
+
+    @PostConstruct
+    public void start() {
+        pump = Thread.ofVirtual().name("judge-fair-pump").start(this::pumpLoop);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pump != null) {
+            pump.interrupt();
+        }
+    }
+
+    /** 入队，返回入队时前方等待数（MQ 窗口内的 + 公平队列中排在前面的）。 */
+    public int enqueue(JudgeInfo judgeInfo) {
+        Lane lane = laneOf(judgeInfo);
+        String flow = lane.name() + ":" + (lane == Lane.REJUDGE ? judgeInfo.getRejudgeJobId() : judgeInfo.getUid());
+        lock.lock();
+        try {
+            double start = Math.max(virtualTime, lastFinish.getOrDefault(flow, 0.0));
+            Entry entry = new Entry(judgeInfo, flow, start + 1.0 / weightOf(lane), seq++);
+            lastFinish.put(flow, entry.finishTag);
+            pendingPerFlow.merge(flow, 1, Integer::sum);
+            queue.add(entry);
+            bySnowflake.put(judgeInfo.getSnowflakeId(), entry);
+            ready.signal();
+            return inWindow.size() + queue.rank(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 消费者开始评测时调用，让出 MQ 窗口名额。 */
+    public void markConsumed(Long snowflakeId) {
+        lock.lock();
+        try {
+            if (inWindow.remove(snowflakeId) != null) {
+                ready.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 当前前方等待数；已开始评测或不在本实例队列中时返回 null。 */
+    public Integer positionOf(Long snowflakeId) {
+        lock.lock();
+        try {
+            expireWindowLocked();
+            return positionLocked(snowflakeId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 批量查询前方等待数，只返回仍在队列中的提交。 */
+    public Map<Long, Integer> positionsOf(Collection<Long> snowflakeIds) {
+        Map<Long, Integer> positions = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            expireWindowLocked();
+            for (Long id : snowflakeIds) {
+                Integer ahead = positionLocked(id);
+                if (ahead != null) {
+                    positions.put(id, ahead);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return positions;
+    }
+
+    /** 排队中的为窗口数 + 排名；窗口内的按投递顺序（窗口只有几条，线性即可）。调用方持有锁。 */
+    private Integer positionLocked(Long snowflakeId) {
+        Entry entry = bySnowflake.get(snowflakeId);
+        if (entry != null) {
+            return inWindow.size() + queue.rank(entry);
+        }
+        int idx = 0;
+        for (Long id : inWindow.keySet()) {
+            if (id.equals(snowflakeId)) {
+                return idx;
+            }
+            idx++;
+        }
+        return null;
+    }
+
+    /** 是否仍在本实例的公平队列或 MQ 窗口中。 */
+    public boolean isTracked(Long snowflakeId) {
+        lock.lock();
+        try {
+            expireWindowLocked();
+            return bySnowflake.containsKey(snowflakeId) || inWindow.containsKey(snowflakeId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size() + inWindow.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void pumpLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Entry> batch = new ArrayList<>();
+            lock.lock();
+            try {
+                while (queue.isEmpty() || inWindow.size() >= config.getWindow()) {
+                    if (queue.isEmpty()) {
+                        ready.await();
+                        continue;
+                    }
+                    long waitMs = expireWindowLocked();
+                    if (inWindow.size() >= config.getWindow()) {
+                        ready.await(waitMs, TimeUnit.MILLISECONDS);
+                    }
+                }
+                while (!queue.isEmpty() && inWindow.size() < config.getWindow()) {
+                    Entry entry = queue.pollFirst();
+                    bySnowflake.remove(entry.judgeInfo.getSnowflakeId());
+                    virtualTime = Math.max(virtualTime, entry.finishTag);
+                    if (pendingPerFlow.merge(entry.flow, -1, Integer::sum) <= 0) {
+                        pendingPerFlow.remove(entry.flow);
+                        lastFinish.remove(entry.flow);
+                    }
+                    inWindow.put(entry.judgeInfo.getSnowflakeId(), System.currentTimeMillis());
+                    batch.add(entry);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                judgeOutboxRelay.publish(batch.stream().map(entry -> entry.judgeInfo).toList());
+            } catch (Exception e) {
+                logger.error("公平队列投递 MQ 失败，{}ms 后整批重试: batchSize={}", PUBLISH_RETRY_MS, batch.size(), e);
+                batch.forEach(this::requeue);
+                try {
+                    Thread.sleep(PUBLISH_RETRY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 释放超过 window-expire-ms 仍未归还的窗口名额，返回距最早一个名额到期的毫秒数。
+     * 名额按投递顺序排列，遇到第一个未到期的即可停止。调用方持有锁。
+     */
+    private long expireWindowLocked() {
+        long expireMs = Math.max(1L, config.getWindowExpireMs());
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Long, Long>> it = inWindow.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Long> slot = it.next();
+            long age = now - slot.getValue();
+            if (age < expireMs) {
+                return expireMs - age;
+            }
+            it.remove();
+            logger.warn("窗口名额超时未归还，视为已被消费: snowflakeId={}, ageMs={}", slot.getKey(), age);
+        }
+        return expireMs;
+    }
+
+    /** 投递失败时按原标签放回，保持原有顺序。 */
+    private void requeue(Entry entry) {
+        lock.lock();
+        try {
+            inWindow.remove(entry.judgeInfo.getSnowflakeId());
+            queue.add(entry);
+            bySnowflake.put(entry.judgeInfo.getSnowflakeId(), entry);
+            pendingPerFlow.merge(entry.flow, 1, Integer::sum);
+            lastFinish.merge(entry.flow, entry.finishTag, Math::max);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Lane laneOf(JudgeInfo judgeInfo) {
+        if (judgeInfo.getRejudgeJobId() != null) {
+            return Lane.REJUDGE;
+        }
+        return judgeInfo.getCid() != null && judgeInfo.getCid() > 0 ? Lane.CONTEST : Lane.PRACTICE;
+    }
+
+    private int weightOf(Lane lane) {
+        int w = switch (lane) {
+            case CONTEST -> config.getContestWeight();
+            case PRACTICE -> config.getPracticeWeight();
+            case REJUDGE -> config.getRejudgeWeight();
+        };
+        return Math.max(1, w);
+    }
+}
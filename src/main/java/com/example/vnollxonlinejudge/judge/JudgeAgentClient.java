@@ -1,69 +1,457 @@
 package com.example.vnollxonlinejudge.judge;
 
+import com.example.vnollxonlinejudge.config.JudgeAgentConfig;
 import com.example.vnollxonlinejudge.model.result.RunResult;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
 /**
  * 多 judge-agent 客户端。
  * 通过 {@link JudgeAgentRouter} 选端点并做限流/熔断，全部评测业务逻辑下沉到 Agent。
+ * <p>
+ * 带进度回调的正式评测走 /judge/submit-stream：响应为 NDJSON，每跑完一个测试点一行
+ * {"type":"case",...}，最后一行 {"type":"result","result":{...}}。旧版 Agent 没有该接口（404）时
+ * 在同一端点许可内回退到普通的 /judge/submit。
+ * <p>
+ * 样例运行占用端点独立的样例许可（{@link JudgeAgentRouter#acquireSample}），不与正式评测争抢。
+ * <p>
+ * 故障转移：连接失败、超时、5xx、响应缺失等可重试错误换一个没试过的健康端点重发，最多
+ * failover-max-attempts 次，并受 {@link RetryBudget} 约束。正式评测请求带 requestId（提交的 snowflakeId），
+ * Agent 按它去重，同一提交重复到达同一 Agent 时直接复用进行中或刚完成的结果。
+ * 样例运行耗时超过近期 p95 仍未返回时，可在另一端点发一份对冲请求，取先成功的结果。
+ * <p>
+ * 请求体经 {@link JudgeCodec} 按端点心跳声明的能力编码（CBOR / gzip），旧版 Agent 仍收 JSON；响应始终是 JSON。
  */
 @Component
 public class JudgeAgentClient {
     private static final Logger logger = LoggerFactory.getLogger(JudgeAgentClient.class);
     private static final String STATUS_JUDGE_ERROR = "判题错误";
+    private static final String KIND_SUBMIT = "submit";
+    private static final String KIND_SAMPLE = "sample";
+    /** 评测时间线 traceId 请求头，Agent 原样回显并记入访问日志 */
+    private static final String HEADER_TRACE_ID = "X-Trace-Id";
+    /** 长连接通道上的操作名，对应 Agent 的 HTTP 接口 */
+    private static final String OP_SUBMIT = "submit";
+    private static final String OP_SUBMIT_STREAM = "submit-stream";
+    private static final String OP_SAMPLE = "run-sample";
 
     private final RestTemplate restTemplate;
     private final JudgeAgentRouter router;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper;
+    private final JudgeCodec judgeCodec;
+    private final JudgeMetrics judgeMetrics;
+    private final JudgeTimeline judgeTimeline;
+    private final AgentChannelRegistry channelRegistry;
+    private final JudgeAgentConfig config;
+    private final RetryBudget retryBudget;
+    private final LatencyWindow sampleLatency;
 
-    public JudgeAgentClient(RestTemplate restTemplate, JudgeAgentRouter router) {
+    public JudgeAgentClient(RestTemplate restTemplate, JudgeAgentRouter router,
+                            @Qualifier("judgeDispatchExecutor") ExecutorService executor,
+                            ObjectMapper objectMapper, JudgeCodec judgeCodec, JudgeMetrics judgeMetrics,
+                            JudgeTimeline judgeTimeline, AgentChannelRegistry channelRegistry,
+                            JudgeAgentConfig config) {
         this.restTemplate = restTemplate;
         this.router = router;
+        this.executor = executor;
+        this.objectMapper = objectMapper;
+        this.judgeCodec = judgeCodec;
+        this.judgeMetrics = judgeMetrics;
+        this.judgeTimeline = judgeTimeline;
+        this.channelRegistry = channelRegistry;
+        this.config = config;
+        this.retryBudget = new RetryBudget(config.getRetryBudgetRatio(), config.getRetryBudgetMax());
+        this.sampleLatency = new LatencyWindow(256, config.getHedgeMinSamples(), 0.95);
     }
 
     public RunResult submit(AgentSubmitRequest req) {
-        return call(req, true);
+        return submit(req, null);
+    }
+
+    /** 正式评测；onCase 非空时走流式接口，每跑完一个测试点回调一次（回调异常不影响评测）。 */
+    public RunResult submit(AgentSubmitRequest req, Consumer<JudgeCaseEvent> onCase) {
+        return withFailover("submissionId=" + req.getSubmissionId(), (tried, attempt) -> submitOnce(req, onCase, tried));
+    }
+
+    /**
+     * 在虚拟线程上执行 {@link #submit}：端点许可等待与 HTTP 往返都只占用廉价的虚拟线程，
+     * 不再占用 MQ 监听线程。异常已在 submit 内转换为"判题错误"结果，future 正常完成。
+     */
+    public CompletableFuture<RunResult> submitAsync(AgentSubmitRequest req) {
+        return submitAsync(req, null);
+    }
+
+    public CompletableFuture<RunResult> submitAsync(AgentSubmitRequest req, Consumer<JudgeCaseEvent> onCase) {
+        return CompletableFuture.supplyAsync(() -> submit(req, onCase), executor);
+    }
+
+    /** 样例运行：最多等待 queueTimeoutMs 拿样例许可，超时返回"判题错误"。 */
+    public RunResult runSample(AgentSampleRequest req, long queueTimeoutMs) {
+        return withFailover("sample", (tried, attempt) -> attempt == 1
+                ? sampleHedged(req, queueTimeoutMs, tried)
+                : sampleOnce(req, queueTimeoutMs, tried));
+    }
+
+    /** 一次尝试的结果；retryable 表示可以换端点重试。 */
+    private static final class Attempt {
+        final RunResult result;
+        final boolean retryable;
+
+        Attempt(RunResult result, boolean retryable) {
+            this.result = result;
+            this.retryable = retryable;
+        }
     }
 
-    public RunResult runSample(AgentSampleRequest req) {
-        return call(req, false);
+    @FunctionalInterface
+    private interface AttemptCall {
+        /** 返回 null 表示 tried 之外已没有可用端点。 */
+        Attempt run(List<JudgeAgentRouter.Endpoint> tried, int attempt) throws InterruptedException;
     }
 
-    private RunResult call(Object payload, boolean submit) {
-        JudgeAgentRouter.Endpoint ep = null;
+    private RunResult withFailover(String key, AttemptCall call) {
+        retryBudget.onRequest();
+        List<JudgeAgentRouter.Endpoint> tried = new ArrayList<>();
+        Attempt last = null;
         try {
-            ep = router.acquire();
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            String url = submit ? ep.getSubmitUrl() : ep.getSampleUrl();
-            ResponseEntity<RunResult> resp = restTemplate.exchange(
-                    url, HttpMethod.POST, new HttpEntity<>(payload, headers), RunResult.class);
-            if (!resp.getStatusCode().is2xxSuccessful() || resp.getBody() == null) {
-                router.recordFailure(ep);
-                logger.error("judge-agent 调用失败: status={}", resp.getStatusCode());
-                return errorResult("judge-agent 调用失败");
+            for (int attempt = 1; attempt <= Math.max(1, config.getFailoverMaxAttempts()); attempt++) {
+                if (attempt > 1) {
+                    if (!retryBudget.tryAcquire()) {
+                        logger.warn("judge-agent 重试预算已耗尽，不再重试: {}", key);
+                        break;
+                    }
+                    logger.warn("judge-agent 调用失败，换端点重试: {}, attempt={}, tried={}", key, attempt, tried.size());
+                }
+                Attempt result = call.run(tried, attempt);
+                if (result == null) {
+                    break;
+                }
+                last = result;
+                if (!result.retryable) {
+                    return result.result;
+                }
             }
-            router.recordSuccess(ep);
-            return resp.getBody();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             return errorResult("评测被中断");
-        } catch (Exception e) {
-            router.recordFailure(ep);
-            logger.error("judge-agent 调用异常: {}", e.getMessage(), e);
-            return errorResult("judge-agent 调用异常: " + e.getMessage());
+        }
+        return last != null ? last.result : errorResult("没有可用的 judge-agent 端点");
+    }
+
+    private Attempt submitOnce(AgentSubmitRequest payload, Consumer<JudgeCaseEvent> onCase,
+                               List<JudgeAgentRouter.Endpoint> tried) throws InterruptedException {
+        long waitStartNs = System.nanoTime();
+        JudgeAgentRouter.Endpoint ep = router.acquire(tried);
+        long waitNs = System.nanoTime() - waitStartNs;
+        judgeMetrics.agentWait(KIND_SUBMIT, ep, waitNs);
+        if (ep == null) {
+            return null;
+        }
+        tried.add(ep);
+        judgeTimeline.record(payload.getSubmissionId(), payload.getTraceId(), "agent_acquired",
+                "agent=" + ep.getBaseUrl() + ", waitMs=" + waitNs / 1_000_000L);
+        long startNs = System.nanoTime();
+        Attempt attempt = null;
+        try {
+            attempt = callSubmit(ep, payload, onCase, startNs);
+            return attempt;
         } finally {
             router.release(ep);
+            long execNs = System.nanoTime() - startNs;
+            judgeMetrics.agentExec(KIND_SUBMIT, ep, payload.getLanguage(), verdictOf(attempt), execNs);
+            judgeTimeline.record(payload.getSubmissionId(), payload.getTraceId(), "agent_done",
+                    "agent=" + ep.getBaseUrl() + ", verdict=" + verdictOf(attempt) + ", execMs=" + execNs / 1_000_000L);
+        }
+    }
+
+    private Attempt callSubmit(JudgeAgentRouter.Endpoint ep, AgentSubmitRequest payload, Consumer<JudgeCaseEvent> onCase,
+                               long startNs) {
+        try {
+            AgentChannel channel = channelRegistry.channelFor(ep);
+            if (channel != null) {
+                RunResult result = channel.call(onCase != null ? OP_SUBMIT_STREAM : OP_SUBMIT, payload,
+                        payload.getTraceId(), onCase, config.getChannelCallTimeoutMs());
+                if (result == null) {
+                    router.recordFailure(ep);
+                    logger.error("judge-agent 评测通道未返回结果: url={}", ep.getBaseUrl());
+                    return new Attempt(errorResult("judge-agent 调用失败"), true);
+                }
+                router.recordSuccess(ep);
+                router.recordLatency(ep, (System.nanoTime() - startNs) / 1_000_000L);
+                return new Attempt(result, false);
+            }
+            JudgeCodec.Encoded body = judgeCodec.encodeForAgent(payload, ep);
+            if (onCase != null) {
+                try {
+                    RunResult streamed = stream(ep.getSubmitStreamUrl(), body, payload.getTraceId(), onCase);
+                    if (streamed == null) {
+                        router.recordFailure(ep);
+                        logger.error("judge-agent 流式评测未返回最终结果: url={}", ep.getSubmitStreamUrl());
+                        return new Attempt(errorResult("judge-agent 流式评测未返回最终结果"), true);
+                    }
+                    router.recordSuccess(ep);
+                    router.recordLatency(ep, (System.nanoTime() - startNs) / 1_000_000L);
+                    return new Attempt(streamed, false);
+                } catch (HttpClientErrorException.NotFound e) {
+                    logger.warn("judge-agent 不支持流式评测，回退普通评测: {}", ep.getBaseUrl());
+                }
+            }
+            RunResult result = post(ep.getSubmitUrl(), body, payload.getTraceId());
+            if (result == null) {
+                router.recordFailure(ep);
+                logger.error("judge-agent 调用失败: 响应体为空, url={}", ep.getSubmitUrl());
+                return new Attempt(errorResult("judge-agent 调用失败"), true);
+            }
+            router.recordSuccess(ep);
+            // 只用正式评测的耗时喂调度权重，样例运行用例少、耗时口径不同
+            router.recordLatency(ep, (System.nanoTime() - startNs) / 1_000_000L);
+            return new Attempt(result, false);
+        } catch (Exception e) {
+            return failed(ep, e);
+        }
+    }
+
+    private Attempt sampleOnce(AgentSampleRequest req, long queueTimeoutMs,
+                               List<JudgeAgentRouter.Endpoint> tried) throws InterruptedException {
+        JudgeAgentRouter.Endpoint ep = acquireSampleTimed(queueTimeoutMs, tried);
+        if (ep == null) {
+            if (!tried.isEmpty()) {
+                return null;
+            }
+            logger.warn("样例运行等待 judge-agent 许可超时: {}ms", queueTimeoutMs);
+            return new Attempt(errorResult("评测机繁忙，样例运行排队超时，请稍后重试"), false);
+        }
+        tried.add(ep);
+        return postSample(ep, req);
+    }
+
+    /**
+     * 首次样例尝试：超过近期 p95 仍未返回时，在另一个有空闲样例许可的端点上发对冲请求，
+     * 取先成功的一份；对冲占用一次重试预算，没有空闲端点或预算时只等原请求。
+     */
+    private Attempt sampleHedged(AgentSampleRequest req, long queueTimeoutMs,
+                                 List<JudgeAgentRouter.Endpoint> tried) throws InterruptedException {
+        long p95 = config.isHedgeSampleRuns() ? sampleLatency.quantileMs() : -1L;
+        if (p95 <= 0) {
+            return sampleOnce(req, queueTimeoutMs, tried);
+        }
+        JudgeAgentRouter.Endpoint ep = acquireSampleTimed(queueTimeoutMs, tried);
+        if (ep == null) {
+            logger.warn("样例运行等待 judge-agent 许可超时: {}ms", queueTimeoutMs);
+            return new Attempt(errorResult("评测机繁忙，样例运行排队超时，请稍后重试"), false);
+        }
+        tried.add(ep);
+        CompletableFuture<Attempt> primary = CompletableFuture.supplyAsync(() -> postSample(ep, req), executor);
+        try {
+            return primary.get(p95, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 进入对冲
+        } catch (ExecutionException e) {
+            return new Attempt(errorResult("judge-agent 调用异常: " + e.getCause()), true);
+        }
+        JudgeAgentRouter.Endpoint hedgeEp = router.acquireSample(0, tried);
+        if (hedgeEp == null) {
+            return primary.join();
+        }
+        if (!retryBudget.tryAcquire()) {
+            router.releaseSample(hedgeEp);
+            return primary.join();
+        }
+        tried.add(hedgeEp);
+        logger.info("样例运行超过 p95={}ms，对冲到 {}", p95, hedgeEp.getBaseUrl());
+        CompletableFuture<Attempt> hedge = CompletableFuture.supplyAsync(() -> postSample(hedgeEp, req), executor);
+        return firstSuccess(primary, hedge);
+    }
+
+    private JudgeAgentRouter.Endpoint acquireSampleTimed(long queueTimeoutMs, List<JudgeAgentRouter.Endpoint> tried)
+            throws InterruptedException {
+        long waitStartNs = System.nanoTime();
+        JudgeAgentRouter.Endpoint ep = router.acquireSample(queueTimeoutMs, tried);
+        judgeMetrics.agentWait(KIND_SAMPLE, ep, System.nanoTime() - waitStartNs);
+        return ep;
+    }
+
+    /** 两份请求中先成功的一份；都失败时取后完成的那份。落选的请求照常跑完并归还许可。 */
+    private static Attempt firstSuccess(CompletableFuture<Attempt> a, CompletableFuture<Attempt> b) {
+        CompletableFuture<Attempt> winner = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(2);
+        BiConsumer<Attempt, Throwable> onDone = (attempt, ex) -> {
+            if (attempt != null && !attempt.retryable) {
+                winner.complete(attempt);
+            } else if (remaining.decrementAndGet() == 0) {
+                winner.complete(attempt);
+            }
+        };
+        a.whenComplete(onDone);
+        b.whenComplete(onDone);
+        return winner.join();
+    }
+
+    private Attempt postSample(JudgeAgentRouter.Endpoint ep, AgentSampleRequest req) {
+        long startNs = System.nanoTime();
+        Attempt attempt = null;
+        try {
+            attempt = callSample(ep, req, startNs);
+            return attempt;
+        } finally {
+            router.releaseSample(ep);
+            judgeMetrics.agentExec(KIND_SAMPLE, ep, req.getLanguage(), verdictOf(attempt), System.nanoTime() - startNs);
+        }
+    }
+
+    private Attempt callSample(JudgeAgentRouter.Endpoint ep, AgentSampleRequest req, long startNs) {
+        try {
+            AgentChannel channel = channelRegistry.channelFor(ep);
+            RunResult result = channel != null
+                    ? channel.call(OP_SAMPLE, req, null, null, config.getChannelCallTimeoutMs())
+                    : post(ep.getSampleUrl(), judgeCodec.encodeForAgent(req, ep), null);
+            if (result == null) {
+                router.recordFailure(ep);
+                logger.error("judge-agent 样例运行失败: 响应体为空, url={}", ep.getSampleUrl());
+                return new Attempt(errorResult("judge-agent 调用失败"), true);
+            }
+            router.recordSuccess(ep);
+            sampleLatency.record((System.nanoTime() - startNs) / 1_000_000L);
+            return new Attempt(result, false);
+        } catch (Exception e) {
+            return failed(ep, e);
+        }
+    }
+
+    private static String verdictOf(Attempt attempt) {
+        return attempt == null ? STATUS_JUDGE_ERROR : attempt.result.getStatus();
+    }
+
+    /** 连接 / 读超时（ResourceAccessException）与 5xx 可换端点重试，其余异常直接返回判题错误。 */
+    private Attempt failed(JudgeAgentRouter.Endpoint ep, Exception e) {
+        BoundedJsonInputStream.LimitExceededException tooLarge = limitExceeded(e);
+        if (tooLarge != null) {
+            // 输出过大是用户程序造成的，Agent 本身正常：不退让并发上限、不计入熔断；换端点也是同样大的输出，不重试
+            router.recordSuccess(ep);
+            logger.error("judge-agent 响应过大: url={}, {}", ep.getBaseUrl(), tooLarge.getMessage());
+            return new Attempt(errorResult("judge-agent 响应过大，已放弃"), false);
+        }
+        router.recordFailure(ep);
+        boolean retryable = e instanceof ResourceAccessException || e instanceof HttpServerErrorException
+                || e instanceof AgentChannel.CallException ce && ce.isRetryable();
+        logger.error("judge-agent 调用异常: url={}, retryable={}, {}", ep.getBaseUrl(), retryable, e.getMessage(), e);
+        return new Attempt(errorResult("judge-agent 调用异常: " + e.getMessage()), retryable);
+    }
+
+    /** HTTP 路径包在 ResourceAccessException 里，长连接路径包在 AgentChannel.CallException 里 */
+    private static BoundedJsonInputStream.LimitExceededException limitExceeded(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof BoundedJsonInputStream.LimitExceededException limit) {
+                return limit;
+            }
+        }
+        return null;
+    }
+
+    /** 非 2xx 由 RestTemplate 的错误处理抛出；响应体经 {@link BoundedJsonInputStream} 限长后解析，空响应返回 null。 */
+    private RunResult post(String url, JudgeCodec.Encoded body, String traceId) {
+        return restTemplate.execute(url, HttpMethod.POST,
+                request -> {
+                    applyHeaders(request.getHeaders(), body, traceId);
+                    request.getBody().write(body.getBody());
+                },
+                this::readResult);
+    }
+
+    private RunResult readResult(ClientHttpResponse response) throws IOException {
+        BoundedJsonInputStream in = bounded(response);
+        try (JsonParser parser = objectMapper.createParser(in)) {
+            if (parser.nextToken() == null) {
+                return null;
+            }
+            return markTruncated(objectMapper.readValue(parser, RunResult.class), in);
         }
     }
 
+    private BoundedJsonInputStream bounded(ClientHttpResponse response) throws IOException {
+        return new BoundedJsonInputStream(response.getBody(), config.getResponseMaxBytes(),
+                config.getResponseOutputMaxBytes(), config.getResponseFieldMaxBytes());
+    }
+
+    private static RunResult markTruncated(RunResult result, BoundedJsonInputStream in) {
+        if (result != null && in.getTruncatedFields() > 0) {
+            result.setTruncated(true);
+        }
+        return result;
+    }
+
+    private static void applyHeaders(HttpHeaders headers, JudgeCodec.Encoded body, String traceId) {
+        headers.setContentType(MediaType.parseMediaType(body.getContentType()));
+        if (body.getContentEncoding() != null) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, body.getContentEncoding());
+        }
+        if (traceId != null) {
+            headers.set(HEADER_TRACE_ID, traceId);
+        }
+    }
+
+    /** 逐行读取 NDJSON：case 行回调进度，result 行即最终结果；读完仍无 result 行返回 null。 */
+    private RunResult stream(String url, JudgeCodec.Encoded body, String traceId, Consumer<JudgeCaseEvent> onCase) {
+        return restTemplate.execute(url, HttpMethod.POST,
+                request -> {
+                    applyHeaders(request.getHeaders(), body, traceId);
+                    request.getBody().write(body.getBody());
+                },
+                response -> {
+                    BoundedJsonInputStream in = bounded(response);
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            if (line.isBlank()) {
+                                continue;
+                            }
+                            JsonNode node = objectMapper.readTree(line);
+                            String type = node.path("type").asText();
+                            if ("result".equals(type)) {
+                                return markTruncated(objectMapper.treeToValue(node.get("result"), RunResult.class), in);
+                            }
+                            if ("case".equals(type)) {
+                                try {
+                                    onCase.accept(objectMapper.treeToValue(node, JudgeCaseEvent.class));
+                                } catch (Exception e) {
+                                    logger.warn("处理评测进度失败: {}", e.getMessage());
+                                }
+                            }
+                        }
+                        return null;
+                    }
+                });
+    }
+
     private RunResult errorResult(String stderr) {
         RunResult r = new RunResult();
         r.setStatus(STATUS_JUDGE_ERROR);
@@ -4,98 +4,380 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.Semaphore;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * 多 judge-agent 节点加权限流路由。每个 endpoint 持有 Semaphore，
- * 评测进来按 capacity 从大到小尝试占用，全满则阻塞等容量最大的端点释放。
+ * 多 judge-agent 节点最小负载调度。所有端点共享一把锁和一个等待条件：
+ * 每次占用挑选 (在途数 + 1) / limit × 延迟权重 最小的端点，延迟权重取该端点
+ * 评测耗时 EWMA 相对所有端点均值的比值，慢机器同等负载下分到的评测更少。
+ * 全满时在共享条件上排队，任意端点释放都会唤醒全部等待者：各等待者排除的端点不同（重试换机），
+ * 只唤醒一个可能恰好排除了刚释放的端点而继续睡眠，其余可用的等待者就错过了这次释放。
  * 连续失败达到阈值后熔断该端点一段时间。
+ * <p>
+ * 每个端点的并发上限 limit 是自适应的（AIMD），capacity 只是它的上界：上限被用满且延迟正常时每完成
+ * 一整窗评测加 1；短期延迟 EWMA 超过长期基线的 latency-tolerance 倍、Agent 心跳上报空闲内存不足时
+ * 乘以 backoff-ratio，调用失败乘以 {@value #FAILURE_BACKOFF_RATIO}；两次退让之间至少间隔一个评测耗时，
+ * 避免同一波慢请求把上限连续砍到底。
+ * <p>
+ * 端点集合可在运行期变化：Agent 通过心跳注册 / 更新 capacity，下线或心跳超时时先摘流（draining），
+ * 在途评测全部归还后再从列表移除。端点列表为不可变快照，变更时在锁内整体替换。
+ * 管理员手动摘流的地址单独记录（端点移除后也保留），心跳既不取消摘流也不会重新注册，
+ * 只有 {@link #undrain} 或 Agent 自己注销（{@link #deregister}）才清除，用于停机维护。
+ * <p>
+ * 样例运行使用每个端点独立的 sample 许可池（{@link #acquireSample}），与正式评测的许可互不占用，
+ * 各自有等待条件：样例洪峰不会挤占正式评测，正式评测排满时样例也照样有专属名额。
  */
 public class JudgeAgentRouter {
     private static final Logger log = LoggerFactory.getLogger(JudgeAgentRouter.class);
     private static final int FAILURE_THRESHOLD = 3;
     private static final long OPEN_DURATION_MS = 30_000L;
+    /** 延迟 EWMA 平滑系数，越大越偏向最近的样本。 */
+    private static final double LATENCY_ALPHA = 0.2;
+    /** 长期延迟基线的平滑系数，远小于 LATENCY_ALPHA，只跟随持续的变化。 */
+    private static final double BASELINE_ALPHA = 0.02;
+    private static final double FAILURE_BACKOFF_RATIO = 0.75;
+    private static final long MIN_BACKOFF_INTERVAL_MS = 1000L;
+    private volatile boolean adaptive = true;
+    private volatile double latencyTolerance = 2.0;
+    private volatile double backoffRatio = 0.9;
+    private volatile long minFreeMemoryMb = 200L;
     private final AtomicInteger requestSeq = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition permitReleased = lock.newCondition();
+    private final Condition samplePermitReleased = lock.newCondition();
+    /** 管理员手动摘流的地址 */
+    private final Set<String> adminDrained = ConcurrentHashMap.newKeySet();
 
     public static final class Endpoint {
         private final String baseUrl;
         private final String submitUrl;
+        private final String submitStreamUrl;
         private final String sampleUrl;
-        private final int capacity;
-        private final Semaphore semaphore;
+        /** 是否由心跳动态注册（yml 静态端点不会因心跳超时被摘除）。 */
+        private final boolean dynamic;
+        private volatile int capacity;
+        /** 自适应并发上限，取值 [1, capacity]；关闭自适应时恒等于 capacity。在端点自身的监视器内修改。 */
+        private volatile double limit;
+        private double baselineLatencyMs;
+        private long lastBackoffMs;
+        /** 在途评测数，仅在 router 锁内修改。 */
+        private volatile int inFlight;
+        /** 样例运行专属许可数与在途数，与正式评测分开计数。 */
+        private volatile int sampleCapacity;
+        private volatile int sampleInFlight;
+        /** 摘流中：不再分配新评测，在途归零后移除。 */
+        private volatile boolean draining;
+        private volatile long lastHeartbeatMs;
+        /** Agent 心跳上报的自身负载、空闲内存与已缓存的题目数据版本。 */
+        private volatile int reportedInFlight;
+        private volatile long freeMemoryMb = -1L;
+        private volatile Map<Long, String> dataVersions = Map.of();
+        /** Agent 心跳声明支持的请求体编码（cbor / gzip），静态配置且未心跳的端点只用 JSON */
+        private volatile Set<String> codecs = Set.of();
+        /** 评测耗时 EWMA（毫秒），0 表示尚无样本。 */
+        private volatile double latencyEwmaMs;
         private final AtomicInteger consecutiveFailures = new AtomicInteger();
         private volatile long openUntilMs = 0L;
 
-        public Endpoint(String baseUrl, int capacity) {
+        public Endpoint(String baseUrl, int capacity, int sampleCapacity) {
+            this(baseUrl, capacity, sampleCapacity, false);
+        }
+
+        public Endpoint(String baseUrl, int capacity, int sampleCapacity, boolean dynamic) {
             this.baseUrl = baseUrl;
+            this.dynamic = dynamic;
             this.submitUrl = baseUrl + "/judge/submit";
+            this.submitStreamUrl = baseUrl + "/judge/submit-stream";
             this.sampleUrl = baseUrl + "/judge/run-sample";
             this.capacity = capacity;
-            this.semaphore = new Semaphore(capacity, true);
+            this.limit = capacity;
+            this.sampleCapacity = sampleCapacity;
         }
 
         public String getBaseUrl() { return baseUrl; }
         public String getSubmitUrl() { return submitUrl; }
+        public String getSubmitStreamUrl() { return submitStreamUrl; }
         public String getSampleUrl() { return sampleUrl; }
         public int getCapacity() { return capacity; }
-        public int availablePermits() { return semaphore.availablePermits(); }
+        public int getInFlight() { return inFlight; }
+        public int getLimit() { return Math.max(1, Math.min(capacity, (int) limit)); }
+        public int availablePermits() { return getLimit() - inFlight; }
+        public int getSampleCapacity() { return sampleCapacity; }
+        public int getSampleInFlight() { return sampleInFlight; }
+        public double getLatencyEwmaMs() { return latencyEwmaMs; }
         public boolean isHealthy() { return openUntilMs <= System.currentTimeMillis(); }
+        public boolean isDynamic() { return dynamic; }
+        public boolean isDraining() { return draining; }
+        public long getLastHeartbeatMs() { return lastHeartbeatMs; }
+        public int getReportedInFlight() { return reportedInFlight; }
+        public long getFreeMemoryMb() { return freeMemoryMb; }
+        public Map<Long, String> getDataVersions() { return dataVersions; }
+        public Set<String> getCodecs() { return codecs; }
+        public boolean supportsCodec(String codec) { return codecs.contains(codec); }
     }
 
-    private final List<Endpoint> endpoints;
+    private volatile List<Endpoint> endpoints;
 
     public JudgeAgentRouter(List<Endpoint> endpoints) {
-        if (endpoints == null || endpoints.isEmpty()) {
-            throw new IllegalArgumentException("至少需要配置一个 judge-agent 端点");
-        }
-        List<Endpoint> sorted = new ArrayList<>(endpoints);
+        List<Endpoint> sorted = endpoints == null ? new ArrayList<>() : new ArrayList<>(endpoints);
         sorted.sort(Comparator.comparingInt(Endpoint::getCapacity).reversed());
         this.endpoints = List.copyOf(sorted);
+        if (this.endpoints.isEmpty()) {
+            log.warn("未配置静态 judge-agent 端点，评测将等待 Agent 通过心跳注册");
+        }
         for (Endpoint ep : this.endpoints) {
-            log.info("注册 judge-agent 端点: {} capacity={}", ep.baseUrl, ep.capacity);
+            log.info("注册 judge-agent 端点: {} capacity={} sampleCapacity={}", ep.baseUrl, ep.capacity, ep.sampleCapacity);
         }
     }
 
+    /** 自适应并发上限参数；enabled=false 时 limit 恒等于 capacity。 */
+    public void configureAdaptiveLimit(boolean enabled, double latencyTolerance, double backoffRatio, long minFreeMemoryMb) {
+        this.adaptive = enabled;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.minFreeMemoryMb = minFreeMemoryMb;
+        log.info("judge-agent 自适应并发上限: enabled={}, latencyTolerance={}, backoffRatio={}, minFreeMemoryMb={}",
+                enabled, latencyTolerance, backoffRatio, minFreeMemoryMb);
+    }
+
     /**
-     * 占用一个端点许可。优先健康且容量大的端点；全部不健康时回退占用熔断中的端点；
-     * 全满时阻塞等待容量最大的端点释放。调用方必须在 finally 中调用 release。
+     * 占用一个端点许可。优先负载最低的健康端点；健康端点全满而熔断端点有空位时回退占用熔断端点；
+     * 全满时等待任意端点释放。调用方必须在 finally 中调用 release。
      */
     public Endpoint acquire() throws InterruptedException {
-        Endpoint primary = endpoints.get(0);
-        Endpoint secondary = endpoints.size() > 1 ? endpoints.get(1) : null;
-        int seq = requestSeq.getAndIncrement();
-        boolean preferSecondary = seq % 2 == 1
-                && secondary != null
-                && primary.availablePermits() < primary.getCapacity();
+        return acquire(List.of());
+    }
+
+    /**
+     * 换端点重试用：只在 excluded 之外的健康端点中挑选，不回退到熔断端点；
+     * 这样的端点一个都没有（而不只是暂时满）时立即返回 null。excluded 为空时等同 {@link #acquire()}。
+     */
+    public Endpoint acquire(Collection<Endpoint> excluded) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Endpoint ep;
+            while ((ep = pickLocked(excluded)) == null) {
+                if (!excluded.isEmpty() && !hasCandidateLocked(excluded, false)) {
+                    return null;
+                }
+                log.debug("所有 judge-agent 端点已满，等待任意端点释放");
+                permitReleased.await();
+            }
+            ep.inFlight++;
+            return ep;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean hasCandidateLocked(Collection<Endpoint> excluded, boolean sample) {
+        for (Endpoint ep : endpoints) {
+            if (!ep.draining && ep.isHealthy() && !excluded.contains(ep) && (!sample || ep.sampleCapacity > 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** 在锁内挑选端点，无空位返回 null。 */
+    private Endpoint pickLocked(Collection<Endpoint> excluded) {
+        List<Endpoint> endpoints = this.endpoints;
+        if (endpoints.isEmpty()) {
+            return null;
+        }
+        double meanLatency = meanLatencyMs(endpoints);
+        // 轮转起点：得分相同的端点之间轮流分配，避免总落在列表靠前的端点上
+        int n = endpoints.size();
+        int offset = Math.floorMod(requestSeq.getAndIncrement(), n);
+        Endpoint best = null;
+        double bestScore = Double.MAX_VALUE;
+        Endpoint fallback = null;
+        double fallbackScore = Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            Endpoint ep = endpoints.get((offset + i) % n);
+            if (ep.draining || ep.inFlight >= ep.getLimit() || excluded.contains(ep)) continue;
+            double score = score(ep, meanLatency);
+            if (ep.isHealthy()) {
+                if (score < bestScore) {
+                    best = ep;
+                    bestScore = score;
+                }
+            } else if (score < fallbackScore) {
+                fallback = ep;
+                fallbackScore = score;
+            }
+        }
+        if (best == null && fallback != null && excluded.isEmpty()) {
+            log.warn("所有健康 judge-agent 端点不可用，回退到熔断端点: {}", fallback.baseUrl);
+            return fallback;
+        }
+        return best;
+    }
+
+    /**
+     * 占用一个端点的样例许可，最多等待 timeoutMs；超时返回 null。只挑健康、未摘流的端点，
+     * 按 (样例在途 + 1) / 样例许可数 取最小。非 null 时调用方必须在 finally 中调用 releaseSample。
+     */
+    public Endpoint acquireSample(long timeoutMs) throws InterruptedException {
+        return acquireSample(timeoutMs, List.of());
+    }
 
-        if (preferSecondary) {
-            if (secondary.isHealthy() && secondary.semaphore.tryAcquire()) {
-                return secondary;
+    /** 同 {@link #acquireSample(long)}，跳过 excluded 中的端点；excluded 之外没有可用端点时立即返回 null。 */
+    public Endpoint acquireSample(long timeoutMs, Collection<Endpoint> excluded) throws InterruptedException {
+        long remainingNs = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        lock.lockInterruptibly();
+        try {
+            Endpoint ep;
+            while ((ep = pickSampleLocked(excluded)) == null) {
+                if (remainingNs <= 0 || (!excluded.isEmpty() && !hasCandidateLocked(excluded, true))) {
+                    return null;
+                }
+                remainingNs = samplePermitReleased.awaitNanos(remainingNs);
             }
-            if (primary.isHealthy() && primary.semaphore.tryAcquire()) {
-                return primary;
+            ep.sampleInFlight++;
+            return ep;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Endpoint pickSampleLocked(Collection<Endpoint> excluded) {
+        Endpoint best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (Endpoint ep : endpoints) {
+            if (ep.draining || !ep.isHealthy() || ep.sampleInFlight >= ep.sampleCapacity || excluded.contains(ep)) continue;
+            double score = (ep.sampleInFlight + 1) / (double) ep.sampleCapacity;
+            if (score < bestScore) {
+                best = ep;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    public void releaseSample(Endpoint ep) {
+        if (ep == null) return;
+        lock.lock();
+        try {
+            if (ep.sampleInFlight > 0) {
+                ep.sampleInFlight--;
+            }
+            if (ep.draining && ep.inFlight == 0 && ep.sampleInFlight == 0) {
+                removeLocked(ep);
             }
-        } else if (primary.isHealthy() && primary.semaphore.tryAcquire()) {
-            return primary;
+            samplePermitReleased.signalAll();
+        } finally {
+            lock.unlock();
         }
-        if (secondary != null && secondary.isHealthy() && secondary.semaphore.tryAcquire()) {
-            return secondary;
+    }
+
+    /** 健康、未摘流端点上正式评测的占用率（在途 / 当前并发上限），无可用端点时视为满载。 */
+    public double submissionLoad() {
+        int limit = 0;
+        int inFlight = 0;
+        for (Endpoint ep : endpoints) {
+            if (!ep.draining && ep.isHealthy()) {
+                limit += ep.getLimit();
+                inFlight += ep.inFlight;
+            }
         }
-        if (primary.semaphore.tryAcquire()) {
-            log.warn("所有健康 judge-agent 端点不可用，回退到熔断主端点: {}", primary.baseUrl);
-            return primary;
+        return limit == 0 ? 1.0 : inFlight / (double) limit;
+    }
+
+    private static double score(Endpoint ep, double meanLatency) {
+        double load = (ep.inFlight + 1) / (double) ep.getLimit();
+        double latency = ep.latencyEwmaMs;
+        if (latency <= 0 || meanLatency <= 0) {
+            return load;
         }
-        log.debug("主 judge-agent 端点已满，阻塞等待: {}", primary.baseUrl);
-        primary.semaphore.acquire();
-        return primary;
+        return load * (latency / meanLatency);
+    }
+
+    private static double meanLatencyMs(List<Endpoint> endpoints) {
+        double sum = 0;
+        int cnt = 0;
+        for (Endpoint ep : endpoints) {
+            if (ep.latencyEwmaMs > 0) {
+                sum += ep.latencyEwmaMs;
+                cnt++;
+            }
+        }
+        return cnt == 0 ? 0 : sum / cnt;
     }
 
     public void release(Endpoint ep) {
-        if (ep != null) {
-            ep.semaphore.release();
+        if (ep == null) return;
+        lock.lock();
+        try {
+            if (ep.inFlight > 0) {
+                ep.inFlight--;
+            }
+            if (ep.draining && ep.inFlight == 0 && ep.sampleInFlight == 0) {
+                removeLocked(ep);
+            }
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 记录一次评测耗时，更新端点延迟 EWMA，并据此调整自适应并发上限。 */
+    public void recordLatency(Endpoint ep, long elapsedMs) {
+        if (ep == null || elapsedMs < 0) return;
+        double prev = ep.latencyEwmaMs;
+        ep.latencyEwmaMs = prev <= 0 ? elapsedMs : prev + LATENCY_ALPHA * (elapsedMs - prev);
+        if (adaptive) {
+            adaptOnLatency(ep, elapsedMs);
+        }
+    }
+
+    private void adaptOnLatency(Endpoint ep, long elapsedMs) {
+        boolean grew = false;
+        synchronized (ep) {
+            double baseline = ep.baselineLatencyMs;
+            ep.baselineLatencyMs = baseline <= 0 ? elapsedMs : baseline + BASELINE_ALPHA * (elapsedMs - baseline);
+            if (baseline > 0 && ep.latencyEwmaMs > latencyTolerance * baseline) {
+                backoff(ep, backoffRatio, "延迟升高");
+            } else if (ep.inFlight >= ep.getLimit() && ep.limit < ep.capacity) {
+                // 只有上限真被用满时才加，空闲端点的上限不会无意义地涨到 capacity
+                int before = ep.getLimit();
+                ep.limit = Math.min(ep.capacity, ep.limit + 1.0 / ep.limit);
+                grew = ep.getLimit() > before;
+            }
+        }
+        if (grew) {
+            log.debug("judge-agent 并发上限上调: {} -> {}", ep.baseUrl, ep.getLimit());
+            lock.lock();
+            try {
+                permitReleased.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** 乘性退让；两次退让间隔不足一个评测耗时（至少 1 秒）时忽略。 */
+    private void backoff(Endpoint ep, double ratio, String reason) {
+        synchronized (ep) {
+            long now = System.currentTimeMillis();
+            if (now - ep.lastBackoffMs < Math.max(MIN_BACKOFF_INTERVAL_MS, (long) ep.latencyEwmaMs)) {
+                return;
+            }
+            int before = ep.getLimit();
+            ep.limit = Math.max(1.0, Math.min(ep.limit, ep.capacity) * ratio);
+            ep.lastBackoffMs = now;
+            if (ep.getLimit() != before) {
+                log.info("judge-agent 并发上限下调（{}）: {} {} -> {}", reason, ep.baseUrl, before, ep.getLimit());
+            }
         }
     }
 
@@ -112,6 +394,9 @@ public class JudgeAgentRouter {
 
     public void recordFailure(Endpoint ep) {
         if (ep == null) return;
+        if (adaptive) {
+            backoff(ep, FAILURE_BACKOFF_RATIO, "调用失败");
+        }
         int n = ep.consecutiveFailures.incrementAndGet();
         if (n >= FAILURE_THRESHOLD && ep.openUntilMs <= System.currentTimeMillis()) {
             ep.openUntilMs = System.currentTimeMillis() + OPEN_DURATION_MS;
@@ -119,7 +404,177 @@ public class JudgeAgentRouter {
         }
     }
 
+    /**
+     * 处理 Agent 心跳：未知地址注册为新的动态端点，已知地址更新 capacity 与上报状态；
+     * 摘流中的端点重新心跳即恢复接单（管理员摘流除外，返回 null 表示未注册）。capacity 变化后唤醒等待者重新挑选。
+     */
+    public Endpoint heartbeat(String baseUrl, int capacity, int sampleCapacity, int reportedInFlight, long freeMemoryMb,
+                              Map<Long, String> dataVersions, Collection<String> codecs) {
+        lock.lock();
+        try {
+            Endpoint ep = findLocked(baseUrl);
+            if (ep == null && adminDrained.contains(baseUrl)) {
+                return null; // 管理员摘流中，心跳不重新注册
+            }
+            if (ep == null) {
+                ep = new Endpoint(baseUrl, capacity, sampleCapacity, true);
+                List<Endpoint> next = new ArrayList<>(endpoints);
+                next.add(ep);
+                next.sort(Comparator.comparingInt(Endpoint::getCapacity).reversed());
+                endpoints = List.copyOf(next);
+                log.info("judge-agent 动态注册: {} capacity={}", baseUrl, capacity);
+            } else {
+                if (ep.capacity != capacity) {
+                    log.info("judge-agent capacity 变更: {} {} -> {}", baseUrl, ep.capacity, capacity);
+                    synchronized (ep) {
+                        ep.capacity = capacity;
+                        if (!adaptive || ep.limit > capacity) {
+                            ep.limit = capacity;
+                        }
+                    }
+                }
+                ep.sampleCapacity = sampleCapacity;
+                if (ep.draining && !adminDrained.contains(baseUrl)) {
+                    log.info("judge-agent 重新上线，取消摘流: {}", baseUrl);
+                    ep.draining = false;
+                }
+            }
+            ep.lastHeartbeatMs = System.currentTimeMillis();
+            ep.reportedInFlight = reportedInFlight;
+            ep.freeMemoryMb = freeMemoryMb;
+            ep.dataVersions = dataVersions == null ? Map.of() : Map.copyOf(dataVersions);
+            ep.codecs = codecs == null ? Set.of() : Set.copyOf(codecs);
+            if (adaptive && minFreeMemoryMb > 0 && freeMemoryMb >= 0 && freeMemoryMb < minFreeMemoryMb) {
+                backoff(ep, backoffRatio, "空闲内存 " + freeMemoryMb + "MB");
+            }
+            permitReleased.signalAll();
+            samplePermitReleased.signalAll();
+            return ep;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 摘流：不再分配新评测，在途评测全部归还后移除。返回端点是否存在。 */
+    public boolean drain(String baseUrl) {
+        lock.lock();
+        try {
+            Endpoint ep = findLocked(baseUrl);
+            if (ep == null) {
+                return false;
+            }
+            if (!ep.draining) {
+                ep.draining = true;
+                log.info("judge-agent 开始摘流: {} inFlight={}", baseUrl, ep.inFlight);
+            }
+            if (ep.inFlight == 0 && ep.sampleInFlight == 0) {
+                removeLocked(ep);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 管理员摘流：同 {@link #drain}，但之后的心跳不会取消摘流或重新注册。返回端点是否存在。 */
+    public boolean adminDrain(String baseUrl) {
+        lock.lock();
+        try {
+            if (findLocked(baseUrl) == null) {
+                return false;
+            }
+            adminDrained.add(baseUrl);
+            log.info("judge-agent 管理员摘流: {}", baseUrl);
+            return drain(baseUrl);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 取消管理员摘流：端点还在时立即恢复接单，已移除的等下次心跳重新注册。返回是否有摘流可取消。 */
+    public boolean undrain(String baseUrl) {
+        lock.lock();
+        try {
+            boolean wasDrained = adminDrained.remove(baseUrl);
+            Endpoint ep = findLocked(baseUrl);
+            if (ep != null && ep.draining) {
+                ep.draining = false;
+                permitReleased.signalAll();
+                samplePermitReleased.signalAll();
+                log.info("judge-agent 取消摘流: {}", baseUrl);
+                return true;
+            }
+            return wasDrained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Agent 自己注销（停机）：清除管理员摘流标记并摘流，重启后的心跳正常注册。 */
+    public boolean deregister(String baseUrl) {
+        adminDrained.remove(baseUrl);
+        return drain(baseUrl);
+    }
+
+    /** 管理员摘流中的地址（含已从端点列表移除的） */
+    public Set<String> getAdminDrained() {
+        return Set.copyOf(adminDrained);
+    }
+
+    /** 摘除心跳超时的动态端点，返回被摘流的端点地址。 */
+    public List<String> drainExpired(long heartbeatTimeoutMs) {
+        long deadline = System.currentTimeMillis() - heartbeatTimeoutMs;
+        List<String> expired = new ArrayList<>();
+        for (Endpoint ep : endpoints) {
+            if (ep.dynamic && !ep.draining && ep.lastHeartbeatMs < deadline) {
+                log.warn("judge-agent 心跳超时 {}ms，摘流: {}", heartbeatTimeoutMs, ep.baseUrl);
+                drain(ep.baseUrl);
+                expired.add(ep.baseUrl);
+            }
+        }
+        return expired;
+    }
+
+    private Endpoint findLocked(String baseUrl) {
+        for (Endpoint ep : endpoints) {
+            if (ep.baseUrl.equals(baseUrl)) {
+                return ep;
+            }
+        }
+        return null;
+    }
+
+    private void removeLocked(Endpoint ep) {
+        List<Endpoint> next = new ArrayList<>(endpoints);
+        if (next.remove(ep)) {
+            endpoints = List.copyOf(next);
+            log.info("judge-agent 端点已移除: {}", ep.baseUrl);
+        }
+    }
+
     public List<Endpoint> getEndpoints() {
         return endpoints;
     }
+
+    /** 未摘流端点 capacity 之和，即同时可在 Agent 上执行的评测数。 */
+    public int getTotalCapacity() {
+        int total = 0;
+        for (Endpoint ep : endpoints) {
+            if (!ep.draining) {
+                total += ep.capacity;
+            }
+        }
+        return total;
+    }
+
+    /** 健康（未熔断）且未摘流端点当前并发上限之和，用于驱动 MQ 消费并发度。 */
+    public int getHealthyCapacity() {
+        int total = 0;
+        for (Endpoint ep : endpoints) {
+            if (!ep.draining && ep.isHealthy()) {
+                total += ep.getLimit();
+            }
+        }
+        return total;
+    }
 }
@@ -0,0 +1,20 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+/**
+ * judge-agent 流式评测中单个测试点完成事件（/judge/submit-stream 的 type=case 行）。
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class JudgeCaseEvent {
+    /** 测试点序号，从 1 开始 */
+    private Integer index;
+    private Integer total;
+    private String status;
+    /** 毫秒 */
+    private Long time;
+    /** MB */
+    private Long memory;
+}
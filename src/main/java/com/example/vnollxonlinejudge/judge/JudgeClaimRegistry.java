@@ -0,0 +1,56 @@
+package com.example.vnollxonlinejudge.judge;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * 评测认领：同一提交在一次进程生命周期内只评测一次。
+ * <p>
+ * 重启恢复与 MQ 重投可能让同一提交出现两次，key = judge_claim:{snowflakeId}，值为本进程的启动 id。
+ * 值等于本进程 id 说明本轮已经认领过，直接丢弃重复；值来自上一个进程说明上次评测随进程一起中断，允许重新认领。
+ */
+@Component
+public class JudgeClaimRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(JudgeClaimRegistry.class);
+    private static final String CLAIM_KEY = "judge_claim:%d";
+    private static final Duration CLAIM_TTL = Duration.ofDays(1);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final String bootId = UUID.randomUUID().toString();
+
+    @Autowired
+    public JudgeClaimRegistry(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /** 认领成功返回 true；本进程已认领过返回 false。Redis 异常时放行，宁可重复评测也不丢评测。 */
+    public boolean claim(Long snowflakeId) {
+        String key = String.format(CLAIM_KEY, snowflakeId);
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(key, bootId, CLAIM_TTL))) {
+                return true;
+            }
+            String previous = stringRedisTemplate.opsForValue().getAndSet(key, bootId);
+            stringRedisTemplate.expire(key, CLAIM_TTL);
+            return !bootId.equals(previous);
+        } catch (Exception e) {
+            logger.error("评测认领异常，按未认领处理: snowflakeId={}", snowflakeId, e);
+            return true;
+        }
+    }
+
+    /** 放弃认领（派发失败或需要重判时），让该提交可以再次被评测。 */
+    public void release(Long snowflakeId) {
+        try {
+            stringRedisTemplate.delete(String.format(CLAIM_KEY, snowflakeId));
+        } catch (Exception e) {
+            logger.error("释放评测认领异常: snowflakeId={}", snowflakeId, e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.config.JudgeCodecConfig;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 评测消息与 Agent 请求体的编解码。
+ * <p>
+ * 编码按配置选 JSON 或 CBOR，超过阈值再 gzip（源码是消息里的大头，压缩收益远大于换二进制格式本身）；
+ * 解码只看 content-type / content-encoding，不看配置：没有 content-type 的旧消息按 JSON 处理，
+ * 所以切换格式期间新旧消息可以混在同一个队列里。
+ */
+@Component
+public class JudgeCodec {
+    public static final String CONTENT_TYPE_JSON = "application/json";
+    public static final String CONTENT_TYPE_CBOR = "application/cbor";
+    public static final String ENCODING_GZIP = "gzip";
+    private static final String FORMAT_CBOR = "cbor";
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+    private final JudgeCodecConfig config;
+
+    @Autowired
+    public JudgeCodec(ObjectMapper objectMapper, JudgeCodecConfig config) {
+        this.jsonMapper = objectMapper;
+        // 与 Spring 的 ObjectMapper 一致忽略未知字段，新版本多出的字段不影响旧实例解码
+        this.cborMapper = CBORMapper.builder()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        this.config = config;
+    }
+
+    /** 编码结果；contentEncoding 为 null 表示未压缩。 */
+    public static final class Encoded {
+        private final byte[] body;
+        private final String contentType;
+        private final String contentEncoding;
+
+        Encoded(byte[] body, String contentType, String contentEncoding) {
+            this.body = body;
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+        }
+
+        public byte[] getBody() { return body; }
+        public String getContentType() { return contentType; }
+        public String getContentEncoding() { return contentEncoding; }
+    }
+
+    /** 按 message-format 编码一条评测消息。 */
+    public Encoded encodeMessage(Object value) {
+        return encode(value, FORMAT_CBOR.equalsIgnoreCase(config.getMessageFormat()), true);
+    }
+
+    /** 按 agent-format 编码发往某个 Agent 的请求体；端点未在心跳中声明支持的格式与压缩一律不用。 */
+    public Encoded encodeForAgent(Object value, JudgeAgentRouter.Endpoint ep) {
+        boolean cbor = FORMAT_CBOR.equalsIgnoreCase(config.getAgentFormat()) && ep.supportsCodec(FORMAT_CBOR);
+        return encode(value, cbor, ep.supportsCodec(ENCODING_GZIP));
+    }
+
+    public <T> T decode(byte[] body, String contentType, String contentEncoding, Class<T> type) throws IOException {
+        byte[] raw = ENCODING_GZIP.equalsIgnoreCase(contentEncoding) ? gunzip(body) : body;
+        ObjectMapper mapper = contentType != null && contentType.startsWith(CONTENT_TYPE_CBOR) ? cborMapper : jsonMapper;
+        return mapper.readValue(raw, type);
+    }
+
+    private Encoded encode(Object value, boolean cbor, boolean allowGzip) {
+        try {
+            byte[] body = (cbor ? cborMapper : jsonMapper).writeValueAsBytes(value);
+            String contentType = cbor ? CONTENT_TYPE_CBOR : CONTENT_TYPE_JSON;
+            int threshold = config.getCompressThresholdBytes();
+            if (allowGzip && threshold > 0 && body.length > threshold) {
+                return new Encoded(gzip(body), contentType, ENCODING_GZIP);
+            }
+            return new Encoded(body, contentType, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("评测消息编码失败", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream gz = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return gz.readAllBytes();
+        }
+    }
+}
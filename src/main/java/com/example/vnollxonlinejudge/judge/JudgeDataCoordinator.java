@@ -0,0 +1,155 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.model.entity.Problem;
+import com.example.vnollxonlinejudge.model.vo.judge.JudgeAgentCacheStatusVO;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 后端与各 judge-agent 之间的测试数据缓存协调。
+ * <p>
+ * Agent 按 dataVersion 缓存题目数据 zip，原本只有在新版本后的第一次评测时才发现过期并下载，
+ * 这份下载耗时落在最先提交的选手头上。这里主动下发：
+ * <ul>
+ *   <li>题目数据更新（事务提交后）：向每个 Agent 推送 /data/refresh，淘汰旧版本并在后台拉取新版本；</li>
+ *   <li>比赛开始前：{@link #prewarm} 对比赛的全部题目做同样的推送；</li>
+ *   <li>{@link #cacheStatus}：逐个 Agent 查询实际缓存情况，供管理员核对。</li>
+ * </ul>
+ * 推送在派发执行器上异步进行，失败只记日志：Agent 不在线或推送失败时仍会在评测时按需下载。
+ */
+@Component
+public class JudgeDataCoordinator {
+    private static final Logger logger = LoggerFactory.getLogger(JudgeDataCoordinator.class);
+    private static final String REFRESH_PATH = "/data/refresh";
+    private static final String CACHE_STATUS_PATH = "/data/cache-status";
+
+    private final RestTemplate restTemplate;
+    private final JudgeAgentRouter router;
+    private final ExecutorService executor;
+
+    @Autowired
+    public JudgeDataCoordinator(
+            RestTemplate restTemplate,
+            JudgeAgentRouter router,
+            @Qualifier("judgeDispatchExecutor") ExecutorService executor
+    ) {
+        this.restTemplate = restTemplate;
+        this.router = router;
+        this.executor = executor;
+    }
+
+    /** 发往 Agent 的数据版本号：与评测请求体里的 dataVersion 一致。 */
+    public static String dataVersionOf(Problem problem) {
+        Integer version = problem != null ? problem.getVersion() : null;
+        return version != null ? String.valueOf(version) : "1";
+    }
+
+    /** 题目数据版本递增：在事务中调用时等提交后再推送，避免 Agent 拿到回滚掉的版本号。 */
+    public void versionBumped(Long problemId, String dataVersion) {
+        Map<Long, String> versions = Map.of(problemId, dataVersion);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pushAsync(versions, "version-bump");
+                }
+            });
+        } else {
+            pushAsync(versions, "version-bump");
+        }
+    }
+
+    /** 比赛预热：problemId -> dataVersion。 */
+    public void prewarm(Map<Long, String> versions) {
+        if (!versions.isEmpty()) {
+            pushAsync(versions, "prewarm");
+        }
+    }
+
+    /** 逐个 Agent 查询这些题目的期望版本是否已缓存；查询失败的 Agent 每题一行，带 error。 */
+    public List<JudgeAgentCacheStatusVO> cacheStatus(Map<Long, String> versions) {
+        List<JudgeAgentRouter.Endpoint> endpoints = router.getEndpoints();
+        List<CompletableFuture<List<JudgeAgentCacheStatusVO>>> futures = new ArrayList<>(endpoints.size());
+        for (JudgeAgentRouter.Endpoint ep : endpoints) {
+            futures.add(CompletableFuture.supplyAsync(() -> queryStatus(ep, versions), executor));
+        }
+        List<JudgeAgentCacheStatusVO> list = new ArrayList<>();
+        for (CompletableFuture<List<JudgeAgentCacheStatusVO>> future : futures) {
+            list.addAll(future.join());
+        }
+        return list;
+    }
+
+    private void pushAsync(Map<Long, String> versions, String reason) {
+        Map<String, Object> body = Map.of("items", toItems(versions), "preload", true);
+        for (JudgeAgentRouter.Endpoint ep : router.getEndpoints()) {
+            if (ep.isDraining()) {
+                continue;
+            }
+            executor.execute(() -> {
+                try {
+                    JsonNode resp = restTemplate.postForObject(ep.getBaseUrl() + REFRESH_PATH, body, JsonNode.class);
+                    logger.info("已向 judge-agent 下发数据刷新: url={}, reason={}, problems={}, evicted={}",
+                            ep.getBaseUrl(), reason, versions.size(), resp != null ? resp.path("evicted").asInt() : 0);
+                } catch (Exception e) {
+                    logger.warn("向 judge-agent 下发数据刷新失败，评测时将按需下载: url={}, reason={}, {}",
+                            ep.getBaseUrl(), reason, e.getMessage());
+                }
+            });
+        }
+    }
+
+    private List<JudgeAgentCacheStatusVO> queryStatus(JudgeAgentRouter.Endpoint ep, Map<Long, String> versions) {
+        List<JudgeAgentCacheStatusVO> list = new ArrayList<>(versions.size());
+        Map<Long, JsonNode> byProblem = new LinkedHashMap<>();
+        String error = null;
+        try {
+            JsonNode resp = restTemplate.postForObject(ep.getBaseUrl() + CACHE_STATUS_PATH,
+                    Map.of("items", toItems(versions)), JsonNode.class);
+            if (resp != null) {
+                for (JsonNode node : resp) {
+                    byProblem.put(node.path("problemId").asLong(), node);
+                }
+            }
+        } catch (Exception e) {
+            error = e.getMessage();
+        }
+        for (Map.Entry<Long, String> entry : versions.entrySet()) {
+            JudgeAgentCacheStatusVO vo = new JudgeAgentCacheStatusVO();
+            vo.setUrl(ep.getBaseUrl());
+            vo.setProblemId(entry.getKey());
+            vo.setExpectedVersion(entry.getValue());
+            vo.setReportedVersion(ep.getDataVersions().get(entry.getKey()));
+            JsonNode node = byProblem.get(entry.getKey());
+            if (node != null) {
+                vo.setCached(node.path("cached").asBoolean());
+                vo.setCaseCount(node.path("caseCount").asInt());
+            } else {
+                vo.setCached(false);
+                vo.setError(error != null ? error : "Agent 未返回该题状态");
+            }
+            list.add(vo);
+        }
+        return list;
+    }
+
+    private static List<Map<String, Object>> toItems(Map<Long, String> versions) {
+        List<Map<String, Object>> items = new ArrayList<>(versions.size());
+        versions.forEach((problemId, dataVersion) -> items.add(Map.of("problemId", problemId, "dataVersion", dataVersion)));
+        return items;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 评测流水线各阶段耗时，全部带直方图（publishPercentileHistogram），可在 Prometheus 上按 histogram_quantile 看分位数：
+ * <ul>
+ *   <li>judge.mq.wait —— 投递到 MQ 至被消费（mode, language）</li>
+ *   <li>judge.agent.wait —— 在 {@link JudgeAgentRouter} 上等端点许可（kind, agent）</li>
+ *   <li>judge.agent.exec —— Agent HTTP 往返（kind, agent, language, verdict）</li>
+ *   <li>judge.db.write —— 最终结果落库（mode, verdict）</li>
+ *   <li>judge.process.submission —— 提交统计 processSubmission（mode, verdict）</li>
+ *   <li>judge.push —— WebSocket 推送（mode）</li>
+ * </ul>
+ * mode 为 contest / practice / rejudge，kind 为 submit / sample。同一指标名的 tag 键必须一致，
+ * 所以每个阶段单独一个指标名，而不是共用一个名字加 stage tag。
+ * 同时驱动 MonitoringConfig 里的 judge.request.total / judge.success.total / judge.failure.total。
+ */
+@Component
+public class JudgeMetrics {
+    private static final String STATUS_JUDGE_ERROR = "判题错误";
+    private static final Duration MIN_EXPECTED = Duration.ofMillis(1);
+    private static final Duration MAX_EXPECTED = Duration.ofMinutes(2);
+
+    private final MeterRegistry registry;
+    private final Counter requestCounter;
+    private final Counter successCounter;
+    private final Counter failureCounter;
+
+    @Autowired
+    public JudgeMetrics(
+            MeterRegistry registry,
+            @Qualifier("judgeRequestCounter") Counter requestCounter,
+            @Qualifier("judgeSuccessCounter") Counter successCounter,
+            @Qualifier("judgeFailureCounter") Counter failureCounter
+    ) {
+        this.registry = registry;
+        this.requestCounter = requestCounter;
+        this.successCounter = successCounter;
+        this.failureCounter = failureCounter;
+    }
+
+    /** 开始一次评测（MQ 消费或结果缓存命中）。 */
+    public void requested() {
+        requestCounter.increment();
+    }
+
+    /** 消费到一条评测消息，publishedAtMs 为投递时间戳。 */
+    public void mqWait(JudgeInfo judgeInfo, long publishedAtMs) {
+        timer("judge.mq.wait", "评测消息在 MQ 中的等待时间",
+                Tags.of("mode", mode(judgeInfo), "language", tagValue(judgeInfo.getLanguage())))
+                .record(Math.max(0L, System.currentTimeMillis() - publishedAtMs), TimeUnit.MILLISECONDS);
+    }
+
+    /** 评测出结果（含判题错误）；重试用尽进入死信队列的记一次失败。 */
+    public void finished(String verdict) {
+        if (verdict == null || STATUS_JUDGE_ERROR.equals(verdict)) {
+            failureCounter.increment();
+        } else {
+            successCounter.increment();
+        }
+    }
+
+    /** ep 为空表示没等到许可（超时或无可用端点）。 */
+    public void agentWait(String kind, JudgeAgentRouter.Endpoint ep, long nanos) {
+        timer("judge.agent.wait", "等待 judge-agent 许可的时间",
+                Tags.of("kind", kind, "agent", ep == null ? "none" : ep.getBaseUrl()))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void agentExec(String kind, JudgeAgentRouter.Endpoint ep, String language, String verdict, long nanos) {
+        timer("judge.agent.exec", "judge-agent 评测耗时（HTTP 往返）",
+                Tags.of("kind", kind, "agent", ep.getBaseUrl(), "language", tagValue(language), "verdict", tagValue(verdict)))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void dbWrite(JudgeInfo judgeInfo, String verdict, long nanos) {
+        timer("judge.db.write", "评测结果落库耗时",
+                Tags.of("mode", mode(judgeInfo), "verdict", tagValue(verdict)))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void processSubmission(JudgeInfo judgeInfo, String verdict, long nanos) {
+        timer("judge.process.submission", "提交统计更新耗时",
+                Tags.of("mode", mode(judgeInfo), "verdict", tagValue(verdict)))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void push(JudgeInfo judgeInfo, long nanos) {
+        timer("judge.push", "评测结果 WebSocket 推送耗时", Tags.of("mode", mode(judgeInfo)))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Timer.builder().register 对同名同 tag 返回已注册的实例。 */
+    private Timer timer(String name, String description, Tags tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(registry);
+    }
+
+    private static String mode(JudgeInfo judgeInfo) {
+        if (judgeInfo.getRejudgeJobId() != null) {
+            return "rejudge";
+        }
+        return judgeInfo.getCid() != null && judgeInfo.getCid() != 0 ? "contest" : "practice";
+    }
+
+    private static String tagValue(String value) {
+        return value == null || value.isBlank() ? "unknown" : value;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
+import com.example.vnollxonlinejudge.producer.JudgeProducer;
+import com.example.vnollxonlinejudge.service.JudgeOutboxService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 发件箱投递：一批评测消息在同一 channel 上发送并等待 publisher confirm，
+ * 全部确认后用一条 UPDATE 把对应发件箱行标记为已投递。
+ * <p>
+ * 确认失败时抛出，由 {@link FairJudgeQueue} 按原顺序放回重投；确认成功但标记失败时只记日志，
+ * 行保持"待投递"，之后由 {@link JudgeOutboxSweeper} 补投，重复消息由 {@link JudgeClaimRegistry} 去重。
+ */
+@Component
+public class JudgeOutboxRelay {
+    private static final Logger logger = LoggerFactory.getLogger(JudgeOutboxRelay.class);
+    private static final int PRIORITY = 1;
+
+    private final JudgeProducer judgeProducer;
+    private final JudgeOutboxService judgeOutboxService;
+    private final JudgeTimeline judgeTimeline;
+
+    @Autowired
+    public JudgeOutboxRelay(JudgeProducer judgeProducer, JudgeOutboxService judgeOutboxService, JudgeTimeline judgeTimeline) {
+        this.judgeProducer = judgeProducer;
+        this.judgeOutboxService = judgeOutboxService;
+        this.judgeTimeline = judgeTimeline;
+    }
+
+    public void publish(List<JudgeInfo> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        judgeProducer.sendJudgeBatch(PRIORITY, batch);
+        judgeTimeline.recordAll(batch, "published", "batchSize=" + batch.size());
+        try {
+            judgeOutboxService.markSent(batch.stream().map(JudgeInfo::getSnowflakeId).toList());
+        } catch (Exception e) {
+            logger.warn("发件箱标记已投递失败，留待补投: batchSize={}", batch.size(), e);
+        }
+    }
+}
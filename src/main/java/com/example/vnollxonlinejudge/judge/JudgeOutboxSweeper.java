@@ -0,0 +1,151 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.vnollxonlinejudge.mapper.SubmissionMapper;
+import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
+import com.example.vnollxonlinejudge.model.entity.JudgeOutbox;
+import com.example.vnollxonlinejudge.model.entity.Problem;
+import com.example.vnollxonlinejudge.model.entity.Submission;
+import com.example.vnollxonlinejudge.service.JudgeOutboxService;
+import com.example.vnollxonlinejudge.service.ProblemService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 发件箱补投。
+ * <p>
+ * 启动时：发件箱里待投递和已投递但未评测完成的行重新放回公平队列；已进死信队列的行跳过，
+ * 否则每次重启都会绕过重试上限把死信提交再评一遍，只能由管理端显式重投。公平队列在内存里，
+ * 进程重启会丢；异步派发下在途评测的消息也已确认。升级前遗留、没有发件箱行的"等待评测" / "评测中"
+ * 提交先补一行再放回。
+ * <p>
+ * 运行中：每 30 秒扫一次创建超过 30 秒仍"待投递"、且不在本实例公平队列里的行
+ * （入队前进程异常、投递确认后标记失败等），重新入队投递。
+ * 与 MQ 里残留的消息重复时由 {@link JudgeClaimRegistry} 去重。
+ */
+@Component
+public class JudgeOutboxSweeper {
+    private static final Logger logger = LoggerFactory.getLogger(JudgeOutboxSweeper.class);
+    private static final long DEFAULT_TIME_LIMIT = 1000L;
+    private static final long DEFAULT_MEMORY_LIMIT = 256L;
+    private static final long STALE_SECONDS = 30L;
+    private static final int SWEEP_LIMIT = 500;
+
+    private final SubmissionMapper submissionMapper;
+    private final ProblemService problemService;
+    private final FairJudgeQueue fairJudgeQueue;
+    private final JudgeOutboxService judgeOutboxService;
+    private final JudgeTimeline judgeTimeline;
+
+    @Autowired
+    public JudgeOutboxSweeper(
+            SubmissionMapper submissionMapper,
+            ProblemService problemService,
+            FairJudgeQueue fairJudgeQueue,
+            JudgeOutboxService judgeOutboxService,
+            JudgeTimeline judgeTimeline
+    ) {
+        this.submissionMapper = submissionMapper;
+        this.problemService = problemService;
+        this.fairJudgeQueue = fairJudgeQueue;
+        this.judgeOutboxService = judgeOutboxService;
+        this.judgeTimeline = judgeTimeline;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        backfillLegacy();
+        int recovered = 0;
+        for (JudgeOutbox row : judgeOutboxService.listPending()) {
+            if (enqueue(row)) {
+                recovered++;
+            }
+        }
+        if (recovered > 0) {
+            logger.info("从发件箱恢复未完成评测 {} 条到公平队列", recovered);
+        }
+    }
+
+    @Scheduled(fixedDelay = 30 * 1000, initialDelay = 30 * 1000)
+    public void sweep() {
+        List<JudgeOutbox> stale = judgeOutboxService.listUnsent(
+                LocalDateTime.now().minusSeconds(STALE_SECONDS), SWEEP_LIMIT);
+        int swept = 0;
+        for (JudgeOutbox row : stale) {
+            if (!fairJudgeQueue.isTracked(row.getSnowflakeId()) && enqueue(row)) {
+                swept++;
+            }
+        }
+        if (swept > 0) {
+            logger.warn("发件箱补投 {} 条滞留的待投递评测消息", swept);
+        }
+    }
+
+    private boolean enqueue(JudgeOutbox row) {
+        try {
+            JudgeInfo judgeInfo = judgeOutboxService.toJudgeInfo(row);
+            if (judgeInfo.getTraceId() == null) {
+                judgeInfo.setTraceId(JudgeTimeline.newTraceId());
+            }
+            fairJudgeQueue.enqueue(judgeInfo);
+            judgeTimeline.record(judgeInfo, "outbox_requeued", "status=" + row.getStatus() + ", attempts=" + row.getAttempts());
+            return true;
+        } catch (Exception e) {
+            logger.error("发件箱行重新入队失败: snowflakeId={}", row.getSnowflakeId(), e);
+            return false;
+        }
+    }
+
+    /** 没有发件箱行的未完成提交按题目限制补一行，之后与其它行一起恢复。 */
+    private void backfillLegacy() {
+        QueryWrapper<Submission> wrapper = new QueryWrapper<>();
+        wrapper.in("status", "等待评测", "评测中").orderByAsc("snowflake_id");
+        List<Submission> pending = submissionMapper.selectList(wrapper);
+        if (pending.isEmpty()) {
+            return;
+        }
+        Set<Long> known = new HashSet<>();
+        judgeOutboxService.listAll().forEach(row -> known.add(row.getSnowflakeId()));
+        Map<Long, Problem> problems = new HashMap<>();
+        int backfilled = 0;
+        for (Submission s : pending) {
+            if (s.getSnowflakeId() == null || s.getPid() == null || known.contains(s.getSnowflakeId())) continue;
+            Problem problem = problems.computeIfAbsent(s.getPid(), problemService::getById);
+            judgeOutboxService.append(toJudgeInfo(s, problem));
+            backfilled++;
+        }
+        if (backfilled > 0) {
+            logger.info("为 {} 条未完成提交补写发件箱", backfilled);
+        }
+    }
+
+    /** 提交记录里的 language 为展示名（C++ / Java / Golang ...），Agent 按小写别名同样识别。 */
+    private static JudgeInfo toJudgeInfo(Submission s, Problem problem) {
+        return JudgeInfo.builder()
+                .code(s.getCode())
+                .language(s.getLanguage())
+                .time(problem != null && problem.getTimeLimit() != null ? problem.getTimeLimit().longValue() : DEFAULT_TIME_LIMIT)
+                .memory(problem != null && problem.getMemoryLimit() != null ? problem.getMemoryLimit().longValue() : DEFAULT_MEMORY_LIMIT)
+                .cid(s.getCid() != null ? s.getCid() : 0L)
+                .uid(s.getUid())
+                .teamId(s.getTeamId())
+                .pid(s.getPid())
+                .uname(s.getUserName())
+                .createTime(s.getCreateTime())
+                .snowflakeId(s.getSnowflakeId())
+                .traceId(JudgeTimeline.newTraceId())
+                .build();
+    }
+}
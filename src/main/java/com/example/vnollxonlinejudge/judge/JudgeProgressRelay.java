@@ -0,0 +1,132 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.config.JudgeAgentConfig;
+import com.example.vnollxonlinejudge.websocket.JudgeWebSocketHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把 Agent 流式上报的测试点进度转发给浏览器，并按提交合并限频。
+ * <p>
+ * 每个提交最多每 1/progress-frames-per-second 秒推一帧：窗口内到达的事件只保留最新一条，
+ * 窗口结束时补发。发送在提交自身的锁内进行，{@link #complete} 取同一把锁后丢弃未发出的帧，
+ * 因此最终结果之后不会再出现进度。
+ */
+@Component
+public class JudgeProgressRelay {
+    private static final Logger logger = LoggerFactory.getLogger(JudgeProgressRelay.class);
+
+    private static final class State {
+        final Long uid;
+        long lastSentMs;
+        JudgeCaseEvent pending;
+        boolean flushScheduled;
+        boolean done;
+
+        State(Long uid) {
+            this.uid = uid;
+        }
+    }
+
+    private final JudgeWebSocketHandler judgeWebSocketHandler;
+    private final ObjectMapper objectMapper;
+    private final long minIntervalMs;
+    private final Map<Long, State> states = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "judge-progress-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Autowired
+    public JudgeProgressRelay(
+            JudgeWebSocketHandler judgeWebSocketHandler,
+            ObjectMapper objectMapper,
+            JudgeAgentConfig judgeAgentConfig
+    ) {
+        this.judgeWebSocketHandler = judgeWebSocketHandler;
+        this.objectMapper = objectMapper;
+        this.minIntervalMs = 1000L / Math.max(1, judgeAgentConfig.getProgressFramesPerSecond());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    public void onCase(Long snowflakeId, Long uid, JudgeCaseEvent event) {
+        State state = states.computeIfAbsent(snowflakeId, id -> new State(uid));
+        synchronized (state) {
+            if (state.done) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (!state.flushScheduled && now - state.lastSentMs >= minIntervalMs) {
+                state.lastSentMs = now;
+                send(snowflakeId, state.uid, event);
+            } else {
+                state.pending = event;
+                if (!state.flushScheduled) {
+                    state.flushScheduled = true;
+                    long delay = Math.max(0L, state.lastSentMs + minIntervalMs - now);
+                    flusher.schedule(() -> flush(snowflakeId), delay, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    /** 评测结束：丢弃尚未发出的进度帧。 */
+    public void complete(Long snowflakeId) {
+        State state = states.remove(snowflakeId);
+        if (state != null) {
+            synchronized (state) {
+                state.done = true;
+                state.pending = null;
+            }
+        }
+    }
+
+    private void flush(Long snowflakeId) {
+        State state = states.get(snowflakeId);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            JudgeCaseEvent toSend = state.pending;
+            state.pending = null;
+            state.flushScheduled = false;
+            if (toSend != null && !state.done) {
+                state.lastSentMs = System.currentTimeMillis();
+                send(snowflakeId, state.uid, toSend);
+            }
+        }
+    }
+
+    private void send(Long snowflakeId, Long uid, JudgeCaseEvent event) {
+        try {
+            Map<String, Object> data = new HashMap<>();
+            data.put("snowflakeId", String.valueOf(snowflakeId));
+            data.put("status", "评测中");
+            data.put("description", "评测中：已完成第 " + event.getIndex() + "/" + event.getTotal() + " 个测试点");
+            data.put("caseIndex", event.getIndex());
+            data.put("caseTotal", event.getTotal());
+            data.put("caseStatus", event.getStatus());
+            data.put("caseTime", event.getTime());
+            data.put("caseMemory", event.getMemory());
+            judgeWebSocketHandler.sendMessageToUser(uid, objectMapper.writeValueAsString(data));
+        } catch (Exception e) {
+            logger.error("推送评测进度失败: snowflakeId={}", snowflakeId, e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.model.result.RunResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Set;
+
+/**
+ * 按内容寻址的评测结果缓存：同一份代码（归一化后）在同一题目、同一数据版本、同样限制下的结果可直接复用，
+ * 重复提交不再走 MQ 和 Agent。
+ * <p>
+ * key = problemId + ":" + SHA-256(归一化代码, 语言, 数据版本, 时空限制, 判题模式, checker, 浮点精度)。
+ * 数据版本本身就在 key 里，题目版本递增后旧条目天然不会命中；{@link #invalidateProblem} 再主动清掉，避免占着容量。
+ * 只缓存确定性的结果（AC / WA / CE），TLE、RE、判题错误等可能受机器负载影响的结果不缓存。
+ * 命中率通过 Micrometer 的 cache_gets{cache="judge_result"|"sample_result"} 暴露。
+ */
+@Component
+public class JudgeResultCache {
+    private static final Set<String> CACHEABLE_STATUS = Set.of("答案正确", "答案错误", "编译错误");
+
+    private final Cache<String, RunResult> submitCache = Caffeine.newBuilder()
+            .maximumSize(20_000)
+            .expireAfterWrite(Duration.ofHours(6))
+            .recordStats()
+            .build();
+    private final Cache<String, RunResult> sampleCache = Caffeine.newBuilder()
+            .maximumSize(5_000)
+            .expireAfterWrite(Duration.ofMinutes(30))
+            .recordStats()
+            .build();
+
+    @Autowired
+    public JudgeResultCache(MeterRegistry meterRegistry) {
+        CaffeineCacheMetrics.monitor(meterRegistry, submitCache, "judge_result", Tags.empty());
+        CaffeineCacheMetrics.monitor(meterRegistry, sampleCache, "sample_result", Tags.empty());
+    }
+
+    public RunResult getSubmit(AgentSubmitRequest req) {
+        return submitCache.getIfPresent(submitKey(req));
+    }
+
+    public void putSubmit(AgentSubmitRequest req, RunResult result) {
+        if (isCacheable(result)) {
+            submitCache.put(submitKey(req), result);
+        }
+    }
+
+    public RunResult getSample(AgentSampleRequest req) {
+        return sampleCache.getIfPresent(sampleKey(req));
+    }
+
+    public void putSample(AgentSampleRequest req, RunResult result) {
+        if (isCacheable(result)) {
+            sampleCache.put(sampleKey(req), result);
+        }
+    }
+
+    /** 题目测试数据 / checker 更新后清除该题的所有提交结果缓存。 */
+    public void invalidateProblem(Long problemId) {
+        String prefix = problemId + ":";
+        submitCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private static boolean isCacheable(RunResult result) {
+        return result != null && CACHEABLE_STATUS.contains(result.getStatus());
+    }
+
+    private static String submitKey(AgentSubmitRequest req) {
+        return req.getProblemId() + ":" + digest(
+                normalizeCode(req.getCode()),
+                req.getLanguage(),
+                req.getDataVersion(),
+                String.valueOf(req.getTimeLimit()),
+                String.valueOf(req.getMemoryLimit()),
+                req.getJudgeMode(),
+                req.getCheckerFile(),
+                String.valueOf(req.getFloatTolerance()),
+                String.valueOf(req.getStopOnFirstFailure()));
+    }
+
+    private static String sampleKey(AgentSampleRequest req) {
+        return digest(
+                normalizeCode(req.getCode()),
+                req.getLanguage(),
+                req.getInputExample(),
+                req.getOutputExample(),
+                String.valueOf(req.getTimeLimit()),
+                String.valueOf(req.getMemoryLimit()),
+                req.getJudgeMode(),
+                String.valueOf(req.getFloatTolerance()));
+    }
+
+    /**
+     * 统一换行符并去掉文件末尾空白。行内 / 行尾空白不动：多行原始字符串里的空白会影响输出。
+     */
+    static String normalizeCode(String code) {
+        if (code == null) return "";
+        return code.replace("\r\n", "\n").replace('\r', '\n').stripTrailing();
+    }
+
+    private static String digest(String... parts) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                if (part == null) {
+                    md.update((byte) 0);
+                } else {
+                    byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+                    // 长度前缀，避免字段拼接产生歧义
+                    md.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+                    md.update((byte) ':');
+                    md.update(bytes);
+                }
+                md.update((byte) 0x1f);
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.config.JudgeAgentConfig;
+import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
+import com.example.vnollxonlinejudge.model.entity.Problem;
+import com.example.vnollxonlinejudge.model.result.RunResult;
+import com.example.vnollxonlinejudge.service.JudgeOutboxService;
+import com.example.vnollxonlinejudge.service.ProblemService;
+import com.example.vnollxonlinejudge.service.RejudgeService;
+import com.example.vnollxonlinejudge.service.SubmissionService;
+import com.example.vnollxonlinejudge.websocket.JudgeWebSocketHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 一次评测的前后两段：开始评测（置"评测中"并组装 Agent 请求）与评测完成
+ * （落库最终状态、processSubmission 统计、WebSocket 推送）。
+ * 同步 / 异步派发共用这一套逻辑，保证两种模式下的副作用完全一致。
+ */
+@Component
+public class JudgeResultHandler {
+    private static final Logger logger = LoggerFactory.getLogger(JudgeResultHandler.class);
+    private final ObjectMapper objectMapper;
+    private final SubmissionService submissionService;
+    private final ProblemService problemService;
+    private final JudgeWebSocketHandler judgeWebSocketHandler;
+    private final JudgeResultCache judgeResultCache;
+    private final JudgeProgressRelay judgeProgressRelay;
+    private final JudgeAgentConfig judgeAgentConfig;
+    private final SubmissionStatusWriter submissionStatusWriter;
+    private final JudgeOutboxService judgeOutboxService;
+    private final RejudgeService rejudgeService;
+    private final JudgeMetrics judgeMetrics;
+    private final JudgeTimeline judgeTimeline;
+
+    @Autowired
+    public JudgeResultHandler(
+            ObjectMapper objectMapper,
+            SubmissionService submissionService,
+            ProblemService problemService,
+            JudgeWebSocketHandler judgeWebSocketHandler,
+            JudgeResultCache judgeResultCache,
+            JudgeProgressRelay judgeProgressRelay,
+            JudgeAgentConfig judgeAgentConfig,
+            SubmissionStatusWriter submissionStatusWriter,
+            JudgeOutboxService judgeOutboxService,
+            RejudgeService rejudgeService,
+            JudgeMetrics judgeMetrics,
+            JudgeTimeline judgeTimeline
+    ) {
+        this.objectMapper = objectMapper;
+        this.submissionService = submissionService;
+        this.problemService = problemService;
+        this.judgeWebSocketHandler = judgeWebSocketHandler;
+        this.judgeResultCache = judgeResultCache;
+        this.judgeProgressRelay = judgeProgressRelay;
+        this.judgeAgentConfig = judgeAgentConfig;
+        this.submissionStatusWriter = submissionStatusWriter;
+        this.judgeOutboxService = judgeOutboxService;
+        this.rejudgeService = rejudgeService;
+        this.judgeMetrics = judgeMetrics;
+        this.judgeTimeline = judgeTimeline;
+    }
+
+    /** 置"评测中"并推送，返回发往 Agent 的请求体；重判保留原结果直到新结果落库，不置"评测中"。 */
+    public AgentSubmitRequest startJudging(JudgeInfo judgeInfo) {
+        if (!isRejudge(judgeInfo)) {
+            submissionStatusWriter.writeRunning(judgeInfo.getSnowflakeId());
+            sendUpdate(judgeInfo, "评测中", null, null, null, null, null);
+        }
+        judgeTimeline.record(judgeInfo, "running", null);
+        return buildRequest(judgeInfo);
+    }
+
+    /**
+     * 结果缓存命中时直接走完成流程（落库 / 统计 / 推送），返回命中的结果；未命中返回 null，调用方照常入队。
+     */
+    public RunResult completeFromCache(JudgeInfo judgeInfo) {
+        // 重判就是要重新跑一遍
+        if (isRejudge(judgeInfo)) {
+            return null;
+        }
+        RunResult cached = judgeResultCache.getSubmit(buildRequest(judgeInfo));
+        if (cached == null) {
+            return null;
+        }
+        logger.info("评测结果缓存命中: snowflakeId={}, pid={}", judgeInfo.getSnowflakeId(), judgeInfo.getPid());
+        judgeMetrics.requested();
+        judgeTimeline.record(judgeInfo, "cache_hit", "status=" + cached.getStatus());
+        finishJudging(judgeInfo, cached);
+        return cached;
+    }
+
+    /**
+     * 逐测试点进度回调；比赛提交不推送进度（避免泄露失败测试点位置），重判、关闭 stream-progress 时同样返回 null。
+     */
+    public Consumer<JudgeCaseEvent> progressListener(JudgeInfo judgeInfo) {
+        if (isCompetition(judgeInfo) || isRejudge(judgeInfo) || !judgeAgentConfig.isStreamProgress()) {
+            return null;
+        }
+        Long snowflakeId = judgeInfo.getSnowflakeId();
+        Long uid = judgeInfo.getUid();
+        return event -> judgeProgressRelay.onCase(snowflakeId, uid, event);
+    }
+
+    private AgentSubmitRequest buildRequest(JudgeInfo judgeInfo) {
+        Problem problem = problemService.getById(judgeInfo.getPid());
+        AgentSubmitRequest req = new AgentSubmitRequest();
+        req.setSubmissionId(judgeInfo.getSnowflakeId());
+        req.setRequestId(isRejudge(judgeInfo)
+                ? judgeInfo.getSnowflakeId() + ":rejudge:" + judgeInfo.getRejudgeJobId()
+                : String.valueOf(judgeInfo.getSnowflakeId()));
+        req.setProblemId(judgeInfo.getPid());
+        req.setTraceId(judgeInfo.getTraceId());
+        req.setLanguage(judgeInfo.getLanguage());
+        req.setCode(judgeInfo.getCode());
+        req.setTimeLimit(judgeInfo.getTime());
+        req.setMemoryLimit(judgeInfo.getMemory());
+        // 比赛始终首错即停：评测更快，且通过数本就不对选手展示
+        req.setStopOnFirstFailure(isCompetition(judgeInfo) || judgeAgentConfig.isEarlyStop());
+        if (problem != null) {
+            req.setJudgeMode(problem.getJudgeMode());
+            req.setCheckerFile(problem.getCheckerFile());
+            req.setFloatTolerance(problem.getFloatTolerance());
+        }
+        req.setDataVersion(JudgeDataCoordinator.dataVersionOf(problem));
+        return req;
+    }
+
+    /** Agent 返回后的完成流程：先写结果缓存，再落库 / 统计 / 推送。 */
+    public void finishJudging(JudgeInfo judgeInfo, AgentSubmitRequest req, RunResult result) {
+        judgeResultCache.putSubmit(req, result);
+        finishJudging(judgeInfo, result);
+    }
+
+    /** 评测完成：落库最终状态、更新统计并推送最终结果。 */
+    public void finishJudging(JudgeInfo judgeInfo, RunResult result) {
+        if (result.isTruncated()) {
+            logger.info("评测输出过长，已按上限截断: snowflakeId={}", judgeInfo.getSnowflakeId());
+        }
+        // 获取错误信息（如果有）
+        String errorInfo = null;
+        String actualOutput = null;
+        if (result.getFiles() != null) {
+            if (result.getFiles().getStderr() != null) {
+                errorInfo = result.getFiles().getStderr();
+            }
+            if (result.getFiles().getStdout() != null) {
+                actualOutput = result.getFiles().getStdout();
+            }
+        }
+        boolean competition = isCompetition(judgeInfo);
+        String storedError = competition ? null : errorInfo;
+        Integer storedPass = competition ? null : result.getPassCount();
+        Integer storedTest = competition ? null : result.getTestCount();
+        // 失败用例的输入 / 期望输出 / 用户实际输出：仅非比赛、非 AC 时随 WebSocket 推送给前端，不入库
+        String pushCaseInput = null;
+        String pushCaseExpected = null;
+        String pushActualOutput = null;
+        if (!competition && !"答案正确".equals(result.getStatus())) {
+            pushCaseInput = result.getCaseInput();
+            pushCaseExpected = result.getCaseExpected();
+            pushActualOutput = truncate(actualOutput, 400);
+        }
+        if (isRejudge(judgeInfo)) {
+            finishRejudge(judgeInfo, result, storedError, storedPass, storedTest);
+            return;
+        }
+        // 阻塞到最终结果落库后才做统计与推送
+        long startNs = System.nanoTime();
+        submissionStatusWriter.writeFinal(
+                judgeInfo.getSnowflakeId(),
+                result.getStatus(),
+                result.getRunTime(),
+                result.getMemory(),
+                storedError,
+                storedPass,
+                storedTest
+        );
+        long writtenNs = System.nanoTime();
+        judgeMetrics.dbWrite(judgeInfo, result.getStatus(), writtenNs - startNs);
+        judgeTimeline.record(judgeInfo, "db_written", "status=" + result.getStatus() + ", costMs=" + (writtenNs - startNs) / 1_000_000L);
+        submissionService.processSubmission(judgeInfo, result.getStatus());
+        long processedNs = System.nanoTime();
+        judgeMetrics.processSubmission(judgeInfo, result.getStatus(), processedNs - writtenNs);
+        judgeTimeline.record(judgeInfo, "processed", "costMs=" + (processedNs - writtenNs) / 1_000_000L);
+        // 结果与统计都已落地，发件箱行完成使命
+        judgeOutboxService.markDone(judgeInfo.getSnowflakeId());
+        // 先丢弃尚未发出的进度帧，保证最终结果是该提交的最后一条推送
+        judgeProgressRelay.complete(judgeInfo.getSnowflakeId());
+        long pushStartNs = System.nanoTime();
+        sendUpdate(judgeInfo, result.getStatus(), result.getRunTime(), result.getMemory(), storedError, storedPass, storedTest,
+                pushCaseInput, pushCaseExpected, pushActualOutput);
+        judgeMetrics.push(judgeInfo, System.nanoTime() - pushStartNs);
+        judgeTimeline.record(judgeInfo, "pushed", null);
+        judgeMetrics.finished(result.getStatus());
+        logger.info("评测完成: snowflakeId={}", judgeInfo.getSnowflakeId());
+    }
+
+    /**
+     * 重试次数用尽、消息已进死信队列：写最终状态"判题错误"并推送，发件箱行标记为死信，
+     * 重启时不再自动恢复。不走 processSubmission，管理端重投后按正常评测补上统计。
+     * 重判保留原结果，不改状态。
+     */
+    public void deadLettered(JudgeInfo judgeInfo) {
+        judgeOutboxService.markDead(judgeInfo.getSnowflakeId());
+        if (isRejudge(judgeInfo)) {
+            return;
+        }
+        submissionStatusWriter.writeFinal(judgeInfo.getSnowflakeId(), "判题错误", null, null, null, null, null);
+        judgeProgressRelay.complete(judgeInfo.getSnowflakeId());
+        sendUpdate(judgeInfo, "判题错误", null, null, null, null, null);
+    }
+
+    /**
+     * 消息体无法解码、只知道 snowflakeId 的死信：同样终结提交状态，但无法推送。
+     * 没有发件箱行的（重判消息、已评测完成的重复消息）不改状态。
+     */
+    public void deadLettered(Long snowflakeId) {
+        if (judgeOutboxService.markDead(snowflakeId)) {
+            submissionStatusWriter.writeFinal(snowflakeId, "判题错误", null, null, null, null, null);
+        }
+    }
+
+    /**
+     * 重判完成：评测机异常（判题错误）时保留原结果，否则覆盖落库；统计按差量修正，
+     * 不走 processSubmission（提交数不变），也不向用户推送。
+     */
+    private void finishRejudge(JudgeInfo judgeInfo, RunResult result, String storedError, Integer storedPass, Integer storedTest) {
+        if (!"判题错误".equals(result.getStatus())) {
+            long startNs = System.nanoTime();
+            submissionStatusWriter.writeFinal(
+                    judgeInfo.getSnowflakeId(),
+                    result.getStatus(),
+                    result.getRunTime(),
+                    result.getMemory(),
+                    storedError,
+                    storedPass,
+                    storedTest
+            );
+            judgeMetrics.dbWrite(judgeInfo, result.getStatus(), System.nanoTime() - startNs);
+        }
+        rejudgeService.onResult(judgeInfo, result.getStatus());
+        judgeTimeline.record(judgeInfo, "rejudged", judgeInfo.getPreviousStatus() + " -> " + result.getStatus());
+        judgeMetrics.finished(result.getStatus());
+        logger.info("重判完成: snowflakeId={}, jobId={}, {} -> {}", judgeInfo.getSnowflakeId(),
+                judgeInfo.getRejudgeJobId(), judgeInfo.getPreviousStatus(), result.getStatus());
+    }
+
+    private void sendUpdate(JudgeInfo judgeInfo, String status, Long time, Long memory, String errorInfo, Integer passCount, Integer testCount) {
+        sendUpdate(judgeInfo, status, time, memory, errorInfo, passCount, testCount, null, null, null);
+    }
+
+    private void sendUpdate(JudgeInfo judgeInfo, String status, Long time, Long memory, String errorInfo,
+                            Integer passCount, Integer testCount,
+                            String caseInput, String caseExpected, String actualOutput) {
+        try {
+            Map<String, Object> data = new HashMap<>();
+            data.put("snowflakeId", String.valueOf(judgeInfo.getSnowflakeId())); // Ensure it's a string for JS
+            data.put("status", status);
+            data.put("description", JudgeStatusDescriber.describe(status, "submit"));
+            data.put("time", time);
+            data.put("memory", memory);
+            data.put("errorInfo", errorInfo);
+            data.put("passCount", passCount);
+            data.put("testCount", testCount);
+            if (judgeInfo.getTraceId() != null) data.put("traceId", judgeInfo.getTraceId());
+            // 仅在非比赛 + 非 AC 时由调用方填入；为空则不下发，避免泄露给比赛页面
+            if (caseInput != null) data.put("caseInput", caseInput);
+            if (caseExpected != null) data.put("caseExpected", caseExpected);
+            if (actualOutput != null) data.put("actualOutput", actualOutput);
+
+            String json = objectMapper.writeValueAsString(data);
+            judgeWebSocketHandler.sendMessageToUser(judgeInfo.getUid(), json);
+        } catch (Exception e) {
+            logger.error("Failed to send WebSocket update", e);
+        }
+    }
+
+    private static boolean isCompetition(JudgeInfo judgeInfo) {
+        return judgeInfo.getCid() != null && judgeInfo.getCid() != 0;
+    }
+
+    private static boolean isRejudge(JudgeInfo judgeInfo) {
+        return judgeInfo.getRejudgeJobId() != null;
+    }
+
+    private static String truncate(String text, int max) {
+        if (text == null) return null;
+        if (text.length() <= max) return text;
+        return text.substring(0, max) + "\n...(已截断)";
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
+import com.example.vnollxonlinejudge.model.vo.judge.JudgeTimelineVO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个提交的评测时间线。
+ * <p>
+ * traceId 在提交时生成，随 {@link JudgeInfo}（MQ 消息体与发件箱）、MQ 消息头 x-trace-id、
+ * Agent 请求头 X-Trace-Id 和 WebSocket 推送一路传递。各阶段在 Redis 列表 judge_trace:{snowflakeId}
+ * 末尾追加一条带时间戳的记录（一次管道往返），只保留最近 MAX_SPANS 条，TTL_HOURS 后过期。
+ * 多实例下不同阶段可能由不同实例记录，读取时按时间戳排序。记录失败只打日志，不影响评测。
+ */
+@Component
+public class JudgeTimeline {
+    private static final Logger logger = LoggerFactory.getLogger(JudgeTimeline.class);
+    public static final String HEADER_TRACE_ID = "x-trace-id";
+    private static final String KEY = "judge_trace:%d";
+    private static final long TTL_HOURS = 24L;
+    private static final int MAX_SPANS = 64;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final String instance = resolveInstance();
+
+    @Autowired
+    public JudgeTimeline(StringRedisTemplate stringRedisTemplate, ObjectMapper objectMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /** 16 位十六进制的随机 traceId。 */
+    public static String newTraceId() {
+        return HexFormat.of().toHexDigits(ThreadLocalRandom.current().nextLong());
+    }
+
+    public void record(JudgeInfo judgeInfo, String stage, String detail) {
+        record(judgeInfo.getSnowflakeId(), judgeInfo.getTraceId(), stage, detail);
+    }
+
+    public void record(Long snowflakeId, String traceId, String stage, String detail) {
+        if (snowflakeId == null) {
+            return;
+        }
+        try {
+            String key = String.format(KEY, snowflakeId);
+            String span = toJson(traceId, stage, detail);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                appendSpan((StringRedisConnection) connection, key, span);
+                return null;
+            });
+        } catch (Exception e) {
+            logger.warn("记录评测时间线失败: snowflakeId={}, stage={}, reason={}", snowflakeId, stage, e.toString());
+        }
+    }
+
+    /** 批量投递后整批记一次，一次管道往返。 */
+    public void recordAll(Collection<JudgeInfo> batch, String stage, String detail) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            List<String[]> spans = new ArrayList<>(batch.size());
+            for (JudgeInfo judgeInfo : batch) {
+                spans.add(new String[]{String.format(KEY, judgeInfo.getSnowflakeId()),
+                        toJson(judgeInfo.getTraceId(), stage, detail)});
+            }
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String[] span : spans) {
+                    appendSpan((StringRedisConnection) connection, span[0], span[1]);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            logger.warn("记录评测时间线失败: batchSize={}, stage={}, reason={}", batch.size(), stage, e.toString());
+        }
+    }
+
+    /** 按时间排序的全部记录，没有记录时返回空列表。 */
+    public List<JudgeTimelineVO.Span> spans(Long snowflakeId) {
+        List<String> raw = stringRedisTemplate.opsForList().range(String.format(KEY, snowflakeId), 0, -1);
+        List<JudgeTimelineVO.Span> spans = new ArrayList<>();
+        if (raw == null) {
+            return spans;
+        }
+        for (String json : raw) {
+            try {
+                spans.add(objectMapper.readValue(json, JudgeTimelineVO.Span.class));
+            } catch (Exception e) {
+                logger.warn("评测时间线记录无法解析: snowflakeId={}", snowflakeId);
+            }
+        }
+        spans.sort(Comparator.comparing(JudgeTimelineVO.Span::getTimestamp, Comparator.nullsFirst(Long::compare)));
+        return spans;
+    }
+
+    private static void appendSpan(StringRedisConnection connection, String key, String span) {
+        connection.rPush(key, span);
+        connection.lTrim(key, -MAX_SPANS, -1);
+        connection.expire(key, TimeUnit.HOURS.toSeconds(TTL_HOURS));
+    }
+
+    private String toJson(String traceId, String stage, String detail) throws Exception {
+        JudgeTimelineVO.Span span = new JudgeTimelineVO.Span();
+        span.setTraceId(traceId);
+        span.setStage(stage);
+        span.setTimestamp(System.currentTimeMillis());
+        span.setInstance(instance);
+        span.setDetail(detail);
+        return objectMapper.writeValueAsString(span);
+    }
+
+    private static String resolveInstance() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.vnollxonlinejudge.judge;
+
+import java.util.Arrays;
+
+/**
+ * 最近 N 次耗时的滑动窗口，用于估计分位数。样本数不足 minSamples 时返回 -1（不可信）。
+ * 分位数每写入 N/8 个样本才重新排序计算一次，读取是 O(1)。
+ */
+final class LatencyWindow {
+    private final long[] samples;
+    private final int minSamples;
+    private final double quantile;
+    private int next;
+    private int count;
+    private int sinceRecompute;
+    private volatile long cached = -1L;
+
+    LatencyWindow(int size, int minSamples, double quantile) {
+        this.samples = new long[size];
+        this.minSamples = minSamples;
+        this.quantile = quantile;
+    }
+
+    synchronized void record(long elapsedMs) {
+        samples[next] = elapsedMs;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        if (count >= minSamples && (cached < 0 || ++sinceRecompute >= Math.max(1, samples.length / 8))) {
+            long[] copy = Arrays.copyOf(samples, count);
+            Arrays.sort(copy);
+            cached = copy[Math.min(count - 1, (int) Math.ceil(quantile * count) - 1)];
+            sinceRecompute = 0;
+        }
+    }
+
+    long quantileMs() {
+        return cached;
+    }
+}
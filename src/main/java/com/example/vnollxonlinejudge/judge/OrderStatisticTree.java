@@ -0,0 +1,154 @@
+package com.example.vnollxonlinejudge.judge;
+
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 带子树大小的 treap：增删、取最小、按元素求排名均为期望 O(log n)。
+ * 用于公平队列回答"前方还有几位"——TreeSet.headSet(e).size() 需要线性遍历。
+ * 元素按 comparator 唯一，非线程安全，由调用方加锁。
+ */
+final class OrderStatisticTree<E> {
+
+    private static final class Node<E> {
+        final E value;
+        final int priority;
+        int size = 1;
+        Node<E> left;
+        Node<E> right;
+
+        Node(E value) {
+            this.value = value;
+            this.priority = ThreadLocalRandom.current().nextInt();
+        }
+    }
+
+    private final Comparator<? super E> comparator;
+    private Node<E> root;
+
+    OrderStatisticTree(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    void add(E value) {
+        root = insert(root, new Node<>(value));
+    }
+
+    boolean remove(E value) {
+        int before = size(root);
+        root = delete(root, value);
+        return size(root) < before;
+    }
+
+    E pollFirst() {
+        if (root == null) {
+            return null;
+        }
+        Node<E> node = root;
+        while (node.left != null) {
+            node = node.left;
+        }
+        E first = node.value;
+        root = delete(root, first);
+        return first;
+    }
+
+    /** 严格小于 value 的元素个数。 */
+    int rank(E value) {
+        int rank = 0;
+        Node<E> node = root;
+        while (node != null) {
+            if (comparator.compare(value, node.value) <= 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    private Node<E> insert(Node<E> node, Node<E> fresh) {
+        if (node == null) {
+            return fresh;
+        }
+        if (fresh.priority > node.priority) {
+            Node<E>[] parts = split(node, fresh.value);
+            fresh.left = parts[0];
+            fresh.right = parts[1];
+            return update(fresh);
+        }
+        if (comparator.compare(fresh.value, node.value) < 0) {
+            node.left = insert(node.left, fresh);
+        } else {
+            node.right = insert(node.right, fresh);
+        }
+        return update(node);
+    }
+
+    private Node<E> delete(Node<E> node, E value) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = comparator.compare(value, node.value);
+        if (cmp == 0) {
+            return merge(node.left, node.right);
+        }
+        if (cmp < 0) {
+            node.left = delete(node.left, value);
+        } else {
+            node.right = delete(node.right, value);
+        }
+        return update(node);
+    }
+
+    /** 拆成 [小于 key] 与 [大于等于 key] 两棵。 */
+    @SuppressWarnings("unchecked")
+    private Node<E>[] split(Node<E> node, E key) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        if (comparator.compare(node.value, key) < 0) {
+            Node<E>[] parts = split(node.right, key);
+            node.right = parts[0];
+            parts[0] = update(node);
+            return parts;
+        }
+        Node<E>[] parts = split(node.left, key);
+        node.left = parts[1];
+        parts[1] = update(node);
+        return parts;
+    }
+
+    private Node<E> merge(Node<E> left, Node<E> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    private Node<E> update(Node<E> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        return node;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.vnollxonlinejudge.judge;
+
+/**
+ * 重试预算（令牌桶）：每个首发请求存入 ratio 个令牌，每次重试取出 1 个，桶容量为 maxTokens。
+ * 稳态下重试量不超过请求量的 ratio 倍；Agent 集体故障时预算很快耗尽，重试不会把流量放大成风暴。
+ */
+final class RetryBudget {
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    RetryBudget(double ratio, int maxTokens) {
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+    }
+
+    synchronized void onRequest() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    synchronized boolean tryAcquire() {
+        if (tokens < 1.0) {
+            return false;
+        }
+        tokens -= 1.0;
+        return true;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.config.JudgeAgentConfig;
+import com.example.vnollxonlinejudge.exception.RateLimitException;
+import com.example.vnollxonlinejudge.model.result.RunResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 样例运行派发：与正式评测完全隔离的一条通路。
+ * <p>
+ * 准入时先查结果缓存，未命中再按排队数做负载感知的准入控制——全局、每用户各有上限，正式评测占用率
+ * 达到 sample-shed-load 时全局上限收紧，满载时最先被丢弃的是样例运行。通过准入的请求在虚拟线程上
+ * 等待端点的样例许可（最多 sample-queue-timeout-ms），不占用正式评测的许可与 Servlet 线程。
+ */
+@Component
+public class SampleRunDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(SampleRunDispatcher.class);
+
+    private final JudgeAgentClient judgeAgentClient;
+    private final JudgeAgentRouter judgeAgentRouter;
+    private final JudgeResultCache judgeResultCache;
+    private final JudgeAgentConfig config;
+    private final ExecutorService executor;
+    /** 排队 + 运行中的样例数 */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Map<Long, Integer> pendingByUser = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SampleRunDispatcher(
+            JudgeAgentClient judgeAgentClient,
+            JudgeAgentRouter judgeAgentRouter,
+            JudgeResultCache judgeResultCache,
+            JudgeAgentConfig config,
+            @Qualifier("judgeDispatchExecutor") ExecutorService executor
+    ) {
+        this.judgeAgentClient = judgeAgentClient;
+        this.judgeAgentRouter = judgeAgentRouter;
+        this.judgeResultCache = judgeResultCache;
+        this.config = config;
+        this.executor = executor;
+    }
+
+    /** 提交一次样例运行；缓存命中返回已完成的 future，准入失败抛 {@link RateLimitException}。 */
+    public CompletableFuture<RunResult> submit(Long uid, AgentSampleRequest req) {
+        RunResult cached = judgeResultCache.getSample(req);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        admit(uid);
+        try {
+            return CompletableFuture
+                    .supplyAsync(() -> run(req), executor)
+                    .whenComplete((result, ex) -> leave(uid));
+        } catch (RuntimeException e) {
+            leave(uid);
+            throw e;
+        }
+    }
+
+    private RunResult run(AgentSampleRequest req) {
+        RunResult result = judgeAgentClient.runSample(req, config.getSampleQueueTimeoutMs());
+        judgeResultCache.putSample(req, result);
+        return result;
+    }
+
+    private void admit(Long uid) {
+        double load = judgeAgentRouter.submissionLoad();
+        int limit = load >= config.getSampleShedLoad() ? config.getSampleMaxPendingUnderLoad() : config.getSampleMaxPending();
+        if (pending.incrementAndGet() > limit) {
+            pending.decrementAndGet();
+            logger.warn("样例运行被拒绝: 排队数已达上限 {}, 正式评测占用率={}", limit, String.format("%.2f", load));
+            throw new RateLimitException("评测机繁忙，请稍后再运行样例");
+        }
+        if (pendingByUser.merge(uid, 1, Integer::sum) > config.getSampleMaxPendingPerUser()) {
+            leave(uid);
+            throw new RateLimitException("上一次样例运行尚未完成，请稍候");
+        }
+    }
+
+    private void leave(Long uid) {
+        pending.decrementAndGet();
+        pendingByUser.computeIfPresent(uid, (k, v) -> v <= 1 ? null : v - 1);
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.config.SubmissionWriteConfig;
+import com.example.vnollxonlinejudge.service.SubmissionService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 提交评测状态的合并批量写入（write-behind）。
+ * <p>
+ * 每次评测原本要对 submission 做两次"selectOne + updateById"整行读改写。这里改为按 snowflakeId
+ * 直接 {@code UPDATE ... WHERE snowflake_id = ?}，并在内存中按 snowflakeId 合并：同一提交在一个刷写周期内
+ * 的多次更新只写最后一次，"评测中"永远不会覆盖已排队的最终结果。后台线程每 flush-interval-ms 或攒满
+ * batch-size 行时刷写一次：最终结果用一个事务做 JDBC 批量更新，"评测中"只改 status、单独成批，
+ * 两者互不影响。空字段一律保留原值，与原来 updateById 跳过 null 字段的行为一致。
+ * <p>
+ * 持久性：{@link #writeRunning} 立即返回，丢失只会让页面多显示一会儿"等待评测"；
+ * {@link #writeFinal} 阻塞到包含该行的批次提交为止（组提交），批次失败或超时则直接单条更新，
+ * 仍失败才抛出。因此调用方在它返回后做统计与推送时，最终结果一定已经落库。
+ */
+@Component
+public class SubmissionStatusWriter {
+    private static final Logger logger = LoggerFactory.getLogger(SubmissionStatusWriter.class);
+    private static final String STATUS_RUNNING = "评测中";
+    /** 与原来的 updateById 一样，空字段不覆盖已有值（memory 是 not null 列，写 NULL 在严格模式下直接报错） */
+    private static final String UPDATE_SQL =
+            "UPDATE submission SET status = ?, time = COALESCE(?, time), memory = COALESCE(?, memory), " +
+            "error_info = COALESCE(?, error_info), pass_count = COALESCE(?, pass_count), " +
+            "test_count = COALESCE(?, test_count) WHERE snowflake_id = ?";
+    /** "评测中"只改状态，单独成批，不和最终结果放在同一事务里 */
+    private static final String UPDATE_RUNNING_SQL = "UPDATE submission SET status = ? WHERE snowflake_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SubmissionService submissionService;
+    private final SubmissionWriteConfig config;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchFull = lock.newCondition();
+    private LinkedHashMap<Long, PendingUpdate> pending = new LinkedHashMap<>();
+    private volatile boolean running = true;
+    private final Thread flusher;
+
+    @Autowired
+    public SubmissionStatusWriter(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            SubmissionService submissionService,
+            SubmissionWriteConfig config
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.submissionService = submissionService;
+        this.config = config;
+        this.flusher = Thread.ofPlatform().daemon().name("submission-status-writer").start(this::flushLoop);
+    }
+
+    /** 置"评测中"：入队即返回。 */
+    public void writeRunning(Long snowflakeId) {
+        enqueue(new PendingUpdate(snowflakeId, STATUS_RUNNING, null, null, null, null, null, false));
+    }
+
+    /** 写最终结果：等待所在批次提交；批次失败或超时改为直接单条更新。 */
+    public void writeFinal(Long snowflakeId, String status, Long time, Long memory, String errorInfo,
+                           Integer passCount, Integer testCount) {
+        PendingUpdate update = new PendingUpdate(snowflakeId, status, time, memory, errorInfo, passCount, testCount, true);
+        CompletableFuture<Void> done = enqueue(update);
+        try {
+            done.get(config.getFinalTimeoutMs(), TimeUnit.MILLISECONDS);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("评测结果批量写入未完成，改为单条更新: snowflakeId={}, reason={}", snowflakeId, e.toString());
+        }
+        submissionService.updateSubmissionJudgeStatusBySnowflake(
+                snowflakeId, status, time, memory, errorInfo, passCount, testCount);
+    }
+
+    private CompletableFuture<Void> enqueue(PendingUpdate update) {
+        lock.lock();
+        try {
+            PendingUpdate existing = pending.get(update.snowflakeId);
+            if (existing == null) {
+                pending.put(update.snowflakeId, update);
+                if (pending.size() >= config.getBatchSize()) {
+                    batchFull.signal();
+                }
+                return update.done;
+            }
+            if (existing.fin && !update.fin) {
+                // 最终结果已在队列中，迟到的"评测中"直接丢弃
+                return existing.done;
+            }
+            existing.overwrite(update);
+            return existing.done;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            Map<Long, PendingUpdate> batch;
+            lock.lock();
+            try {
+                if (pending.size() < config.getBatchSize()) {
+                    batchFull.await(config.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                }
+                batch = takePending();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                lock.unlock();
+            }
+            flush(batch);
+        }
+        lock.lock();
+        try {
+            flush(takePending());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 调用方持有锁。 */
+    private Map<Long, PendingUpdate> takePending() {
+        if (pending.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, PendingUpdate> batch = pending;
+        pending = new LinkedHashMap<>();
+        return batch;
+    }
+
+    private void flush(Map<Long, PendingUpdate> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<PendingUpdate> rows = new ArrayList<>();
+        List<PendingUpdate> runningRows = new ArrayList<>();
+        for (PendingUpdate row : batch.values()) {
+            (row.fin ? rows : runningRows).add(row);
+        }
+        flushRunning(runningRows);
+        flushFinal(rows);
+    }
+
+    private void flushRunning(List<PendingUpdate> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_RUNNING_SQL, rows, config.getBatchSize(), (ps, row) -> {
+                ps.setString(1, row.status);
+                ps.setLong(2, row.snowflakeId);
+            });
+            rows.forEach(row -> row.done.complete(null));
+        } catch (Exception e) {
+            // "评测中"丢了无妨，随后的最终结果会覆盖
+            logger.warn("批量写入评测中状态失败: rows={}, reason={}", rows.size(), e.toString());
+            rows.forEach(row -> row.done.completeExceptionally(e));
+        }
+    }
+
+    private void flushFinal(List<PendingUpdate> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(UPDATE_SQL, rows, config.getBatchSize(), (ps, row) -> {
+                        ps.setString(1, row.status);
+                        ps.setObject(2, row.time, Types.BIGINT);
+                        ps.setObject(3, row.memory, Types.BIGINT);
+                        ps.setString(4, row.errorInfo);
+                        ps.setObject(5, row.passCount, Types.INTEGER);
+                        ps.setObject(6, row.testCount, Types.INTEGER);
+                        ps.setLong(7, row.snowflakeId);
+                    }));
+            rows.forEach(row -> row.done.complete(null));
+        } catch (Exception e) {
+            // 最终结果由等待方各自回退为单条更新
+            logger.error("批量写入评测状态失败: rows={}", rows.size(), e);
+            rows.forEach(row -> row.done.completeExceptionally(e));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        lock.lock();
+        try {
+            batchFull.signal();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private static final class PendingUpdate {
+        final Long snowflakeId;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        String status;
+        Long time;
+        Long memory;
+        String errorInfo;
+        Integer passCount;
+        Integer testCount;
+        boolean fin;
+
+        PendingUpdate(Long snowflakeId, String status, Long time, Long memory, String errorInfo,
+                      Integer passCount, Integer testCount, boolean fin) {
+            this.snowflakeId = snowflakeId;
+            this.status = status;
+            this.time = time;
+            this.memory = memory;
+            this.errorInfo = errorInfo;
+            this.passCount = passCount;
+            this.testCount = testCount;
+            this.fin = fin;
+        }
+
+        void overwrite(PendingUpdate other) {
+            this.status = other.status;
+            this.time = other.time;
+            this.memory = other.memory;
+            this.errorInfo = other.errorInfo;
+            this.passCount = other.passCount;
+            this.testCount = other.testCount;
+            this.fin = other.fin;
+        }
+    }
+}
@@ -16,6 +16,7 @@ import org.springframework.data.redis.listener.KeyExpirationEventMessageListener
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -30,11 +31,11 @@ public class CompetitionExpirationListener extends KeyExpirationEventMessageList
     private CompetitionProblemService competitionProblemService;
     @Autowired
     private RedisService redisService;
-    private static final String USER_PASS_COUNT_KEY = "competition_user_pass:%d:%s"; // cid:uid
-    private static final String USER_PENALTY_KEY = "competition_user_penalty:%d:%s"; // cid:uid
+    private static final String USER_STATS_KEY = "competition_user_stats:%d"; // cid，字段 pass:{name} / penalty:{name}
     private static final String PROBLEM_PASS_KEY = "competition_problem_pass:%d:%d"; // cid:pid
     private static final String PROBLEM_SUBMIT_KEY = "competition_problem_submit:%d:%d"; // cid:pid
     private static final String RANKING_KEY = "competition_ranking:%d"; // cid
+    private static final int USER_SYNC_BATCH = 500;
 
     private static final String TIME_OUT_KEY = "competition_time_out:%d"; // cid
     public CompetitionExpirationListener(RedisMessageListenerContainer listenerContainer) {
@@ -95,22 +96,21 @@ public class CompetitionExpirationListener extends KeyExpirationEventMessageList
 
         // 获取所有用户排名（按分数从高到低）
         Set<ZSetOperations.TypedTuple<String>> userTuples = redisService.getZset(rankingKey);
+        // 用户通过题目数和罚时：整场一次 HGETALL
+        Map<String, int[]> stats = redisService.getParticipantStats(String.format(USER_STATS_KEY, cid));
 
+        // 覆盖式更新：与 5 分钟定时同步保持一致，避免在定时器写完 DB 后再次累加导致重复计数
+        // 比赛结束全量落一次，按批一条 UPDATE
+        Map<String, int[]> batch = new HashMap<>();
         for (ZSetOperations.TypedTuple<String> tuple : userTuples) {
             String userName = tuple.getValue();
-            // 获取用户通过题目数和罚时
-            String userPassKey = String.format(USER_PASS_COUNT_KEY, cid, userName);
-            String userPenaltyKey = String.format(USER_PENALTY_KEY, cid, userName);
-
-            String passCountStr = stringRedisTemplate.opsForValue().get(userPassKey);
-            String penaltyTimeStr = stringRedisTemplate.opsForValue().get(userPenaltyKey);
-            
-            int passCount = passCountStr != null ? Integer.parseInt(passCountStr) : 0;
-            int penaltyTime = penaltyTimeStr != null ? Integer.parseInt(penaltyTimeStr) : 0;
-
-            // 覆盖式更新：与 5 分钟定时同步保持一致，避免在定时器写完 DB 后再次累加导致重复计数
-            competitionUserService.setStats(cid, userName, passCount, penaltyTime);
+            batch.put(userName, stats.getOrDefault(userName, new int[2]));
+            if (batch.size() >= USER_SYNC_BATCH) {
+                competitionUserService.setStatsBatch(cid, batch);
+                batch = new HashMap<>();
+            }
         }
+        competitionUserService.setStatsBatch(cid, batch);
     }
 
     // 同步题目提交数据（与之前方案类似）
@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.vnollxonlinejudge.model.entity.CompetitionUser;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
@@ -12,4 +13,11 @@ import java.util.List;
 @Mapper
 public interface CompetitionUserMapper extends BaseMapper<CompetitionUser> {
 
+    /** 一条语句覆盖一批参赛者的通过数与罚时（按 name 匹配，与 setStats 相同口径） */
+    @Update("<script>UPDATE competition_user SET " +
+            "pass_count = CASE name <foreach collection='stats' item='s'>WHEN #{s.name} THEN #{s.passCount} </foreach>END, " +
+            "penalty_time = CASE name <foreach collection='stats' item='s'>WHEN #{s.name} THEN #{s.penaltyTime} </foreach>END " +
+            "WHERE competition_id = #{cid} AND name IN " +
+            "<foreach collection='stats' item='s' open='(' separator=',' close=')'>#{s.name}</foreach></script>")
+    void updateStatsBatch(@Param("cid") Long cid, @Param("stats") List<CompetitionUser> stats);
 }
@@ -0,0 +1,22 @@
+package com.example.vnollxonlinejudge.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.vnollxonlinejudge.model.entity.JudgeOutbox;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+
+@Mapper
+public interface JudgeOutboxMapper extends BaseMapper<JudgeOutbox> {
+
+    /** 一批消息收到 broker 确认后整体标记为已投递 */
+    @Update("<script>UPDATE judge_outbox SET status = 1, attempts = attempts + 1, sent_time = NOW() " +
+            "WHERE snowflake_id IN <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    void markSent(@Param("ids") Collection<Long> snowflakeIds);
+
+    /** 重试次数用尽进了死信队列：保留行但不再参与启动恢复 */
+    @Update("UPDATE judge_outbox SET status = 2 WHERE snowflake_id = #{snowflakeId}")
+    int markDead(@Param("snowflakeId") Long snowflakeId);
+}
@@ -8,6 +8,7 @@ import com.example.vnollxonlinejudge.model.vo.statistics.LanguageStatVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
 
@@ -29,5 +30,15 @@ public interface SubmissionMapper extends BaseMapper<Submission> {
     /** 按用户+日期统计提交数（学习分析：某用户近 N 天每日提交量） */
     @Select("SELECT LEFT(create_time, 10) AS date, COUNT(*) AS count FROM submission WHERE create_time >= #{startDate} AND uid = #{uid} GROUP BY LEFT(create_time, 10) ORDER BY date ASC")
     List<DailySubmissionVO> countByDateAndUser(@Param("startDate") String startDate, @Param("uid") Long uid);
+
+    /** 按 snowflakeId 直接更新评测状态，不先读整行；空字段保留原值，与 updateById 一致 */
+    @Update("UPDATE submission SET status = #{status}, time = COALESCE(#{time}, time), " +
+            "memory = COALESCE(#{memory}, memory), error_info = COALESCE(#{errorInfo}, error_info), " +
+            "pass_count = COALESCE(#{passCount}, pass_count), test_count = COALESCE(#{testCount}, test_count) " +
+            "WHERE snowflake_id = #{snowflakeId}")
+    void updateJudgeStatusBySnowflake(@Param("snowflakeId") Long snowflakeId, @Param("status") String status,
+                                      @Param("time") Long time, @Param("memory") Long memory,
+                                      @Param("errorInfo") String errorInfo, @Param("passCount") Integer passCount,
+                                      @Param("testCount") Integer testCount);
 }
 
@@ -0,0 +1,25 @@
+package com.example.vnollxonlinejudge.model.dto.judge;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/** judge-agent 注册 / 心跳上报 */
+@Data
+public class AgentHeartbeatDTO {
+    /** Agent 对后端可达的地址，如 http://10.0.0.3:8090 */
+    private String url;
+    /** 该 Agent 同时承载的评测数 */
+    private Integer capacity;
+    /** 该 Agent 同时承载的样例运行数，为空时使用后端 default-sample-capacity */
+    private Integer sampleCapacity;
+    /** Agent 自身统计的在途评测数 */
+    private Integer inFlight;
+    /** 空闲内存（MB） */
+    private Long freeMemoryMb;
+    /** 已缓存的题目数据版本：problemId -> dataVersion */
+    private Map<Long, String> dataVersions;
+    /** 支持的请求体编码，如 ["cbor", "gzip"]；旧版 Agent 不上报，只收 JSON */
+    private List<String> codecs;
+}
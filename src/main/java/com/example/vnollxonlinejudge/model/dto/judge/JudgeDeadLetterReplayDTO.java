@@ -0,0 +1,12 @@
+package com.example.vnollxonlinejudge.model.dto.judge;
+
+import lombok.Data;
+
+import java.util.List;
+
+/** 死信重投范围 */
+@Data
+public class JudgeDeadLetterReplayDTO {
+    /** 只重投这些提交；为空表示重投全部可解析的死信 */
+    private List<Long> snowflakeIds;
+}
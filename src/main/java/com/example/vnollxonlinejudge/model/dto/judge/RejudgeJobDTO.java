@@ -0,0 +1,14 @@
+package com.example.vnollxonlinejudge.model.dto.judge;
+
+import lombok.Data;
+
+import java.util.List;
+
+/** 批量重判范围：题目 / 比赛 / 状态可任意组合，至少指定一项 */
+@Data
+public class RejudgeJobDTO {
+    private Long pid;
+    private Long cid;
+    /** 只重判这些状态的提交，如 ["判题错误"]；为空表示不限 */
+    private List<String> statuses;
+}
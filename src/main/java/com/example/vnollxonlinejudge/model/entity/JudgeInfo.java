@@ -23,4 +23,10 @@ public class JudgeInfo {
     private Long snowflakeId;
     private String judgeMode;
     private String checkerFile;
+    /** 重判任务 id；非空表示这是一次重判：走低优先级通道，结果落地后按差量修正统计 */
+    private Long rejudgeJobId;
+    /** 重判前的评测结果 */
+    private String previousStatus;
+    /** 评测时间线的 traceId，提交（或重判入队）时生成，见 JudgeTimeline */
+    private String traceId;
 }
@@ -0,0 +1,39 @@
+package com.example.vnollxonlinejudge.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 评测消息发件箱：与提交记录在同一事务中写入，投递确认后标记已投递，评测完成后删除。
+ * 表中残留的待投递 / 已投递行即"尚未评测完成"的提交，重启后据此重新投递；
+ * 重试次数用尽进了死信队列的行标记为 2，不再自动恢复，只能由管理端重投。
+ */
+@TableName("judge_outbox")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JudgeOutbox {
+    public static final int STATUS_NEW = 0;
+    public static final int STATUS_SENT = 1;
+    public static final int STATUS_DEAD = 2;
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    private Long snowflakeId;
+    /** JudgeInfo 的 JSON */
+    private String payload;
+    /** 0 待投递，1 已投递（收到 broker 确认），2 已进死信队列 */
+    private Integer status;
+    /** 投递次数 */
+    private Integer attempts;
+    private LocalDateTime createTime;
+    private LocalDateTime sentTime;
+}
@@ -61,9 +61,8 @@ public class Submission {
     private Integer testCount;
 
     /**
-     * 入库时记录的"前方等待数"快照。仅在 status='等待评测' 时有意义；
-     * 评测开始/结束后值会保留作为历史记录，但不再代表实时位置。
-     * 列表查询会基于最新 status='等待评测' 的集合做懒计算覆盖。
+     * 历史字段：旧版本入库时记录的"前方等待数"快照，新提交不再写入。
+     * 对外展示的位置一律由公平队列实时给出，查询时覆盖本字段。
      */
     @Column(name = "queue_ahead")
     private Integer queueAhead;
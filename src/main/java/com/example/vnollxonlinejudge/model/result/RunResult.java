@@ -1,5 +1,6 @@
 package com.example.vnollxonlinejudge.model.result;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 
@@ -23,6 +24,9 @@ public class RunResult {
     private String caseInput;
     /** 失败用例的期望输出（由 judge-agent 返回） */
     private String caseExpected;
+    /** 后端读取响应时有字段超过长度上限被截断（不来自 judge-agent） */
+    @JsonIgnore
+    private boolean truncated;
 
     public RunResult() {
     }
@@ -31,6 +35,7 @@ public class RunResult {
     public void setStatus(String status) { this.status = status; }
     public void setCaseInput(String caseInput) { this.caseInput = caseInput; }
     public void setCaseExpected(String caseExpected) { this.caseExpected = caseExpected; }
+    public void setTruncated(boolean truncated) { this.truncated = truncated; }
 
     public void setExitStatus(int exitStatus) { this.exitStatus = exitStatus; }
 
@@ -0,0 +1,16 @@
+package com.example.vnollxonlinejudge.model.vo.competition;
+
+import lombok.Data;
+
+/** 当前用户（或其队伍）在榜上的位置，前端据此直接跳到所在页 */
+@Data
+public class CompetitionRankOfVo {
+    /** 名次，并列同名次 */
+    private Integer rank;
+    /** 在榜单中的序号，从 1 开始 */
+    private Integer position;
+    private Integer total;
+    /** 按请求的 pageSize 计算的所在页，从 1 开始 */
+    private Integer page;
+    private CompetitionRanklistVo.UserRankVo user;
+}
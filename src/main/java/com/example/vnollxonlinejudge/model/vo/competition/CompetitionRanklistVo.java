@@ -9,6 +9,10 @@ import java.util.List;
 public class CompetitionRanklistVo {
     private List<ProblemRankVo> problems = new ArrayList<>();
     private List<UserRankVo> users = new ArrayList<>();
+    /** 分页查询时的参赛者总数与页码，全量榜单为空 */
+    private Integer total;
+    private Integer page;
+    private Integer pageSize;
 
     @Data
     public static class ProblemRankVo {
@@ -21,6 +25,8 @@ public class CompetitionRanklistVo {
 
     @Data
     public static class UserRankVo {
+        /** 名次，从 1 开始，通过数与罚时都相同的并列 */
+        private Integer rank;
         private Long id;
         private String name;
         private String type;
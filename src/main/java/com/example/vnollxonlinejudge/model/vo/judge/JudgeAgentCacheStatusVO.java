@@ -0,0 +1,19 @@
+package com.example.vnollxonlinejudge.model.vo.judge;
+
+import lombok.Data;
+
+/** 某个 judge-agent 上某道题的测试数据缓存情况 */
+@Data
+public class JudgeAgentCacheStatusVO {
+    private String url;
+    private Long problemId;
+    /** 题目当前数据版本 */
+    private String expectedVersion;
+    /** 期望版本是否已在 Agent 本地缓存就绪 */
+    private Boolean cached;
+    private Integer caseCount;
+    /** Agent 最近一次心跳上报的该题缓存版本，未上报为空 */
+    private String reportedVersion;
+    /** 查询 Agent 失败的原因 */
+    private String error;
+}
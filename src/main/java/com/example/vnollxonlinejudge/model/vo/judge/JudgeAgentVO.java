@@ -0,0 +1,37 @@
+package com.example.vnollxonlinejudge.model.vo.judge;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class JudgeAgentVO {
+    private String url;
+    private Integer capacity;
+    /** 自适应并发上限（不超过 capacity） */
+    private Integer limit;
+    /** 后端视角的在途评测数 */
+    private Integer inFlight;
+    /** 样例运行许可数 / 在途数 */
+    private Integer sampleCapacity;
+    private Integer sampleInFlight;
+    /** Agent 心跳上报的在途评测数 */
+    private Integer reportedInFlight;
+    private Long freeMemoryMb;
+    /** 已缓存数据的题目数 */
+    private Integer cachedProblemCount;
+    /** 支持的请求体编码（cbor / gzip），为空表示只收 JSON */
+    private List<String> codecs;
+    /** 评测长连接（/ws/judge）是否已连上，未连上时走 HTTP */
+    private Boolean channelConnected;
+    /** 评测耗时 EWMA（毫秒） */
+    private Long latencyEwmaMs;
+    private Boolean healthy;
+    private Boolean draining;
+    /** 管理员手动摘流（心跳不会取消，需 undrain） */
+    private Boolean adminDrained;
+    /** 是否心跳动态注册 */
+    private Boolean dynamic;
+    /** 最近一次心跳时间戳（毫秒），静态端点未心跳时为 0 */
+    private Long lastHeartbeat;
+}
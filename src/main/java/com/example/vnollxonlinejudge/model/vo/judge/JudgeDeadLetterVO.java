@@ -0,0 +1,24 @@
+package com.example.vnollxonlinejudge.model.vo.judge;
+
+import lombok.Data;
+
+@Data
+public class JudgeDeadLetterVO {
+    /** 消息无法解析时为空，可参考 correlationId */
+    private Long snowflakeId;
+    private String correlationId;
+    private Long uid;
+    private Long pid;
+    private Long cid;
+    private String language;
+    private Long rejudgeJobId;
+    /** 已失败次数 */
+    private Integer attempts;
+    /** 最近一次失败原因 */
+    private String error;
+    private Long deadAt;
+    /** 消息体能否解析为评测消息；不能解析的毒消息不会被重投 */
+    private Boolean parsable;
+    /** 无法解析时附带消息体开头，便于排查 */
+    private String bodyPreview;
+}
@@ -17,10 +17,16 @@ public class JudgeResultVO {
     private String actualOutput;
     private Integer passCount;
     private Integer testCount;
+    /** 程序输出 / 错误信息过长，已截断 */
+    private Boolean truncated;
     private Long snowflakeId;
     /**
      * 提交入队时，评测队列中排在本次提交前面的任务数量。
      * 仅在正式提交 (judgeSubmission) 的响应中填充，前端可用于展示"队列前方还有 N 位"。
      */
     private Integer queueAhead;
+    /**
+     * 异步样例运行的凭据，仅 testSubmissionAsync 的响应与随后的 WebSocket 推送（type=sample）中填充。
+     */
+    private String ticket;
 }
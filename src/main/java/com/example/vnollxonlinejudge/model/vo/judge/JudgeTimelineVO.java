@@ -0,0 +1,28 @@
+package com.example.vnollxonlinejudge.model.vo.judge;
+
+import lombok.Data;
+
+import java.util.List;
+
+/** 单个提交的评测时间线 */
+@Data
+public class JudgeTimelineVO {
+    private Long snowflakeId;
+    /** 按时间排序的阶段记录；重判会在同一提交下追加一组新 traceId 的记录 */
+    private List<Span> spans;
+    /** 第一条到最后一条记录的跨度（毫秒） */
+    private Long totalMs;
+
+    @Data
+    public static class Span {
+        private String traceId;
+        /** submitted / queued / published / consumed / running / agent_acquired / agent_done / db_written / processed / pushed 等 */
+        private String stage;
+        private Long timestamp;
+        /** 相对第一条记录的偏移（毫秒），查询时计算 */
+        private Long offsetMs;
+        /** 记录该阶段的后端实例 */
+        private String instance;
+        private String detail;
+    }
+}
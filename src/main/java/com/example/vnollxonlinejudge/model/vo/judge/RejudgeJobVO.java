@@ -0,0 +1,30 @@
+package com.example.vnollxonlinejudge.model.vo.judge;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class RejudgeJobVO {
+    private Long id;
+    private Long pid;
+    private Long cid;
+    private List<String> statuses;
+    /** RUNNING / FINISHED / CANCELLED / FAILED */
+    private String state;
+    /** 任务创建时命中的提交数 */
+    private Integer total;
+    /** 已送入评测队列 */
+    private Integer enqueued;
+    /** 已在其他进行中的重判任务里排队、本任务跳过的提交数 */
+    private Integer skipped;
+    /** 已出结果 */
+    private Integer finished;
+    /** 结果与重判前不同的提交数 */
+    private Integer changed;
+    /** 评测机异常、保留原结果的提交数 */
+    private Integer failed;
+    private Long operatorId;
+    private Long createTime;
+    private Long finishTime;
+}
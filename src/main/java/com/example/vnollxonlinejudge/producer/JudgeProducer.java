@@ -1,55 +1,64 @@
 package com.example.vnollxonlinejudge.producer;
 
+import com.example.vnollxonlinejudge.config.RabbitMQConfig;
+import com.example.vnollxonlinejudge.judge.JudgeCodec;
+import com.example.vnollxonlinejudge.judge.JudgeTimeline;
 import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessageDeliveryMode;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageBuilder;
 
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 @Service
 public class JudgeProducer {
     private static final Logger logger = LoggerFactory.getLogger(JudgeProducer.class);
+    /** 批量投递等待 broker 确认的上限 */
+    private static final long CONFIRM_TIMEOUT_MS = 5000L;
+    /** 已失败次数 */
+    public static final String HEADER_ATTEMPTS = "x-judge-attempts";
+    /** 最近一次失败原因 */
+    public static final String HEADER_ERROR = "x-judge-error";
+    /** 进入死信队列的时间戳（毫秒） */
+    public static final String HEADER_DEAD_AT = "x-judge-dead-at";
+    private static final int MAX_ERROR_LENGTH = 500;
     private final RabbitTemplate rabbitTemplate;
-    private final ObjectMapper objectMapper;
+    private final JudgeCodec judgeCodec;
     @Autowired
     public JudgeProducer(
             RabbitTemplate rabbitTemplate,
-            ObjectMapper objectMapper
+            JudgeCodec judgeCodec
     ){
         this.rabbitTemplate=rabbitTemplate;
-        this.objectMapper=objectMapper;
+        this.judgeCodec=judgeCodec;
     }
     /**
      * 发送评测消息。
      * <p>
-     * 队列位置（"前方还有 N 位"）由调用方在入库前基于 DB 统计得到，与本方法无关——
-     * MQ 只能给出总深度，无法定位具体一条消息的位置；此外 DB 计数与列表懒计算的口径一致，
-     * 能保证提交响应、列表刷新、单条详情三处显示完全统一。
+     * 正式提交不直接调用本方法，而是先进入 {@link com.example.vnollxonlinejudge.judge.FairJudgeQueue}，
+     * 由其泵线程按公平顺序经 {@link #sendJudgeBatch} 投递；队列位置（"前方还有 N 位"）也由公平队列给出——
+     * MQ 只能给出总深度，无法定位具体一条消息的位置。
      */
     public void sendJudge(int priority, JudgeInfo judgeInfo) {
-        String correlationId = UUID.randomUUID().toString();
+        String correlationId = judgeInfo.getTraceId() != null ? judgeInfo.getTraceId() : UUID.randomUUID().toString();
         try {
-            byte[] messageBody = objectMapper.writeValueAsBytes(judgeInfo);
-
-            Message message = MessageBuilder
-                    .withBody(messageBody)
-                    .setPriority(priority)
-                    .setCorrelationId(correlationId)
-                    .build();
+            Message message = toMessage(judgeCodec.encodeMessage(judgeInfo), priority, correlationId, judgeInfo.getTraceId());
 
             rabbitTemplate.send("judge", "judge.submit", message);
 
             logger.debug("消息发送成功, correlationId: {}", correlationId);
 
-        } catch (JsonProcessingException e) {
+        } catch (UncheckedIOException e) {
             logger.error("消息序列化失败: judgeInfo={}", judgeInfo, e);
             throw new RuntimeException("消息序列化失败: " + e.getMessage(), e);
 
@@ -59,4 +68,103 @@ public class JudgeProducer {
             throw new RuntimeException("消息发送失败: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 在同一个 channel 上连续发送一批评测消息，再统一等待 publisher confirm；
+     * 任一条被 nack 或等待超时都抛出，调用方整批重投（消费端按 snowflakeId 去重）。
+     */
+    public void sendJudgeBatch(int priority, List<JudgeInfo> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        try {
+            for (JudgeInfo judgeInfo : batch) {
+                messages.add(toMessage(judgeCodec.encodeMessage(judgeInfo), priority,
+                        String.valueOf(judgeInfo.getSnowflakeId()), judgeInfo.getTraceId()));
+            }
+        } catch (UncheckedIOException e) {
+            logger.error("消息序列化失败: batchSize={}", batch.size(), e);
+            throw new RuntimeException("消息序列化失败: " + e.getMessage(), e);
+        }
+        try {
+            rabbitTemplate.invoke(ops -> {
+                for (Message message : messages) {
+                    ops.send("judge", "judge.submit", message);
+                }
+                ops.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MS);
+                return null;
+            });
+            logger.debug("批量投递已确认: batchSize={}", messages.size());
+        } catch (AmqpException e) {
+            logger.error("批量投递到RabbitMQ失败: 交换机=judge, 路由键=judge.submit, batchSize={}", messages.size(), e);
+            throw new RuntimeException("消息发送失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * content-type / content-encoding 随消息带上，消费端据此解码，切换编码格式时新旧消息可以共存；
+     * traceId 同时放进 x-trace-id 消息头，不解码消息体也能在管理台 / 死信里对上时间线。
+     */
+    private static Message toMessage(JudgeCodec.Encoded encoded, int priority, String correlationId, String traceId) {
+        MessageBuilder builder = MessageBuilder
+                .withBody(encoded.getBody())
+                .setContentType(encoded.getContentType())
+                .setTimestamp(new Date())
+                .setPriority(priority)
+                .setCorrelationId(correlationId);
+        if (encoded.getContentEncoding() != null) {
+            builder.setContentEncoding(encoded.getContentEncoding());
+        }
+        if (traceId != null) {
+            builder.setHeader(JudgeTimeline.HEADER_TRACE_ID, traceId);
+        }
+        return builder.build();
+    }
+
+    /** 消息上记录的已失败次数，首次投递为 0。 */
+    public static int attemptsOf(Message message) {
+        Object value = message.getMessageProperties().getHeaders().get(HEADER_ATTEMPTS);
+        return value instanceof Number n ? n.intValue() : 0;
+    }
+
+    /** 原样投到延迟等待队列，TTL 到期后回到评测队列；失败次数与原因写在消息头里，时间戳刷新为重投时刻。 */
+    public void sendRetry(Message failed, int attempts, long delayMs, String error) {
+        Message message = MessageBuilder.fromClonedMessage(failed)
+                .setDeliveryMode(MessageDeliveryMode.PERSISTENT)
+                .setTimestamp(new Date())
+                .setHeader(HEADER_ATTEMPTS, attempts)
+                .setHeader(HEADER_ERROR, truncate(error))
+                .build();
+        sendConfirmed(RabbitMQConfig.JUDGE_RETRY_EXCHANGE, RabbitMQConfig.retryQueueName(delayMs), message);
+    }
+
+    /** 原样投到评测死信队列。 */
+    public void sendDeadLetter(Message failed, int attempts, String error) {
+        Message message = MessageBuilder.fromClonedMessage(failed)
+                .setDeliveryMode(MessageDeliveryMode.PERSISTENT)
+                .setHeader(HEADER_ATTEMPTS, attempts)
+                .setHeader(HEADER_ERROR, truncate(error))
+                .setHeader(HEADER_DEAD_AT, System.currentTimeMillis())
+                .build();
+        sendConfirmed(RabbitMQConfig.JUDGE_DEAD_LETTER_EXCHANGE, RabbitMQConfig.JUDGE_DEAD_LETTER_ROUTING_KEY, message);
+    }
+
+    /** 等待 broker 确认后才返回，调用方随后会确认（丢弃）原消息。 */
+    private void sendConfirmed(String exchange, String routingKey, Message message) {
+        try {
+            rabbitTemplate.invoke(ops -> {
+                ops.send(exchange, routingKey, message);
+                ops.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MS);
+                return null;
+            });
+        } catch (AmqpException e) {
+            logger.error("消息发送到RabbitMQ失败: 交换机={}, 路由键={}", exchange, routingKey, e);
+            throw new RuntimeException("消息发送失败: " + e.getMessage(), e);
+        }
+    }
+
+    private static String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) {
+            return error;
+        }
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -10,14 +10,13 @@ import com.example.vnollxonlinejudge.service.RedisService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 /**
  * 比赛数据定时同步任务
@@ -30,9 +29,10 @@ public class CompetitionDataSyncScheduler {
 
     private static final String PROBLEM_PASS_KEY = "competition_problem_pass:%d:%d";
     private static final String PROBLEM_SUBMIT_KEY = "competition_problem_submit:%d:%d";
-    private static final String USER_PASS_COUNT_KEY = "competition_user_pass:%d:%s";
-    private static final String USER_PENALTY_KEY = "competition_user_penalty:%d:%s";
-    private static final String RANKING_KEY = "competition_ranking:%d";
+    private static final String USER_STATS_KEY = "competition_user_stats:%d";
+    private static final String USER_DIRTY_KEY = "competition_user_dirty:%d";
+    /** 每批弹出的脏参赛者数，也是一条批量 UPDATE 的行数上限 */
+    private static final int USER_SYNC_BATCH = 500;
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private final CompetitionMapper competitionMapper;
@@ -101,42 +101,31 @@ public class CompetitionDataSyncScheduler {
     /**
      * 同步单个比赛的用户通过数 / 罚时。
      * 个人赛按用户账号同步；团队赛按队长账号同步。
-     * Redis 排行榜 ZSet 是当前比赛中所有参赛主体的快照，遍历它就能拿到 name 列表。
+     * 只同步上次同步以来有评测结果的参赛者：评测脚本把参赛者记进脏集合，这里按批弹出并读出统计（一次往返），
+     * 每批一条 UPDATE 落库，开销随提交量而不是参赛人数增长。落库失败时放回脏集合，下次重试。
+     * 统计 hash 不存在（Redis 丢失）的名字不会返回，避免把 DB 覆盖为 0；比赛结束时另有全量同步兜底。
      */
     private void syncCompetitionUserData(Long cid) {
-        String rankingKey = String.format(RANKING_KEY, cid);
-        Set<ZSetOperations.TypedTuple<String>> userTuples = redisService.getZset(rankingKey);
-        if (userTuples == null || userTuples.isEmpty()) {
-            logger.info("比赛 ID={} Redis 排行榜为空，跳过用户数据同步", cid);
-            return;
-        }
-
+        String statsKey = String.format(USER_STATS_KEY, cid);
+        String dirtyKey = String.format(USER_DIRTY_KEY, cid);
         int syncedCount = 0;
-        int skippedCount = 0;
-        for (ZSetOperations.TypedTuple<String> tuple : userTuples) {
-            String name = tuple.getValue();
-            if (name == null) {
-                skippedCount++;
-                continue;
+        while (true) {
+            Map<String, int[]> stats = redisService.popDirtyParticipantStats(dirtyKey, statsKey, USER_SYNC_BATCH);
+            if (stats.isEmpty()) {
+                break;
             }
-            String passKey = String.format(USER_PASS_COUNT_KEY, cid, name);
-            String penaltyKey = String.format(USER_PENALTY_KEY, cid, name);
-            String passCountStr = redisService.getValueByKey(passKey);
-            String penaltyTimeStr = redisService.getValueByKey(penaltyKey);
-
-            // 与题目同步同样原则：两个 key 都不存在时跳过，避免 Redis 丢失时把 DB 覆盖为 0
-            if (passCountStr == null && penaltyTimeStr == null) {
-                skippedCount++;
-                continue;
+            try {
+                competitionUserService.setStatsBatch(cid, stats);
+            } catch (RuntimeException e) {
+                redisService.markParticipantsDirty(dirtyKey, stats.keySet());
+                throw e;
+            }
+            syncedCount += stats.size();
+            if (stats.size() < USER_SYNC_BATCH) {
+                break;
             }
-
-            int passCount = passCountStr != null ? safeParseInt(passCountStr) : 0;
-            int penaltyTime = penaltyTimeStr != null ? safeParseInt(penaltyTimeStr) : 0;
-            competitionUserService.setStats(cid, name, passCount, penaltyTime);
-            syncedCount++;
         }
-        logger.info("比赛 ID={} 用户数据同步完成：成功 {} 人，跳过 {} 人（共 {} 人）",
-                cid, syncedCount, skippedCount, userTuples.size());
+        logger.info("比赛 ID={} 用户数据同步完成：有变化 {} 人", cid, syncedCount);
     }
 
     /**
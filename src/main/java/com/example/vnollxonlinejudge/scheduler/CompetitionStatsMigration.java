@@ -0,0 +1,88 @@
+package com.example.vnollxonlinejudge.scheduler;
+
+import com.alibaba.fastjson.JSON;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.vnollxonlinejudge.mapper.CompetitionMapper;
+import com.example.vnollxonlinejudge.model.entity.Competition;
+import com.example.vnollxonlinejudge.service.RedisService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * 比赛参赛者统计的旧布局迁移。
+ * <p>
+ * 旧版本每个参赛者两个字符串键（competition_user_pass / competition_user_penalty），排行 ZSET 成员是
+ * JSON 带引号的名字；现在统计放在每场比赛一个 hash（competition_user_stats:{cid}），成员为原始名字。
+ * 启动时对仍有缓存的比赛（开赛后、结束不超过缓存保留时间）逐个迁移排行榜里带引号的成员。
+ * 每个参赛者由一个脚本原子完成，迁移后成员不再带引号，多实例同时启动或重复执行都不会重复累加。
+ */
+@Component
+public class CompetitionStatsMigration {
+    private static final Logger logger = LoggerFactory.getLogger(CompetitionStatsMigration.class);
+
+    private static final String LEGACY_PASS_KEY = "competition_user_pass:%d:%s";
+    private static final String LEGACY_PENALTY_KEY = "competition_user_penalty:%d:%s";
+    private static final String USER_STATS_KEY = "competition_user_stats:%d";
+    private static final String RANKING_KEY = "competition_ranking:%d";
+    private static final String USER_DIRTY_KEY = "competition_user_dirty:%d";
+    /** 比赛结束后缓存还保留 1 小时（COMPETITION_CACHE_EXTRA_SECONDS），多留一点余量 */
+    private static final long CACHE_RETAIN_HOURS = 2;
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final CompetitionMapper competitionMapper;
+    private final RedisService redisService;
+
+    @Autowired
+    public CompetitionStatsMigration(CompetitionMapper competitionMapper, RedisService redisService) {
+        this.competitionMapper = competitionMapper;
+        this.redisService = redisService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        LocalDateTime now = LocalDateTime.now();
+        QueryWrapper<Competition> wrapper = new QueryWrapper<>();
+        wrapper.le("begin_time", now.format(FORMATTER))
+               .ge("end_time", now.minusHours(CACHE_RETAIN_HOURS).format(FORMATTER))
+               .select("id");
+        List<Competition> competitions = competitionMapper.selectList(wrapper);
+        for (Competition competition : competitions) {
+            try {
+                migrateCompetition(competition.getId());
+            } catch (Exception e) {
+                logger.error("迁移比赛 ID={} 参赛者统计失败", competition.getId(), e);
+            }
+        }
+    }
+
+    private void migrateCompetition(Long cid) {
+        String statsKey = String.format(USER_STATS_KEY, cid);
+        String rankingKey = String.format(RANKING_KEY, cid);
+        String dirtyKey = String.format(USER_DIRTY_KEY, cid);
+        int migrated = 0;
+        for (ZSetOperations.TypedTuple<String> tuple : redisService.getZset(rankingKey)) {
+            String member = tuple.getValue();
+            if (member == null || member.length() < 2 || !member.startsWith("\"") || !member.endsWith("\"")) {
+                continue;
+            }
+            String name = JSON.parseObject(member, String.class);
+            redisService.migrateLegacyParticipant(
+                    String.format(LEGACY_PASS_KEY, cid, name),
+                    String.format(LEGACY_PENALTY_KEY, cid, name),
+                    statsKey, rankingKey, dirtyKey, name, member);
+            migrated++;
+        }
+        if (migrated > 0) {
+            logger.info("比赛 ID={} 迁移旧布局参赛者统计 {} 人", cid, migrated);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.vnollxonlinejudge.scheduler;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.vnollxonlinejudge.config.JudgeAgentConfig;
+import com.example.vnollxonlinejudge.mapper.CompetitionMapper;
+import com.example.vnollxonlinejudge.model.entity.Competition;
+import com.example.vnollxonlinejudge.service.JudgeAgentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * 比赛测试数据预热。
+ * 每分钟找出 prewarm-lead-minutes 分钟内即将开始的比赛，向所有 judge-agent 下发比赛题目的数据预热，
+ * 让开赛后的第一批提交不再现场下载测试数据。每场比赛（按开始时间）只预热一次，多实例用 Redis 去重；
+ * 比赛改期后开始时间变化，会重新预热。
+ */
+@Component
+public class ContestDataPrewarmScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(ContestDataPrewarmScheduler.class);
+    private static final String PREWARMED_KEY = "judge_prewarm:%d:%s";
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final CompetitionMapper competitionMapper;
+    private final JudgeAgentService judgeAgentService;
+    private final JudgeAgentConfig judgeAgentConfig;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    public ContestDataPrewarmScheduler(
+            CompetitionMapper competitionMapper,
+            JudgeAgentService judgeAgentService,
+            JudgeAgentConfig judgeAgentConfig,
+            StringRedisTemplate stringRedisTemplate
+    ) {
+        this.competitionMapper = competitionMapper;
+        this.judgeAgentService = judgeAgentService;
+        this.judgeAgentConfig = judgeAgentConfig;
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    @Scheduled(fixedDelay = 60 * 1000, initialDelay = 60 * 1000)
+    public void prewarmUpcomingCompetitions() {
+        int leadMinutes = judgeAgentConfig.getPrewarmLeadMinutes();
+        if (leadMinutes <= 0) {
+            return;
+        }
+        try {
+            for (Competition competition : getUpcomingCompetitions(leadMinutes)) {
+                String key = String.format(PREWARMED_KEY, competition.getId(), competition.getBeginTime());
+                Boolean first = stringRedisTemplate.opsForValue()
+                        .setIfAbsent(key, "1", Duration.ofMinutes(leadMinutes + 60L));
+                if (!Boolean.TRUE.equals(first)) {
+                    continue;
+                }
+                try {
+                    int count = judgeAgentService.prewarmCompetition(competition.getId());
+                    logger.info("已下发比赛测试数据预热: cid={}, beginTime={}, problems={}",
+                            competition.getId(), competition.getBeginTime(), count);
+                } catch (Exception e) {
+                    // 删掉去重标记，下一轮重试
+                    stringRedisTemplate.delete(key);
+                    logger.error("比赛测试数据预热失败: cid={}", competition.getId(), e);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("比赛测试数据预热任务执行失败", e);
+        }
+    }
+
+    /** 开始时间在 (now, now + leadMinutes] 之间的比赛 */
+    private List<Competition> getUpcomingCompetitions(int leadMinutes) {
+        LocalDateTime now = LocalDateTime.now();
+        QueryWrapper<Competition> wrapper = new QueryWrapper<>();
+        wrapper.gt("begin_time", now.format(FORMATTER))
+               .le("begin_time", now.plusMinutes(leadMinutes).format(FORMATTER))
+               .select("id", "begin_time");
+        return competitionMapper.selectList(wrapper);
+    }
+}
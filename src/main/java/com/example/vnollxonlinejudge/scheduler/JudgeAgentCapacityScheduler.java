@@ -0,0 +1,115 @@
+package com.example.vnollxonlinejudge.scheduler;
+
+import com.example.vnollxonlinejudge.config.JudgeAgentConfig;
+import com.example.vnollxonlinejudge.consumer.JudgeConsumer;
+import com.example.vnollxonlinejudge.judge.JudgeAgentRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * judge-agent 容量巡检。
+ * 每 5 秒摘除心跳超时的动态端点，并让评测消费能力跟随健康 capacity 之和：
+ * async 模式调整派发许可数，sync 模式调整 submissionQueue 监听容器的并发消费者数。
+ * 同时把每个端点的自适应并发上限、正式评测与样例运行的在途数刷新到
+ * judge.agent.limit / judge.agent.in_flight / judge.agent.sample_in_flight 指标。
+ */
+@Component
+public class JudgeAgentCapacityScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(JudgeAgentCapacityScheduler.class);
+
+    private final JudgeAgentRouter judgeAgentRouter;
+    private final JudgeAgentConfig judgeAgentConfig;
+    private final JudgeConsumer judgeConsumer;
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final MultiGauge limitGauge;
+    private final MultiGauge inFlightGauge;
+    private final MultiGauge sampleInFlightGauge;
+    private int appliedCapacity = -1;
+
+    @Autowired
+    public JudgeAgentCapacityScheduler(
+            JudgeAgentRouter judgeAgentRouter,
+            JudgeAgentConfig judgeAgentConfig,
+            JudgeConsumer judgeConsumer,
+            RabbitListenerEndpointRegistry listenerRegistry,
+            MeterRegistry meterRegistry
+    ) {
+        this.judgeAgentRouter = judgeAgentRouter;
+        this.judgeAgentConfig = judgeAgentConfig;
+        this.judgeConsumer = judgeConsumer;
+        this.listenerRegistry = listenerRegistry;
+        this.limitGauge = MultiGauge.builder("judge.agent.limit")
+                .description("judge-agent 自适应并发上限")
+                .register(meterRegistry);
+        this.inFlightGauge = MultiGauge.builder("judge.agent.in_flight")
+                .description("judge-agent 在途评测数")
+                .register(meterRegistry);
+        this.sampleInFlightGauge = MultiGauge.builder("judge.agent.sample_in_flight")
+                .description("judge-agent 在途样例运行数")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelay = 5000, initialDelay = 5000)
+    public void refreshCapacity() {
+        judgeAgentRouter.drainExpired(judgeAgentConfig.getHeartbeatTimeoutSeconds() * 1000L);
+        publishGauges();
+        int healthy = judgeAgentRouter.getHealthyCapacity();
+        // 全部熔断时保留 1 个名额，让路由回退到熔断端点试探恢复
+        int capacity = judgeAgentRouter.getEndpoints().isEmpty() ? 0 : Math.max(1, healthy);
+        if (capacity == appliedCapacity) {
+            return;
+        }
+        if (judgeConsumer.isAsyncDispatch()) {
+            judgeConsumer.resizeDispatchPermits(capacity);
+        } else {
+            resizeListenerConcurrency(capacity);
+        }
+        appliedCapacity = capacity;
+    }
+
+    private void publishGauges() {
+        List<MultiGauge.Row<?>> limits = new ArrayList<>();
+        List<MultiGauge.Row<?>> inFlights = new ArrayList<>();
+        List<MultiGauge.Row<?>> sampleInFlights = new ArrayList<>();
+        for (JudgeAgentRouter.Endpoint ep : judgeAgentRouter.getEndpoints()) {
+            Tags tags = Tags.of("agent", ep.getBaseUrl());
+            limits.add(MultiGauge.Row.of(tags, ep, JudgeAgentRouter.Endpoint::getLimit));
+            inFlights.add(MultiGauge.Row.of(tags, ep, JudgeAgentRouter.Endpoint::getInFlight));
+            sampleInFlights.add(MultiGauge.Row.of(tags, ep, JudgeAgentRouter.Endpoint::getSampleInFlight));
+        }
+        // overwrite=true：已移除的端点不再上报
+        limitGauge.register(limits, true);
+        inFlightGauge.register(inFlights, true);
+        sampleInFlightGauge.register(sampleInFlights, true);
+    }
+
+    private void resizeListenerConcurrency(int capacity) {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(JudgeConsumer.LISTENER_ID);
+        if (!(container instanceof SimpleMessageListenerContainer simple)) {
+            return;
+        }
+        // 没有可用 Agent 时保留 1 个消费者，它会阻塞在路由上，消息继续留在 MQ 中
+        int consumers = Math.max(1, capacity);
+        // 先放大上限再调整并发数，缩容时反过来，避免 concurrentConsumers > maxConcurrentConsumers
+        if (consumers >= appliedCapacity) {
+            simple.setMaxConcurrentConsumers(consumers);
+            simple.setConcurrentConsumers(consumers);
+        } else {
+            simple.setConcurrentConsumers(consumers);
+            simple.setMaxConcurrentConsumers(consumers);
+        }
+        logger.info("评测监听并发度调整为 {}（健康 Agent capacity 之和）", consumers);
+    }
+}
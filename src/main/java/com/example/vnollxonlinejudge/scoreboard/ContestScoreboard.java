@@ -0,0 +1,465 @@
+package com.example.vnollxonlinejudge.scoreboard;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单场比赛常驻内存的榜单，随评测结果增量更新，读榜不再全表重放提交。
+ * <p>
+ * 参赛者 × 题目的格子存在扁平的基本类型数组里（下标 row * 题数 + 题目序号）：
+ * 通过分钟数（-1 表示未通过）、通过前的错误次数，以及判断乱序到达用的雪花 id；每题的首杀记行号。
+ * 规则与原来的重放一致：按提交先后，首次通过前每次已出结果的未通过罚 20 分钟，通过后的提交不再计入。
+ * <p>
+ * 评测结果到达顺序不一定是提交顺序：通过之前提交的错误结果晚到时照常计入；
+ * 若晚到的是比已计入错误更早的通过（或首杀归属无法确定），标记 stale，由 {@link ContestScoreboardRegistry} 重建。
+ * <p>
+ * 每次变更 version 递增并发布一份不可变 {@link Snapshot}，读取直接返回最新快照。写入方法加锁串行。
+ * 构建（{@link #replay} 逐条重放数据库里的提交）期间到达的增量结果先暂存，{@link #finishBuild} 时去重后补上。
+ * 每条增量结果带 Redis 序号：不大于构建序号的在构建查库时已经落库，直接跳过，不重复计数。
+ */
+public final class ContestScoreboard {
+    public static final String STATUS_ACCEPTED = "答案正确";
+    private static final int PENALTY_PER_WRONG = 20;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final LocalDateTime beginTime;
+    private final long[] problemIds;
+    private final Map<Long, Integer> problemIndex;
+    private final int problemCount;
+    /** 构建时已计入的提交（升序），增量到达的同一提交据此跳过 */
+    private long[] builtSnowflakes = new long[64];
+    private int builtCount;
+
+    /** 行只增不删，快照直接共享这张表按参赛者键查行号（行号超出快照行数即快照之后才加入） */
+    private final Map<String, Integer> rowIndex = new ConcurrentHashMap<>();
+    private int rows;
+    private Long[] ids = new Long[16];
+    private String[] names = new String[16];
+    private List<List<String>> members = new ArrayList<>();
+    private int[] passCount = new int[16];
+    private int[] penalty = new int[16];
+
+    private int[] solveMinutes;
+    private int[] wrongTries;
+    private long[] solveSnowflake;
+    private long[] maxWrongSnowflake;
+
+    private final int[] firstBloodRow;
+    private final long[] firstBloodSnowflake;
+
+    private long version;
+    private boolean building = true;
+    /** 构建期间到达的评测结果，构建完成后再应用 */
+    private List<Event> pending = new ArrayList<>();
+    private boolean stale;
+    private volatile Snapshot snapshot;
+
+    /** Redis 上本场比赛的变更序号，见 {@link ContestScoreboardRegistry} */
+    private long baseSeq;
+    private long appliedEvents;
+    private long builtAtMs;
+
+    public ContestScoreboard(String beginTime, List<Long> problemIds) {
+        this.beginTime = beginTime != null ? LocalDateTime.parse(beginTime, TIME_FORMAT) : null;
+        this.problemCount = problemIds.size();
+        this.problemIds = new long[problemCount];
+        this.problemIndex = new HashMap<>(problemCount * 2);
+        for (int i = 0; i < problemCount; i++) {
+            this.problemIds[i] = problemIds.get(i);
+            this.problemIndex.put(problemIds.get(i), i);
+        }
+        this.solveMinutes = newCells(16, -1);
+        this.wrongTries = new int[16 * problemCount];
+        this.solveSnowflake = new long[16 * problemCount];
+        this.maxWrongSnowflake = new long[16 * problemCount];
+        this.firstBloodRow = new int[problemCount];
+        this.firstBloodSnowflake = new long[problemCount];
+        Arrays.fill(firstBloodRow, -1);
+        Arrays.fill(firstBloodSnowflake, Long.MAX_VALUE);
+    }
+
+    /** 团队赛的参赛者键；个人赛直接用用户名。 */
+    public static String teamKey(Long teamId) {
+        return "TEAM:" + teamId;
+    }
+
+    /** 预先登记参赛者（报名的个人或队伍），没有提交也上榜；members 为队员姓名。 */
+    public synchronized void addParticipant(String key, Long id, String name, List<String> memberNames) {
+        if (!rowIndex.containsKey(key)) {
+            addRow(key, id, name, memberNames);
+        }
+    }
+
+    /**
+     * 构建阶段按提交先后重放一条提交；autoCreate 为 true 时不在榜上的参赛者自动加一行（个人赛）。
+     */
+    public synchronized void replay(String key, Long id, String name, boolean autoCreate,
+                                    Long problemId, Long snowflakeId, String createTime, String status) {
+        if (snowflakeId != null) {
+            if (builtCount == builtSnowflakes.length) {
+                builtSnowflakes = Arrays.copyOf(builtSnowflakes, builtCount * 2);
+            }
+            builtSnowflakes[builtCount++] = snowflakeId;
+        }
+        applyInternal(key, id, name, autoCreate, problemId, snowflakeId, createTime, status, true);
+    }
+
+    /** 构建完成：应用构建期间到达的评测结果，发布第一份快照；seq 为开始查询前读到的 Redis 序号。 */
+    public synchronized void finishBuild(long seq) {
+        builtSnowflakes = Arrays.copyOf(builtSnowflakes, builtCount);
+        Arrays.sort(builtSnowflakes);
+        building = false;
+        stale = false;
+        baseSeq = seq;
+        builtAtMs = System.currentTimeMillis();
+        for (Event e : pending) {
+            if (e.seq <= seq) {
+                continue;
+            }
+            appliedEvents++;
+            if (e.snowflakeId == null || Arrays.binarySearch(builtSnowflakes, e.snowflakeId) < 0) {
+                applyInternal(e.key, e.id, e.name, e.autoCreate, e.problemId, e.snowflakeId, e.createTime, e.status, false);
+            }
+        }
+        pending = null;
+        publish();
+    }
+
+    /**
+     * 增量应用一条评测结果，seq 为它在 Redis 上递增得到的序号。本实例和其他实例（经 pub/sub 转发）的结果都走这里。
+     * 不在榜上的团队 / 题目、无法确定的乱序都会把榜单标记为 stale。
+     */
+    public synchronized void apply(long seq, String key, Long id, String name, boolean autoCreate,
+                                   Long problemId, Long snowflakeId, String createTime, String status) {
+        if (building) {
+            pending.add(new Event(seq, key, id, name, autoCreate, problemId, snowflakeId, createTime, status));
+            return;
+        }
+        if (seq <= baseSeq) {
+            return;
+        }
+        appliedEvents++;
+        if (snowflakeId != null && Arrays.binarySearch(builtSnowflakes, snowflakeId) >= 0) {
+            return;
+        }
+        if (applyInternal(key, id, name, autoCreate, problemId, snowflakeId, createTime, status, false)) {
+            publish();
+        }
+    }
+
+    /** 本地已应用的事件与 Redis 序号对不上时说明有事件没收到（pub/sub 丢失、重判等），需要重建。 */
+    public synchronized boolean isCurrent(long seq, List<Long> expectedProblemIds) {
+        return !building && !stale && baseSeq + appliedEvents == seq && sameProblems(expectedProblemIds);
+    }
+
+    /** 构建完成不到 intervalMs 且题单没变：即使落后也先用已有快照，限制重建频率。 */
+    public synchronized boolean builtWithin(long intervalMs, List<Long> expectedProblemIds) {
+        return !building && snapshot != null && System.currentTimeMillis() - builtAtMs < intervalMs
+                && sameProblems(expectedProblemIds);
+    }
+
+    private boolean sameProblems(List<Long> expectedProblemIds) {
+        if (expectedProblemIds.size() != problemCount) {
+            return false;
+        }
+        for (int i = 0; i < problemCount; i++) {
+            if (problemIds[i] != expectedProblemIds.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized void markStale() {
+        stale = true;
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * replaying 为 true 时提交按先后到达，与原重放逐条对应：已通过的格子直接跳过，首杀给第一个通过者。
+     * @return 是否有变化
+     */
+    private boolean applyInternal(String key, Long id, String name, boolean autoCreate,
+                                  Long problemId, Long snowflakeId, String createTime, String status,
+                                  boolean replaying) {
+        Integer p = problemIndex.get(problemId);
+        if (p == null) {
+            // 题目不在本榜（已从比赛移除，或题单有新增）：重放时照旧跳过，增量时让调用方重建
+            stale |= snapshot != null;
+            return false;
+        }
+        boolean accepted = STATUS_ACCEPTED.equals(status);
+        if (!accepted && !isFinishedWrong(status)) {
+            return false;
+        }
+        Integer row = rowIndex.get(key);
+        if (row == null) {
+            if (!autoCreate) {
+                stale |= snapshot != null;
+                return false;
+            }
+            row = addRow(key, id, name, null);
+        } else if (ids[row] == null && id != null) {
+            ids[row] = id;
+        }
+        long sf = snowflakeId != null ? snowflakeId : Long.MAX_VALUE;
+        int cell = row * problemCount + p;
+        boolean solved = solveMinutes[cell] >= 0;
+        if (solved && replaying) {
+            return false;
+        }
+        if (accepted) {
+            if (solved) {
+                if (sf < solveSnowflake[cell]) {
+                    // 比已记录的通过更早的通过晚到：通过时间和错误次数都要改，交给重建
+                    stale = true;
+                }
+                return false;
+            }
+            if (!replaying && sf < maxWrongSnowflake[cell]) {
+                // 已计入的错误里有比这次通过更晚的，无法只靠计数回退
+                stale = true;
+                return false;
+            }
+            int minutes = solveMinutes(createTime);
+            solveMinutes[cell] = minutes;
+            solveSnowflake[cell] = sf;
+            passCount[row]++;
+            penalty[row] += minutes + wrongTries[cell] * PENALTY_PER_WRONG;
+            if (replaying ? firstBloodRow[p] < 0 : sf < firstBloodSnowflake[p]) {
+                firstBloodRow[p] = row;
+                firstBloodSnowflake[p] = sf;
+            }
+        } else {
+            if (solved) {
+                if (sf > solveSnowflake[cell]) {
+                    return false;
+                }
+                // 通过之前提交的错误结果晚到
+                penalty[row] += PENALTY_PER_WRONG;
+            }
+            wrongTries[cell]++;
+            maxWrongSnowflake[cell] = Math.max(maxWrongSnowflake[cell], sf);
+        }
+        return true;
+    }
+
+    private int addRow(String key, Long id, String name, List<String> memberNames) {
+        if (rows == names.length) {
+            grow(rows * 2);
+        }
+        int row = rows++;
+        rowIndex.put(key, row);
+        ids[row] = id;
+        names[row] = name;
+        members.add(memberNames != null ? List.copyOf(memberNames) : Collections.emptyList());
+        return row;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        names = Arrays.copyOf(names, capacity);
+        passCount = Arrays.copyOf(passCount, capacity);
+        penalty = Arrays.copyOf(penalty, capacity);
+        int cells = capacity * problemCount;
+        int used = solveMinutes.length;
+        solveMinutes = Arrays.copyOf(solveMinutes, cells);
+        Arrays.fill(solveMinutes, used, cells, -1);
+        wrongTries = Arrays.copyOf(wrongTries, cells);
+        solveSnowflake = Arrays.copyOf(solveSnowflake, cells);
+        maxWrongSnowflake = Arrays.copyOf(maxWrongSnowflake, cells);
+    }
+
+    private void publish() {
+        version++;
+        Integer[] order = new Integer[rows];
+        for (int i = 0; i < rows; i++) {
+            order[i] = i;
+        }
+        // 通过数降序、罚时升序，并列时保持登记顺序
+        Arrays.sort(order, (a, b) -> passCount[a] != passCount[b]
+                ? Integer.compare(passCount[b], passCount[a])
+                : Integer.compare(penalty[a], penalty[b]));
+        int[] ranked = new int[rows];
+        int[] positions = new int[rows];
+        int[] rankNumbers = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            int row = order[i];
+            ranked[i] = row;
+            positions[row] = i;
+            // 通过数与罚时都相同的并列同名次（1, 2, 2, 4）
+            int prev = i > 0 ? ranked[i - 1] : -1;
+            rankNumbers[i] = prev >= 0 && passCount[prev] == passCount[row] && penalty[prev] == penalty[row]
+                    ? rankNumbers[i - 1] : i + 1;
+        }
+        int cells = rows * problemCount;
+        snapshot = new Snapshot(version, problemIds.clone(), ranked, positions, rankNumbers, rowIndex,
+                Arrays.copyOf(ids, rows), Arrays.copyOf(names, rows), List.copyOf(members),
+                Arrays.copyOf(passCount, rows), Arrays.copyOf(penalty, rows),
+                Arrays.copyOf(solveMinutes, cells), Arrays.copyOf(wrongTries, cells), firstBloodRow.clone());
+    }
+
+    private int solveMinutes(String createTime) {
+        if (beginTime == null || createTime == null) {
+            return 0;
+        }
+        long seconds = Duration.between(beginTime, LocalDateTime.parse(createTime, TIME_FORMAT)).getSeconds();
+        return (int) Math.max(0, seconds / 60);
+    }
+
+    private int[] newCells(int capacity, int value) {
+        int[] cells = new int[capacity * problemCount];
+        Arrays.fill(cells, value);
+        return cells;
+    }
+
+    private static boolean isFinishedWrong(String status) {
+        return status != null
+                && !STATUS_ACCEPTED.equals(status)
+                && !"等待评测".equals(status)
+                && !"评测中".equals(status);
+    }
+
+    private static final class Event {
+        final long seq;
+        final String key;
+        final Long id;
+        final String name;
+        final boolean autoCreate;
+        final Long problemId;
+        final Long snowflakeId;
+        final String createTime;
+        final String status;
+
+        Event(long seq, String key, Long id, String name, boolean autoCreate,
+              Long problemId, Long snowflakeId, String createTime, String status) {
+            this.seq = seq;
+            this.key = key;
+            this.id = id;
+            this.name = name;
+            this.autoCreate = autoCreate;
+            this.problemId = problemId;
+            this.snowflakeId = snowflakeId;
+            this.createTime = createTime;
+            this.status = status;
+        }
+    }
+
+    /** 不可变的榜单快照：rank 序号 i 对应行 order[i]，行 r 排在 positions[r]。 */
+    public static final class Snapshot {
+        private final long version;
+        private final long[] problemIds;
+        private final int[] order;
+        private final int[] positions;
+        private final int[] rankNumbers;
+        private final Map<String, Integer> rowIndex;
+        private final Long[] ids;
+        private final String[] names;
+        private final List<List<String>> members;
+        private final int[] passCount;
+        private final int[] penalty;
+        private final int[] solveMinutes;
+        private final int[] wrongTries;
+        private final int[] firstBloodRow;
+
+        private Snapshot(long version, long[] problemIds, int[] order, int[] positions, int[] rankNumbers,
+                         Map<String, Integer> rowIndex, Long[] ids, String[] names,
+                         List<List<String>> members, int[] passCount, int[] penalty,
+                         int[] solveMinutes, int[] wrongTries, int[] firstBloodRow) {
+            this.version = version;
+            this.problemIds = problemIds;
+            this.order = order;
+            this.positions = positions;
+            this.rankNumbers = rankNumbers;
+            this.rowIndex = rowIndex;
+            this.ids = ids;
+            this.names = names;
+            this.members = members;
+            this.passCount = passCount;
+            this.penalty = penalty;
+            this.solveMinutes = solveMinutes;
+            this.wrongTries = wrongTries;
+            this.firstBloodRow = firstBloodRow;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public int size() {
+            return order.length;
+        }
+
+        public int problemCount() {
+            return problemIds.length;
+        }
+
+        public long problemId(int p) {
+            return problemIds[p];
+        }
+
+        /** 第 rank 名（0 起）所在的行号，后续访问都按行号。 */
+        public int rowAt(int rank) {
+            return order[rank];
+        }
+
+        /** 第 rank 名（0 起）的名次，从 1 开始，并列同名次。 */
+        public int rankNumber(int rank) {
+            return rankNumbers[rank];
+        }
+
+        /** 参赛者键（个人赛为用户名，团队赛为 TEAM:{teamId}）在榜上的序号（0 起），不在榜上为 -1。 */
+        public int positionOf(String key) {
+            Integer row = rowIndex.get(key);
+            return row != null && row < positions.length ? positions[row] : -1;
+        }
+
+        public Long id(int row) {
+            return ids[row];
+        }
+
+        public String name(int row) {
+            return names[row];
+        }
+
+        public List<String> members(int row) {
+            return members.get(row);
+        }
+
+        public int passCount(int row) {
+            return passCount[row];
+        }
+
+        public int penalty(int row) {
+            return penalty[row];
+        }
+
+        public boolean solved(int row, int p) {
+            return solveMinutes[row * problemIds.length + p] >= 0;
+        }
+
+        /** 通过分钟数，未通过为 -1 */
+        public int solveMinutes(int row, int p) {
+            return solveMinutes[row * problemIds.length + p];
+        }
+
+        public int wrongTries(int row, int p) {
+            return wrongTries[row * problemIds.length + p];
+        }
+
+        public boolean firstBlood(int row, int p) {
+            return firstBloodRow[p] == row;
+        }
+    }
+}
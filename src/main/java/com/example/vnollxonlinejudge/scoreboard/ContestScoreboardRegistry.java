@@ -0,0 +1,185 @@
+package com.example.vnollxonlinejudge.scoreboard;
+
+import com.example.vnollxonlinejudge.service.RedisService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 进行中比赛的内存榜单。
+ * <p>
+ * 每条比赛评测结果在 Redis 上递增 competition_scoreboard_seq:{cid}，应用到本实例的榜单，
+ * 再经 pub/sub 频道 competition_scoreboard_events 广播，其他实例收到后同样增量应用，多实例部署时不必各自扫表。
+ * 读榜时比较 Redis 序号与本地"构建时序号 + 已应用事件数"：不一致说明有事件没收到（消息丢失、重判等），
+ * 此时从数据库重建一次，之后继续增量。重建按比赛加锁，同一时刻只有一个请求扫表；
+ * 距上次构建不到 2 秒的直接返回已有快照，消息大面积丢失时也不会每次刷新都扫表。
+ * 榜单写入后最多保留 10 分钟，顺带吸收新报名、队伍变动等不经过评测结果的变化。
+ */
+@Component
+public class ContestScoreboardRegistry {
+    private static final String SEQ_KEY = "competition_scoreboard_seq:%d"; // cid
+    private static final long SEQ_TTL_SECONDS = 7 * 24 * 60 * 60L;
+    private static final String EVENT_CHANNEL = "competition_scoreboard_events";
+    private static final long MIN_REBUILD_INTERVAL_MS = 2000L;
+    private static final Logger logger = LoggerFactory.getLogger(ContestScoreboardRegistry.class);
+
+    /** 本实例标识，收到自己广播的事件时跳过 */
+    private final String instanceId = UUID.randomUUID().toString();
+    private final RedisService redisService;
+    private final ObjectMapper objectMapper;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final Cache<Long, ContestScoreboard> boards = Caffeine.newBuilder()
+            .maximumSize(64)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+    private final Map<Long, Object> buildLocks = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ContestScoreboardRegistry(
+            @Lazy RedisService redisService,
+            ObjectMapper objectMapper,
+            RedisMessageListenerContainer listenerContainer
+    ) {
+        this.redisService = redisService;
+        this.objectMapper = objectMapper;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener((message, pattern) -> onEvent(message), new ChannelTopic(EVENT_CHANNEL));
+    }
+
+    /**
+     * 比赛当前的榜单快照；本地榜单缺失、过期或题单变化时新建一个，由 loader 逐条 {@link ContestScoreboard#replay} 数据库中的提交。
+     */
+    public ContestScoreboard.Snapshot snapshot(Long cid, String beginTime, List<Long> problemIds,
+                                               Consumer<ContestScoreboard> loader) {
+        ContestScoreboard board = boards.getIfPresent(cid);
+        if (board != null && board.isCurrent(currentSeq(cid), problemIds)) {
+            return board.snapshot();
+        }
+        synchronized (buildLocks.computeIfAbsent(cid, k -> new Object())) {
+            board = boards.getIfPresent(cid);
+            if (board != null && (board.isCurrent(currentSeq(cid), problemIds)
+                    || board.builtWithin(MIN_REBUILD_INTERVAL_MS, problemIds))) {
+                return board.snapshot();
+            }
+            // 先放进缓存再查库：构建期间到达的评测结果暂存在新榜单里，构建完成后补上
+            board = new ContestScoreboard(beginTime, problemIds);
+            boards.put(cid, board);
+            long seq = currentSeq(cid);
+            try {
+                loader.accept(board);
+            } catch (RuntimeException e) {
+                boards.invalidate(cid);
+                throw e;
+            }
+            board.finishBuild(seq);
+            return board.snapshot();
+        }
+    }
+
+    /**
+     * 一条比赛评测结果落定（processSubmission 调用，此时结果已落库）：递增序号、应用到本地榜单并广播给其他实例。
+     *
+     * @param key        参赛者键：个人赛为用户名，团队赛为 TEAM:{teamId}
+     * @param autoCreate 不在榜上时是否自动加一行（个人赛）
+     */
+    public void onVerdict(Long cid, String key, Long participantId, String name, boolean autoCreate,
+                          Long problemId, Long snowflakeId, String createTime, String status) {
+        Long seq = redisService.incrementWithExpire(String.format(SEQ_KEY, cid), SEQ_TTL_SECONDS);
+        ContestScoreboard board = boards.getIfPresent(cid);
+        if (seq == null) {
+            // 拿不到序号无法与构建对齐，交给下次读榜重建
+            if (board != null) {
+                board.markStale();
+            }
+            return;
+        }
+        if (board != null) {
+            board.apply(seq, key, participantId, name, autoCreate, problemId, snowflakeId, createTime, status);
+        }
+        VerdictEvent event = new VerdictEvent();
+        event.setOrigin(instanceId);
+        event.setCid(cid);
+        event.setSeq(seq);
+        event.setKey(key);
+        event.setParticipantId(participantId);
+        event.setName(name);
+        event.setAutoCreate(autoCreate);
+        event.setProblemId(problemId);
+        event.setSnowflakeId(snowflakeId);
+        event.setCreateTime(createTime);
+        event.setStatus(status);
+        try {
+            redisService.publish(EVENT_CHANNEL, objectMapper.writeValueAsString(event));
+        } catch (Exception e) {
+            logger.error("广播榜单事件失败: cid={}, seq={}", cid, seq, e);
+        }
+    }
+
+    /** 其他实例广播的评测结果：本地有该比赛的榜单时增量应用，没有则等读榜时再构建。 */
+    private void onEvent(Message message) {
+        VerdictEvent event;
+        try {
+            event = objectMapper.readValue(new String(message.getBody(), StandardCharsets.UTF_8), VerdictEvent.class);
+        } catch (Exception e) {
+            logger.error("解析榜单事件失败", e);
+            return;
+        }
+        if (instanceId.equals(event.getOrigin()) || event.getCid() == null) {
+            return;
+        }
+        ContestScoreboard board = boards.getIfPresent(event.getCid());
+        if (board != null) {
+            board.apply(event.getSeq(), event.getKey(), event.getParticipantId(), event.getName(), event.isAutoCreate(),
+                    event.getProblemId(), event.getSnowflakeId(), event.getCreateTime(), event.getStatus());
+        }
+    }
+
+    /** 重判、删除提交等无法增量表达的变化：本实例丢弃榜单，其余实例通过序号变化得知。 */
+    public void invalidate(Long cid) {
+        redisService.incrementWithExpire(String.format(SEQ_KEY, cid), SEQ_TTL_SECONDS);
+        boards.invalidate(cid);
+    }
+
+    private long currentSeq(Long cid) {
+        String value = redisService.getValueByKey(String.format(SEQ_KEY, cid));
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+
+    /** pub/sub 广播的评测结果，字段与 {@link #onVerdict} 参数一一对应 */
+    @Data
+    public static class VerdictEvent {
+        private String origin;
+        private Long cid;
+        private long seq;
+        private String key;
+        private Long participantId;
+        private String name;
+        private boolean autoCreate;
+        private Long problemId;
+        private Long snowflakeId;
+        private String createTime;
+        private String status;
+    }
+}
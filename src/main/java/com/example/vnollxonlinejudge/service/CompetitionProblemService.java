@@ -7,6 +7,8 @@ import java.util.List;
 public interface CompetitionProblemService {
     List<CompetitionProblem> getProblemList(Long cid);
     void setCount(Long pid, int passCount, int submitCount, Long cid);
+    /** 重判后修正比赛题目通过数 */
+    void adjustPassCount(Long pid, Long cid, int delta);
     void deleteCompetition(Long id);
     void addRecord(Long pid,Long cid);
     void deleteProblemFromCompetition(Long pid, Long cid);
@@ -1,5 +1,6 @@
 package com.example.vnollxonlinejudge.service;
 import com.example.vnollxonlinejudge.model.vo.competition.CompetitionVo;
+import com.example.vnollxonlinejudge.model.vo.competition.CompetitionRankOfVo;
 import com.example.vnollxonlinejudge.model.vo.competition.CompetitionRanklistVo;
 import com.example.vnollxonlinejudge.model.vo.competition.CompetitionProblemBriefVo;
 import com.example.vnollxonlinejudge.model.vo.problem.ProblemVo;
@@ -20,6 +21,9 @@ public interface CompetitionService {
     List<CompetitionProblemBriefVo> getProblemList(Long cid, Long userId);
     List<UserVo> getUserList(Long cid);
     CompetitionRanklistVo getRanklist(Long cid);
+    CompetitionRanklistVo getRanklistPage(Long cid, int page, int pageSize);
+    /** 用户（团队赛为其队伍）在榜上的名次与所在页；不在榜上时返回 null */
+    CompetitionRankOfVo getRankOf(Long cid, Long userId, int pageSize);
     List<CompetitionRanklistVo.SubmissionRankVo> getRanklistSubmissions(Long cid, Long userId);
     void judgeIsOpenById(String now, Long id);
     void judgeIsEndById(String now,Long id);
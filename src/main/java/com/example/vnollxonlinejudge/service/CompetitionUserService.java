@@ -3,6 +3,7 @@ package com.example.vnollxonlinejudge.service;
 import com.example.vnollxonlinejudge.model.entity.CompetitionUser;
 
 import java.util.List;
+import java.util.Map;
 
 public interface CompetitionUserService {
     List<CompetitionUser> getUserList(Long cid);
@@ -12,4 +13,6 @@ public interface CompetitionUserService {
     void deleteCompetition(Long id);
     /** 用 Redis 当前值覆盖式更新 (cid,name) 的通过数与罚时；用于定时同步与比赛结束同步。 */
     void setStats(Long cid, String name, int passCount, int penaltyTime);
+    /** 批量版 setStats：名字 -> {通过数, 罚时}，一条 UPDATE 写完 */
+    void setStatsBatch(Long cid, Map<String, int[]> stats);
 }
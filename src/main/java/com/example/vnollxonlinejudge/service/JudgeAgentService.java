@@ -0,0 +1,19 @@
+package com.example.vnollxonlinejudge.service;
+
+import com.example.vnollxonlinejudge.model.dto.judge.AgentHeartbeatDTO;
+import com.example.vnollxonlinejudge.model.vo.judge.JudgeAgentCacheStatusVO;
+import com.example.vnollxonlinejudge.model.vo.judge.JudgeAgentVO;
+
+import java.util.List;
+
+public interface JudgeAgentService {
+    void heartbeat(AgentHeartbeatDTO dto, String secret);
+    void deregister(String url, String secret);
+    List<JudgeAgentVO> listAgents();
+    void drain(String url);
+    void undrain(String url);
+    /** 向所有 Agent 下发比赛全部题目的测试数据预热，返回题目数 */
+    int prewarmCompetition(Long cid);
+    /** 查询各 Agent 上这些题目（或比赛全部题目）当前数据版本的缓存情况 */
+    List<JudgeAgentCacheStatusVO> cacheStatus(Long cid, List<Long> problemIds);
+}
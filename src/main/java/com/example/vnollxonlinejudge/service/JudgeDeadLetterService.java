@@ -0,0 +1,13 @@
+package com.example.vnollxonlinejudge.service;
+
+import com.example.vnollxonlinejudge.model.dto.judge.JudgeDeadLetterReplayDTO;
+import com.example.vnollxonlinejudge.model.vo.judge.JudgeDeadLetterVO;
+
+import java.util.List;
+
+public interface JudgeDeadLetterService {
+    /** 查看死信队列中前 limit 条消息，消息原样留在队列中 */
+    List<JudgeDeadLetterVO> list(int limit);
+    /** 把死信重新投回评测队列，返回重投条数 */
+    int replay(JudgeDeadLetterReplayDTO dto);
+}
@@ -0,0 +1,24 @@
+package com.example.vnollxonlinejudge.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
+import com.example.vnollxonlinejudge.model.entity.JudgeOutbox;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface JudgeOutboxService extends IService<JudgeOutbox> {
+    /** 写入一行待投递消息；正式提交时由 SubmissionService 在提交记录的同一事务中调用 */
+    void append(JudgeInfo judgeInfo);
+    void markSent(Collection<Long> snowflakeIds);
+    void markDone(Long snowflakeId);
+    /** 进了死信队列，启动时不再自动恢复；管理端重投时重新 markSent。没有发件箱行（如重判）时返回 false */
+    boolean markDead(Long snowflakeId);
+    /** 创建早于 before 仍未投递的行 */
+    List<JudgeOutbox> listUnsent(LocalDateTime before, int limit);
+    List<JudgeOutbox> listAll();
+    /** 待投递与已投递的行，不含已进死信队列的 */
+    List<JudgeOutbox> listPending();
+    JudgeInfo toJudgeInfo(JudgeOutbox outbox);
+}
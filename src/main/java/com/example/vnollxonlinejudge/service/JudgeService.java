@@ -8,4 +8,6 @@ public interface JudgeService {
 
     JudgeResultVO judgeSubmission(SubmitCodeDTO req,Long uid);
     JudgeResultVO testSubmission(TestCodeDTO req, Long uid);
+    /** 异步样例运行：立即返回 ticket，结果通过 WebSocket 推送 */
+    JudgeResultVO testSubmissionAsync(TestCodeDTO req, Long uid);
 }
@@ -0,0 +1,8 @@
+package com.example.vnollxonlinejudge.service;
+
+import com.example.vnollxonlinejudge.model.vo.judge.JudgeTimelineVO;
+
+public interface JudgeTraceService {
+    /** 查询提交的评测时间线；记录已过期或从未评测时抛出业务异常 */
+    JudgeTimelineVO getTimeline(Long snowflakeId);
+}
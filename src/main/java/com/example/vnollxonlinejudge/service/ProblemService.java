@@ -34,6 +34,9 @@ public interface ProblemService {
     Long getCount(String keyword, Long pid, boolean ok, List<String> tags);
     boolean isSolved(Long pid,Long uid,Long cid);
     void updatePassCount(Long pid, int ok);
+    /** 重判后修正通过数，不动提交数 */
+    void adjustPassCount(Long pid, int delta);
+    void removeUserSolveRecord(Long pid, Long uid, Long cid);
     void addUserSolveRecord(Long pid,Long uid,Long cid,String problemName);
 
     List<Long> getAllProblemId();
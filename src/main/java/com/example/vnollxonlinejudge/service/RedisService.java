@@ -9,9 +9,10 @@ public interface RedisService {
     void setKey(String key,String value,Long seconds);
     String getValueByKey(String key);
     Boolean checkKeyValue(String key,String value);
-    boolean addToSetByKey(String key,Long score,String userName,Long seconds);
-    void updateIfPass(String userPassKey,String userPenaltyKey,String problemPassKey,String problemSubmitKey,String rankingKey,String userName,Long penalty);
-    void updateIfNoPass(String userPenaltyKey,String problemSubmitKey,String userPassKey, String rankingKey,String userName);
+    /** 参赛者首次提交：统计 hash 与排行 ZSET 中不存在时置 0，并补上过期时间 */
+    void initParticipant(String statsKey, String rankingKey, String userName, Long seconds);
+    void updateIfPass(String statsKey,String dirtyKey,String problemPassKey,String problemSubmitKey,String rankingKey,String userName,Long penalty);
+    void updateIfNoPass(String statsKey,String dirtyKey,String problemSubmitKey,String rankingKey,String userName);
     void incrementProblemPassAndSubmit(String problemPassKey, String problemSubmitKey);
     void incrementProblemSubmit(String problemSubmitKey);
     Long getTtl(String key);
@@ -20,4 +21,21 @@ public interface RedisService {
     boolean tryLock(String lockKey,int expireTime);
     void deleteKey(String key);
     Long getTTL(String key);
+    /** 重判后覆盖参赛者通过数 / 罚时并刷新排行分数；排行榜已过期（比赛缓存不存在）时跳过 */
+    void setParticipantScore(String statsKey, String rankingKey, String userName, long passCount, long penalty);
+    /** 一次 HGETALL 取整场比赛的参赛者统计：名字 -> {通过数, 罚时}；hash 不存在时为空 */
+    Map<String, int[]> getParticipantStats(String statsKey);
+    /** 把一个参赛者的旧布局数据（两个字符串键 + JSON 编码的排行成员）并入统计 hash */
+    void migrateLegacyParticipant(String legacyPassKey, String legacyPenaltyKey, String statsKey, String rankingKey,
+                                  String dirtyKey, String userName, String legacyMember);
+    /** 从脏集合弹出至多 count 个参赛者并读出其统计（一次往返）；统计已过期的名字不返回 */
+    Map<String, int[]> popDirtyParticipantStats(String dirtyKey, String statsKey, int count);
+    /** 落库失败时把参赛者放回脏集合，下次同步重试 */
+    void markParticipantsDirty(String dirtyKey, Collection<String> userNames);
+    /** 键存在时按 delta 增减，不存在时不创建 */
+    void incrementIfExists(String key, long delta);
+    /** 递增并刷新过期时间，返回递增后的值；异常时返回 null */
+    Long incrementWithExpire(String key, long seconds);
+    /** 发布一条 pub/sub 消息，失败只记日志 */
+    void publish(String channel, String message);
 }
@@ -0,0 +1,20 @@
+package com.example.vnollxonlinejudge.service;
+
+import com.example.vnollxonlinejudge.model.dto.judge.RejudgeJobDTO;
+import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
+import com.example.vnollxonlinejudge.model.vo.judge.RejudgeJobVO;
+
+import java.util.List;
+
+public interface RejudgeService {
+    RejudgeJobVO createJob(RejudgeJobDTO dto, Long operatorId);
+    RejudgeJobVO getJob(Long jobId);
+    List<RejudgeJobVO> listJobs();
+    void cancelJob(Long jobId);
+    /** 任务仍有提交在途（已取消但未收尾的也算） */
+    boolean isRunning(Long jobId);
+    /** 重判结果落地（已写库）后由评测完成流程调用 */
+    void onResult(JudgeInfo judgeInfo, String newStatus);
+    /** 重判消息因认领失败被丢弃（重复投递等）：只归还在途名额，不动统计 */
+    void onDropped(JudgeInfo judgeInfo);
+}
@@ -11,7 +11,11 @@ public interface SubmissionService {
 
     SubmissionVo getSubmissionById(Long id);
     void addSubmission(Submission submission);
+    /** 写入提交记录并在同一事务中写评测发件箱 */
+    void addSubmissionForJudge(Submission submission, JudgeInfo judgeInfo);
     void processSubmission(JudgeInfo judgeInfo,String result);
+    /** 重判结果落地后按"是否通过"的变化差量修正通过数、通过记录与比赛成绩，不动提交数 */
+    void applyRejudgeResult(JudgeInfo judgeInfo, String previousStatus, String newStatus);
     void deleteSubmissionsByPid(Long pid);
     List<SubmissionVo> getSubmissionList(SubmissionQuery submissionQuery);
     Long getCount(SubmissionQuery submissionQuery);
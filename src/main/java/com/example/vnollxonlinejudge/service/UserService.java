@@ -20,6 +20,8 @@ public interface UserService {
     void updatePassword(String old_password,String password,Long uid);
     UserVo updateUserInfo(MultipartFile avatar, String email, String name, String signature, Long uid, String option, String verifyCode);
     void updateSubmitCount(Long uid,int ok);
+    /** 重判后修正通过数，不动提交数 */
+    void adjustPassCount(Long uid,int delta);
     //!!! ADMIN
     void deleteUserByAdmin(Long id,String currentIdentity);
     UserVo addUserByAdmin(String name,String email,String identity,String currentIdentity);
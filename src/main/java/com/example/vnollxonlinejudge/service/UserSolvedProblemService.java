@@ -7,6 +7,7 @@ import java.util.Set;
 
 public interface UserSolvedProblemService {
     void createUserSolveProblem(Long uid,Long pid,Long cid,String problemName);
+    void deleteUserSolveProblem(Long uid,Long pid,Long cid);
     List<UserSolvedProblem> getSolveProblem(Long uid);
     UserSolvedProblem judgeUserIsPass(Long pid, Long uid, Long cid);
 
@@ -40,6 +40,14 @@ public class CompetitionProblemServiceImpl  extends ServiceImpl<CompetitionProbl
                 .eq(CompetitionProblem::getCompetitionId, cid));
     }
 
+    @Override
+    public void adjustPassCount(Long pid, Long cid, int delta) {
+        update(new LambdaUpdateWrapper<CompetitionProblem>()
+                .setSql("pass_count = GREATEST(pass_count + " + delta + ", 0)")
+                .eq(CompetitionProblem::getProblemId, pid)
+                .eq(CompetitionProblem::getCompetitionId, cid));
+    }
+
     @Override
     public void deleteCompetition(Long id) {
         QueryWrapper<CompetitionProblem> wrapper=new QueryWrapper<>();
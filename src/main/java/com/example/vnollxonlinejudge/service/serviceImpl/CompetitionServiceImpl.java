@@ -8,6 +8,7 @@ import com.baomidou.mybatisplus.core.toolkit.StringUtils;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.example.vnollxonlinejudge.model.vo.competition.CompetitionProblemBriefVo;
+import com.example.vnollxonlinejudge.model.vo.competition.CompetitionRankOfVo;
 import com.example.vnollxonlinejudge.model.vo.competition.CompetitionRanklistVo;
 import com.example.vnollxonlinejudge.model.vo.competition.CompetitionTeamVo;
 import com.example.vnollxonlinejudge.model.vo.competition.CompetitionVo;
@@ -17,6 +18,8 @@ import com.example.vnollxonlinejudge.model.entity.*;
 import com.example.vnollxonlinejudge.exception.BusinessException;
 import com.example.vnollxonlinejudge.mapper.*;
 import com.example.vnollxonlinejudge.model.base.RoleCode;
+import com.example.vnollxonlinejudge.scoreboard.ContestScoreboard;
+import com.example.vnollxonlinejudge.scoreboard.ContestScoreboardRegistry;
 import com.example.vnollxonlinejudge.service.*;
 import com.example.vnollxonlinejudge.utils.TimeUtils;
 import lombok.RequiredArgsConstructor;
@@ -48,6 +51,7 @@ public class CompetitionServiceImpl extends ServiceImpl<CompetitionMapper, Compe
     private final CompetitionTeamMemberMapper competitionTeamMemberMapper;
     private final CompetitionTeamService competitionTeamService;
     private final UserService userService;
+    private final ContestScoreboardRegistry contestScoreboardRegistry;
 
     @Autowired
     public CompetitionServiceImpl(
@@ -61,7 +65,8 @@ public class CompetitionServiceImpl extends ServiceImpl<CompetitionMapper, Compe
             CompetitionTeamMapper competitionTeamMapper,
             CompetitionTeamMemberMapper competitionTeamMemberMapper,
             @Lazy CompetitionTeamService competitionTeamService,
-            UserService userService
+            UserService userService,
+            ContestScoreboardRegistry contestScoreboardRegistry
     ) {
         this.competitionUserService=competitionUserService;
         this.competitionProblemService=competitionProblemService;
@@ -74,15 +79,16 @@ public class CompetitionServiceImpl extends ServiceImpl<CompetitionMapper, Compe
         this.competitionTeamMemberMapper=competitionTeamMemberMapper;
         this.competitionTeamService=competitionTeamService;
         this.userService=userService;
+        this.contestScoreboardRegistry=contestScoreboardRegistry;
     }
     private static final String PROBLEM_PASS_KEY = "competition_problem_pass:%d:%d"; // cid:pid
     private static final String PROBLEM_SUBMIT_KEY = "competition_problem_submit:%d:%d"; // cid:pid
-    private static final String USER_PASS_COUNT_KEY = "competition_user_pass:%d:%s"; // cid:uid
-    private static final String USER_PENALTY_KEY = "competition_user_penalty:%d:%s"; // cid:uid
+    private static final String USER_STATS_KEY = "competition_user_stats:%d"; // cid，字段 pass:{name} / penalty:{name}
     private static final String TIME_OUT_KEY = "competition_time_out:%d"; // cid
     private static final String TIME_BEGIN_KEY="competition_time_begin:%d";
     private static final String RANKING_KEY = "competition_ranking:%d"; // cid
     private static final long COMPETITION_CACHE_EXTRA_SECONDS = 60 * 60L;
+    private static final int RANKLIST_MAX_PAGE_SIZE = 200;
     @Override
     public CompetitionVo getCompetitionById(Long id) {
         Competition competition = this.baseMapper.selectById(id);
@@ -306,17 +312,14 @@ public class CompetitionServiceImpl extends ServiceImpl<CompetitionMapper, Compe
         // 从Redis获取排名
             if (redisService.getTtl(rankingKey) > COMPETITION_CACHE_EXTRA_SECONDS) {
                 Set<ZSetOperations.TypedTuple<String>> userTuples = redisService.getZset(rankingKey);
+                // 整场比赛的通过数 / 罚时一次 HGETALL 取回，不再每人两次 GET
+                Map<String, int[]> stats = redisService.getParticipantStats(String.format(USER_STATS_KEY, cid));
                 userTuples.forEach(tuple -> {
                     User user = new User();
                     user.setName(tuple.getValue());
-                    String userPassKey = String.format(USER_PASS_COUNT_KEY, cid, user.getName());
-                    String userPenaltyKey = String.format(USER_PENALTY_KEY, cid, user.getName());
-
-                    String passCountStr = redisService.getValueByKey(userPassKey);
-                    String penaltyTimeStr = redisService.getValueByKey(userPenaltyKey);
-                    
-                    user.setPassCount(passCountStr != null ? Integer.parseInt(passCountStr) : 0);
-                    user.setPenaltyTime(penaltyTimeStr != null ? Integer.parseInt(penaltyTimeStr) : 0);
+                    int[] stat = stats.getOrDefault(user.getName(), new int[2]);
+                    user.setPassCount(stat[0]);
+                    user.setPenaltyTime(stat[1]);
                     users.add(user);
                 });
             } else {
@@ -344,27 +347,91 @@ public class CompetitionServiceImpl extends ServiceImpl<CompetitionMapper, Compe
         if (competition == null) {
             throw new BusinessException("比赛不存在");
         }
+        boolean teamCompetition = "TEAM".equalsIgnoreCase(competition.getParticipantType());
+        CompetitionRanklistVo ranklist = new CompetitionRanklistVo();
+        ContestScoreboard.Snapshot snapshot = loadRanklist(competition, ranklist);
+        List<CompetitionRanklistVo.UserRankVo> rankUsers = new ArrayList<>(snapshot.size());
+        for (int rank = 0; rank < snapshot.size(); rank++) {
+            rankUsers.add(toRankUser(snapshot, rank, teamCompetition));
+        }
+        ranklist.setUsers(rankUsers);
+        return ranklist;
+    }
 
+    @Override
+    public CompetitionRanklistVo getRanklistPage(Long cid, int page, int pageSize) {
+        if (page < 1 || pageSize < 1) {
+            throw new BusinessException("页码与每页条数必须为正数");
+        }
+        pageSize = Math.min(pageSize, RANKLIST_MAX_PAGE_SIZE);
+        Competition competition = this.baseMapper.selectById(cid);
+        if (competition == null) {
+            throw new BusinessException("比赛不存在");
+        }
+        boolean teamCompetition = "TEAM".equalsIgnoreCase(competition.getParticipantType());
+        CompetitionRanklistVo ranklist = new CompetitionRanklistVo();
+        ContestScoreboard.Snapshot snapshot = loadRanklist(competition, ranklist);
+        // 快照已按名次排好，只组装本页的行
+        long from = (long) (page - 1) * pageSize;
+        int to = (int) Math.min(from + pageSize, snapshot.size());
+        for (int rank = (int) Math.min(from, snapshot.size()); rank < to; rank++) {
+            ranklist.getUsers().add(toRankUser(snapshot, rank, teamCompetition));
+        }
+        ranklist.setTotal(snapshot.size());
+        ranklist.setPage(page);
+        ranklist.setPageSize(pageSize);
+        return ranklist;
+    }
+
+    @Override
+    public CompetitionRankOfVo getRankOf(Long cid, Long userId, int pageSize) {
+        if (userId == null) {
+            throw new BusinessException("请先登录");
+        }
+        if (pageSize < 1) {
+            throw new BusinessException("每页条数必须为正数");
+        }
+        pageSize = Math.min(pageSize, RANKLIST_MAX_PAGE_SIZE);
+        Competition competition = this.baseMapper.selectById(cid);
+        if (competition == null) {
+            throw new BusinessException("比赛不存在");
+        }
+        boolean teamCompetition = "TEAM".equalsIgnoreCase(competition.getParticipantType());
+        String key;
+        if (teamCompetition) {
+            CompetitionTeam team = competitionTeamService.getTeamByMember(cid, userId);
+            if (team == null) {
+                return null;
+            }
+            key = ContestScoreboard.teamKey(team.getId());
+        } else {
+            User user = userService.getUserEntityById(userId);
+            if (user == null) {
+                return null;
+            }
+            key = user.getName();
+        }
+        ContestScoreboard.Snapshot snapshot = loadRanklist(competition, null);
+        int position = snapshot.positionOf(key);
+        if (position < 0) {
+            return null;
+        }
+        CompetitionRankOfVo rankOf = new CompetitionRankOfVo();
+        rankOf.setRank(snapshot.rankNumber(position));
+        rankOf.setPosition(position + 1);
+        rankOf.setTotal(snapshot.size());
+        rankOf.setPage(position / pageSize + 1);
+        rankOf.setUser(toRankUser(snapshot, position, teamCompetition));
+        return rankOf;
+    }
+
+    /** 榜单快照；ranklist 不为空时顺带填入题目表头。 */
+    private ContestScoreboard.Snapshot loadRanklist(Competition competition, CompetitionRanklistVo ranklist) {
+        Long cid = competition.getId();
         List<ProblemVo> problemList = getRanklistProblemList(cid);
         boolean teamCompetition = "TEAM".equalsIgnoreCase(competition.getParticipantType());
-        List<UserVo> userList = teamCompetition ? new ArrayList<>() : getUserList(cid).stream()
-                .sorted((a, b) -> {
-                    int passCompare = Integer.compare(
-                            b.getPassCount() == null ? 0 : b.getPassCount(),
-                            a.getPassCount() == null ? 0 : a.getPassCount()
-                    );
-                    if (passCompare != 0) {
-                        return passCompare;
-                    }
-                    return Integer.compare(
-                            a.getPenaltyTime() == null ? 0 : a.getPenaltyTime(),
-                            b.getPenaltyTime() == null ? 0 : b.getPenaltyTime()
-                    );
-                })
-                .collect(Collectors.toList());
 
-        CompetitionRanklistVo ranklist = new CompetitionRanklistVo();
-        Map<Long, Integer> problemOrderMap = new HashMap<>();
+        List<Long> problemIds = new ArrayList<>(problemList.size());
         for (int i = 0; i < problemList.size(); i++) {
             ProblemVo problem = problemList.get(i);
             CompetitionRanklistVo.ProblemRankVo problemRankVo = new CompetitionRanklistVo.ProblemRankVo();
@@ -373,125 +440,97 @@ public class CompetitionServiceImpl extends ServiceImpl<CompetitionMapper, Compe
             problemRankVo.setLabel(String.valueOf((char) ('A' + i)));
             problemRankVo.setPassCount(problem.getPassCount() == null ? 0 : problem.getPassCount());
             problemRankVo.setSubmitCount(problem.getSubmitCount() == null ? 0 : problem.getSubmitCount());
-            ranklist.getProblems().add(problemRankVo);
-            problemOrderMap.put(problem.getId(), i);
+            if (ranklist != null) {
+                ranklist.getProblems().add(problemRankVo);
+            }
+            problemIds.add(problem.getId());
         }
-        Map<Long, String> problemLabelMap = ranklist.getProblems().stream()
-                .collect(Collectors.toMap(
-                        CompetitionRanklistVo.ProblemRankVo::getId,
-                        CompetitionRanklistVo.ProblemRankVo::getLabel
-                ));
 
-        Map<String, CompetitionRanklistVo.UserRankVo> userMap = new LinkedHashMap<>();
+        // 榜单常驻内存、随评测结果增量更新，只有缺失或过期时才重放全部提交
+        return contestScoreboardRegistry.snapshot(cid, competition.getBeginTime(), problemIds,
+                board -> loadScoreboard(board, cid, teamCompetition));
+    }
+
+    /** 按提交先后重放本场比赛的全部提交，构建内存榜单。 */
+    private void loadScoreboard(ContestScoreboard board, Long cid, boolean teamCompetition) {
         if (teamCompetition) {
             QueryWrapper<CompetitionTeam> teamWrapper = new QueryWrapper<>();
             teamWrapper.eq("competition_id", cid).orderByAsc("id");
             for (CompetitionTeam team : competitionTeamMapper.selectList(teamWrapper)) {
-                CompetitionRanklistVo.UserRankVo userRankVo = createEmptyRankUser(team.getId(), team.getTeamName(), problemList);
-                userRankVo.setType("TEAM");
-                String rankKey = getTeamRankKey(team.getId());
                 QueryWrapper<CompetitionTeamMember> memberWrapper = new QueryWrapper<>();
                 memberWrapper.eq("team_id", team.getId()).orderByAsc("id");
+                List<String> memberNames = new ArrayList<>();
                 for (CompetitionTeamMember member : competitionTeamMemberMapper.selectList(memberWrapper)) {
-                    CompetitionTeamVo.MemberVo memberVo = new CompetitionTeamVo.MemberVo();
-                    memberVo.setRealName(member.getRealName());
-                    userRankVo.getMembers().add(memberVo);
+                    memberNames.add(member.getRealName());
                 }
-                userMap.put(rankKey, userRankVo);
+                board.addParticipant(ContestScoreboard.teamKey(team.getId()), team.getId(), team.getTeamName(), memberNames);
             }
         } else {
-            for (UserVo user : userList) {
-                CompetitionRanklistVo.UserRankVo userRankVo = createEmptyRankUser(user.getId(), user.getName(), problemList);
-                userRankVo.setPassCount(user.getPassCount() == null ? 0 : user.getPassCount());
-                userRankVo.setPenaltyTime(user.getPenaltyTime() == null ? 0 : user.getPenaltyTime());
-                userMap.put(user.getName(), userRankVo);
-            }
+            getUserList(cid).stream()
+                    .sorted((a, b) -> {
+                        int passCompare = Integer.compare(
+                                b.getPassCount() == null ? 0 : b.getPassCount(),
+                                a.getPassCount() == null ? 0 : a.getPassCount()
+                        );
+                        if (passCompare != 0) {
+                            return passCompare;
+                        }
+                        return Integer.compare(
+                                a.getPenaltyTime() == null ? 0 : a.getPenaltyTime(),
+                                b.getPenaltyTime() == null ? 0 : b.getPenaltyTime()
+                        );
+                    })
+                    .forEach(user -> board.addParticipant(user.getName(), user.getId(), user.getName(), null));
         }
 
-        Map<Long, String> firstAcceptedMap = new HashMap<>();
-
         QueryWrapper<Submission> submissionWrapper = new QueryWrapper<>();
-        submissionWrapper.eq("cid", cid).orderByAsc("create_time").orderByAsc("snowflake_id").orderByAsc("id");
-        List<Submission> submissions = submissionMapper.selectList(submissionWrapper);
-        for (Submission submission : submissions) {
-            if (!problemOrderMap.containsKey(submission.getPid())) {
-                continue;
-            }
-            String rankKey;
+        submissionWrapper.select("snowflake_id", "uid", "user_name", "team_id", "pid", "status", "create_time")
+                .eq("cid", cid).orderByAsc("create_time").orderByAsc("snowflake_id").orderByAsc("id");
+        for (Submission submission : submissionMapper.selectList(submissionWrapper)) {
             if (teamCompetition) {
                 // 团队赛：按 submission.team_id 直接定位团队行；无 team_id（如管理员测试提交）或队伍不存在则跳过
                 if (submission.getTeamId() == null) {
                     continue;
                 }
-                rankKey = getTeamRankKey(submission.getTeamId());
+                board.replay(ContestScoreboard.teamKey(submission.getTeamId()), submission.getTeamId(), null, false,
+                        submission.getPid(), submission.getSnowflakeId(), submission.getCreateTime(), submission.getStatus());
             } else {
-                rankKey = submission.getUserName();
-            }
-            CompetitionRanklistVo.UserRankVo userRankVo = userMap.get(rankKey);
-            if (userRankVo == null) {
-                if (teamCompetition) {
-                    continue;
-                }
-                userRankVo = createEmptyRankUser(submission.getUid(), submission.getUserName(), problemList);
-                userMap.put(rankKey, userRankVo);
-            }
-            if (!teamCompetition && userRankVo.getId() == null && submission.getUid() != null) {
-                userRankVo.setId(submission.getUid());
+                board.replay(submission.getUserName(), submission.getUid(), submission.getUserName(), true,
+                        submission.getPid(), submission.getSnowflakeId(), submission.getCreateTime(), submission.getStatus());
             }
+        }
+    }
 
-            CompetitionRanklistVo.ProblemResultVo resultVo = userRankVo.getProblems().get(problemOrderMap.get(submission.getPid()));
-            if (Boolean.TRUE.equals(resultVo.getSolved())) {
-                continue;
+    private CompetitionRanklistVo.UserRankVo toRankUser(ContestScoreboard.Snapshot snapshot, int rank, boolean teamCompetition) {
+        int row = snapshot.rowAt(rank);
+        CompetitionRanklistVo.UserRankVo userRankVo = new CompetitionRanklistVo.UserRankVo();
+        userRankVo.setRank(snapshot.rankNumber(rank));
+        userRankVo.setId(snapshot.id(row));
+        userRankVo.setName(snapshot.name(row));
+        if (teamCompetition) {
+            userRankVo.setType("TEAM");
+            for (String realName : snapshot.members(row)) {
+                CompetitionTeamVo.MemberVo memberVo = new CompetitionTeamVo.MemberVo();
+                memberVo.setRealName(realName);
+                userRankVo.getMembers().add(memberVo);
             }
-            if ("答案正确".equals(submission.getStatus())) {
-                int solveMinutes = calculateSolveMinutes(competition.getBeginTime(), submission.getCreateTime());
+        }
+        userRankVo.setPassCount(snapshot.passCount(row));
+        userRankVo.setPenaltyTime(snapshot.penalty(row));
+        for (int p = 0; p < snapshot.problemCount(); p++) {
+            CompetitionRanklistVo.ProblemResultVo resultVo = new CompetitionRanklistVo.ProblemResultVo();
+            resultVo.setProblemId(snapshot.problemId(p));
+            resultVo.setWrongCount(snapshot.wrongTries(row, p));
+            if (snapshot.solved(row, p)) {
+                int solveMinutes = snapshot.solveMinutes(row, p);
                 resultVo.setSolved(true);
                 resultVo.setSolveMinutes(solveMinutes);
                 resultVo.setSolveTime(formatSolveTime(solveMinutes));
-                firstAcceptedMap.putIfAbsent(submission.getPid(), rankKey);
-            } else if (isFinishedWrongSubmission(submission.getStatus())) {
-                resultVo.setWrongCount((resultVo.getWrongCount() == null ? 0 : resultVo.getWrongCount()) + 1);
+                resultVo.setFirstSolve(snapshot.firstBlood(row, p));
             }
+            userRankVo.getProblems().add(resultVo);
         }
-
-        for (Map.Entry<Long, String> firstAccepted : firstAcceptedMap.entrySet()) {
-            CompetitionRanklistVo.UserRankVo userRankVo = userMap.get(firstAccepted.getValue());
-            if (userRankVo == null || !problemOrderMap.containsKey(firstAccepted.getKey())) {
-                continue;
-            }
-            CompetitionRanklistVo.ProblemResultVo resultVo = userRankVo.getProblems().get(problemOrderMap.get(firstAccepted.getKey()));
-            resultVo.setFirstSolve(true);
-        }
-
-        for (CompetitionRanklistVo.UserRankVo userRankVo : userMap.values()) {
-            int passCount = 0;
-            int penaltyTime = 0;
-            for (CompetitionRanklistVo.ProblemResultVo resultVo : userRankVo.getProblems()) {
-                if (Boolean.TRUE.equals(resultVo.getSolved())) {
-                    passCount++;
-                    penaltyTime += (resultVo.getSolveMinutes() == null ? 0 : resultVo.getSolveMinutes())
-                            + (resultVo.getWrongCount() == null ? 0 : resultVo.getWrongCount()) * 20;
-                }
-            }
-            userRankVo.setPassCount(passCount);
-            userRankVo.setPenaltyTime(penaltyTime);
-        }
-        List<CompetitionRanklistVo.UserRankVo> rankUsers = new ArrayList<>(userMap.values());
-        rankUsers.sort((a, b) -> {
-            int passCompare = Integer.compare(
-                    b.getPassCount() == null ? 0 : b.getPassCount(),
-                    a.getPassCount() == null ? 0 : a.getPassCount()
-            );
-            if (passCompare != 0) {
-                return passCompare;
-            }
-            return Integer.compare(
-                    a.getPenaltyTime() == null ? 0 : a.getPenaltyTime(),
-                    b.getPenaltyTime() == null ? 0 : b.getPenaltyTime()
-            );
-        });
-        ranklist.setUsers(rankUsers);
-        return ranklist;
+        return userRankVo;
     }
 
     @Override
@@ -534,31 +573,6 @@ public class CompetitionServiceImpl extends ServiceImpl<CompetitionMapper, Compe
         return result;
     }
 
-    private CompetitionRanklistVo.UserRankVo createEmptyRankUser(Long id, String name, List<ProblemVo> problemList) {
-        CompetitionRanklistVo.UserRankVo userRankVo = new CompetitionRanklistVo.UserRankVo();
-        userRankVo.setId(id);
-        userRankVo.setName(name);
-        userRankVo.setPassCount(0);
-        userRankVo.setPenaltyTime(0);
-        for (ProblemVo problem : problemList) {
-            CompetitionRanklistVo.ProblemResultVo resultVo = new CompetitionRanklistVo.ProblemResultVo();
-            resultVo.setProblemId(problem.getId());
-            userRankVo.getProblems().add(resultVo);
-        }
-        return userRankVo;
-    }
-
-    private String getTeamRankKey(Long teamId) {
-        return "TEAM:" + teamId;
-    }
-
-    private boolean isFinishedWrongSubmission(String status) {
-        return status != null
-                && !"答案正确".equals(status)
-                && !"等待评测".equals(status)
-                && !"评测中".equals(status);
-    }
-
     private List<ProblemVo> getRanklistProblemList(Long cid) {
         List<CompetitionProblem> competitionProblems = competitionProblemService.getProblemList(cid);
         List<ProblemVo> problemList = new ArrayList<>();
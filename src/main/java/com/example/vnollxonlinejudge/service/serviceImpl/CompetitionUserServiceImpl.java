@@ -14,7 +14,9 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 @Service
 public class CompetitionUserServiceImpl extends ServiceImpl<CompetitionUserMapper, CompetitionUser> implements CompetitionUserService {
     private final CompetitionService competitionService;
@@ -97,4 +99,15 @@ public class CompetitionUserServiceImpl extends ServiceImpl<CompetitionUserMappe
                 .eq(CompetitionUser::getName, name)
                 .eq(CompetitionUser::getCompetitionId, cid));
     }
+
+    @Override
+    public void setStatsBatch(Long cid, Map<String, int[]> stats) {
+        if (stats.isEmpty()) {
+            return;
+        }
+        List<CompetitionUser> rows = new ArrayList<>(stats.size());
+        stats.forEach((name, stat) -> rows.add(CompetitionUser.builder()
+                .name(name).passCount(stat[0]).penaltyTime(stat[1]).build()));
+        this.baseMapper.updateStatsBatch(cid, rows);
+    }
 }
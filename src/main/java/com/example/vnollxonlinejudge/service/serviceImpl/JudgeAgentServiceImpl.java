@@ -0,0 +1,204 @@
+package com.example.vnollxonlinejudge.service.serviceImpl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.vnollxonlinejudge.config.JudgeAgentConfig;
+import com.example.vnollxonlinejudge.exception.BusinessException;
+import com.example.vnollxonlinejudge.judge.AgentChannelRegistry;
+import com.example.vnollxonlinejudge.judge.JudgeAgentRouter;
+import com.example.vnollxonlinejudge.judge.JudgeDataCoordinator;
+import com.example.vnollxonlinejudge.mapper.ProblemMapper;
+import com.example.vnollxonlinejudge.model.dto.judge.AgentHeartbeatDTO;
+import com.example.vnollxonlinejudge.model.entity.CompetitionProblem;
+import com.example.vnollxonlinejudge.model.entity.Problem;
+import com.example.vnollxonlinejudge.model.vo.judge.JudgeAgentCacheStatusVO;
+import com.example.vnollxonlinejudge.model.vo.judge.JudgeAgentVO;
+import com.example.vnollxonlinejudge.service.CompetitionProblemService;
+import com.example.vnollxonlinejudge.service.JudgeAgentService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+public class JudgeAgentServiceImpl implements JudgeAgentService {
+    private final JudgeAgentRouter judgeAgentRouter;
+    private final JudgeAgentConfig judgeAgentConfig;
+    private final JudgeDataCoordinator judgeDataCoordinator;
+    private final CompetitionProblemService competitionProblemService;
+    private final ProblemMapper problemMapper;
+    private final AgentChannelRegistry agentChannelRegistry;
+
+    @Autowired
+    public JudgeAgentServiceImpl(
+            JudgeAgentRouter judgeAgentRouter,
+            JudgeAgentConfig judgeAgentConfig,
+            JudgeDataCoordinator judgeDataCoordinator,
+            CompetitionProblemService competitionProblemService,
+            ProblemMapper problemMapper,
+            AgentChannelRegistry agentChannelRegistry
+    ) {
+        this.judgeAgentRouter = judgeAgentRouter;
+        this.judgeAgentConfig = judgeAgentConfig;
+        this.judgeDataCoordinator = judgeDataCoordinator;
+        this.competitionProblemService = competitionProblemService;
+        this.problemMapper = problemMapper;
+        this.agentChannelRegistry = agentChannelRegistry;
+    }
+
+    @Override
+    public void heartbeat(AgentHeartbeatDTO dto, String secret) {
+        checkSecret(secret);
+        if (dto.getUrl() == null || dto.getUrl().isBlank()) {
+            throw new BusinessException("Agent 地址不能为空");
+        }
+        if (dto.getCapacity() == null || dto.getCapacity() <= 0) {
+            throw new BusinessException("Agent capacity 必须大于 0");
+        }
+        judgeAgentRouter.heartbeat(
+                JudgeAgentConfig.stripTrailingSlash(dto.getUrl().trim()),
+                dto.getCapacity(),
+                dto.getSampleCapacity() != null && dto.getSampleCapacity() > 0
+                        ? dto.getSampleCapacity() : judgeAgentConfig.getDefaultSampleCapacity(),
+                dto.getInFlight() != null ? dto.getInFlight() : 0,
+                dto.getFreeMemoryMb() != null ? dto.getFreeMemoryMb() : -1L,
+                dto.getDataVersions(),
+                dto.getCodecs());
+    }
+
+    @Override
+    public void deregister(String url, String secret) {
+        checkSecret(secret);
+        if (url == null || url.isBlank()) {
+            throw new BusinessException("Agent 地址不能为空");
+        }
+        judgeAgentRouter.deregister(JudgeAgentConfig.stripTrailingSlash(url.trim()));
+    }
+
+    @Override
+    public List<JudgeAgentVO> listAgents() {
+        List<JudgeAgentVO> list = new ArrayList<>();
+        Set<String> channelUrls = agentChannelRegistry.connectedUrls();
+        Set<String> adminDrained = judgeAgentRouter.getAdminDrained();
+        Set<String> listed = new HashSet<>();
+        for (JudgeAgentRouter.Endpoint ep : judgeAgentRouter.getEndpoints()) {
+            JudgeAgentVO vo = new JudgeAgentVO();
+            vo.setUrl(ep.getBaseUrl());
+            vo.setCapacity(ep.getCapacity());
+            vo.setInFlight(ep.getInFlight());
+            vo.setLimit(ep.getLimit());
+            vo.setSampleCapacity(ep.getSampleCapacity());
+            vo.setSampleInFlight(ep.getSampleInFlight());
+            vo.setReportedInFlight(ep.getReportedInFlight());
+            vo.setFreeMemoryMb(ep.getFreeMemoryMb());
+            vo.setCachedProblemCount(ep.getDataVersions().size());
+            vo.setCodecs(ep.getCodecs().stream().sorted().toList());
+            vo.setChannelConnected(channelUrls.contains(ep.getBaseUrl()));
+            vo.setLatencyEwmaMs(Math.round(ep.getLatencyEwmaMs()));
+            vo.setHealthy(ep.isHealthy());
+            vo.setDraining(ep.isDraining());
+            vo.setAdminDrained(adminDrained.contains(ep.getBaseUrl()));
+            vo.setDynamic(ep.isDynamic());
+            vo.setLastHeartbeat(ep.getLastHeartbeatMs());
+            list.add(vo);
+            listed.add(ep.getBaseUrl());
+        }
+        // 已摘流移除、等待管理员取消摘流的 Agent 也列出来，便于 undrain
+        for (String url : adminDrained) {
+            if (listed.contains(url)) {
+                continue;
+            }
+            JudgeAgentVO vo = new JudgeAgentVO();
+            vo.setUrl(url);
+            vo.setHealthy(false);
+            vo.setDraining(true);
+            vo.setAdminDrained(true);
+            list.add(vo);
+        }
+        return list;
+    }
+
+    @Override
+    public void drain(String url) {
+        if (url == null || url.isBlank() || !judgeAgentRouter.adminDrain(JudgeAgentConfig.stripTrailingSlash(url.trim()))) {
+            throw new BusinessException("judge-agent 端点不存在");
+        }
+    }
+
+    @Override
+    public void undrain(String url) {
+        if (url == null || url.isBlank() || !judgeAgentRouter.undrain(JudgeAgentConfig.stripTrailingSlash(url.trim()))) {
+            throw new BusinessException("judge-agent 未处于摘流状态");
+        }
+    }
+
+    @Override
+    public int prewarmCompetition(Long cid) {
+        Map<Long, String> versions = currentVersions(competitionProblemIds(cid));
+        judgeDataCoordinator.prewarm(versions);
+        return versions.size();
+    }
+
+    @Override
+    public List<JudgeAgentCacheStatusVO> cacheStatus(Long cid, List<Long> problemIds) {
+        List<Long> ids = problemIds != null && !problemIds.isEmpty() ? problemIds
+                : cid != null ? competitionProblemIds(cid) : List.of();
+        if (ids.isEmpty()) {
+            throw new BusinessException("请指定比赛或题目");
+        }
+        if (ids.size() > 200) {
+            throw new BusinessException("单次最多查询 200 道题目");
+        }
+        Map<Long, String> versions = currentVersions(ids);
+        if (versions.isEmpty()) {
+            throw new BusinessException("题目不存在或已被删除");
+        }
+        return judgeDataCoordinator.cacheStatus(versions);
+    }
+
+    private List<Long> competitionProblemIds(Long cid) {
+        List<CompetitionProblem> list = competitionProblemService.getProblemList(cid);
+        List<Long> ids = new ArrayList<>();
+        if (list != null) {
+            for (CompetitionProblem cp : list) {
+                ids.add(cp.getProblemId());
+            }
+        }
+        return ids;
+    }
+
+    /** problemId -> 当前数据版本，按传入顺序 */
+    private Map<Long, String> currentVersions(List<Long> problemIds) {
+        Map<Long, String> versions = new LinkedHashMap<>();
+        if (problemIds.isEmpty()) {
+            return versions;
+        }
+        QueryWrapper<Problem> wrapper = new QueryWrapper<>();
+        wrapper.in("id", problemIds).select("id", "version");
+        Map<Long, Problem> byId = new LinkedHashMap<>();
+        for (Problem p : problemMapper.selectList(wrapper)) {
+            byId.put(p.getId(), p);
+        }
+        for (Long id : problemIds) {
+            Problem p = byId.get(id);
+            if (p != null) {
+                versions.put(id, JudgeDataCoordinator.dataVersionOf(p));
+            }
+        }
+        return versions;
+    }
+
+    private void checkSecret(String secret) {
+        String expected = judgeAgentConfig.getRegistrySecret();
+        if (expected == null || expected.isBlank() || secret == null
+                || !MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8))) {
+            throw new BusinessException("Agent 注册密钥错误");
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.vnollxonlinejudge.service.serviceImpl;
+
+import com.example.vnollxonlinejudge.config.RabbitMQConfig;
+import com.example.vnollxonlinejudge.judge.JudgeClaimRegistry;
+import com.example.vnollxonlinejudge.judge.JudgeCodec;
+import com.example.vnollxonlinejudge.model.dto.judge.JudgeDeadLetterReplayDTO;
+import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
+import com.example.vnollxonlinejudge.model.vo.judge.JudgeDeadLetterVO;
+import com.example.vnollxonlinejudge.producer.JudgeProducer;
+import com.example.vnollxonlinejudge.service.JudgeDeadLetterService;
+import com.example.vnollxonlinejudge.service.JudgeOutboxService;
+import com.example.vnollxonlinejudge.service.RejudgeService;
+import com.example.vnollxonlinejudge.service.SubmissionService;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.GetResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 评测死信队列的查看与重投。
+ * <p>
+ * RabbitMQ 没有"浏览"操作：这里在一个 channel 上逐条 basicGet（不自动确认），查看完统一 nack 退回，
+ * 消息回到原位置；重投的消息先带确认地投回评测交换器，再 ack 从死信队列删除。
+ * 死信队列没有消费者，查看期间其他管理员看到的只是暂时少了这几条。
+ * 进死信时提交已写成"判题错误"、发件箱行标记为死信；重投时发件箱行改回已投递、提交改回"等待评测"，
+ * 重投后再失败或进程重启都按普通未完成提交处理。
+ */
+@Service
+public class JudgeDeadLetterServiceImpl implements JudgeDeadLetterService {
+    private static final Logger logger = LoggerFactory.getLogger(JudgeDeadLetterServiceImpl.class);
+    /** 单次查看 / 重投最多扫描的消息数 */
+    private static final int MAX_SCAN = 500;
+    private static final long CONFIRM_TIMEOUT_MS = 5000L;
+    private static final int PREVIEW_LENGTH = 200;
+
+    private final RabbitTemplate rabbitTemplate;
+    private final JudgeCodec judgeCodec;
+    private final JudgeClaimRegistry judgeClaimRegistry;
+    private final RejudgeService rejudgeService;
+    private final JudgeOutboxService judgeOutboxService;
+    private final SubmissionService submissionService;
+
+    @Autowired
+    public JudgeDeadLetterServiceImpl(
+            RabbitTemplate rabbitTemplate,
+            JudgeCodec judgeCodec,
+            JudgeClaimRegistry judgeClaimRegistry,
+            RejudgeService rejudgeService,
+            JudgeOutboxService judgeOutboxService,
+            SubmissionService submissionService
+    ) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.judgeCodec = judgeCodec;
+        this.judgeClaimRegistry = judgeClaimRegistry;
+        this.rejudgeService = rejudgeService;
+        this.judgeOutboxService = judgeOutboxService;
+        this.submissionService = submissionService;
+    }
+
+    @Override
+    public List<JudgeDeadLetterVO> list(int limit) {
+        int max = Math.min(Math.max(limit, 1), MAX_SCAN);
+        return rabbitTemplate.execute(channel -> {
+            List<JudgeDeadLetterVO> list = new ArrayList<>();
+            long lastTag = -1L;
+            try {
+                while (list.size() < max) {
+                    GetResponse response = channel.basicGet(RabbitMQConfig.JUDGE_DEAD_LETTER_QUEUE, false);
+                    if (response == null) {
+                        break;
+                    }
+                    lastTag = response.getEnvelope().getDeliveryTag();
+                    list.add(toVO(response));
+                }
+            } finally {
+                if (lastTag >= 0) {
+                    channel.basicNack(lastTag, true, true);
+                }
+            }
+            return list;
+        });
+    }
+
+    @Override
+    public int replay(JudgeDeadLetterReplayDTO dto) {
+        Set<Long> targets = dto == null || dto.getSnowflakeIds() == null || dto.getSnowflakeIds().isEmpty()
+                ? null : new HashSet<>(dto.getSnowflakeIds());
+        Integer replayed = rabbitTemplate.execute(channel -> {
+            int count = 0;
+            List<Long> kept = new ArrayList<>();
+            try {
+                for (int scanned = 0; scanned < MAX_SCAN; scanned++) {
+                    GetResponse response = channel.basicGet(RabbitMQConfig.JUDGE_DEAD_LETTER_QUEUE, false);
+                    if (response == null) {
+                        break;
+                    }
+                    long tag = response.getEnvelope().getDeliveryTag();
+                    JudgeInfo judgeInfo = parse(response);
+                    if (!shouldReplay(judgeInfo, targets)) {
+                        kept.add(tag);
+                        continue;
+                    }
+                    republish(channel, response);
+                    judgeClaimRegistry.release(judgeInfo.getSnowflakeId());
+                    reopen(judgeInfo);
+                    channel.basicAck(tag, false);
+                    count++;
+                    if (targets != null && count >= targets.size()) {
+                        break;
+                    }
+                }
+            } finally {
+                for (Long tag : kept) {
+                    channel.basicNack(tag, false, true);
+                }
+            }
+            return count;
+        });
+        int count = replayed == null ? 0 : replayed;
+        logger.info("评测死信重投完成: 重投 {} 条, 指定提交={}", count, targets);
+        return count;
+    }
+
+    /** 毒消息不重投；重判消息要等所属任务收尾，否则任务的在途计数会被算两次。 */
+    private boolean shouldReplay(JudgeInfo judgeInfo, Set<Long> targets) {
+        if (judgeInfo == null || judgeInfo.getSnowflakeId() == null) {
+            return false;
+        }
+        if (targets != null && !targets.contains(judgeInfo.getSnowflakeId())) {
+            return false;
+        }
+        return judgeInfo.getRejudgeJobId() == null || !rejudgeService.isRunning(judgeInfo.getRejudgeJobId());
+    }
+
+    /** 重投的普通提交恢复为未完成：发件箱行回到已投递，状态改回"等待评测"；重判保留原结果，不动。 */
+    private void reopen(JudgeInfo judgeInfo) {
+        if (judgeInfo.getRejudgeJobId() != null) {
+            return;
+        }
+        try {
+            judgeOutboxService.markSent(List.of(judgeInfo.getSnowflakeId()));
+            submissionService.updateSubmissionJudgeStatusBySnowflake(
+                    judgeInfo.getSnowflakeId(), "等待评测", null, null, null, null, null);
+        } catch (Exception e) {
+            logger.error("重投后恢复提交状态失败: snowflakeId={}", judgeInfo.getSnowflakeId(), e);
+        }
+    }
+
+    /** 清掉失败次数等消息头后投回评测交换器，等 broker 确认后才允许删除死信。 */
+    private void republish(Channel channel, GetResponse response) throws Exception {
+        AMQP.BasicProperties props = response.getProps();
+        Map<String, Object> headers = props.getHeaders() == null ? new HashMap<>() : new HashMap<>(props.getHeaders());
+        headers.remove(JudgeProducer.HEADER_ATTEMPTS);
+        headers.remove(JudgeProducer.HEADER_ERROR);
+        headers.remove(JudgeProducer.HEADER_DEAD_AT);
+        headers.remove("x-death");
+        channel.basicPublish(RabbitMQConfig.JUDGE_EXCHANGE, RabbitMQConfig.JUDGE_ROUTING_KEY,
+                props.builder().headers(headers).build(), response.getBody());
+        channel.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MS);
+    }
+
+    private JudgeDeadLetterVO toVO(GetResponse response) {
+        AMQP.BasicProperties props = response.getProps();
+        Map<String, Object> headers = props.getHeaders() == null ? Map.of() : props.getHeaders();
+        JudgeDeadLetterVO vo = new JudgeDeadLetterVO();
+        vo.setCorrelationId(props.getCorrelationId());
+        vo.setAttempts(headers.get(JudgeProducer.HEADER_ATTEMPTS) instanceof Number n ? n.intValue() : null);
+        vo.setError(headers.get(JudgeProducer.HEADER_ERROR) != null ? headers.get(JudgeProducer.HEADER_ERROR).toString() : null);
+        vo.setDeadAt(headers.get(JudgeProducer.HEADER_DEAD_AT) instanceof Number n ? n.longValue() : null);
+        JudgeInfo judgeInfo = parse(response);
+        vo.setParsable(judgeInfo != null);
+        if (judgeInfo == null) {
+            String body = new String(response.getBody(), StandardCharsets.UTF_8);
+            vo.setBodyPreview(body.length() > PREVIEW_LENGTH ? body.substring(0, PREVIEW_LENGTH) : body);
+            return vo;
+        }
+        vo.setSnowflakeId(judgeInfo.getSnowflakeId());
+        vo.setUid(judgeInfo.getUid());
+        vo.setPid(judgeInfo.getPid());
+        vo.setCid(judgeInfo.getCid());
+        vo.setLanguage(judgeInfo.getLanguage());
+        vo.setRejudgeJobId(judgeInfo.getRejudgeJobId());
+        return vo;
+    }
+
+    private JudgeInfo parse(GetResponse response) {
+        try {
+            return judgeCodec.decode(response.getBody(), response.getProps().getContentType(),
+                    response.getProps().getContentEncoding(), JudgeInfo.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
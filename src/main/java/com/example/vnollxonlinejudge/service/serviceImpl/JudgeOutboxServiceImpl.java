@@ -0,0 +1,92 @@
+package com.example.vnollxonlinejudge.service.serviceImpl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.vnollxonlinejudge.exception.BusinessException;
+import com.example.vnollxonlinejudge.mapper.JudgeOutboxMapper;
+import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
+import com.example.vnollxonlinejudge.model.entity.JudgeOutbox;
+import com.example.vnollxonlinejudge.service.JudgeOutboxService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Service
+public class JudgeOutboxServiceImpl extends ServiceImpl<JudgeOutboxMapper, JudgeOutbox> implements JudgeOutboxService {
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public JudgeOutboxServiceImpl(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void append(JudgeInfo judgeInfo) {
+        save(newRow(judgeInfo));
+    }
+
+    @Override
+    public void markSent(Collection<Long> snowflakeIds) {
+        if (snowflakeIds == null || snowflakeIds.isEmpty()) return;
+        this.baseMapper.markSent(snowflakeIds);
+    }
+
+    @Override
+    public void markDone(Long snowflakeId) {
+        remove(new LambdaQueryWrapper<JudgeOutbox>().eq(JudgeOutbox::getSnowflakeId, snowflakeId));
+    }
+
+    @Override
+    public boolean markDead(Long snowflakeId) {
+        return this.baseMapper.markDead(snowflakeId) > 0;
+    }
+
+    @Override
+    public List<JudgeOutbox> listUnsent(LocalDateTime before, int limit) {
+        return list(new LambdaQueryWrapper<JudgeOutbox>()
+                .eq(JudgeOutbox::getStatus, JudgeOutbox.STATUS_NEW)
+                .lt(JudgeOutbox::getCreateTime, before)
+                .orderByAsc(JudgeOutbox::getId)
+                .last("LIMIT " + limit));
+    }
+
+    @Override
+    public List<JudgeOutbox> listAll() {
+        return list(new LambdaQueryWrapper<JudgeOutbox>().orderByAsc(JudgeOutbox::getId));
+    }
+
+    @Override
+    public List<JudgeOutbox> listPending() {
+        return list(new LambdaQueryWrapper<JudgeOutbox>()
+                .ne(JudgeOutbox::getStatus, JudgeOutbox.STATUS_DEAD)
+                .orderByAsc(JudgeOutbox::getId));
+    }
+
+    @Override
+    public JudgeInfo toJudgeInfo(JudgeOutbox outbox) {
+        try {
+            return objectMapper.readValue(outbox.getPayload(), JudgeInfo.class);
+        } catch (JsonProcessingException e) {
+            throw new BusinessException("发件箱消息解析失败: snowflakeId=" + outbox.getSnowflakeId());
+        }
+    }
+
+    private JudgeOutbox newRow(JudgeInfo judgeInfo) {
+        try {
+            return JudgeOutbox.builder()
+                    .snowflakeId(judgeInfo.getSnowflakeId())
+                    .payload(objectMapper.writeValueAsString(judgeInfo))
+                    .status(JudgeOutbox.STATUS_NEW)
+                    .attempts(0)
+                    .createTime(LocalDateTime.now())
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new BusinessException("评测消息序列化失败");
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.example.vnollxonlinejudge.service.serviceImpl;
 
 import com.example.vnollxonlinejudge.judge.AgentSampleRequest;
-import com.example.vnollxonlinejudge.judge.JudgeAgentClient;
+import com.example.vnollxonlinejudge.judge.FairJudgeQueue;
+import com.example.vnollxonlinejudge.judge.JudgeResultHandler;
 import com.example.vnollxonlinejudge.judge.JudgeStatusDescriber;
+import com.example.vnollxonlinejudge.judge.JudgeTimeline;
+import com.example.vnollxonlinejudge.judge.SampleRunDispatcher;
 import com.example.vnollxonlinejudge.model.base.RoleCode;
 import com.example.vnollxonlinejudge.model.dto.judge.SubmitCodeDTO;
 import com.example.vnollxonlinejudge.model.dto.judge.TestCodeDTO;
@@ -15,11 +18,12 @@ import com.example.vnollxonlinejudge.exception.BusinessException;
 import com.example.vnollxonlinejudge.service.CompetitionService;
 import com.example.vnollxonlinejudge.service.CompetitionTeamService;
 import com.example.vnollxonlinejudge.service.CompetitionUserService;
-import com.example.vnollxonlinejudge.producer.JudgeProducer;
 import com.example.vnollxonlinejudge.service.JudgeService;
 import com.example.vnollxonlinejudge.service.SubmissionService;
 import com.example.vnollxonlinejudge.service.UserService;
 import com.example.vnollxonlinejudge.utils.SnowflakeIdGenerator;
+import com.example.vnollxonlinejudge.websocket.JudgeWebSocketHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,38 +32,52 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 @Service
 public class JudgeServiceImpl implements JudgeService {
     private static final Logger logger = LoggerFactory.getLogger(JudgeServiceImpl.class);
-    private final JudgeProducer judgeProducer;
-    private final JudgeAgentClient judgeAgentClient;
+    private final FairJudgeQueue fairJudgeQueue;
+    private final SampleRunDispatcher sampleRunDispatcher;
     private final SubmissionService submissionService;
     private final CompetitionUserService competitionUserService;
     private final CompetitionService competitionService;
     private final CompetitionTeamService competitionTeamService;
     private final UserService userService;
+    private final JudgeResultHandler judgeResultHandler;
+    private final JudgeWebSocketHandler judgeWebSocketHandler;
+    private final ObjectMapper objectMapper;
+    private final JudgeTimeline judgeTimeline;
     private static final ZoneId BEIJING_ZONE = ZoneId.of("Asia/Shanghai");
     private static final DateTimeFormatter SUBMISSION_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final SnowflakeIdGenerator gen =
             new SnowflakeIdGenerator(SnowflakeIdGenerator.defaultMachineId());
     @Autowired
     public JudgeServiceImpl(
-            JudgeProducer judgeProducer,
-            JudgeAgentClient judgeAgentClient,
+            FairJudgeQueue fairJudgeQueue,
+            SampleRunDispatcher sampleRunDispatcher,
             SubmissionService submissionService,
             CompetitionUserService competitionUserService,
             CompetitionService competitionService,
             CompetitionTeamService competitionTeamService,
-            UserService userService
+            UserService userService,
+            JudgeResultHandler judgeResultHandler,
+            JudgeWebSocketHandler judgeWebSocketHandler,
+            ObjectMapper objectMapper,
+            JudgeTimeline judgeTimeline
     ) {
-        this.judgeProducer=judgeProducer;
-        this.judgeAgentClient=judgeAgentClient;
+        this.fairJudgeQueue=fairJudgeQueue;
+        this.sampleRunDispatcher=sampleRunDispatcher;
         this.submissionService=submissionService;
         this.competitionUserService=competitionUserService;
         this.competitionService=competitionService;
         this.competitionTeamService=competitionTeamService;
         this.userService=userService;
+        this.judgeResultHandler=judgeResultHandler;
+        this.judgeWebSocketHandler=judgeWebSocketHandler;
+        this.objectMapper=objectMapper;
+        this.judgeTimeline=judgeTimeline;
     }
     @Override
     public JudgeResultVO judgeSubmission(SubmitCodeDTO req, Long uid) {
@@ -85,6 +103,7 @@ public class JudgeServiceImpl implements JudgeService {
                 .createTime(createTime)
                 .uname(req.getUname())
                 .snowflakeId(snowflakeId)
+                .traceId(JudgeTimeline.newTraceId())
                 .build();
 
         Submission submission = Submission.builder()
@@ -103,18 +122,18 @@ public class JudgeServiceImpl implements JudgeService {
                 .snowflakeId(snowflakeId)
                 .build();
 
-        submissionService.addSubmission(submission);
-        // addSubmission 已基于 DB 计算并写入 queueAhead，复用同一份快照保证响应/列表/详情三处口径一致
-        Integer queueAhead = submission.getQueueAhead();
-        try {
-            int priority = 1;
-            judgeProducer.sendJudge(priority, judgeInfo);
-            logger.info("消息发送到MQ成功: snowflakeId={}, uid={}, pid={}, queueAhead={}",
-                    snowflakeId, uid, req.getPid(), queueAhead);
-        } catch (Exception e) {
-            logger.error("发送提交记录消息到MQ失败： judgeInfo={}, error=", judgeInfo, e);
-            // 可以在这里接入监控告警，让开发者知道MQ出了问题
+        // 提交记录与发件箱行同一事务写入：之后任何一步失败，发件箱补投都能把它送进评测
+        submissionService.addSubmissionForJudge(submission, judgeInfo);
+        judgeTimeline.record(judgeInfo, "submitted", "uid=" + uid + ", pid=" + req.getPid() + ", language=" + judgeInfo.getLanguage());
+        RunResult cached = judgeResultHandler.completeFromCache(judgeInfo);
+        if (cached != null) {
+            return buildCachedResult(judgeInfo, cached);
         }
+        // 进入按用户 / 比赛加权的公平队列，由泵线程按公平顺序投递 MQ；前方人数以公平队列中的实际位置为准
+        Integer queueAhead = fairJudgeQueue.enqueue(judgeInfo);
+        judgeTimeline.record(judgeInfo, "queued", "queueAhead=" + queueAhead);
+        logger.info("提交进入公平队列: snowflakeId={}, uid={}, pid={}, queueAhead={}",
+                snowflakeId, uid, req.getPid(), queueAhead);
         JudgeResultVO vo = new JudgeResultVO();
         vo.setSnowflakeId(snowflakeId);
         vo.setStatus("等待评测");
@@ -123,6 +142,21 @@ public class JudgeServiceImpl implements JudgeService {
         return vo;
     }
 
+    /** 结果缓存命中时直接返回最终结果，比赛提交与正常评测一样不返回通过用例数。 */
+    private JudgeResultVO buildCachedResult(JudgeInfo judgeInfo, RunResult result) {
+        boolean competition = judgeInfo.getCid() != null && judgeInfo.getCid() != 0;
+        JudgeResultVO vo = new JudgeResultVO();
+        vo.setSnowflakeId(judgeInfo.getSnowflakeId());
+        vo.setStatus(result.getStatus());
+        vo.setDescription(JudgeStatusDescriber.describe(result.getStatus(), "submit"));
+        vo.setQueueAhead(0);
+        if (!competition) {
+            vo.setPassCount(result.getPassCount());
+            vo.setTestCount(result.getTestCount());
+        }
+        return vo;
+    }
+
     /** 根据队列前方等待数量生成等待评测的中文描述。 */
     private String buildWaitingDescription(Integer queueAhead) {
         if (queueAhead == null) {
@@ -170,7 +204,44 @@ public class JudgeServiceImpl implements JudgeService {
     @Override
     public JudgeResultVO testSubmission(TestCodeDTO req,Long uid) {
         boolean customTest = Boolean.TRUE.equals(req.getCustomTest());
+        // 同步接口同样走样例专属通路，只是在请求线程上等结果
+        RunResult result;
+        try {
+            result = sampleRunDispatcher.submit(uid, buildSampleRequest(req, customTest)).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+        return buildSampleResult(result, customTest);
+    }
 
+    @Override
+    public JudgeResultVO testSubmissionAsync(TestCodeDTO req, Long uid) {
+        boolean customTest = Boolean.TRUE.equals(req.getCustomTest());
+        String ticket = String.valueOf(gen.nextId());
+        sampleRunDispatcher.submit(uid, buildSampleRequest(req, customTest))
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        logger.error("样例运行异常: ticket={}, uid={}", ticket, uid, ex);
+                        pushSampleResult(uid, ticket, sampleErrorResult(ex));
+                        return;
+                    }
+                    JudgeResultVO vo;
+                    try {
+                        vo = buildSampleResult(result, customTest);
+                    } catch (Exception e) {
+                        logger.error("样例运行结果解析异常: ticket={}, uid={}", ticket, uid, e);
+                        vo = sampleErrorResult(e);
+                    }
+                    pushSampleResult(uid, ticket, vo);
+                });
+        JudgeResultVO vo = new JudgeResultVO();
+        vo.setTicket(ticket);
+        vo.setStatus("评测中");
+        vo.setDescription(JudgeStatusDescriber.describe("评测中", "test"));
+        return vo;
+    }
+
+    private AgentSampleRequest buildSampleRequest(TestCodeDTO req, boolean customTest) {
         AgentSampleRequest sampleReq = new AgentSampleRequest();
         sampleReq.setLanguage(req.getOption());
         sampleReq.setCode(req.getCode());
@@ -178,7 +249,33 @@ public class JudgeServiceImpl implements JudgeService {
         sampleReq.setOutputExample(customTest ? null : req.getOutputExample());
         sampleReq.setTimeLimit(Long.parseLong(req.getTime()));
         sampleReq.setMemoryLimit(Long.parseLong(req.getMemory()));
-        RunResult result = judgeAgentClient.runSample(sampleReq);
+        return sampleReq;
+    }
+
+    /** 样例运行失败时也要推一帧，否则前端会一直等到超时 */
+    private JudgeResultVO sampleErrorResult(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        JudgeResultVO vo = new JudgeResultVO();
+        vo.setStatus("判题错误");
+        vo.setDescription(JudgeStatusDescriber.describe("判题错误", "test"));
+        vo.setErrorInfo(cause instanceof BusinessException ? cause.getMessage() : "样例运行失败，请稍后重试");
+        return vo;
+    }
+
+    /** 样例运行结果通过 WebSocket 推送，type=sample，前端按 ticket 对应到发起的那次运行。 */
+    private void pushSampleResult(Long uid, String ticket, JudgeResultVO vo) {
+        try {
+            vo.setTicket(ticket);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> data = objectMapper.convertValue(vo, Map.class);
+            data.put("type", "sample");
+            judgeWebSocketHandler.sendMessageToUser(uid, objectMapper.writeValueAsString(data));
+        } catch (Exception e) {
+            logger.error("样例运行结果推送失败: ticket={}", ticket, e);
+        }
+    }
+
+    private JudgeResultVO buildSampleResult(RunResult result, boolean customTest) {
         JudgeResultVO vo=new JudgeResultVO();
         if (customTest) {
             vo.setActualOutput(extractStdout(result));
@@ -195,6 +292,7 @@ public class JudgeServiceImpl implements JudgeService {
         }
         vo.setPassCount(result.getPassCount());
         vo.setTestCount(result.getTestCount());
+        vo.setTruncated(result.isTruncated());
         return vo;
     }
 
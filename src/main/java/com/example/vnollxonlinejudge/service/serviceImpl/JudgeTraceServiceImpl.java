@@ -0,0 +1,41 @@
+package com.example.vnollxonlinejudge.service.serviceImpl;
+
+import com.example.vnollxonlinejudge.exception.BusinessException;
+import com.example.vnollxonlinejudge.judge.JudgeTimeline;
+import com.example.vnollxonlinejudge.model.vo.judge.JudgeTimelineVO;
+import com.example.vnollxonlinejudge.service.JudgeTraceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+public class JudgeTraceServiceImpl implements JudgeTraceService {
+    private final JudgeTimeline judgeTimeline;
+
+    @Autowired
+    public JudgeTraceServiceImpl(JudgeTimeline judgeTimeline) {
+        this.judgeTimeline = judgeTimeline;
+    }
+
+    @Override
+    public JudgeTimelineVO getTimeline(Long snowflakeId) {
+        List<JudgeTimelineVO.Span> spans = judgeTimeline.spans(snowflakeId);
+        if (spans.isEmpty()) {
+            throw new BusinessException("评测时间线不存在或已过期");
+        }
+        long first = spans.get(0).getTimestamp() != null ? spans.get(0).getTimestamp() : 0L;
+        long last = first;
+        for (JudgeTimelineVO.Span span : spans) {
+            if (span.getTimestamp() != null) {
+                span.setOffsetMs(span.getTimestamp() - first);
+                last = Math.max(last, span.getTimestamp());
+            }
+        }
+        JudgeTimelineVO vo = new JudgeTimelineVO();
+        vo.setSnowflakeId(snowflakeId);
+        vo.setSpans(spans);
+        vo.setTotalMs(last - first);
+        return vo;
+    }
+}
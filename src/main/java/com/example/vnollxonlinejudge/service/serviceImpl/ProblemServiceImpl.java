@@ -15,6 +15,8 @@ import com.example.vnollxonlinejudge.model.vo.problem.ProblemBasicVo;
 import com.example.vnollxonlinejudge.model.vo.problem.ProblemExampleVo;
 import com.example.vnollxonlinejudge.model.entity.*;
 import com.example.vnollxonlinejudge.exception.BusinessException;
+import com.example.vnollxonlinejudge.judge.JudgeDataCoordinator;
+import com.example.vnollxonlinejudge.judge.JudgeResultCache;
 import com.example.vnollxonlinejudge.mapper.*;
 import com.example.vnollxonlinejudge.service.*;
 import com.example.vnollxonlinejudge.utils.SnowflakeIdGenerator;
@@ -51,6 +53,8 @@ public class ProblemServiceImpl extends ServiceImpl<ProblemMapper, Problem> impl
     private final ProblemExampleService problemExampleService;
     private final CompetitionProblemMapper competitionProblemMapper;
     private final CompetitionMapper competitionMapper;
+    private final JudgeResultCache judgeResultCache;
+    private final JudgeDataCoordinator judgeDataCoordinator;
     private final static SnowflakeIdGenerator gen = new SnowflakeIdGenerator(SnowflakeIdGenerator.defaultMachineId());
     @Autowired
     public ProblemServiceImpl(
@@ -62,7 +66,9 @@ public class ProblemServiceImpl extends ServiceImpl<ProblemMapper, Problem> impl
             TagService tagService,
             ProblemExampleService problemExampleService,
             CompetitionProblemMapper competitionProblemMapper,
-            CompetitionMapper competitionMapper
+            CompetitionMapper competitionMapper,
+            JudgeResultCache judgeResultCache,
+            JudgeDataCoordinator judgeDataCoordinator
     ) {
         this.problemTagService=problemTagService;
         this.userSolvedProblemService=userSolvedProblemService;
@@ -73,6 +79,8 @@ public class ProblemServiceImpl extends ServiceImpl<ProblemMapper, Problem> impl
         this.problemExampleService=problemExampleService;
         this.competitionProblemMapper=competitionProblemMapper;
         this.competitionMapper=competitionMapper;
+        this.judgeResultCache=judgeResultCache;
+        this.judgeDataCoordinator=judgeDataCoordinator;
     }
 
     @Override
@@ -246,6 +254,11 @@ public class ProblemServiceImpl extends ServiceImpl<ProblemMapper, Problem> impl
             problem.setVersion(current + 1);
         }
         updateById(problem);
+        if (dataChanged) {
+            judgeResultCache.invalidateProblem(problem.getId());
+            // 提交后通知各 Agent 淘汰旧版本并预拉新版本，避免新数据的首次评测现场下载
+            judgeDataCoordinator.versionBumped(problem.getId(), JudgeDataCoordinator.dataVersionOf(problem));
+        }
         return getProblemInfo(problem.getId(), 0L, null);
     }
 
@@ -417,6 +430,19 @@ public class ProblemServiceImpl extends ServiceImpl<ProblemMapper, Problem> impl
         update(updateWrapper);
     }
 
+    @Override
+    public void adjustPassCount(Long pid, int delta) {
+        UpdateWrapper<Problem> updateWrapper = new UpdateWrapper<>();
+        updateWrapper.eq("id", pid)
+                .setSql("pass_count = GREATEST(pass_count + " + delta + ", 0)");
+        update(updateWrapper);
+    }
+
+    @Override
+    public void removeUserSolveRecord(Long pid, Long uid, Long cid) {
+        userSolvedProblemService.deleteUserSolveProblem(uid, pid, cid);
+    }
+
     @Override
     public void addUserSolveRecord(Long pid, Long uid, Long cid,String problemName) {
         userSolvedProblemService.createUserSolveProblem(uid,pid,cid,problemName);
@@ -6,9 +6,10 @@ import com.example.vnollxonlinejudge.utils.GetScore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -17,13 +18,30 @@ import java.util.concurrent.TimeUnit;
 @Service
 public class RedisServiceImpl implements RedisService {
     private static final Logger logger = LoggerFactory.getLogger(RedisService.class);
-    private final RedisTemplate<String, Object> redisTemplate;
     private final StringRedisTemplate stringRedisTemplate;
 
+    /**
+     * 比赛评测结果的计数与排行分数在服务端一次完成：原来 4 次 INCR 加一次 ZADD 分开执行，
+     * 同一参赛者并发出结果时可能用过期的计数算出分数覆盖 ZSET。脚本按 SHA 调用（EVALSHA，服务端未缓存时回退 EVAL）。
+     */
+    private static final RedisScript<Long> COMPETITION_VERDICT_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/competition_verdict.lua"), Long.class);
+    private static final RedisScript<Long> PARTICIPANT_INIT_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/competition_participant_init.lua"), Long.class);
+    private static final RedisScript<Long> PARTICIPANT_MIGRATE_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/competition_participant_migrate.lua"), Long.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> DIRTY_POP_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/competition_dirty_pop.lua"), List.class);
+    /**
+     * 参赛者统计 hash（每场比赛一个）的字段前缀：pass:{名字}、penalty:{名字}，与 lua 脚本一致。
+     * 排行 ZSET 成员直接是名字的 UTF-8 字节，不再经过 JSON 序列化。
+     */
+    private static final String PASS_FIELD = "pass:";
+    private static final String PENALTY_FIELD = "penalty:";
+
     @Autowired
-    public RedisServiceImpl(RedisTemplate<String, Object> redisTemplate,
-                            StringRedisTemplate stringRedisTemplate) {
-        this.redisTemplate = redisTemplate;
+    public RedisServiceImpl(StringRedisTemplate stringRedisTemplate) {
         this.stringRedisTemplate = stringRedisTemplate;
     }
     @Override
@@ -62,43 +80,33 @@ public class RedisServiceImpl implements RedisService {
     }
 
     @Override
-    public boolean addToSetByKey(String key, Long score, String userName, Long seconds) {
+    public void initParticipant(String statsKey, String rankingKey, String userName, Long seconds) {
         try {
-            if (Boolean.FALSE.equals(stringRedisTemplate.hasKey(key))) {
-                Long initialScore = GetScore.calculateScore(0L, 0L);
-                redisTemplate.opsForZSet().add(key, userName, initialScore);
-                redisTemplate.expire(key, seconds, TimeUnit.SECONDS);
-                return true;
-            }
+            stringRedisTemplate.execute(PARTICIPANT_INIT_SCRIPT, List.of(statsKey, rankingKey),
+                    userName, String.valueOf(seconds));
         } catch (Exception e) {
-            logger.error("添加到有序集合异常", e);
+            logger.error("初始化参赛者统计异常", e);
         }
-        return false;
     }
 
     @Override
-    public void updateIfPass(String userPassKey, String userPenaltyKey, String problemPassKey, String problemSubmitKey, String rankingKey, String userName,Long penalty) {
+    public void updateIfPass(String statsKey, String dirtyKey, String problemPassKey, String problemSubmitKey, String rankingKey, String userName, Long penalty) {
         try {
-            Long passCount = stringRedisTemplate.opsForValue().increment(userPassKey);
-            stringRedisTemplate.opsForValue().increment(problemPassKey);
-            stringRedisTemplate.opsForValue().increment(problemSubmitKey);
-            Long newPenalty = stringRedisTemplate.opsForValue().increment(userPenaltyKey, penalty);
-            Long newScore = GetScore.calculateScore(passCount, newPenalty);
-            redisTemplate.opsForZSet().add(rankingKey, userName, newScore);
+            stringRedisTemplate.execute(COMPETITION_VERDICT_SCRIPT,
+                    List.of(statsKey, problemPassKey, problemSubmitKey, rankingKey, dirtyKey),
+                    userName, "1", String.valueOf(penalty));
         } catch (Exception e) {
             logger.error("更新通过状态异常", e);
         }
     }
 
     @Override
-    public void updateIfNoPass(String userPenaltyKey, String problemSubmitKey, String userPassKey, String rankingKey, String userName) {
+    public void updateIfNoPass(String statsKey, String dirtyKey, String problemSubmitKey, String rankingKey, String userName) {
         try {
-            Long newPenalty = stringRedisTemplate.opsForValue().increment(userPenaltyKey, 20);
-            stringRedisTemplate.opsForValue().increment(problemSubmitKey);
-            String passCountStr = stringRedisTemplate.opsForValue().get(userPassKey);
-            Long passCount = passCountStr != null ? Integer.parseInt(passCountStr) : 0L;
-            Long newScore = GetScore.calculateScore(passCount, newPenalty);
-            redisTemplate.opsForZSet().add(rankingKey, userName, newScore);
+            // 未通过时脚本不写题目通过数，KEYS[2] 传题目提交数占位
+            stringRedisTemplate.execute(COMPETITION_VERDICT_SCRIPT,
+                    List.of(statsKey, problemSubmitKey, problemSubmitKey, rankingKey, dirtyKey),
+                    userName, "0", "20");
         } catch (Exception e) {
             logger.error("更新未通过状态异常", e);
         }
@@ -136,16 +144,8 @@ public class RedisServiceImpl implements RedisService {
     @Override
     public Set<ZSetOperations.TypedTuple<String>> getZset(String key) {
         try {
-            Set<ZSetOperations.TypedTuple<Object>> rawTuples = redisTemplate.opsForZSet().rangeWithScores(key, 0, -1);
-            Set<ZSetOperations.TypedTuple<String>> result = new HashSet<>();
-            if (rawTuples != null) {
-                for (ZSetOperations.TypedTuple<Object> tuple : rawTuples) {
-                    if (tuple.getValue() instanceof String) {
-                        result.add(ZSetOperations.TypedTuple.of((String) tuple.getValue(), tuple.getScore()));
-                    }
-                }
-            }
-            return result;
+            Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet().rangeWithScores(key, 0, -1);
+            return tuples != null ? tuples : new HashSet<>();
         } catch (Exception e) {
             logger.error("获取有序集合异常", e);
             return new HashSet<>();
@@ -187,4 +187,117 @@ public class RedisServiceImpl implements RedisService {
     public Long getTTL(String key) {
         return stringRedisTemplate.getExpire(key, TimeUnit.SECONDS);
     }
+
+    @Override
+    public void setParticipantScore(String statsKey, String rankingKey, String userName, long passCount, long penalty) {
+        try {
+            Long ttl = stringRedisTemplate.getExpire(rankingKey, TimeUnit.SECONDS);
+            if (ttl == null || ttl <= 0) {
+                return;
+            }
+            stringRedisTemplate.opsForHash().putAll(statsKey, Map.of(
+                    PASS_FIELD + userName, String.valueOf(passCount),
+                    PENALTY_FIELD + userName, String.valueOf(penalty)));
+            stringRedisTemplate.opsForZSet().add(rankingKey, userName, GetScore.calculateScore(passCount, penalty));
+        } catch (Exception e) {
+            logger.error("覆盖参赛者成绩异常", e);
+        }
+    }
+
+    @Override
+    public Map<String, int[]> getParticipantStats(String statsKey) {
+        Map<String, int[]> stats = new HashMap<>();
+        try {
+            Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(statsKey);
+            entries.forEach((field, value) -> {
+                String f = (String) field;
+                int index = f.startsWith(PASS_FIELD) ? 0 : f.startsWith(PENALTY_FIELD) ? 1 : -1;
+                if (index < 0) {
+                    return;
+                }
+                String name = f.substring(index == 0 ? PASS_FIELD.length() : PENALTY_FIELD.length());
+                stats.computeIfAbsent(name, k -> new int[2])[index] = parseIntOrZero((String) value);
+            });
+        } catch (Exception e) {
+            logger.error("获取参赛者统计异常", e);
+        }
+        return stats;
+    }
+
+    @Override
+    public void migrateLegacyParticipant(String legacyPassKey, String legacyPenaltyKey, String statsKey, String rankingKey,
+                                         String dirtyKey, String userName, String legacyMember) {
+        try {
+            stringRedisTemplate.execute(PARTICIPANT_MIGRATE_SCRIPT,
+                    List.of(legacyPassKey, legacyPenaltyKey, statsKey, rankingKey, dirtyKey), userName, legacyMember);
+        } catch (Exception e) {
+            logger.error("迁移参赛者统计异常: {}", userName, e);
+        }
+    }
+
+    @Override
+    public Map<String, int[]> popDirtyParticipantStats(String dirtyKey, String statsKey, int count) {
+        Map<String, int[]> stats = new HashMap<>();
+        List<?> flat = stringRedisTemplate.execute(DIRTY_POP_SCRIPT, List.of(dirtyKey, statsKey), String.valueOf(count));
+        if (flat == null) {
+            return stats;
+        }
+        for (int i = 0; i + 2 < flat.size(); i += 3) {
+            stats.put((String) flat.get(i), new int[]{
+                    parseIntOrZero((String) flat.get(i + 1)), parseIntOrZero((String) flat.get(i + 2))});
+        }
+        return stats;
+    }
+
+    @Override
+    public void markParticipantsDirty(String dirtyKey, Collection<String> userNames) {
+        if (userNames.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForSet().add(dirtyKey, userNames.toArray(new String[0]));
+        } catch (Exception e) {
+            logger.error("参赛者放回待同步集合异常", e);
+        }
+    }
+
+    private static int parseIntOrZero(String value) {
+        try {
+            return value != null ? Integer.parseInt(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void incrementIfExists(String key, long delta) {
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(key))) {
+                stringRedisTemplate.opsForValue().increment(key, delta);
+            }
+        } catch (Exception e) {
+            logger.error("递增计数异常", e);
+        }
+    }
+
+    @Override
+    public Long incrementWithExpire(String key, long seconds) {
+        try {
+            Long value = stringRedisTemplate.opsForValue().increment(key);
+            stringRedisTemplate.expire(key, seconds, TimeUnit.SECONDS);
+            return value;
+        } catch (Exception e) {
+            logger.error("递增计数异常", e);
+            return null;
+        }
+    }
+
+    @Override
+    public void publish(String channel, String message) {
+        try {
+            stringRedisTemplate.convertAndSend(channel, message);
+        } catch (Exception e) {
+            logger.error("发布消息异常", e);
+        }
+    }
 }
@@ -0,0 +1,341 @@
+package com.example.vnollxonlinejudge.service.serviceImpl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.vnollxonlinejudge.config.JudgeQueueConfig;
+import com.example.vnollxonlinejudge.exception.BusinessException;
+import com.example.vnollxonlinejudge.judge.FairJudgeQueue;
+import com.example.vnollxonlinejudge.judge.JudgeClaimRegistry;
+import com.example.vnollxonlinejudge.judge.JudgeTimeline;
+import com.example.vnollxonlinejudge.mapper.SubmissionMapper;
+import com.example.vnollxonlinejudge.model.dto.judge.RejudgeJobDTO;
+import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
+import com.example.vnollxonlinejudge.model.entity.Problem;
+import com.example.vnollxonlinejudge.model.entity.Submission;
+import com.example.vnollxonlinejudge.model.vo.judge.RejudgeJobVO;
+import com.example.vnollxonlinejudge.service.CompetitionService;
+import com.example.vnollxonlinejudge.service.ProblemService;
+import com.example.vnollxonlinejudge.service.RejudgeService;
+import com.example.vnollxonlinejudge.service.SubmissionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 后台批量重判。
+ * <p>
+ * 任务线程按 snowflake_id 游标分页（keyset）拉取命中的提交，每条占一个在途许可后以重判身份进入公平队列的
+ * 重判通道；许可数为 judge-queue.rejudge-max-in-flight，结果落地时归还，因此任意时刻一个任务最多只有
+ * 这么多条在排队或评测，正常提交不会被饿死。
+ * <p>
+ * 重判不改写"等待评测 / 评测中"，原结果一直保留到新结果落库为止；评测机异常（判题错误）时保留原结果。
+ * 结果落地后只在"是否通过"变化时按差量修正通过数 / 通过记录 / 比赛成绩，提交数不变。
+ * 多个任务范围重叠时（如重判某题与重判包含该题的比赛），已被其他进行中任务送入队列的提交直接跳过；
+ * 每条在途提交的名额只归还一次（出结果或消息被当作重复丢弃，先到者归还）。
+ * 任务状态在内存中，重启后丢失；重判本身幂等，可重新发起。
+ */
+@Service
+public class RejudgeServiceImpl implements RejudgeService {
+    private static final Logger logger = LoggerFactory.getLogger(RejudgeServiceImpl.class);
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_RETAINED_JOBS = 50;
+    private static final long DEFAULT_TIME_LIMIT = 1000L;
+    private static final long DEFAULT_MEMORY_LIMIT = 256L;
+    private static final String STATE_RUNNING = "RUNNING";
+    private static final String STATE_FINISHED = "FINISHED";
+    private static final String STATE_CANCELLED = "CANCELLED";
+    private static final String STATE_FAILED = "FAILED";
+
+    private final SubmissionMapper submissionMapper;
+    private final SubmissionService submissionService;
+    private final ProblemService problemService;
+    private final CompetitionService competitionService;
+    private final FairJudgeQueue fairJudgeQueue;
+    private final JudgeClaimRegistry judgeClaimRegistry;
+    private final JudgeQueueConfig judgeQueueConfig;
+    private final JudgeTimeline judgeTimeline;
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong jobIds = new AtomicLong();
+    /** 在途重判提交 snowflakeId -> 所属任务 id */
+    private final Map<Long, Long> queuedBy = new ConcurrentHashMap<>();
+    /** 差量修正按"查通过状态 → 改计数"两步进行，同一时刻只处理一条，避免同一用户的并发重判重复增减 */
+    private final Object applyLock = new Object();
+
+    @Autowired
+    public RejudgeServiceImpl(
+            SubmissionMapper submissionMapper,
+            SubmissionService submissionService,
+            ProblemService problemService,
+            CompetitionService competitionService,
+            FairJudgeQueue fairJudgeQueue,
+            JudgeClaimRegistry judgeClaimRegistry,
+            JudgeQueueConfig judgeQueueConfig,
+            JudgeTimeline judgeTimeline
+    ) {
+        this.submissionMapper = submissionMapper;
+        this.submissionService = submissionService;
+        this.problemService = problemService;
+        this.competitionService = competitionService;
+        this.fairJudgeQueue = fairJudgeQueue;
+        this.judgeClaimRegistry = judgeClaimRegistry;
+        this.judgeQueueConfig = judgeQueueConfig;
+        this.judgeTimeline = judgeTimeline;
+    }
+
+    @Override
+    public RejudgeJobVO createJob(RejudgeJobDTO dto, Long operatorId) {
+        boolean hasStatuses = dto.getStatuses() != null && !dto.getStatuses().isEmpty();
+        if (dto.getPid() == null && dto.getCid() == null && !hasStatuses) {
+            throw new BusinessException("请至少指定题目、比赛或状态中的一项");
+        }
+        if (dto.getPid() != null && problemService.getById(dto.getPid()) == null) {
+            throw new BusinessException("题目不存在");
+        }
+        if (dto.getCid() != null && dto.getCid() != 0) {
+            competitionService.getCompetitionById(dto.getCid());
+        }
+        Job job = new Job(jobIds.incrementAndGet(), dto, operatorId, Math.max(1, judgeQueueConfig.getRejudgeMaxInFlight()));
+        job.total = Math.toIntExact(submissionMapper.selectCount(buildWrapper(dto, 0L)));
+        jobs.put(job.id, job);
+        evictOldJobs();
+        Thread.ofVirtual().name("rejudge-" + job.id).start(() -> run(job));
+        logger.info("创建重判任务: jobId={}, pid={}, cid={}, statuses={}, total={}, operator={}",
+                job.id, dto.getPid(), dto.getCid(), dto.getStatuses(), job.total, operatorId);
+        return toVO(job);
+    }
+
+    @Override
+    public RejudgeJobVO getJob(Long jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new BusinessException("重判任务不存在");
+        }
+        return toVO(job);
+    }
+
+    @Override
+    public List<RejudgeJobVO> listJobs() {
+        List<RejudgeJobVO> list = new ArrayList<>();
+        jobs.values().stream()
+                .sorted(Comparator.comparingLong((Job j) -> j.id).reversed())
+                .forEach(job -> list.add(toVO(job)));
+        return list;
+    }
+
+    @Override
+    public void cancelJob(Long jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new BusinessException("重判任务不存在");
+        }
+        job.cancelled = true;
+        logger.info("取消重判任务: jobId={}", jobId);
+    }
+
+    @Override
+    public boolean isRunning(Long jobId) {
+        Job job = jobs.get(jobId);
+        return job != null && STATE_RUNNING.equals(job.state);
+    }
+
+    @Override
+    public void onResult(JudgeInfo judgeInfo, String newStatus) {
+        Job job = jobs.get(judgeInfo.getRejudgeJobId());
+        try {
+            if ("判题错误".equals(newStatus)) {
+                if (job != null) job.failed.incrementAndGet();
+            } else if (!newStatus.equals(judgeInfo.getPreviousStatus())) {
+                synchronized (applyLock) {
+                    submissionService.applyRejudgeResult(judgeInfo, judgeInfo.getPreviousStatus(), newStatus);
+                }
+                if (job != null) job.changed.incrementAndGet();
+            }
+        } catch (Exception e) {
+            logger.error("重判结果修正统计失败: snowflakeId={}", judgeInfo.getSnowflakeId(), e);
+        } finally {
+            // 重启前发出的重判消息可能在任务已不存在时才落地，统计照常修正
+            releaseSlot(judgeInfo);
+        }
+    }
+
+    @Override
+    public void onDropped(JudgeInfo judgeInfo) {
+        if (releaseSlot(judgeInfo)) {
+            logger.info("重判消息被丢弃，归还在途名额: jobId={}, snowflakeId={}",
+                    judgeInfo.getRejudgeJobId(), judgeInfo.getSnowflakeId());
+        }
+    }
+
+    /** 归还一条在途提交的名额；同一提交只归还一次，返回本次是否归还 */
+    private boolean releaseSlot(JudgeInfo judgeInfo) {
+        Long jobId = judgeInfo.getRejudgeJobId();
+        if (!queuedBy.remove(judgeInfo.getSnowflakeId(), jobId)) {
+            return false;
+        }
+        Job job = jobs.get(jobId);
+        if (job != null) {
+            job.finished.incrementAndGet();
+            job.permits.release();
+            job.checkDone();
+        }
+        return true;
+    }
+
+    private void run(Job job) {
+        Map<Long, Problem> problems = new HashMap<>();
+        long cursor = 0L;
+        try {
+            while (!job.cancelled) {
+                QueryWrapper<Submission> wrapper = buildWrapper(job.dto, cursor);
+                wrapper.select("snowflake_id", "code", "language", "pid", "cid", "uid", "team_id",
+                                "user_name", "create_time", "status")
+                        .orderByAsc("snowflake_id")
+                        .last("LIMIT " + PAGE_SIZE);
+                List<Submission> page = submissionMapper.selectList(wrapper);
+                for (Submission s : page) {
+                    if (job.cancelled) {
+                        break;
+                    }
+                    Long owner = queuedBy.get(s.getSnowflakeId());
+                    if (owner != null && owner != job.id && isRunning(owner)) {
+                        // 另一个进行中的任务已把它送入队列，不再释放它的认领重复评测
+                        job.skipped.incrementAndGet();
+                        continue;
+                    }
+                    job.permits.acquire();
+                    queuedBy.put(s.getSnowflakeId(), job.id);
+                    Problem problem = problems.computeIfAbsent(s.getPid(), problemService::getById);
+                    // 原评测的认领标记还在，先释放，否则消费者会把重判消息当重复消息丢掉
+                    judgeClaimRegistry.release(s.getSnowflakeId());
+                    JudgeInfo judgeInfo = toJudgeInfo(job.id, s, problem);
+                    fairJudgeQueue.enqueue(judgeInfo);
+                    judgeTimeline.record(judgeInfo, "rejudge_queued", "jobId=" + job.id + ", previous=" + s.getStatus());
+                    job.enqueued.incrementAndGet();
+                }
+                if (page.size() < PAGE_SIZE) {
+                    break;
+                }
+                cursor = page.get(page.size() - 1).getSnowflakeId();
+            }
+            job.streamDone = true;
+            job.checkDone();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.streamDone = true;
+            job.cancelled = true;
+            job.checkDone();
+        } catch (Exception e) {
+            logger.error("重判任务执行失败: jobId={}", job.id, e);
+            job.state = STATE_FAILED;
+            job.finishTime = System.currentTimeMillis();
+        }
+    }
+
+    /** 命中范围内、已有最终结果的提交；排队或评测中的提交由正常流程处理。 */
+    private static QueryWrapper<Submission> buildWrapper(RejudgeJobDTO dto, long afterSnowflakeId) {
+        QueryWrapper<Submission> wrapper = new QueryWrapper<>();
+        if (dto.getPid() != null) {
+            wrapper.eq("pid", dto.getPid());
+        }
+        if (dto.getCid() != null) {
+            wrapper.eq("cid", dto.getCid());
+        }
+        if (dto.getStatuses() != null && !dto.getStatuses().isEmpty()) {
+            wrapper.in("status", dto.getStatuses());
+        }
+        wrapper.notIn("status", "等待评测", "评测中")
+                .gt("snowflake_id", afterSnowflakeId);
+        return wrapper;
+    }
+
+    private static JudgeInfo toJudgeInfo(Long jobId, Submission s, Problem problem) {
+        return JudgeInfo.builder()
+                .code(s.getCode())
+                .language(s.getLanguage())
+                .time(problem != null && problem.getTimeLimit() != null ? problem.getTimeLimit().longValue() : DEFAULT_TIME_LIMIT)
+                .memory(problem != null && problem.getMemoryLimit() != null ? problem.getMemoryLimit().longValue() : DEFAULT_MEMORY_LIMIT)
+                .cid(s.getCid() != null ? s.getCid() : 0L)
+                .uid(s.getUid())
+                .teamId(s.getTeamId())
+                .pid(s.getPid())
+                .uname(s.getUserName())
+                .createTime(s.getCreateTime())
+                .snowflakeId(s.getSnowflakeId())
+                .rejudgeJobId(jobId)
+                .previousStatus(s.getStatus())
+                .traceId(JudgeTimeline.newTraceId())
+                .build();
+    }
+
+    private void evictOldJobs() {
+        if (jobs.size() <= MAX_RETAINED_JOBS) {
+            return;
+        }
+        jobs.values().stream()
+                .filter(job -> !STATE_RUNNING.equals(job.state))
+                .min(Comparator.comparingLong(job -> job.id))
+                .ifPresent(job -> jobs.remove(job.id));
+    }
+
+    private static RejudgeJobVO toVO(Job job) {
+        RejudgeJobVO vo = new RejudgeJobVO();
+        vo.setId(job.id);
+        vo.setPid(job.dto.getPid());
+        vo.setCid(job.dto.getCid());
+        vo.setStatuses(job.dto.getStatuses());
+        vo.setState(job.state);
+        vo.setTotal(job.total);
+        vo.setEnqueued(job.enqueued.get());
+        vo.setSkipped(job.skipped.get());
+        vo.setFinished(job.finished.get());
+        vo.setChanged(job.changed.get());
+        vo.setFailed(job.failed.get());
+        vo.setOperatorId(job.operatorId);
+        vo.setCreateTime(job.createTime);
+        vo.setFinishTime(job.finishTime);
+        return vo;
+    }
+
+    private static final class Job {
+        final long id;
+        final RejudgeJobDTO dto;
+        final Long operatorId;
+        final Semaphore permits;
+        final long createTime = System.currentTimeMillis();
+        final AtomicInteger enqueued = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicInteger finished = new AtomicInteger();
+        final AtomicInteger changed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        volatile int total;
+        volatile String state = STATE_RUNNING;
+        volatile boolean cancelled;
+        volatile boolean streamDone;
+        volatile Long finishTime;
+
+        Job(long id, RejudgeJobDTO dto, Long operatorId, int maxInFlight) {
+            this.id = id;
+            this.dto = dto;
+            this.operatorId = operatorId;
+            this.permits = new Semaphore(maxInFlight);
+        }
+
+        /** 游标走完且已入队的全部出结果后结束。 */
+        synchronized void checkDone() {
+            if (STATE_RUNNING.equals(state) && streamDone && finished.get() >= enqueued.get()) {
+                state = cancelled ? STATE_CANCELLED : STATE_FINISHED;
+                finishTime = System.currentTimeMillis();
+            }
+        }
+    }
+}
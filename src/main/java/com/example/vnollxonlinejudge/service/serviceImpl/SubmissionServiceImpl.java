@@ -7,6 +7,7 @@ import com.baomidou.mybatisplus.core.toolkit.StringUtils;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.example.vnollxonlinejudge.convert.SubmissionConvert;
+import com.example.vnollxonlinejudge.judge.FairJudgeQueue;
 import com.example.vnollxonlinejudge.model.entity.CompetitionProblem;
 import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
 import com.example.vnollxonlinejudge.model.query.SubmissionQuery;
@@ -15,6 +16,8 @@ import com.example.vnollxonlinejudge.model.vo.submission.SubmissionVo;
 import com.example.vnollxonlinejudge.model.entity.Submission;
 import com.example.vnollxonlinejudge.exception.BusinessException;
 import com.example.vnollxonlinejudge.mapper.SubmissionMapper;
+import com.example.vnollxonlinejudge.scoreboard.ContestScoreboard;
+import com.example.vnollxonlinejudge.scoreboard.ContestScoreboardRegistry;
 import com.example.vnollxonlinejudge.service.*;
 import com.example.vnollxonlinejudge.utils.*;
 import com.example.vnollxonlinejudge.websocket.CompetitionFirstBloodWebSocketHandler;
@@ -26,9 +29,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
-import static com.example.vnollxonlinejudge.utils.GetScore.calculateScore;
 
 @Service
 public class SubmissionServiceImpl extends ServiceImpl<SubmissionMapper,Submission> implements SubmissionService {
@@ -44,6 +45,9 @@ public class SubmissionServiceImpl extends ServiceImpl<SubmissionMapper,Submissi
     private final ProblemTagService problemTagService;
     private final CompetitionFirstBloodWebSocketHandler competitionFirstBloodWebSocketHandler;
     private final CompetitionProblemService competitionProblemService;
+    private final FairJudgeQueue fairJudgeQueue;
+    private final JudgeOutboxService judgeOutboxService;
+    private final ContestScoreboardRegistry contestScoreboardRegistry;
 
     @Autowired
     public SubmissionServiceImpl(
@@ -57,7 +61,10 @@ public class SubmissionServiceImpl extends ServiceImpl<SubmissionMapper,Submissi
             ProblemTagService problemTagService,
             SubmissionConvert submissionConvert,
             CompetitionFirstBloodWebSocketHandler competitionFirstBloodWebSocketHandler,
-            CompetitionProblemService competitionProblemService
+            CompetitionProblemService competitionProblemService,
+            FairJudgeQueue fairJudgeQueue,
+            JudgeOutboxService judgeOutboxService,
+            ContestScoreboardRegistry contestScoreboardRegistry
     ) {
         this.problemService = problemService;
         this.redisService=redisService;
@@ -70,10 +77,13 @@ public class SubmissionServiceImpl extends ServiceImpl<SubmissionMapper,Submissi
         this.submissionConvert=submissionConvert;
         this.competitionFirstBloodWebSocketHandler=competitionFirstBloodWebSocketHandler;
         this.competitionProblemService=competitionProblemService;
+        this.fairJudgeQueue=fairJudgeQueue;
+        this.judgeOutboxService=judgeOutboxService;
+        this.contestScoreboardRegistry=contestScoreboardRegistry;
     }
 
-    private static final String USER_PASS_COUNT_KEY = "competition_user_pass:%d:%s"; // cid:uid
-    private static final String USER_PENALTY_KEY = "competition_user_penalty:%d:%s"; // cid:uid
+    private static final String USER_STATS_KEY = "competition_user_stats:%d"; // cid，字段 pass:{name} / penalty:{name}
+    private static final String USER_DIRTY_KEY = "competition_user_dirty:%d"; // cid，待同步到数据库的参赛者
     private static final String PROBLEM_PASS_KEY = "competition_problem_pass:%d:%d"; // cid:pid
     private static final String PROBLEM_SUBMIT_KEY = "competition_problem_submit:%d:%d"; // cid:pid
     private static final String RANKING_KEY = "competition_ranking:%d"; // cid
@@ -86,7 +96,13 @@ public class SubmissionServiceImpl extends ServiceImpl<SubmissionMapper,Submissi
             if (submission == null) {
                 throw  new BusinessException("提交记录不存在");
             }
-            return new SubmissionVo(submission);
+            SubmissionVo vo = new SubmissionVo(submission);
+            if ("等待评测".equals(vo.getStatus()) && submission.getSnowflakeId() != null) {
+                vo.setQueueAhead(fairJudgeQueue.positionOf(submission.getSnowflakeId()));
+            } else {
+                vo.setQueueAhead(null);
+            }
+            return vo;
     }
 
     @Override
@@ -100,16 +116,17 @@ public class SubmissionServiceImpl extends ServiceImpl<SubmissionMapper,Submissi
             default -> "C++";
         };
         submission.setLanguage(language);
-        // 入库前给"等待评测"提交打上前方排队数快照：
-        // 当前所有 status='等待评测' 的行数（不含本条，因为本条还没插入），
-        // 即本条入队后将位于第 (count+1) 位，前方有 count 位。
-        if ("等待评测".equals(submission.getStatus()) && submission.getQueueAhead() == null) {
-            long ahead = this.count(new QueryWrapper<Submission>().eq("status", "等待评测"));
-            submission.setQueueAhead((int) ahead);
-        }
+        // 前方排队数由公平队列实时给出，入库时不再 COUNT 快照
         this.save(submission);
     }
 
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void addSubmissionForJudge(Submission submission, JudgeInfo judgeInfo) {
+        addSubmission(submission);
+        judgeOutboxService.append(judgeInfo);
+    }
+
     @Override
     public void processSubmission(JudgeInfo judgeinfo,String result) {
         //初始化所有键和信息！！！
@@ -121,10 +138,12 @@ public class SubmissionServiceImpl extends ServiceImpl<SubmissionMapper,Submissi
         String participantDisplayName=userName;
         String createTime=judgeinfo.getCreateTime();
         ProblemVo problem;
-        String userPassKey = null,userPenaltyKey=null,rankingKey=null,problemPassKey=null,problemSubmitKey=null,timeOutKey=null,timeBeginKey=null;
+        String userStatsKey = null,userDirtyKey=null,rankingKey=null,problemPassKey=null,problemSubmitKey=null,timeOutKey=null,timeBeginKey=null;
         boolean rankCompetition = cid != 0;
+        boolean teamCompetition = false;
         if (cid != 0) {
-            if ("TEAM".equalsIgnoreCase(competitionService.getCompetitionById(cid).getParticipantType())) {
+            teamCompetition = "TEAM".equalsIgnoreCase(competitionService.getCompetitionById(cid).getParticipantType());
+            if (teamCompetition) {
                 Long teamId = judgeinfo.getTeamId();
                 if (teamId == null) {
                     // 管理员/超管在团队赛中没有队伍，仅作为测试提交，不计入排名与统计
@@ -148,16 +167,14 @@ public class SubmissionServiceImpl extends ServiceImpl<SubmissionMapper,Submissi
             } else {
             timeOutKey=String.format(TIME_OUT_KEY,cid);
             timeBeginKey=String.format(TIME_BEGIN_KEY,cid);
-            userPassKey = String.format(USER_PASS_COUNT_KEY, cid, participantName);
-            userPenaltyKey = String.format(USER_PENALTY_KEY, cid, participantName);
+            userStatsKey = String.format(USER_STATS_KEY, cid);
+            userDirtyKey = String.format(USER_DIRTY_KEY, cid);
             rankingKey = String.format(RANKING_KEY, cid);
             problemPassKey = String.format(PROBLEM_PASS_KEY, cid, pid);
             problemSubmitKey = String.format(PROBLEM_SUBMIT_KEY, cid, pid);
             String endTimeStr=redisService.getValueByKey(timeOutKey);
             Long ttlSeconds= TimeUtils.calculateTTL(endTimeStr);
-            redisService.setKey(userPassKey,"0",ttlSeconds + COMPETITION_CACHE_EXTRA_SECONDS);
-            redisService.setKey(userPenaltyKey,"0",ttlSeconds + COMPETITION_CACHE_EXTRA_SECONDS);
-            redisService.addToSetByKey(rankingKey,calculateScore(0L,0L),participantName,ttlSeconds + COMPETITION_CACHE_EXTRA_SECONDS);
+            redisService.initParticipant(userStatsKey,rankingKey,participantName,ttlSeconds + COMPETITION_CACHE_EXTRA_SECONDS);
             // 每个提交者都需要在 competition_user 中存在一行，否则 5 分钟定时同步与比赛结束同步会因
             // UPDATE 找不到行而静默失败，导致除首提者外所有人的成绩无法落库。
             // createRecord 内部捕获 DuplicateKeyException，配合 (competition_id, user_id) 唯一索引，可幂等调用。
@@ -192,7 +209,7 @@ public class SubmissionServiceImpl extends ServiceImpl<SubmissionMapper,Submissi
                 } else {
                     String beginTimeStr=redisService.getValueByKey(timeBeginKey);
                     Long penalty= TimeUtils.calculateMin(beginTimeStr,createTime);
-                    redisService.updateIfPass(userPassKey,userPenaltyKey,problemPassKey,problemSubmitKey,rankingKey,participantName,penalty);//如果是比赛那就需要更新缓存了
+                    redisService.updateIfPass(userStatsKey,userDirtyKey,problemPassKey,problemSubmitKey,rankingKey,participantName,penalty);//如果是比赛那就需要更新缓存了
                     pushCompetitionFirstBloodIfNeeded(cid, pid, problem.getTitle(), participantDisplayName, judgeinfo.getSnowflakeId());
                 }
             } else { //已经 AC 过，再次 AC：只累加 submit 计数，不动榜单分数和罚时
@@ -212,11 +229,94 @@ public class SubmissionServiceImpl extends ServiceImpl<SubmissionMapper,Submissi
                 userService.updateSubmitCount(uid,0);//如果非比赛，提交总数加1
                 problemService.updatePassCount(pid,0);//问题提交数也加一
             } else if (!ok) {
-                redisService.updateIfNoPass(userPenaltyKey,problemSubmitKey,userPassKey,rankingKey,participantName);//是比赛，而且之前也没通过，那就需要罚时了
+                redisService.updateIfNoPass(userStatsKey,userDirtyKey,problemSubmitKey,rankingKey,participantName);//是比赛，而且之前也没通过，那就需要罚时了
             } else { //比赛中已 AC 后再 WA：只让题目提交数 +1，不再罚时、不动榜单
                 redisService.incrementProblemSubmit(problemSubmitKey);
             }
         }
+        if (rankCompetition) {
+            // 内存榜单按提交自身的先后增量计入（乱序到达的结果由榜单自行处理）
+            Long teamId = judgeinfo.getTeamId();
+            contestScoreboardRegistry.onVerdict(cid,
+                    teamCompetition ? ContestScoreboard.teamKey(teamId) : userName,
+                    teamCompetition ? teamId : uid,
+                    participantDisplayName, !teamCompetition,
+                    pid, judgeinfo.getSnowflakeId(), createTime, result);
+        }
+    }
+
+    @Override
+    public void applyRejudgeResult(JudgeInfo judgeInfo, String previousStatus, String newStatus) {
+        boolean wasAccepted = "答案正确".equals(previousStatus);
+        boolean accepted = "答案正确".equals(newStatus);
+        Long cid = judgeInfo.getCid() != null ? judgeInfo.getCid() : 0L;
+        if (cid != 0) {
+            // 重判期间提交曾回到等待评测，榜单可能在此期间重建过，统一让内存榜单重建
+            contestScoreboardRegistry.invalidate(cid);
+        }
+        if (wasAccepted == accepted) {
+            return; // 通过与否没变：通过数、罚时都不受影响
+        }
+        Long pid = judgeInfo.getPid();
+        Long uid = judgeInfo.getUid();
+        boolean rankCompetition = cid != 0
+                && (!"TEAM".equalsIgnoreCase(competitionService.getCompetitionById(cid).getParticipantType())
+                    || judgeInfo.getTeamId() != null);
+        // 本条已按新结果落库，统计其余提交即可得到重判后的通过状态
+        boolean solvedBefore = problemService.isSolved(pid, uid, cid);
+        boolean solvedAfter = this.count(new QueryWrapper<Submission>()
+                .eq("uid", uid).eq("pid", pid).eq("cid", cid).eq("status", "答案正确")) > 0;
+        int delta = 0;
+        if (solvedAfter && !solvedBefore) {
+            ProblemVo problem = problemService.getProblemInfo(pid, 0L, null);
+            problemService.addUserSolveRecord(pid, uid, cid, problem != null ? problem.getTitle() : null);
+            delta = 1;
+        } else if (!solvedAfter && solvedBefore) {
+            problemService.removeUserSolveRecord(pid, uid, cid);
+            delta = -1;
+        }
+        if (!rankCompetition) {
+            if (delta != 0) {
+                userService.adjustPassCount(uid, delta);
+                problemService.adjustPassCount(pid, delta);
+            }
+            return;
+        }
+        if (delta != 0) {
+            competitionProblemService.adjustPassCount(pid, cid, delta);
+            redisService.incrementIfExists(String.format(PROBLEM_PASS_KEY, cid, pid), delta);
+        }
+        // 首次通过时间与之前的错误次数都可能变化，按该参赛者的全部提交重算通过数与罚时
+        recomputeCompetitionParticipant(cid, uid, judgeInfo.getUname());
+    }
+
+    /** 与 processSubmission 同口径：首次通过前每次未通过罚 20 分钟，通过时加上距开赛的分钟数。 */
+    private void recomputeCompetitionParticipant(Long cid, Long uid, String participantName) {
+        String beginTime = competitionService.getCompetitionById(cid).getBeginTime();
+        QueryWrapper<Submission> wrapper = new QueryWrapper<>();
+        wrapper.select("pid", "status", "create_time")
+                .eq("cid", cid).eq("uid", uid)
+                .orderByAsc("snowflake_id");
+        Set<Long> solved = new HashSet<>();
+        long passCount = 0;
+        long penalty = 0;
+        for (Submission s : this.baseMapper.selectList(wrapper)) {
+            if ("等待评测".equals(s.getStatus()) || "评测中".equals(s.getStatus()) || solved.contains(s.getPid())) {
+                continue;
+            }
+            if ("答案正确".equals(s.getStatus())) {
+                solved.add(s.getPid());
+                passCount++;
+                penalty += TimeUtils.calculateMin(beginTime, s.getCreateTime());
+            } else {
+                penalty += 20;
+            }
+        }
+        redisService.setParticipantScore(
+                String.format(USER_STATS_KEY, cid),
+                String.format(RANKING_KEY, cid),
+                participantName, passCount, penalty);
+        competitionUserService.setStats(cid, participantName, (int) passCount, (int) penalty);
     }
 
     private void pushCompetitionFirstBloodIfNeeded(Long cid, Long pid, String problemTitle, String participantName, Long currentSnowflakeId) {
@@ -291,9 +391,8 @@ public class SubmissionServiceImpl extends ServiceImpl<SubmissionMapper,Submissi
 
     /**
      * 列表查询时懒计算"等待评测"提交在队列中前方还有多少位，覆盖入库时落库的快照值。
-     * snowflakeId 单调递增 + 队列同优先级 FIFO ⇒
-     * 前方人数 = 当前所有 status='等待评测' 中 snowflakeId 比自己小的数量。
-     * 仅当当前页存在等待评测的提交时才发起一次轻量查询拉全部 waiting 的 snowflakeId。
+     * 优先取公平队列中的实际位置；不在本实例队列里的（如刚恢复、已投递但尚未开始）
+     * 回退为 status='等待评测' 中 snowflakeId 比自己小的数量，此时才发起一次轻量查询。
      */
     private void fillQueueAhead(List<Submission> records, List<SubmissionVo> vos) {
         if (records == null || records.isEmpty()) return;
@@ -303,25 +402,21 @@ public class SubmissionServiceImpl extends ServiceImpl<SubmissionMapper,Submissi
                 vo.setQueueAhead(null);
             }
         }
-        boolean hasWaiting = false;
-        for (SubmissionVo vo : vos) {
-            if ("等待评测".equals(vo.getStatus())) { hasWaiting = true; break; }
+        List<Long> waitingIds = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            Submission s = records.get(i);
+            if ("等待评测".equals(vos.get(i).getStatus()) && s.getSnowflakeId() != null) {
+                waitingIds.add(s.getSnowflakeId());
+            }
         }
-        if (!hasWaiting) return;
-        QueryWrapper<Submission> w = new QueryWrapper<>();
-        w.select("snowflake_id").eq("status", "等待评测").orderByAsc("snowflake_id");
-        List<Long> waitingIds = this.baseMapper.selectList(w).stream()
-                .map(Submission::getSnowflakeId)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        if (waitingIds.isEmpty()) return;
+        // 整页一次加锁批量查询；不在队列中的（刚被消费者取走等竞态）不展示位置
+        Map<Long, Integer> positions = fairJudgeQueue.positionsOf(waitingIds);
         for (int i = 0; i < records.size(); i++) {
             Submission s = records.get(i);
             SubmissionVo vo = vos.get(i);
             if (!"等待评测".equals(vo.getStatus()) || s.getSnowflakeId() == null) continue;
-            int idx = Collections.binarySearch(waitingIds, s.getSnowflakeId());
-            // 找到则前方数量等于 idx；未找到（极小概率竞态：已被消费者拉走改为评测中）则取插入点
-            int ahead = idx >= 0 ? idx : -idx - 1;
-            vo.setQueueAhead(Math.max(0, ahead));
+            vo.setQueueAhead(positions.get(s.getSnowflakeId()));
         }
     }
 
@@ -340,16 +435,7 @@ public class SubmissionServiceImpl extends ServiceImpl<SubmissionMapper,Submissi
 
     @Override
     public void updateSubmissionJudgeStatusBySnowflake(Long snowflakeId, String judgeStatus, Long time, Long memory, String errorInfo, Integer passCount, Integer testCount) {
-        QueryWrapper<Submission> wrapper=new QueryWrapper<>();
-        wrapper.eq("snowflake_id",snowflakeId);
-        Submission submission=this.baseMapper.selectOne(wrapper);
-        submission.setStatus(judgeStatus);
-        submission.setMemory(memory);
-        submission.setTime(time);
-        submission.setErrorInfo(errorInfo);
-        submission.setPassCount(passCount);
-        submission.setTestCount(testCount);
-        this.updateById(submission);
+        this.baseMapper.updateJudgeStatusBySnowflake(snowflakeId, judgeStatus, time, memory, errorInfo, passCount, testCount);
     }
 
 
@@ -261,6 +261,14 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         update(null, updateWrapper);
     }
 
+    @Override
+    public void adjustPassCount(Long uid, int delta) {
+        LambdaUpdateWrapper<User> updateWrapper = new LambdaUpdateWrapper<>();
+        updateWrapper.setSql("pass_count = GREATEST(pass_count + " + delta + ", 0)")
+                .eq(User::getId, uid);
+        update(null, updateWrapper);
+    }
+
     @Override
     public void deleteUserByAdmin(Long id,String currentIdentity) {
         User user=this.getById(id);
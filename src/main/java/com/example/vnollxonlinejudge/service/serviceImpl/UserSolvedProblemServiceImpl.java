@@ -64,6 +64,15 @@ public class UserSolvedProblemServiceImpl extends ServiceImpl<UserSolvedProblemM
                 .collect(Collectors.toSet());
     }
 
+    @Override
+    public void deleteUserSolveProblem(Long uid, Long pid, Long cid) {
+        LambdaQueryWrapper<UserSolvedProblem> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(UserSolvedProblem::getUserId, uid)
+                .eq(UserSolvedProblem::getProblemId, pid)
+                .eq(UserSolvedProblem::getCompetitionId, cid);
+        this.remove(wrapper);
+    }
+
     @Override
     public void deleteCompetition(Long cid) {
         QueryWrapper<UserSolvedProblem> wrapper=new QueryWrapper<>();
@@ -0,0 +1,16 @@
+-- 定时同步取一批有变化的参赛者（CompetitionDataSyncScheduler）：弹出脏集合成员并读出其统计，一次往返
+-- KEYS: 1 脏集合  2 参赛者统计 hash
+-- ARGV: 1 本批最多弹出个数
+-- 返回 {名字, 通过数, 罚时, 名字, 通过数, 罚时, ...}；统计已不存在（缓存过期）的名字不返回
+local names = redis.call('SPOP', KEYS[1], ARGV[1])
+local result = {}
+for _, name in ipairs(names) do
+    local pass = redis.call('HGET', KEYS[2], 'pass:' .. name)
+    local penalty = redis.call('HGET', KEYS[2], 'penalty:' .. name)
+    if pass or penalty then
+        result[#result + 1] = name
+        result[#result + 1] = pass or '0'
+        result[#result + 1] = penalty or '0'
+    end
+end
+return result
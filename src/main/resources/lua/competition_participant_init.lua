@@ -0,0 +1,12 @@
+-- 参赛者首次提交时初始化统计与排行（已存在则不动），键没有过期时间时补上
+-- KEYS: 1 参赛者统计 hash  2 排行 ZSET
+-- ARGV: 1 参赛者名  2 过期秒数
+redis.call('HSETNX', KEYS[1], 'pass:' .. ARGV[1], 0)
+redis.call('HSETNX', KEYS[1], 'penalty:' .. ARGV[1], 0)
+redis.call('ZADD', KEYS[2], 'NX', 0, ARGV[1])
+for i = 1, 2 do
+    if redis.call('TTL', KEYS[i]) == -1 then
+        redis.call('EXPIRE', KEYS[i], ARGV[2])
+    end
+end
+return 1
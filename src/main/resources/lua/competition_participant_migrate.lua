@@ -0,0 +1,22 @@
+-- 旧布局迁移：competition_user_pass / competition_user_penalty 两个字符串键并入统计 hash，
+-- 排行成员从 JSON 带引号的名字换成原始名字。迁移期间新写入的增量已在 hash 里，这里按增量合并。
+-- KEYS: 1 旧通过数键  2 旧罚时键  3 参赛者统计 hash  4 排行 ZSET  5 待同步参赛者脏集合
+-- ARGV: 1 参赛者名  2 旧排行成员（JSON 编码）
+local oldPass = redis.call('GET', KEYS[1])
+local oldPenalty = redis.call('GET', KEYS[2])
+local ttl = redis.call('TTL', KEYS[1])
+redis.call('ZREM', KEYS[4], ARGV[2])
+local pass = redis.call('HINCRBY', KEYS[3], 'pass:' .. ARGV[1], tonumber(oldPass or '0'))
+local penalty = redis.call('HINCRBY', KEYS[3], 'penalty:' .. ARGV[1], tonumber(oldPenalty or '0'))
+local score = -pass * 4294967296 + (penalty % 4294967296)
+redis.call('ZADD', KEYS[4], string.format('%.17g', score), ARGV[1])
+if ttl > 0 and redis.call('TTL', KEYS[3]) == -1 then
+    redis.call('EXPIRE', KEYS[3], ttl)
+end
+redis.call('DEL', KEYS[1], KEYS[2])
+-- 上次全量同步之后的变化还没落库，迁移后记为待同步
+redis.call('SADD', KEYS[5], ARGV[1])
+if ttl > 0 and redis.call('TTL', KEYS[5]) == -1 then
+    redis.call('EXPIRE', KEYS[5], ttl)
+end
+return 1
@@ -0,0 +1,27 @@
+-- 比赛评测结果一次性原子更新参赛者计数与排行分数（RedisServiceImpl.updateIfPass / updateIfNoPass）
+-- KEYS: 1 参赛者统计 hash  2 题目通过数  3 题目提交数  4 排行 ZSET  5 待同步参赛者脏集合
+-- ARGV: 1 参赛者名  2 是否通过（1/0）  3 本次罚时增量（分钟）
+-- 统计 hash 每个参赛者两个字段：pass:{名字}、penalty:{名字}
+-- 分数与 GetScore.calculateScore 相同：(-通过数 << 32) | (罚时 & 0xFFFFFFFF)
+local passField = 'pass:' .. ARGV[1]
+local pass
+if ARGV[2] == '1' then
+    pass = redis.call('HINCRBY', KEYS[1], passField, 1)
+    redis.call('INCR', KEYS[2])
+else
+    pass = tonumber(redis.call('HGET', KEYS[1], passField) or '0')
+end
+local penalty = redis.call('HINCRBY', KEYS[1], 'penalty:' .. ARGV[1], ARGV[3])
+redis.call('INCR', KEYS[3])
+local score = -pass * 4294967296 + (penalty % 4294967296)
+-- Lua 默认按 %.14g 转字符串，通过数较大时会丢精度
+redis.call('ZADD', KEYS[4], string.format('%.17g', score), ARGV[1])
+-- 记为待同步，定时任务只落库这些参赛者；脏集合与统计 hash 同时过期
+redis.call('SADD', KEYS[5], ARGV[1])
+if redis.call('TTL', KEYS[5]) == -1 then
+    local ttl = redis.call('TTL', KEYS[1])
+    if ttl > 0 then
+        redis.call('EXPIRE', KEYS[5], ttl)
+    end
+end
+return pass
@@ -0,0 +1,148 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedJsonInputStreamTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long MAX_BYTES = 64L * 1024 * 1024;
+    private static final int OUTPUT_MAX = 64 * 1024;
+    private static final int FIELD_MAX = 4 * 1024;
+    /** 转义、2/3/4 字节 UTF-8 字符混在一起，截断点会落在各种位置 */
+    private static final String UNIT = "a\\n\\\"é中\\u00e9\\\\𝄞\\t";
+    private static final String MARKER = "\n...(已截断)";
+
+    @Test
+    void streamsHugeStdoutWithBoundedRetention() throws IOException {
+        long stdoutBytes = 50L * 1024 * 1024;
+        InputStream upstream = new GeneratedBody(
+                "{\"status\":\"OK\",\"stdout\":\"", UNIT, stdoutBytes, "\",\"stderr\":\"\",\"time\":12}");
+        BoundedJsonInputStream in = new BoundedJsonInputStream(upstream, MAX_BYTES, OUTPUT_MAX, FIELD_MAX);
+
+        ByteArrayOutputStream retained = new ByteArrayOutputStream();
+        in.transferTo(retained);
+
+        assertTrue(retained.size() < OUTPUT_MAX + 1024, "保留字节数应与输出大小无关: " + retained.size());
+        assertEquals(1, in.getTruncatedFields());
+        JsonNode node = MAPPER.readTree(retained.toByteArray());
+        assertEquals("OK", node.get("status").asText());
+        assertEquals(12, node.get("time").asInt());
+        assertEquals("", node.get("stderr").asText());
+        String stdout = node.get("stdout").asText();
+        assertTrue(stdout.endsWith(MARKER));
+        assertFalse(stdout.contains("�"), "不应切坏多字节字符");
+        assertTrue(stdout.startsWith("a\n\"é中é\\𝄞\t"));
+    }
+
+    @Test
+    void truncatesOtherStringsWithFieldLimit() throws IOException {
+        String message = "x".repeat(FIELD_MAX * 2);
+        byte[] body = ("{\"status\":\"RE\",\"message\":\"" + message + "\",\"stdout\":\"ok\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        BoundedJsonInputStream in = new BoundedJsonInputStream(
+                new ByteArrayInputStream(body), MAX_BYTES, OUTPUT_MAX, FIELD_MAX);
+
+        JsonNode node = MAPPER.readTree(in);
+        assertEquals("x".repeat(FIELD_MAX) + MARKER, node.get("message").asText());
+        assertEquals("ok", node.get("stdout").asText());
+        assertEquals(1, in.getTruncatedFields());
+    }
+
+    @Test
+    void feedHandlesChunksSplitInsideEscapesAndCharacters() throws IOException {
+        String stdout = UNIT.repeat(2000);
+        byte[] frame = ("{\"type\":\"result\",\"stdout\":\"" + stdout + "\"}\n{\"type\":\"done\",\"stdout\":\"中\"}\n")
+                .getBytes(StandardCharsets.UTF_8);
+        BoundedJsonInputStream in = new BoundedJsonInputStream(null, MAX_BYTES, 1024, FIELD_MAX);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // 3 字节一段推入，分段点会切在转义序列和多字节字符中间
+        for (int off = 0; off < frame.length; off += 3) {
+            in.feed(frame, off, Math.min(3, frame.length - off), out);
+        }
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        JsonNode first = MAPPER.readTree(lines[0]);
+        assertEquals("result", first.get("type").asText());
+        String retained = first.get("stdout").asText();
+        assertTrue(retained.endsWith(MARKER));
+        assertFalse(retained.contains("�"));
+        JsonNode second = MAPPER.readTree(lines[1]);
+        assertEquals("done", second.get("type").asText());
+        assertEquals("中", second.get("stdout").asText());
+        assertEquals(1, in.getTruncatedFields());
+    }
+
+    @Test
+    void throwsWhenBodyExceedsLimit() {
+        byte[] body = ("{\"stdout\":\"" + "x".repeat(4096) + "\"}").getBytes(StandardCharsets.UTF_8);
+        BoundedJsonInputStream in = new BoundedJsonInputStream(
+                new ByteArrayInputStream(body), 1024, OUTPUT_MAX, FIELD_MAX);
+
+        assertThrows(BoundedJsonInputStream.LimitExceededException.class,
+                () -> in.transferTo(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void feedThrowsWhenBodyExceedsLimit() {
+        byte[] chunk = "x".repeat(600).getBytes(StandardCharsets.UTF_8);
+        BoundedJsonInputStream in = new BoundedJsonInputStream(null, 1024, OUTPUT_MAX, FIELD_MAX);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertDoesNotThrow(() -> in.feed(chunk, 0, chunk.length, out));
+        assertThrows(BoundedJsonInputStream.LimitExceededException.class,
+                () -> in.feed(chunk, 0, chunk.length, out));
+    }
+
+    /** 按需生成的响应体：head + unit 重复到至少 repeatBytes 字节 + tail，不在内存里拼出整个响应 */
+    private static final class GeneratedBody extends InputStream {
+        private final byte[][] parts;
+        private final long[] repeats;
+        private int part;
+        private int pos;
+        private long emitted;
+
+        GeneratedBody(String head, String unit, long repeatBytes, String tail) {
+            byte[] unitBytes = unit.getBytes(StandardCharsets.UTF_8);
+            this.parts = new byte[][]{head.getBytes(StandardCharsets.UTF_8), unitBytes,
+                    tail.getBytes(StandardCharsets.UTF_8)};
+            this.repeats = new long[]{1, (repeatBytes + unitBytes.length - 1) / unitBytes.length, 1};
+        }
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int n = 0;
+            while (n < len && part < parts.length) {
+                byte[] current = parts[part];
+                int count = Math.min(len - n, current.length - pos);
+                System.arraycopy(current, pos, b, off + n, count);
+                n += count;
+                pos += count;
+                if (pos == current.length) {
+                    pos = 0;
+                    if (++emitted == repeats[part]) {
+                        emitted = 0;
+                        part++;
+                    }
+                }
+            }
+            return n == 0 && len > 0 ? -1 : n;
+        }
+    }
+}
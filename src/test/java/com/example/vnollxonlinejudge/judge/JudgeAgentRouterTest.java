@@ -0,0 +1,183 @@
+package com.example.vnollxonlinejudge.judge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多端点调度：负载均摊、延迟加权，以及任意端点释放都能唤醒等待者（没有队头阻塞）。
+ * 端点只是桩地址，不发 HTTP 请求；自适应上限关闭，limit 恒等于 capacity。
+ */
+class JudgeAgentRouterTest {
+    private static final long WAIT_MS = 2000L;
+
+    @Test
+    void spreadsEvenlyAcrossEqualEndpoints() throws InterruptedException {
+        JudgeAgentRouter router = router(4, 4, 4);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 6; i++) {
+            counts.merge(router.acquire().getBaseUrl(), 1, Integer::sum);
+        }
+
+        assertEquals(Map.of("http://agent-0", 2, "http://agent-1", 2, "http://agent-2", 2), counts);
+    }
+
+    @Test
+    void fillsEveryEndpointInProportionToCapacity() throws InterruptedException {
+        JudgeAgentRouter router = router(8, 4, 4);
+
+        for (int i = 0; i < 8; i++) {
+            router.acquire();
+        }
+        for (JudgeAgentRouter.Endpoint ep : router.getEndpoints()) {
+            assertEquals(ep.getCapacity() / 2, ep.getInFlight(), ep.getBaseUrl());
+        }
+        for (int i = 0; i < 8; i++) {
+            router.acquire();
+        }
+        for (JudgeAgentRouter.Endpoint ep : router.getEndpoints()) {
+            assertEquals(ep.getCapacity(), ep.getInFlight(), ep.getBaseUrl());
+        }
+    }
+
+    @Test
+    void slowEndpointGetsFewerJudges() throws InterruptedException {
+        JudgeAgentRouter router = router(10, 10, 10);
+        List<JudgeAgentRouter.Endpoint> eps = router.getEndpoints();
+        router.recordLatency(eps.get(0), 100);
+        router.recordLatency(eps.get(1), 100);
+        router.recordLatency(eps.get(2), 400);
+
+        for (int i = 0; i < 12; i++) {
+            router.acquire();
+        }
+
+        assertTrue(eps.get(2).getInFlight() < eps.get(0).getInFlight());
+        assertTrue(eps.get(2).getInFlight() < eps.get(1).getInFlight());
+        assertTrue(eps.get(2).getInFlight() > 0, "慢端点仍应分到评测");
+    }
+
+    @Test
+    void waiterTakesWhicheverEndpointFreesFirst() throws Exception {
+        JudgeAgentRouter router = router(1, 1, 1);
+        List<JudgeAgentRouter.Endpoint> held = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            held.add(router.acquire());
+        }
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<JudgeAgentRouter.Endpoint> waiter = pool.submit(() -> router.acquire());
+            assertThrows(TimeoutException.class, () -> waiter.get(100, TimeUnit.MILLISECONDS));
+
+            // 释放列表末尾的端点，而不是"主"端点
+            JudgeAgentRouter.Endpoint last = held.get(2);
+            router.release(last);
+
+            assertSame(last, waiter.get(WAIT_MS, TimeUnit.MILLISECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void releaseWakesWaiterThatCanUseIt() throws Exception {
+        JudgeAgentRouter router = router(1, 1, 1);
+        List<JudgeAgentRouter.Endpoint> held = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            held.add(router.acquire());
+        }
+        JudgeAgentRouter.Endpoint freed = held.get(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            // 先排队的等待者排除了即将释放的端点，只唤醒一个的话后面的等待者会错过这次释放
+            Future<JudgeAgentRouter.Endpoint> excluding = pool.submit(() -> router.acquire(List.of(freed)));
+            assertThrows(TimeoutException.class, () -> excluding.get(100, TimeUnit.MILLISECONDS));
+            Future<JudgeAgentRouter.Endpoint> plain = pool.submit(() -> router.acquire());
+            assertThrows(TimeoutException.class, () -> plain.get(100, TimeUnit.MILLISECONDS));
+
+            router.release(freed);
+
+            assertSame(freed, plain.get(WAIT_MS, TimeUnit.MILLISECONDS));
+            assertFalse(excluding.isDone());
+            router.release(held.get(0));
+            assertSame(held.get(0), excluding.get(WAIT_MS, TimeUnit.MILLISECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentLoadStaysWithinCapacityAndUsesEveryEndpoint() throws Exception {
+        int threads = 16;
+        int rounds = 200;
+        JudgeAgentRouter router = router(2, 2, 2);
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> served = new ConcurrentHashMap<>();
+        AtomicInteger overCapacity = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < rounds; i++) {
+                        JudgeAgentRouter.Endpoint ep = router.acquire();
+                        try {
+                            int now = running.computeIfAbsent(ep.getBaseUrl(), k -> new AtomicInteger()).incrementAndGet();
+                            if (now > ep.getCapacity()) {
+                                overCapacity.incrementAndGet();
+                            }
+                            served.computeIfAbsent(ep.getBaseUrl(), k -> new AtomicInteger()).incrementAndGet();
+                            Thread.onSpinWait();
+                            running.get(ep.getBaseUrl()).decrementAndGet();
+                        } finally {
+                            router.release(ep);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(0, overCapacity.get());
+        int total = threads * rounds;
+        assertEquals(3, served.size());
+        for (Map.Entry<String, AtomicInteger> entry : served.entrySet()) {
+            assertTrue(entry.getValue().get() > total / 6, entry.getKey() + " 只分到 " + entry.getValue().get());
+        }
+        for (JudgeAgentRouter.Endpoint ep : router.getEndpoints()) {
+            assertEquals(0, ep.getInFlight());
+        }
+    }
+
+    private static JudgeAgentRouter router(int... capacities) {
+        List<JudgeAgentRouter.Endpoint> endpoints = new ArrayList<>();
+        for (int i = 0; i < capacities.length; i++) {
+            endpoints.add(new JudgeAgentRouter.Endpoint("http://agent-" + i, capacities[i], 1));
+        }
+        JudgeAgentRouter router = new JudgeAgentRouter(endpoints);
+        router.configureAdaptiveLimit(false, 2.0, 0.9, 0L);
+        return router;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.vnollxonlinejudge.judge;
+
+import com.example.vnollxonlinejudge.config.JudgeCodecConfig;
+import com.example.vnollxonlinejudge.model.entity.JudgeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 编解码往返与线上字节数：典型提交（约 2KB 源码）和 64KB 源码，JSON / CBOR / gzip 各组合。
+ * 耗时对比见 jmh profile 下的 JudgeCodecBenchmark。
+ */
+class JudgeCodecTest {
+    private static final int TYPICAL_CODE_BYTES = 2 * 1024;
+    private static final int LARGE_CODE_BYTES = 64 * 1024;
+
+    @Test
+    void roundTripsEveryFormatForTypicalAndLargeSubmissions() throws IOException {
+        for (int codeBytes : new int[]{TYPICAL_CODE_BYTES, LARGE_CODE_BYTES}) {
+            JudgeInfo judgeInfo = judgeInfo(codeBytes);
+            for (String format : List.of("json", "cbor")) {
+                for (int threshold : new int[]{0, 8192}) {
+                    JudgeCodec.Encoded encoded = codec(format, threshold).encodeMessage(judgeInfo);
+                    // 解码端不看配置，只看消息自带的 content-type / content-encoding
+                    JudgeInfo decoded = codec("json", 0).decode(encoded.getBody(), encoded.getContentType(),
+                            encoded.getContentEncoding(), JudgeInfo.class);
+                    assertEquals(judgeInfo, decoded, format + ", threshold=" + threshold + ", code=" + codeBytes);
+                }
+            }
+        }
+    }
+
+    @Test
+    void bytesOnTheWire() {
+        JudgeInfo typical = judgeInfo(TYPICAL_CODE_BYTES);
+        JudgeInfo large = judgeInfo(LARGE_CODE_BYTES);
+
+        int typicalJson = codec("json", 0).encodeMessage(typical).getBody().length;
+        int typicalCbor = codec("cbor", 0).encodeMessage(typical).getBody().length;
+        JudgeCodec.Encoded typicalDefault = codec("json", 8192).encodeMessage(typical);
+        int largeJson = codec("json", 0).encodeMessage(large).getBody().length;
+        int largeCbor = codec("cbor", 0).encodeMessage(large).getBody().length;
+        JudgeCodec.Encoded largeJsonGzip = codec("json", 8192).encodeMessage(large);
+        JudgeCodec.Encoded largeCborGzip = codec("cbor", 8192).encodeMessage(large);
+
+        // 典型提交低于压缩阈值，不压缩
+        assertNull(typicalDefault.getContentEncoding());
+        assertEquals(typicalJson, typicalDefault.getBody().length);
+        // CBOR 省掉字段名引号与数字的文本形式，但源码字符串照原样存，只小一点
+        assertTrue(typicalCbor < typicalJson, "typical: cbor=" + typicalCbor + ", json=" + typicalJson);
+        assertTrue(largeCbor < largeJson, "64KB: cbor=" + largeCbor + ", json=" + largeJson);
+        // 大提交的收益主要来自压缩
+        assertEquals(JudgeCodec.ENCODING_GZIP, largeJsonGzip.getContentEncoding());
+        assertEquals(JudgeCodec.ENCODING_GZIP, largeCborGzip.getContentEncoding());
+        assertTrue(largeJsonGzip.getBody().length * 3 < largeJson,
+                "64KB: json+gzip=" + largeJsonGzip.getBody().length + ", json=" + largeJson);
+        assertTrue(largeCborGzip.getBody().length * 3 < largeCbor,
+                "64KB: cbor+gzip=" + largeCborGzip.getBody().length + ", cbor=" + largeCbor);
+    }
+
+    @Test
+    void legacyMessageWithoutContentTypeDecodesAsJson() throws IOException {
+        JudgeInfo judgeInfo = judgeInfo(TYPICAL_CODE_BYTES);
+        byte[] legacy = new ObjectMapper().writeValueAsBytes(judgeInfo);
+
+        assertEquals(judgeInfo, codec("cbor", 8192).decode(legacy, null, null, JudgeInfo.class));
+    }
+
+    @Test
+    void unknownFieldsAreIgnoredByBothFormats() throws IOException {
+        String json = "{\"snowflakeId\":7,\"language\":\"C++\",\"addedInNewerVersion\":true}";
+        JudgeCodec codec = codec("cbor", 0);
+
+        JudgeInfo fromJson = codec.decode(json.getBytes(StandardCharsets.UTF_8),
+                JudgeCodec.CONTENT_TYPE_JSON, null, JudgeInfo.class);
+        byte[] cbor = new com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper()
+                .writeValueAsBytes(new ObjectMapper().readTree(json));
+        JudgeInfo fromCbor = codec.decode(cbor, JudgeCodec.CONTENT_TYPE_CBOR, null, JudgeInfo.class);
+
+        assertEquals(7L, fromJson.getSnowflakeId());
+        assertEquals(fromJson, fromCbor);
+    }
+
+    @Test
+    void agentEncodingFollowsEndpointCodecs() throws IOException {
+        JudgeCodec codec = codec("json", 8192);
+        JudgeInfo large = judgeInfo(LARGE_CODE_BYTES);
+        JudgeAgentRouter router = new JudgeAgentRouter(List.of());
+        JudgeAgentRouter.Endpoint legacy = router.heartbeat("http://legacy", 1, 1, 0, -1L, null, null);
+        JudgeAgentRouter.Endpoint modern = router.heartbeat("http://modern", 1, 1, 0, -1L, null, List.of("cbor", "gzip"));
+
+        JudgeCodec.Encoded toLegacy = codec.encodeForAgent(large, legacy);
+        JudgeCodec.Encoded toModern = codec.encodeForAgent(large, modern);
+
+        assertEquals(JudgeCodec.CONTENT_TYPE_JSON, toLegacy.getContentType());
+        assertNull(toLegacy.getContentEncoding());
+        assertEquals(JudgeCodec.CONTENT_TYPE_CBOR, toModern.getContentType());
+        assertEquals(JudgeCodec.ENCODING_GZIP, toModern.getContentEncoding());
+        assertEquals(large, codec.decode(toModern.getBody(), toModern.getContentType(),
+                toModern.getContentEncoding(), JudgeInfo.class));
+    }
+
+    private static JudgeCodec codec(String format, int compressThresholdBytes) {
+        JudgeCodecConfig config = new JudgeCodecConfig();
+        config.setMessageFormat(format);
+        config.setAgentFormat("cbor");
+        config.setCompressThresholdBytes(compressThresholdBytes);
+        ObjectMapper objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        return new JudgeCodec(objectMapper, config);
+    }
+
+    static JudgeInfo judgeInfo(int codeBytes) {
+        return JudgeInfo.builder()
+                .code(sourceCode(codeBytes))
+                .language("C++")
+                .time(1000L)
+                .memory(256L)
+                .cid(0L)
+                .uid(10086L)
+                .pid(1001L)
+                .uname("张三")
+                .createTime("2024-05-01 12:00:00")
+                .snowflakeId(1785623412871234567L)
+                .judgeMode("standard")
+                .traceId("a1b2c3d4e5f60718")
+                .build();
+    }
+
+    /** 像样的 C++ 源码：缩进、标识符、数字和中文注释交错，压缩率接近真实提交 */
+    static String sourceCode(int bytes) {
+        StringBuilder sb = new StringBuilder("#include <bits/stdc++.h>\nusing namespace std;\n\n");
+        int i = 0;
+        while (sb.toString().getBytes(StandardCharsets.UTF_8).length < bytes) {
+            sb.append("// 第 ").append(i).append(" 段：前缀和 + 二分\n")
+              .append("long long solve").append(i).append("(const vector<int>& a, int k) {\n")
+              .append("    long long s = 0, best = ").append(i * 7919 % 10007).append(";\n")
+              .append("    for (int j = 0; j < (int) a.size(); ++j) {\n")
+              .append("        s += a[j] ^ ").append(i * 31 % 97).append(";\n")
+              .append("        if (s > k) best = max(best, s - k);\n")
+              .append("    }\n    return best;\n}\n\n");
+            i++;
+        }
+        return sb.toString();
+    }
+}
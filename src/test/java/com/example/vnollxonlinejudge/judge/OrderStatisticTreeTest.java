@@ -0,0 +1,108 @@
+package com.example.vnollxonlinejudge.judge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderStatisticTreeTest {
+
+    @Test
+    void emptyTree() {
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.size());
+        assertNull(tree.pollFirst());
+        assertEquals(0, tree.rank(42));
+        assertFalse(tree.remove(42));
+    }
+
+    @Test
+    void rankCountsStrictlySmallerElements() {
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+        for (int v : new int[]{50, 10, 40, 20, 30}) {
+            tree.add(v);
+        }
+
+        assertEquals(5, tree.size());
+        assertEquals(0, tree.rank(10));
+        assertEquals(2, tree.rank(30));
+        assertEquals(4, tree.rank(50));
+        // 不在树里的元素按插入位置计
+        assertEquals(0, tree.rank(5));
+        assertEquals(3, tree.rank(35));
+        assertEquals(5, tree.rank(99));
+    }
+
+    @Test
+    void removeAndPollFirstKeepSizesConsistent() {
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+        for (int v = 1; v <= 10; v++) {
+            tree.add(v);
+        }
+
+        assertTrue(tree.remove(5));
+        assertFalse(tree.remove(5));
+        assertEquals(9, tree.size());
+        assertEquals(4, tree.rank(6));
+        assertEquals(1, (int) tree.pollFirst());
+        assertEquals(2, (int) tree.pollFirst());
+        assertEquals(2, tree.rank(6));
+        assertEquals(7, tree.size());
+    }
+
+    @Test
+    void comparatorTieBreakerKeepsEqualKeysDistinct() {
+        // 与公平队列相同：标签相同的按序号区分
+        Comparator<long[]> byTagThenSeq = Comparator.<long[]>comparingLong(e -> e[0]).thenComparingLong(e -> e[1]);
+        OrderStatisticTree<long[]> tree = new OrderStatisticTree<>(byTagThenSeq);
+        long[] a = {1, 0};
+        long[] b = {1, 1};
+        long[] c = {1, 2};
+        tree.add(c);
+        tree.add(a);
+        tree.add(b);
+
+        assertEquals(1, tree.rank(b));
+        assertTrue(tree.remove(b));
+        assertEquals(1, tree.rank(c));
+        assertSame(a, tree.pollFirst());
+        assertSame(c, tree.pollFirst());
+        assertTrue(tree.isEmpty());
+    }
+
+    @Test
+    void matchesTreeSetUnderRandomOperations() {
+        Random random = new Random(20240501L);
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int op = 0; op < 200_000; op++) {
+            int value = random.nextInt(5_000);
+            switch (random.nextInt(4)) {
+                case 0, 1 -> {
+                    if (expected.add(value)) {
+                        tree.add(value);
+                    }
+                }
+                case 2 -> assertEquals(expected.remove(value), tree.remove(value));
+                default -> assertEquals(expected.pollFirst(), tree.pollFirst());
+            }
+            assertEquals(expected.size(), tree.size());
+            if (op % 97 == 0) {
+                assertEquals(expected.headSet(value).size(), tree.rank(value), "rank(" + value + ")");
+            }
+        }
+        List<Integer> drained = new ArrayList<>();
+        Integer next;
+        while ((next = tree.pollFirst()) != null) {
+            drained.add(next);
+        }
+        assertEquals(new ArrayList<>(expected), drained);
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.vnollxonlinejudge.scoreboard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ContestScoreboard 的重放规则、乱序到达与 stale 判定。
+ */
+class ContestScoreboardTest {
+    private static final String BEGIN = "2024-01-01 10:00:00";
+    private static final List<Long> PROBLEMS = List.of(101L, 102L);
+    private static final String AC = ContestScoreboard.STATUS_ACCEPTED;
+    private static final String WA = "答案错误";
+
+    /** 比赛开始后第 minutes 分钟 */
+    private static String at(int minutes) {
+        return String.format("2024-01-01 %02d:%02d:00", 10 + minutes / 60, minutes % 60);
+    }
+
+    /** 空榜，已登记 alice、bob，构建序号为 0 */
+    private static ContestScoreboard emptyBoard() {
+        ContestScoreboard board = new ContestScoreboard(BEGIN, PROBLEMS);
+        board.addParticipant("alice", 1L, "alice", null);
+        board.addParticipant("bob", 2L, "bob", null);
+        board.finishBuild(0);
+        return board;
+    }
+
+    private static int row(ContestScoreboard.Snapshot snapshot, String key) {
+        return snapshot.rowAt(snapshot.positionOf(key));
+    }
+
+    @Test
+    void replayFollowsSubmissionOrder() {
+        ContestScoreboard board = new ContestScoreboard(BEGIN, PROBLEMS);
+        board.replay("alice", 1L, "alice", true, 101L, 1L, at(5), WA);
+        board.replay("alice", 1L, "alice", true, 101L, 2L, at(6), "评测中");
+        board.replay("alice", 1L, "alice", true, 101L, 3L, at(10), AC);
+        // 通过后的提交不再计入
+        board.replay("alice", 1L, "alice", true, 101L, 4L, at(12), WA);
+        board.replay("alice", 1L, "alice", true, 101L, 5L, at(13), AC);
+        board.replay("bob", 2L, "bob", true, 101L, 6L, at(40), AC);
+        board.finishBuild(0);
+
+        ContestScoreboard.Snapshot snapshot = board.snapshot();
+        int alice = row(snapshot, "alice");
+        int bob = row(snapshot, "bob");
+        assertEquals(0, snapshot.positionOf("alice"));
+        assertEquals(1, snapshot.passCount(alice));
+        assertEquals(10 + 20, snapshot.penalty(alice));
+        assertEquals(10, snapshot.solveMinutes(alice, 0));
+        assertEquals(1, snapshot.wrongTries(alice, 0));
+        assertTrue(snapshot.firstBlood(alice, 0));
+        assertFalse(snapshot.firstBlood(bob, 0));
+        assertFalse(snapshot.solved(alice, 1));
+        assertEquals(-1, snapshot.solveMinutes(alice, 1));
+        assertTrue(board.isCurrent(0, PROBLEMS));
+    }
+
+    @Test
+    void tiedParticipantsShareRankNumber() {
+        ContestScoreboard board = new ContestScoreboard(BEGIN, PROBLEMS);
+        for (String key : List.of("e", "d", "c", "b", "a", "f")) {
+            board.addParticipant(key, null, key, null);
+        }
+        board.replay("a", null, "a", false, 101L, 1L, at(10), AC);
+        board.replay("a", null, "a", false, 102L, 2L, at(20), AC);
+        board.replay("c", null, "c", false, 101L, 3L, at(10), AC);
+        board.replay("b", null, "b", false, 102L, 4L, at(10), AC);
+        board.replay("d", null, "d", false, 101L, 5L, at(30), WA);
+        board.replay("d", null, "d", false, 101L, 6L, at(30), AC);
+        board.finishBuild(0);
+
+        ContestScoreboard.Snapshot snapshot = board.snapshot();
+        assertEquals(6, snapshot.size());
+        String[] expectedNames = {"a", "c", "b", "d", "e", "f"};
+        int[] expectedRanks = {1, 2, 2, 4, 5, 5};
+        for (int rank = 0; rank < expectedNames.length; rank++) {
+            // 并列时保持登记顺序
+            assertEquals(expectedNames[rank], snapshot.name(snapshot.rowAt(rank)));
+            assertEquals(expectedRanks[rank], snapshot.rankNumber(rank));
+            assertEquals(rank, snapshot.positionOf(expectedNames[rank]));
+        }
+        assertEquals(-1, snapshot.positionOf("nobody"));
+
+        // 增量结果打破并列后重新编号
+        board.apply(1, "b", null, "b", false, 101L, 7L, at(50), AC);
+        snapshot = board.snapshot();
+        assertEquals("b", snapshot.name(snapshot.rowAt(1)));
+        assertEquals(2, snapshot.rankNumber(1));
+        assertEquals(3, snapshot.rankNumber(2));
+        assertEquals(2, snapshot.positionOf("c"));
+    }
+
+    @Test
+    void lateWrongSubmittedBeforeAcceptAddsPenalty() {
+        ContestScoreboard board = emptyBoard();
+        board.apply(1, "alice", 1L, "alice", true, 101L, 10L, at(30), AC);
+        board.apply(2, "alice", 1L, "alice", true, 101L, 5L, at(25), WA);
+
+        ContestScoreboard.Snapshot snapshot = board.snapshot();
+        int alice = row(snapshot, "alice");
+        assertEquals(30 + 20, snapshot.penalty(alice));
+        assertEquals(1, snapshot.wrongTries(alice, 0));
+        assertTrue(board.isCurrent(2, PROBLEMS));
+    }
+
+    @Test
+    void wrongSubmittedAfterAcceptIsIgnored() {
+        ContestScoreboard board = emptyBoard();
+        board.apply(1, "alice", 1L, "alice", true, 101L, 10L, at(30), AC);
+        long version = board.snapshot().getVersion();
+        board.apply(2, "alice", 1L, "alice", true, 101L, 11L, at(31), WA);
+
+        ContestScoreboard.Snapshot snapshot = board.snapshot();
+        int alice = row(snapshot, "alice");
+        assertEquals(version, snapshot.getVersion());
+        assertEquals(30, snapshot.penalty(alice));
+        assertEquals(0, snapshot.wrongTries(alice, 0));
+        assertTrue(board.isCurrent(2, PROBLEMS));
+    }
+
+    @Test
+    void earlierAcceptArrivingLateMarksStale() {
+        ContestScoreboard board = emptyBoard();
+        board.apply(1, "alice", 1L, "alice", true, 101L, 10L, at(30), AC);
+        board.apply(2, "alice", 1L, "alice", true, 101L, 5L, at(20), AC);
+
+        assertFalse(board.isCurrent(2, PROBLEMS));
+        assertEquals(30, board.snapshot().penalty(row(board.snapshot(), "alice")));
+    }
+
+    @Test
+    void acceptEarlierThanCountedWrongMarksStale() {
+        ContestScoreboard board = emptyBoard();
+        board.apply(1, "alice", 1L, "alice", true, 101L, 10L, at(30), WA);
+        board.apply(2, "alice", 1L, "alice", true, 101L, 5L, at(20), AC);
+
+        assertFalse(board.isCurrent(2, PROBLEMS));
+        assertEquals(0, board.snapshot().passCount(row(board.snapshot(), "alice")));
+    }
+
+    @Test
+    void unknownProblemIsSkippedWhileReplayingButMarksStaleAfterwards() {
+        ContestScoreboard board = new ContestScoreboard(BEGIN, PROBLEMS);
+        board.replay("alice", 1L, "alice", true, 999L, 1L, at(5), AC);
+        board.finishBuild(0);
+        assertTrue(board.isCurrent(0, PROBLEMS));
+        assertEquals(-1, board.snapshot().positionOf("alice"));
+
+        board.apply(1, "alice", 1L, "alice", true, 999L, 2L, at(6), AC);
+        assertFalse(board.isCurrent(1, PROBLEMS));
+    }
+
+    @Test
+    void unknownTeamMarksStaleUnlessAutoCreated() {
+        ContestScoreboard board = emptyBoard();
+        board.apply(1, "carol", 3L, "carol", true, 101L, 1L, at(5), AC);
+        assertTrue(board.isCurrent(1, PROBLEMS));
+        assertEquals(0, board.snapshot().positionOf("carol"));
+
+        String team = ContestScoreboard.teamKey(7L);
+        board.apply(2, team, 7L, null, false, 101L, 2L, at(6), AC);
+        assertFalse(board.isCurrent(2, PROBLEMS));
+        assertEquals(-1, board.snapshot().positionOf(team));
+    }
+
+    @Test
+    void firstBloodGoesToSmallestSnowflake() {
+        ContestScoreboard board = emptyBoard();
+        board.apply(1, "bob", 2L, "bob", true, 102L, 20L, at(12), AC);
+        board.apply(2, "alice", 1L, "alice", true, 102L, 15L, at(11), AC);
+
+        ContestScoreboard.Snapshot snapshot = board.snapshot();
+        assertTrue(snapshot.firstBlood(row(snapshot, "alice"), 1));
+        assertFalse(snapshot.firstBlood(row(snapshot, "bob"), 1));
+        assertTrue(board.isCurrent(2, PROBLEMS));
+    }
+
+    @Test
+    void eventsDuringBuildAreFilteredBySeqAndDeduplicated() {
+        ContestScoreboard board = new ContestScoreboard(BEGIN, PROBLEMS);
+        board.addParticipant("alice", 1L, "alice", null);
+        // seq 1 在读序号前已落库；seq 2 落库时查询还没结束；seq 3 晚于查询
+        board.apply(1, "alice", 1L, "alice", true, 101L, 1L, at(5), WA);
+        board.apply(2, "alice", 1L, "alice", true, 101L, 2L, at(6), WA);
+        board.apply(3, "alice", 1L, "alice", true, 101L, 3L, at(7), AC);
+        assertNull(board.snapshot());
+        assertFalse(board.isCurrent(3, PROBLEMS));
+
+        board.replay("alice", 1L, "alice", true, 101L, 1L, at(5), WA);
+        board.replay("alice", 1L, "alice", true, 101L, 2L, at(6), WA);
+        board.finishBuild(1);
+
+        ContestScoreboard.Snapshot snapshot = board.snapshot();
+        int alice = row(snapshot, "alice");
+        assertEquals(2, snapshot.wrongTries(alice, 0));
+        assertEquals(7 + 2 * 20, snapshot.penalty(alice));
+        assertTrue(board.isCurrent(3, PROBLEMS));
+    }
+
+    @Test
+    void isCurrentTracksSeqAndProblemList() {
+        ContestScoreboard board = new ContestScoreboard(BEGIN, PROBLEMS);
+        board.addParticipant("alice", 1L, "alice", null);
+        board.finishBuild(5);
+        assertTrue(board.isCurrent(5, PROBLEMS));
+
+        // 不大于构建序号的事件已在构建中，不计数
+        board.apply(4, "alice", 1L, "alice", true, 101L, 1L, at(5), WA);
+        assertTrue(board.isCurrent(5, PROBLEMS));
+        assertEquals(0, board.snapshot().wrongTries(0, 0));
+
+        board.apply(6, "alice", 1L, "alice", true, 101L, 2L, at(6), WA);
+        assertTrue(board.isCurrent(6, PROBLEMS));
+        // 漏掉了别的实例的事件
+        assertFalse(board.isCurrent(7, PROBLEMS));
+        assertFalse(board.isCurrent(6, List.of(101L)));
+        assertFalse(board.isCurrent(6, List.of(102L, 101L)));
+
+        board.markStale();
+        assertFalse(board.isCurrent(6, PROBLEMS));
+    }
+
+    @Test
+    void builtWithinServesRecentSnapshotForSameProblems() {
+        ContestScoreboard building = new ContestScoreboard(BEGIN, PROBLEMS);
+        assertFalse(building.builtWithin(60_000, PROBLEMS));
+
+        ContestScoreboard board = emptyBoard();
+        board.markStale();
+        assertTrue(board.builtWithin(60_000, PROBLEMS));
+        assertFalse(board.builtWithin(60_000, List.of(101L, 103L)));
+        assertFalse(board.builtWithin(0, PROBLEMS));
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.vnollxonlinejudge.service.serviceImpl;
+
+import com.example.vnollxonlinejudge.exception.BusinessException;
+import com.example.vnollxonlinejudge.mapper.CompetitionMapper;
+import com.example.vnollxonlinejudge.mapper.CompetitionTeamMapper;
+import com.example.vnollxonlinejudge.mapper.CompetitionTeamMemberMapper;
+import com.example.vnollxonlinejudge.mapper.SubmissionMapper;
+import com.example.vnollxonlinejudge.model.entity.Competition;
+import com.example.vnollxonlinejudge.model.entity.CompetitionTeam;
+import com.example.vnollxonlinejudge.model.entity.User;
+import com.example.vnollxonlinejudge.model.vo.competition.CompetitionRankOfVo;
+import com.example.vnollxonlinejudge.model.vo.competition.CompetitionRanklistVo;
+import com.example.vnollxonlinejudge.scoreboard.ContestScoreboard;
+import com.example.vnollxonlinejudge.scoreboard.ContestScoreboardRegistry;
+import com.example.vnollxonlinejudge.service.CompetitionProblemService;
+import com.example.vnollxonlinejudge.service.CompetitionTeamService;
+import com.example.vnollxonlinejudge.service.CompetitionUserService;
+import com.example.vnollxonlinejudge.service.ProblemService;
+import com.example.vnollxonlinejudge.service.RedisService;
+import com.example.vnollxonlinejudge.service.SubmissionService;
+import com.example.vnollxonlinejudge.service.UserService;
+import com.example.vnollxonlinejudge.service.UserSolvedProblemService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 榜单分页与"我的名次"的页码 / 序号计算，榜单快照由 ContestScoreboard 直接构造。
+ */
+class CompetitionServiceImplRanklistTest {
+    private static final Long CID = 7L;
+    private static final String BEGIN = "2024-01-01 10:00:00";
+    private static final List<Long> PROBLEMS = List.of(101L, 102L);
+
+    private final CompetitionMapper competitionMapper = mock(CompetitionMapper.class);
+    private final ContestScoreboardRegistry registry = mock(ContestScoreboardRegistry.class);
+    private final UserService userService = mock(UserService.class);
+    private final CompetitionTeamService competitionTeamService = mock(CompetitionTeamService.class);
+    private CompetitionServiceImpl service;
+    private Competition competition;
+
+    @BeforeEach
+    void setUp() {
+        service = new CompetitionServiceImpl(
+                mock(CompetitionUserService.class),
+                mock(CompetitionProblemService.class),
+                mock(ProblemService.class),
+                mock(RedisService.class),
+                mock(UserSolvedProblemService.class),
+                mock(SubmissionService.class),
+                mock(SubmissionMapper.class),
+                mock(CompetitionTeamMapper.class),
+                mock(CompetitionTeamMemberMapper.class),
+                competitionTeamService,
+                userService,
+                registry
+        );
+        ReflectionTestUtils.setField(service, "baseMapper", competitionMapper);
+        competition = new Competition();
+        competition.setId(CID);
+        competition.setBeginTime(BEGIN);
+        competition.setParticipantType("INDIVIDUAL");
+        when(competitionMapper.selectById(CID)).thenReturn(competition);
+    }
+
+    /** u0 .. u{n-1}，u{i} 第 i+1 分钟通过一题，名次即下标 */
+    private void givenRanklist(int n) {
+        ContestScoreboard board = new ContestScoreboard(BEGIN, PROBLEMS);
+        for (int i = 0; i < n; i++) {
+            String name = "u" + i;
+            board.replay(name, (long) i, name, true, 101L, (long) i + 1, at(i + 1), ContestScoreboard.STATUS_ACCEPTED);
+        }
+        board.finishBuild(0);
+        givenSnapshot(board);
+    }
+
+    private void givenSnapshot(ContestScoreboard board) {
+        when(registry.snapshot(eq(CID), any(), any(), any())).thenReturn(board.snapshot());
+    }
+
+    private static String at(int minutes) {
+        return String.format("2024-01-01 %02d:%02d:00", 10 + minutes / 60, minutes % 60);
+    }
+
+    private static List<String> names(CompetitionRanklistVo ranklist) {
+        return ranklist.getUsers().stream().map(CompetitionRanklistVo.UserRankVo::getName).toList();
+    }
+
+    @Test
+    void pageReturnsRowsInRankOrder() {
+        givenRanklist(5);
+
+        CompetitionRanklistVo page2 = service.getRanklistPage(CID, 2, 2);
+        assertEquals(List.of("u2", "u3"), names(page2));
+        assertEquals(3, page2.getUsers().get(0).getRank());
+        assertEquals(5, page2.getTotal());
+        assertEquals(2, page2.getPage());
+        assertEquals(2, page2.getPageSize());
+
+        assertEquals(List.of("u4"), names(service.getRanklistPage(CID, 3, 2)));
+        CompetitionRanklistVo beyond = service.getRanklistPage(CID, 4, 2);
+        assertTrue(beyond.getUsers().isEmpty());
+        assertEquals(5, beyond.getTotal());
+    }
+
+    @Test
+    void pageSizeIsCappedAt200() {
+        givenRanklist(250);
+
+        CompetitionRanklistVo first = service.getRanklistPage(CID, 1, 1000);
+        assertEquals(200, first.getUsers().size());
+        assertEquals(200, first.getPageSize());
+        List<String> second = names(service.getRanklistPage(CID, 2, 1000));
+        assertEquals(50, second.size());
+        assertEquals("u200", second.get(0));
+        assertEquals("u249", second.get(49));
+    }
+
+    @Test
+    void pageWithHugePageNumberDoesNotOverflow() {
+        givenRanklist(3);
+
+        CompetitionRanklistVo ranklist = service.getRanklistPage(CID, Integer.MAX_VALUE, 200);
+        assertTrue(ranklist.getUsers().isEmpty());
+        assertEquals(3, ranklist.getTotal());
+    }
+
+    @Test
+    void nonPositivePageOrSizeIsRejected() {
+        assertThrows(BusinessException.class, () -> service.getRanklistPage(CID, 0, 20));
+        assertThrows(BusinessException.class, () -> service.getRanklistPage(CID, 1, 0));
+        assertThrows(BusinessException.class, () -> service.getRankOf(CID, 1L, 0));
+    }
+
+    @Test
+    void rankOfGivesPositionAndPage() {
+        givenRanklist(5);
+        User user = new User();
+        user.setName("u4");
+        when(userService.getUserEntityById(4L)).thenReturn(user);
+
+        CompetitionRankOfVo rankOf = service.getRankOf(CID, 4L, 2);
+        assertEquals(5, rankOf.getPosition());
+        assertEquals(5, rankOf.getRank());
+        assertEquals(3, rankOf.getPage());
+        assertEquals(5, rankOf.getTotal());
+        assertEquals("u4", rankOf.getUser().getName());
+
+        assertEquals(1, service.getRankOf(CID, 4L, 5).getPage());
+        assertEquals(1, service.getRankOf(CID, 4L, 1000).getPage());
+    }
+
+    @Test
+    void rankOfKeepsTiedRankNumber() {
+        ContestScoreboard board = new ContestScoreboard(BEGIN, PROBLEMS);
+        for (String name : List.of("a", "b", "c", "d")) {
+            board.addParticipant(name, null, name, null);
+        }
+        board.replay("a", null, "a", true, 101L, 1L, at(5), ContestScoreboard.STATUS_ACCEPTED);
+        board.replay("b", null, "b", true, 101L, 2L, at(10), ContestScoreboard.STATUS_ACCEPTED);
+        board.replay("c", null, "c", true, 101L, 3L, at(10), ContestScoreboard.STATUS_ACCEPTED);
+        board.replay("d", null, "d", true, 101L, 4L, at(20), ContestScoreboard.STATUS_ACCEPTED);
+        board.finishBuild(0);
+        givenSnapshot(board);
+        User user = new User();
+        user.setName("c");
+        when(userService.getUserEntityById(3L)).thenReturn(user);
+
+        CompetitionRankOfVo rankOf = service.getRankOf(CID, 3L, 2);
+        assertEquals(2, rankOf.getRank());
+        assertEquals(3, rankOf.getPosition());
+        assertEquals(2, rankOf.getPage());
+        List<Integer> ranks = service.getRanklistPage(CID, 1, 4).getUsers().stream()
+                .map(CompetitionRanklistVo.UserRankVo::getRank).toList();
+        assertEquals(List.of(1, 2, 2, 4), ranks);
+    }
+
+    @Test
+    void rankOfUsesTeamKeyInTeamCompetition() {
+        competition.setParticipantType("TEAM");
+        ContestScoreboard board = new ContestScoreboard(BEGIN, PROBLEMS);
+        board.addParticipant(ContestScoreboard.teamKey(1L), 1L, "team1", List.of("张三"));
+        board.addParticipant(ContestScoreboard.teamKey(2L), 2L, "team2", List.of("李四", "王五"));
+        board.replay(ContestScoreboard.teamKey(2L), 2L, null, false, 101L, 1L, at(5), ContestScoreboard.STATUS_ACCEPTED);
+        board.finishBuild(0);
+        givenSnapshot(board);
+        CompetitionTeam team = new CompetitionTeam();
+        team.setId(1L);
+        when(competitionTeamService.getTeamByMember(CID, 9L)).thenReturn(team);
+
+        CompetitionRankOfVo rankOf = service.getRankOf(CID, 9L, 20);
+        assertEquals(2, rankOf.getPosition());
+        assertEquals("team1", rankOf.getUser().getName());
+        assertEquals("TEAM", rankOf.getUser().getType());
+        assertEquals(1, rankOf.getUser().getMembers().size());
+    }
+
+    @Test
+    void rankOfIsNullWhenNotOnBoardAndRequiresLogin() {
+        givenRanklist(2);
+        User user = new User();
+        user.setName("stranger");
+        when(userService.getUserEntityById(99L)).thenReturn(user);
+
+        assertNull(service.getRankOf(CID, 99L, 20));
+        assertNull(service.getRankOf(CID, 100L, 20));
+        assertThrows(BusinessException.class, () -> service.getRankOf(CID, null, 20));
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.vnollxonlinejudge.service.serviceImpl;
+
+import com.example.vnollxonlinejudge.utils.GetScore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 比赛评测脚本的并发测试，需要真实 Redis，默认跳过：
+ * mvn test -Dtest=RedisServiceImplConcurrencyTest -Dredis.it.host=localhost [-Dredis.it.port=6379]
+ * <p>
+ * 多线程同时对同一批参赛者出评测结果，结束后统计 hash 的计数、题目计数与排行 ZSET 分数都要和
+ * 按结果序列算出的值一致，分数等于 GetScore.calculateScore。测试键都带随机前缀，结束后删除。
+ */
+@EnabledIfSystemProperty(named = "redis.it.host", matches = ".+")
+class RedisServiceImplConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int VERDICTS_PER_THREAD = 300;
+    private static final long PASS_PENALTY = 7;
+    /** updateIfNoPass 固定加 20 分钟罚时 */
+    private static final long NO_PASS_PENALTY = 20;
+    /** 预置一个通过数很大的参赛者，检查分数在大数下不丢精度 */
+    private static final long SEEDED_PASS = 1_000_000;
+    private static final String[] NAMES = {"alice", "张三", "seeded"};
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate template;
+    private RedisServiceImpl redisService;
+    private String statsKey;
+    private String dirtyKey;
+    private String problemPassKey;
+    private String problemSubmitKey;
+    private String rankingKey;
+
+    @BeforeEach
+    void setUp() {
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(
+                System.getProperty("redis.it.host"), Integer.getInteger("redis.it.port", 6379));
+        connectionFactory = new LettuceConnectionFactory(config);
+        connectionFactory.afterPropertiesSet();
+        template = new StringRedisTemplate(connectionFactory);
+        redisService = new RedisServiceImpl(template);
+
+        String prefix = "it:" + UUID.randomUUID() + ":";
+        statsKey = prefix + "competition_user_stats";
+        dirtyKey = prefix + "competition_user_dirty";
+        problemPassKey = prefix + "competition_problem_pass";
+        problemSubmitKey = prefix + "competition_problem_submit";
+        rankingKey = prefix + "competition_ranking";
+    }
+
+    @AfterEach
+    void tearDown() {
+        template.delete(List.of(statsKey, dirtyKey, problemPassKey, problemSubmitKey, rankingKey));
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void concurrentVerdictsKeepCountersAndScoreConsistent() throws Exception {
+        for (String name : NAMES) {
+            redisService.initParticipant(statsKey, rankingKey, name, 3600L);
+        }
+        template.opsForHash().put(statsKey, "pass:seeded", String.valueOf(SEEDED_PASS));
+
+        long[] expectedPass = new long[NAMES.length];
+        long[] expectedPenalty = new long[NAMES.length];
+        expectedPass[2] = SEEDED_PASS;
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < VERDICTS_PER_THREAD; i++) {
+                int who = (t + i) % NAMES.length;
+                if (isPass(t, i)) {
+                    expectedPass[who]++;
+                    expectedPenalty[who] += PASS_PENALTY;
+                } else {
+                    expectedPenalty[who] += NO_PASS_PENALTY;
+                }
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < VERDICTS_PER_THREAD; i++) {
+                        String name = NAMES[(thread + i) % NAMES.length];
+                        if (isPass(thread, i)) {
+                            redisService.updateIfPass(statsKey, dirtyKey, problemPassKey, problemSubmitKey,
+                                    rankingKey, name, PASS_PENALTY);
+                        } else {
+                            redisService.updateIfNoPass(statsKey, dirtyKey, problemSubmitKey, rankingKey, name);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long totalPass = 0;
+        for (int i = 0; i < NAMES.length; i++) {
+            String name = NAMES[i];
+            long pass = Long.parseLong((String) template.opsForHash().get(statsKey, "pass:" + name));
+            long penalty = Long.parseLong((String) template.opsForHash().get(statsKey, "penalty:" + name));
+            assertEquals(expectedPass[i], pass, name + " 通过数");
+            assertEquals(expectedPenalty[i], penalty, name + " 罚时");
+            Double score = template.opsForZSet().score(rankingKey, name);
+            assertNotNull(score, name + " 排行分数");
+            assertEquals(GetScore.calculateScore(pass, penalty), score.longValue(), name + " 排行分数");
+            totalPass += pass;
+        }
+        totalPass -= SEEDED_PASS;
+        assertEquals(String.valueOf(totalPass), template.opsForValue().get(problemPassKey));
+        assertEquals(String.valueOf((long) THREADS * VERDICTS_PER_THREAD), template.opsForValue().get(problemSubmitKey));
+        assertEquals(Set.of(NAMES), template.opsForSet().members(dirtyKey));
+        assertTrue(template.getExpire(dirtyKey) > 0, "脏集合应随统计 hash 过期");
+    }
+
+    private static boolean isPass(int thread, int index) {
+        return (thread * 31 + index) % 3 == 0;
+    }
+}
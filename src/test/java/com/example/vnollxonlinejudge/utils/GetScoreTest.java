@@ -0,0 +1,69 @@
+package com.example.vnollxonlinejudge.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * lua/competition_verdict.lua 在服务端按 Lua 双精度数重算分数，这里用同样的运算
+ * （-pass * 4294967296 + penalty % 4294967296，再按 %.17g 转字符串交给 ZADD）对照 GetScore.calculateScore。
+ */
+class GetScoreTest {
+    private static final double TWO_POW_32 = 4294967296.0;
+    private static final long[] PASS_VALUES = {0, 1, 7, 100, 65_535, 1L << 20, (1L << 21) - 1};
+    private static final long[] PENALTY_VALUES = {0, 20, 1_234_567, 0xFFFFFFFFL, 1L << 32, (1L << 32) + 5, 1L << 40};
+
+    @Test
+    void luaFormulaMatchesCalculateScore() {
+        for (long pass : PASS_VALUES) {
+            for (long penalty : PENALTY_VALUES) {
+                long expected = GetScore.calculateScore(pass, penalty);
+                double zaddScore = Double.parseDouble(format17g(luaScore(pass, penalty)));
+                assertEquals((double) expected, zaddScore, "pass=" + pass + ", penalty=" + penalty);
+                assertEquals(expected, (long) zaddScore, "pass=" + pass + ", penalty=" + penalty);
+            }
+        }
+    }
+
+    @Test
+    void defaultLuaNumberFormatLosesPrecision() {
+        // Lua tostring 默认 %.14g，通过数大时分数的低位罚时会丢掉，这是脚本改用 %.17g 的原因
+        long pass = (1L << 20);
+        long penalty = 123;
+        long expected = GetScore.calculateScore(pass, penalty);
+        double score = luaScore(pass, penalty);
+        assertNotEquals(expected, (long) Double.parseDouble(new BigDecimal(score).round(new MathContext(14)).toString()));
+        assertEquals(expected, (long) Double.parseDouble(format17g(score)));
+    }
+
+    @Test
+    void moreSolvedRanksFirstThenLessPenalty() {
+        assertTrue(GetScore.calculateScore(3L, 5000L) < GetScore.calculateScore(2L, 0L));
+        assertTrue(GetScore.calculateScore(2L, 10L) < GetScore.calculateScore(2L, 11L));
+    }
+
+    @Test
+    void scriptUsesSameFormula() throws IOException {
+        String script = new String(new ClassPathResource("lua/competition_verdict.lua").getInputStream().readAllBytes(),
+                StandardCharsets.UTF_8);
+        assertTrue(script.contains("-pass * 4294967296 + (penalty % 4294967296)"));
+        assertTrue(script.contains("string.format('%.17g', score)"));
+    }
+
+    /** Lua 5.1 数字都是 double，a % b 定义为 a - floor(a / b) * b */
+    private static double luaScore(long pass, long penalty) {
+        double p = penalty;
+        return -(double) pass * TWO_POW_32 + (p - Math.floor(p / TWO_POW_32) * TWO_POW_32);
+    }
+
+    /** 17 位有效数字足以让任意 double 往返不丢精度，与 C 的 %.17g 取值一致 */
+    private static String format17g(double value) {
+        return new BigDecimal(value).round(new MathContext(17)).toString();
+    }
+}